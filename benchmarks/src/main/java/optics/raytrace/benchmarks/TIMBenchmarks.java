@@ -0,0 +1,551 @@
+package optics.raytrace.benchmarks;
+
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import math.Vector3D;
+import math.ODE.IntegrationType;
+import optics.DoubleColour;
+import optics.raytrace.NonInteractiveTIMEngine;
+import optics.raytrace.GUI.cameras.RenderQualityEnum;
+import optics.raytrace.core.DefaultRaytraceExceptionHandler;
+import optics.raytrace.core.LightSource;
+import optics.raytrace.core.Ray;
+import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaytraceExceptionHandler;
+import optics.raytrace.core.SceneObject;
+import optics.raytrace.core.SceneObjectClass;
+import optics.raytrace.core.Studio;
+import optics.raytrace.core.StudioInitialisationType;
+import optics.raytrace.exceptions.RayTraceException;
+import optics.raytrace.exceptions.SceneException;
+import optics.raytrace.sceneObjects.LensSurface;
+import optics.raytrace.sceneObjects.ParametrisedParallelogram;
+import optics.raytrace.sceneObjects.Plane;
+import optics.raytrace.sceneObjects.Sphere;
+import optics.raytrace.sceneObjects.TriangleMesh;
+import optics.raytrace.sceneObjects.TriangulatedSurface;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectIntersection;
+import optics.raytrace.surfaces.SurfaceColour;
+import optics.raytrace.surfaces.SurfaceOfLuneburgLensMetricSpace;
+
+/**
+ * The standard set of JMH benchmarks, from micro-benchmarks of Vector3D arithmetic and of the intersection
+ * of rays with individual scene objects, to end-to-end renders of the standard scenes.
+ *
+ * Each benchmark method performs one operation; everything the operation needs (e.g. the scene and a set of rays)
+ * is prepared in the setup of the corresponding state.
+ * The rays are a fixed set (calculated from a fixed seed, so that each run uses the same rays), which the operation
+ * cycles through.
+ *
+ * Build and run as described in benchmarks/pom.xml.
+ *
+ * @author Johannes Courtial
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class TIMBenchmarks
+{
+	//
+	// Vector3D arithmetic
+	//
+
+	/**
+	 * Pairs of random vectors, which the Vector3D benchmarks cycle through
+	 */
+	@State(Scope.Thread)
+	public static class Vector3DState
+	{
+		private static final int NUMBER_OF_VECTORS = 1024;
+
+		private Vector3D[] a, b;
+		private int index;
+
+		@Setup
+		public void setUp()
+		{
+			SplittableRandom random = new SplittableRandom(1);
+			a = new Vector3D[NUMBER_OF_VECTORS];
+			b = new Vector3D[NUMBER_OF_VECTORS];
+			for(int i=0; i<NUMBER_OF_VECTORS; i++)
+			{
+				a[i] = new Vector3D(random.nextDouble(-1, 1), random.nextDouble(-1, 1), random.nextDouble(-1, 1));
+				b[i] = new Vector3D(random.nextDouble(-1, 1), random.nextDouble(-1, 1), random.nextDouble(-1, 1));
+			}
+			index = 0;
+		}
+
+		/**
+		 * Move on to the next pair of vectors
+		 */
+		public void next()
+		{
+			index = (index + 1) % NUMBER_OF_VECTORS;
+		}
+
+		public Vector3D getA() {
+			return a[index];
+		}
+
+		public Vector3D getB() {
+			return b[index];
+		}
+	}
+
+	@Benchmark
+	public Vector3D vector3DSum(Vector3DState s)
+	{
+		s.next();
+		return Vector3D.sum(s.getA(), s.getB());
+	}
+
+	@Benchmark
+	public Vector3D vector3DDifference(Vector3DState s)
+	{
+		s.next();
+		return Vector3D.difference(s.getA(), s.getB());
+	}
+
+	@Benchmark
+	public double vector3DScalarProduct(Vector3DState s)
+	{
+		s.next();
+		return Vector3D.scalarProduct(s.getA(), s.getB());
+	}
+
+	@Benchmark
+	public Vector3D vector3DCrossProduct(Vector3DState s)
+	{
+		s.next();
+		return Vector3D.crossProduct(s.getA(), s.getB());
+	}
+
+	@Benchmark
+	public Vector3D vector3DGetNormalised(Vector3DState s)
+	{
+		s.next();
+		return s.getA().getNormalised();
+	}
+
+	@Benchmark
+	public Vector3D vector3DGetPartPerpendicularTo(Vector3DState s)
+	{
+		s.next();
+		return s.getA().getPartPerpendicularTo(s.getB());
+	}
+
+
+	//
+	// rays
+	//
+
+	/**
+	 * A fixed set of rays, which the ray benchmarks cycle through.
+	 * Each ray starts from a random point on a sphere of radius <i>distance</i> around <i>target</i> and is aimed at a
+	 * random point within <i>targetRadius</i> of <i>target</i>, so that a fraction of the rays misses a scene object
+	 * that is centred on the target, as in a real render.
+	 */
+	public static class RaySet
+	{
+		public static final int NUMBER_OF_RAYS = 4096;
+
+		private Ray[] rays;
+		private int rayIndex;
+
+		/**
+		 * @param target	the point the rays are (roughly) aimed at
+		 * @param targetRadius	the maximum distance from the target of the point each ray is aimed at
+		 * @param distance	the distance from the target of each ray's start point
+		 */
+		public RaySet(Vector3D target, double targetRadius, double distance)
+		{
+			SplittableRandom random = new SplittableRandom(1);
+			rays = new Ray[NUMBER_OF_RAYS];
+			for(int i=0; i<NUMBER_OF_RAYS; i++)
+			{
+				Vector3D start = Vector3D.sum(target, getRandomDirection(random).getProductWith(distance));
+				Vector3D aim = Vector3D.sum(target, getRandomDirection(random).getProductWith(targetRadius*Math.cbrt(random.nextDouble())));
+				rays[i] = new Ray(start, Vector3D.difference(aim, start).getNormalised(), 0, false);
+			}
+			rayIndex = 0;
+		}
+
+		/**
+		 * @param random
+		 * @return	a random unit vector, uniformly distributed over all directions
+		 */
+		public static Vector3D getRandomDirection(SplittableRandom random)
+		{
+			double z = 2*random.nextDouble() - 1, phi = 2*Math.PI*random.nextDouble(), r = Math.sqrt(1 - z*z);
+			return new Vector3D(r*Math.cos(phi), r*Math.sin(phi), z);
+		}
+
+		/**
+		 * @return	the next ray in the set
+		 */
+		public Ray getNextRay()
+		{
+			Ray ray = rays[rayIndex];
+			rayIndex = (rayIndex + 1) % NUMBER_OF_RAYS;
+			return ray;
+		}
+	}
+
+
+	//
+	// intersections between rays and individual scene objects, and between rays and scenes
+	//
+
+	/**
+	 * The scene objects whose intersections with rays are benchmarked, together with the parameters of the rays
+	 */
+	public enum IntersectionSceneObject
+	{
+		SPHERE(new Vector3D(0, 0, 0), 1.5, 10)
+		{
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				return new Sphere("sphere", new Vector3D(0, 0, 0), 1, SurfaceColour.GREY50_MATT, null, studio);
+			}
+		},
+		PARAMETRISED_PARALLELOGRAM(new Vector3D(0, 0, 0), 1.5, 10)
+		{
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				return new ParametrisedParallelogram("parallelogram", new Vector3D(-1, -1, 0), new Vector3D(2, 0, 0), new Vector3D(0, 2, 0), SurfaceColour.GREY50_MATT, null, studio);
+			}
+		},
+		TRIANGULATED_SURFACE(new Vector3D(0, 0, 0), 1.5, 10)
+		{
+			/**
+			 * a wavy 33x33-vertex (i.e. 2048-triangle) surface
+			 */
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				int n = 33;
+				Vector3D[][] v = new Vector3D[n][n];
+				for(int i=0; i<n; i++)
+					for(int j=0; j<n; j++)
+					{
+						double x = 2.*i/(n-1) - 1, y = 2.*j/(n-1) - 1;
+						v[i][j] = new Vector3D(x, y, 0.1*Math.sin(5*x)*Math.cos(5*y));
+					}
+				return new TriangulatedSurface("triangulated surface", v, false, SurfaceColour.GREY50_MATT, null, studio);
+			}
+		},
+		TRIANGLE_MESH(new Vector3D(0, 0, 0), 1.5, 10)
+		{
+			/**
+			 * a unit sphere, approximated by a 512x256-vertex (i.e. 261632-triangle) mesh
+			 */
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				int nPhi = 512, nTheta = 256;
+				double[] vertices = new double[3*nPhi*nTheta];
+				int[] triangles = new int[6*nPhi*(nTheta-1)];
+				for(int j=0, k=0, l=0; j<nTheta; j++)
+					for(int i=0; i<nPhi; i++)
+					{
+						double theta = Math.PI*(j+0.5)/nTheta, phi = 2*Math.PI*i/nPhi;
+						vertices[k++] = Math.sin(theta)*Math.cos(phi);
+						vertices[k++] = Math.sin(theta)*Math.sin(phi);
+						vertices[k++] = Math.cos(theta);
+						if(j < nTheta-1)
+						{
+							int a = j*nPhi + i, b = j*nPhi + (i+1)%nPhi, c = a + nPhi, d = b + nPhi;
+							triangles[l++] = a; triangles[l++] = c; triangles[l++] = d;
+							triangles[l++] = a; triangles[l++] = d; triangles[l++] = b;
+						}
+					}
+				return new TriangleMesh("triangle mesh", vertices, triangles, false, SurfaceColour.GREY50_MATT, null, studio);
+			}
+		},
+		LENS_SURFACE(new Vector3D(0, 0, -10), 1.5, 10)
+		{
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				return new LensSurface(
+						"lens surface",
+						new Vector3D(0, 0, 0),	// focalPoint
+						10,	// focalLength
+						1.5,	// refractiveIndex
+						new Vector3D(0, 0, -1),	// opticalAxisDirectionOutwards
+						0.96,	// transmissionCoefficient
+						true,	// shadowThrowing
+						null,	// parent
+						studio
+					);
+			}
+		},
+		SCENE_OBJECT_INTERSECTION(new Vector3D(0, 0, 0), 1.5, 10)
+		{
+			/**
+			 * constructive solid geometry: a polyhedron bounded by 12 planes, with a spherical hole
+			 */
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				SplittableRandom random = new SplittableRandom(1);
+				SceneObjectIntersection polyhedron = new SceneObjectIntersection("polyhedron with hole", null, studio);
+				for(int i=0; i<12; i++)
+				{
+					Vector3D normal = RaySet.getRandomDirection(random);
+					polyhedron.addPositiveSceneObject(new Plane("plane", normal, normal, SurfaceColour.GREY50_MATT, polyhedron, studio));
+				}
+				polyhedron.addNegativeSceneObject(new Sphere("hole", new Vector3D(0, 0, -1), 0.5, SurfaceColour.GREY50_MATT, polyhedron, studio));
+				return polyhedron;
+			}
+		},
+		CONTAINER_OF_1000_SPHERES(new Vector3D(0, 0, 0), 5, 20)
+		{
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				SceneObjectContainer spheres = new SceneObjectContainer("10x10x10 spheres", null, studio);
+				for(int i=0; i<10; i++)
+					for(int j=0; j<10; j++)
+						for(int k=0; k<10; k++)
+							spheres.addSceneObject(new Sphere("sphere", new Vector3D(i-4.5, j-4.5, k-4.5), 0.3, SurfaceColour.GREY50_MATT, spheres, studio));
+				return spheres;
+			}
+		},
+		TIM_HEAD_SCENE(new Vector3D(0, 0, 10), 3, 10)
+		{
+			@Override
+			public SceneObject create(Studio studio)
+			{
+				SceneObjectContainer scene = new SceneObjectContainer("the scene", null, studio);
+				StudioInitialisationType.initialiseSceneAndLights(StudioInitialisationType.TIM_HEAD, scene, studio);
+				return scene;
+			}
+		};
+
+		private Vector3D target;
+		private double targetRadius, distance;
+
+		/**
+		 * @param target	the point the rays are (roughly) aimed at
+		 * @param targetRadius	the maximum distance from the target of the point each ray is aimed at
+		 * @param distance	the distance from the target of each ray's start point
+		 */
+		private IntersectionSceneObject(Vector3D target, double targetRadius, double distance)
+		{
+			this.target = target;
+			this.targetRadius = targetRadius;
+			this.distance = distance;
+		}
+
+		/**
+		 * @param studio
+		 * @return	the scene object
+		 */
+		public abstract SceneObject create(Studio studio);
+
+		/**
+		 * @return	the set of rays that get intersected with the scene object
+		 */
+		public RaySet createRaySet()
+		{
+			return new RaySet(target, targetRadius, distance);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class IntersectionState
+	{
+		@Param
+		public IntersectionSceneObject sceneObjectType;
+
+		private SceneObject sceneObject;
+		private RaySet rays;
+
+		@Setup
+		public void setUp()
+		{
+			sceneObject = sceneObjectType.create(new Studio());
+			rays = sceneObjectType.createRaySet();
+		}
+	}
+
+	@Benchmark
+	public double intersection(IntersectionState s)
+	{
+		RaySceneObjectIntersection intersection = s.sceneObject.getClosestRayIntersection(s.rays.getNextRay());
+		return (intersection == RaySceneObjectIntersection.NO_INTERSECTION)?0:intersection.t;
+	}
+
+
+	//
+	// tracing rays through a metric space (a Luneburg lens)
+	//
+
+	@State(Scope.Thread)
+	public static class MetricSpaceState
+	{
+		public static final int MAX_TRACE_LEVEL = 100;
+
+		@Param
+		public IntegrationType integrationType;
+
+		/**
+		 * the maximum length of a step;
+		 * with a small deltaXMax, the adaptive integration types take steps of (at most) that length just like the fixed-step ones,
+		 * with a large deltaXMax, they take steps that are as long as the integration tolerance allows
+		 */
+		@Param({"0.005", "0.5"})
+		public double deltaXMax;
+
+		private SceneObjectContainer scene;
+		private LightSource lights;
+		private RaytraceExceptionHandler raytraceExceptionHandler;
+		private RaySet rays;
+
+		@Setup
+		public void setUp()
+		{
+			Studio studio = new Studio();
+			scene = new SceneObjectContainer("the scene", null, studio);
+			scene.addSceneObject(SceneObjectClass.getSkySphere(scene, studio));
+
+			Sphere lens = new Sphere("Luneburg lens", new Vector3D(0, 0, 0), 1, null, scene, studio);
+			lens.setSurfaceProperty(new SurfaceOfLuneburgLensMetricSpace(
+					lens,	// simulationSphere
+					0.001,	// deltaTau
+					deltaXMax,
+					1000,	// maxSteps
+					integrationType,
+					0.96	// transmissionCoefficient
+				));
+			scene.addSceneObject(lens);
+
+			lights = LightSource.getStandardLightsFromBehind();
+			raytraceExceptionHandler = new DefaultRaytraceExceptionHandler();
+			rays = new RaySet(
+					new Vector3D(0, 0, 0),	// target
+					0.9,	// targetRadius
+					5	// distance
+				);
+		}
+	}
+
+	/**
+	 * Calculate the colour of a ray, i.e. trace it through the scene, including the numerical integration through the metric space
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public DoubleColour metricSpaceColour(MetricSpaceState s)
+	throws RayTraceException
+	{
+		return s.scene.getColour(s.rays.getNextRay(), s.lights, s.scene, MetricSpaceState.MAX_TRACE_LEVEL, s.raytraceExceptionHandler);
+	}
+
+
+	//
+	// end-to-end renders of the standard scenes
+	//
+
+	/**
+	 * Sets up the studio with one of the standard studio initialisations and the standard camera
+	 */
+	private static class StudioInitialisationEngine extends NonInteractiveTIMEngine
+	{
+		private static final long serialVersionUID = 6001822376049129358L;
+
+		private StudioInitialisationType studioInitialisation;
+
+		public StudioInitialisationEngine(StudioInitialisationType studioInitialisation, RenderQualityEnum renderQuality, int pixelsX, int pixelsY)
+		{
+			super();
+			this.studioInitialisation = studioInitialisation;
+			this.renderQuality = renderQuality;
+			cameraPixelsX = pixelsX;
+			cameraPixelsY = pixelsY;
+		}
+
+		@Override
+		public void populateStudio()
+		throws SceneException
+		{
+			studio = new Studio();
+
+			SceneObjectContainer scene = new SceneObjectContainer("the scene", null, studio);
+			StudioInitialisationType.initialiseSceneAndLights(studioInitialisation, scene, studio);
+
+			studio.setScene(scene);
+			studio.setCamera(getStandardCamera());
+		}
+
+		public Studio getStudio()
+		{
+			return studio;
+		}
+	}
+
+	/**
+	 * A standard scene, rendered with the standard camera of NonInteractiveTIMEngine at a fixed resolution, render quality,
+	 * and sampler seed
+	 */
+	@State(Scope.Thread)
+	public static class TakePhotoState
+	{
+		public static final int PIXELS_X = 320, PIXELS_Y = 240;
+
+		@Param({"MINIMALIST", "TIM_HEAD", "SHINY_BALLS", "LATTICE", "HEAVEN"})
+		public StudioInitialisationType studioInitialisation;
+
+		@Param({"DRAFT", "STANDARD"})
+		public RenderQualityEnum renderQuality;
+
+		private Studio studio;
+
+		@Setup
+		public void setUp()
+		throws SceneException
+		{
+			StudioInitialisationEngine engine = new StudioInitialisationEngine(studioInitialisation, renderQuality, PIXELS_X, PIXELS_Y);
+			engine.populateStudio();
+			studio = engine.getStudio();
+
+			// make the renders reproducible
+			studio.getCamera().setSamplerSeed(0);
+		}
+
+		@TearDown
+		public void tearDown()
+		{
+			studio = null;
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2, time = 5, timeUnit = TimeUnit.SECONDS)
+	@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+	public BufferedImage takePhoto(TakePhotoState s)
+	{
+		return s.studio.takePhoto();
+	}
+}
@@ -52,6 +52,32 @@ public class Matrix3D implements Serializable, Cloneable
 		return getProduct(a, getProduct(b, c, d, e));
 	}
 
+	/**
+	 * @param m	a 3x3 matrix
+	 * @return	the determinant of m
+	 */
+	public static double getDeterminant(double m[][])
+	{
+		return
+			  m[0][0]*(m[1][1]*m[2][2] - m[1][2]*m[2][1])
+			- m[0][1]*(m[1][0]*m[2][2] - m[1][2]*m[2][0])
+			+ m[0][2]*(m[1][0]*m[2][1] - m[1][1]*m[2][0]);
+	}
+
+	/**
+	 * @param a
+	 * @param m	a 3x3 matrix
+	 * @param b
+	 * @return	the scalar a.m.b, where a is treated as a row vector and b as a column vector
+	 */
+	public static double getQuadraticForm(Vector3D a, double m[][], Vector3D b)
+	{
+		return
+			  a.x*(m[0][0]*b.x + m[0][1]*b.y + m[0][2]*b.z)
+			+ a.y*(m[1][0]*b.x + m[1][1]*b.y + m[1][2]*b.z)
+			+ a.z*(m[2][0]*b.x + m[2][1]*b.y + m[2][2]*b.z);
+	}
+
 	public static double[][] getTranspose(double m[][])
 	{
 		// from http://blog.ryanrampersad.com/2010/01/matrix-multiplication-in-java/
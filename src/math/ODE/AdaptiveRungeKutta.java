@@ -0,0 +1 @@
+package math.ODE;/** * An embedded Runge-Kutta method with adaptive step-size control (see Numerical Recipes in C, section 16.2). * * Each quality-controlled step is as long as possible without the estimated local truncation error exceeding the * required accuracy, so the step size is large where the solution is smooth and small where it is not. * After each step, the solution can be interpolated anywhere within that step ("dense output"), * which allows events such as the crossing of a surface to be located without re-integrating. * * Subclasses provide the embedded Runge-Kutta step and the interpolation. * * Instances hold the state of the latest step and their own work space, which gets re-used from step to step; * give each thread its own instance. * * @author Johannes Courtial */public abstract class AdaptiveRungeKutta{	protected double		t, dt, dtnext;	// the values of f and of its derivatives at the start of the latest step, and the values of f at its end;	// these are kept for dense output	protected double		f0[], dfdt0[], f1[];	// work space for the error estimate and the result of each attempted step	private double		ferr[], ftemp[];	// adapted from function rkqs (Numerical Recipes in C, p. 719)	// Fifth-order Runge-Kutta step with monitoring of local truncation error to ensure	// accuracy and adjust stepsize.  Input are the dependent variable array	// f[0,1,...] and its derivative dfdt[...] at the starting value of	// the independent variable t.  Also input are the stepsize to be attempted, dttry,	// the requred accuracy, eps, and the array fscal[...] against which the error	// is scaled.  On output, f is replaced by its new value, the variable this.t is set	// to the new value of t, this.dt is the stepsize that was actually accomplished, and	// this.dtnext is the estimated next stepsize.	// derivs is the user-supplied implementation of Derivatives that computes the	// right-hand side derivatives.	public void calculateQualityControlledRungeKuttaStep	(		double f[],		double dfdt[],		double t,		double dttry,		double eps,		double fscal[],		Derivatives derivs	)	{		final double			safety = 0.9,			pgrow = -0.2,			pshrink = -0.25,			errcon = 1.89e-4; // (5/safety) raised to the power (1/pgrow), see use below		int			xMax = f.length,			x;		double			errmax, dttemp;			//tnew;		// allocate the work space, unless this has already been done		if((f0 == null) || (f0.length != xMax))		{			f0 = new double[xMax];			dfdt0 = new double[xMax];			f1 = new double[xMax];			ferr = new double[xMax];			ftemp = new double[xMax];		}		// remember where the step starts, for dense output		for(x=0; x<xMax; x++)		{			f0[x] = f[x];			dfdt0[x] = dfdt[x];		}		dt = dttry; // set stepsize to the initial trial value		for(;;)		{			// take a step			calculateEmbeddedRungeKuttaStep(f, dfdt, t, dt, ftemp, ferr, derivs);			// evaluate accuracy			errmax = 0.0;			for(x=0; x<xMax; x++) errmax = Math.max(errmax, Math.abs(ferr[x]/fscal[x]));			// scale relative to required tolerance			errmax /= eps;			if(errmax <= 1.0)				// step succeeded				break;			// truncation error too large, reduce stepsize			dttemp = safety*dt*Math.pow(errmax, pshrink);			// no more than a factor of 10			dt = (dt >= 0.0 ? Math.max(dttemp, 0.1*dt) : Math.min(dttemp, 0.1*dt));			this.t = t + dt;			if(this.t == t)				throw new Error("stepsize underflow in calculateQualityControlledRungeKuttaStep");		}		// compute size of next step		if(errmax > errcon) dtnext = safety*dt*Math.pow(errmax, pgrow);		else dtnext = 5.0*dt;		this.t = t + dt;		for(x=0; x<xMax; x++) f[x] = f1[x] = ftemp[x];		stepTaken();	}	/**	 * Given values f[0,1,...] and their derivatives dfdt[...] known at t, advance the solution over an	 * interval dt and return the incremented variables as fOut[...].	 * Also return an estimate of the local truncation error in fErr[...].	 * @param f	 * @param dfdt	 * @param t	 * @param dt	 * @param fOut	 * @param fErr	 * @param derivs	 */	protected abstract void calculateEmbeddedRungeKuttaStep	(		double f[],		double dfdt[],		double t,		double dt,		double fOut[],		double fErr[],		Derivatives derivs	);	/**	 * Called once the latest quality-controlled step has been accepted;	 * override to prepare the dense output of the step	 */	protected void stepTaken()	{}	/**	 * Calculate the derivatives df/dt at the end of the latest step.	 * Methods with the "first same as last" property don't need to evaluate the derivatives again.	 * @param dfdt	array that will hold the derivatives	 * @param derivs	 */	public void calculateDerivativesAtEndOfStep(double dfdt[], Derivatives derivs)	{		derivs.calculateDerivatives(t, f1, dfdt);	}	/**	 * Interpolate the solution within the latest step.	 * @param theta	position within the latest step, from 0 (start of the step) to 1 (end of the step)	 * @param fOut	array that will hold the interpolated values of f at time t - dt + theta*dt	 * @param derivs	 */	public abstract void calculateDenseOutput(double theta, double fOut[], Derivatives derivs);	// getters	/**	 * @return	the value of the independent variable at the end of the latest step	 */	public double getT() {		return t;	}	/**	 * @return	the stepsize that was actually accomplished in the latest step	 */	public double getDt() {		return dt;	}	/**	 * @return	the estimated next stepsize	 */	public double getDtNext() {		return dtnext;	}}
\ No newline at end of file
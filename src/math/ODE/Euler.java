@@ -1 +1 @@
-package math.ODE;public class Euler{	public static void calculateDeltaF(		double t, double dt,		double f[], // function values		double df[], // array that WILL hold the change to the function values		Derivatives model)	{		// let the model calculate the time derivatives		model.calculateDerivatives(t, f, df);				// Euler delta_f: dt * df_n/dt		for(int x=0; x<f.length; x++) df[x] *= dt;	}	public static void calculateStep(double t, double dt, double f[], Derivatives model)	{		// allocate array to hold function changes		double df[] = new double[f.length];				// let the model calculate the time derivatives		calculateDeltaF(t, dt, f, df, model);				// Euler step: f_{n+1} = f_n + dt * df_n/dt		for(int x=0; x<f.length; x++) f[x] += df[x];	}}
\ No newline at end of file
+package math.ODE;public class Euler extends FixedStepIntegrator{	/**	 * the instance used by the static methods in each thread;	 * a nested call of a static method in the same thread (e.g. from a Derivatives model that itself integrates)	 * uses a new instance instead, as the thread's instance is still in use by the outer call (see FixedStepIntegrator.acquire)	 */	private static final ThreadLocal<Euler> threadInstances = new ThreadLocal<Euler>()	{		@Override		protected Euler initialValue()		{			return new Euler();		}	};	/* (non-Javadoc)	 * @see math.ODE.FixedStepIntegrator#calculateIncrement(double, double, double[], double[], math.ODE.Derivatives)	 */	@Override	public void calculateIncrement(		double t, double dt,		double f[], // function values		double df[], // array that WILL hold the change to the function values		Derivatives model)	{		// let the model calculate the time derivatives		model.calculateDerivatives(t, f, df);				// Euler delta_f: dt * df_n/dt		for(int x=0; x<f.length; x++) df[x] *= dt;	}	public static void calculateDeltaF(		double t, double dt,		double f[], // function values		double df[], // array that WILL hold the change to the function values		Derivatives model)	{		Euler euler = threadInstances.get();		if(euler.acquire())		{			try			{				euler.calculateIncrement(t, dt, f, df, model);			}			finally			{				euler.release();			}		}		else new Euler().calculateIncrement(t, dt, f, df, model);	}	// Euler step: f_{n+1} = f_n + dt * df_n/dt	public static void calculateStep(double t, double dt, double f[], Derivatives model)	{		Euler euler = threadInstances.get();		if(euler.acquire())		{			try			{				euler.takeStep(t, dt, f, model);			}			finally			{				euler.release();			}		}		else new Euler().takeStep(t, dt, f, model);	}}
\ No newline at end of file
@@ -0,0 +1 @@
+package math.ODE;/** * An integrator that advances the solution of a system of ODEs by steps of a given size. * * Instances hold their own work space, which gets allocated when first needed and then re-used, * so integrating does not create any garbage. * As a consequence, an instance must not be used by more than one thread at a time; * give each thread its own instance. * * @author Johannes Courtial */public abstract class FixedStepIntegrator{	// work space that holds the change to the function values during a step	private double		df[];	/**	 * true while the instance is being used by one of the static methods of its class (see acquire)	 */	private boolean inUse = false;	/**	 * Mark the instance as being in use by one of the static methods of its class, which share one instance per thread.	 * The static methods are not reentrant in this instance:	 * if a Derivatives model itself integrates on the same thread, the nested call finds the instance already in use,	 * and must use a new instance instead, so that it doesn't overwrite the work space of the outer step.	 * @return	true if the instance was free and is now marked as in use, false if it is already in use	 */	protected boolean acquire()	{		if(inUse) return false;		inUse = true;		return true;	}	/**	 * Mark the instance as no longer in use (see acquire)	 */	protected void release()	{		inUse = false;	}	/**	 * Calculate the change to the function values during a step of size dt.	 * @param t	 * @param dt	 * @param f	function values	 * @param df	array that WILL hold the change to the function values	 * @param model	 */	public abstract void calculateIncrement(double t, double dt, double f[], double df[], Derivatives model);	/**	 * Advance the function values by a step of size dt, in place	 * @param t	 * @param dt	 * @param f	function values, which get replaced by their new values	 * @param model	 */	public void takeStep(double t, double dt, double f[], Derivatives model)	{		if((df == null) || (df.length != f.length)) df = new double[f.length];				// calculate delta_f values...		calculateIncrement(t, dt, f, df, model);				// ... and add them to the f values to get f(t+dt)		for(int x=0; x<f.length; x++) f[x] += df[x];	}}
\ No newline at end of file
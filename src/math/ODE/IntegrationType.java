@@ -3,11 +3,45 @@ package math.ODE;
 public enum IntegrationType
 {
 	EULER("Euler integration"),
-	RK4("Runge-Kutta (RK4) integration");
+	RK4("Runge-Kutta (RK4) integration"),
+	CASH_KARP("Adaptive Cash-Karp Runge-Kutta integration"),
+	DORMAND_PRINCE("Adaptive Dormand-Prince Runge-Kutta integration");
 
 	private String description;
 
 	private IntegrationType(String description) {this.description = description;}	
 	@Override
 	public String toString() {return description;}
+	
+	/**
+	 * @return	a new instance of the fixed-step integrator, or null if the integration type is adaptive
+	 */
+	public FixedStepIntegrator createFixedStepIntegrator()
+	{
+		switch(this)
+		{
+		case EULER:
+			return new Euler();
+		case RK4:
+			return new RungeKutta();
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return	a new instance of the adaptive Runge-Kutta method, or null if the integration type uses fixed steps
+	 */
+	public AdaptiveRungeKutta createAdaptiveRungeKutta()
+	{
+		switch(this)
+		{
+		case CASH_KARP:
+			return new RungeKuttaCashKarp();
+		case DORMAND_PRINCE:
+			return new RungeKuttaDormandPrince();
+		default:
+			return null;
+		}
+	}
 }
@@ -0,0 +1 @@
+package math.ODE;/** * The adaptive fifth-order Runge-Kutta method of Dormand and Prince, RK5(4)7M, with embedded fourth-order error estimate. * * The last stage of each step is evaluated at the end of the step ("first same as last"), so the derivatives * at the start of the next step are known without further evaluation. * Dense output is the fourth-order continuous extension of Dormand and Prince. * * References: * J. R. Dormand and P. J. Prince, "A family of embedded Runge-Kutta formulae", J. Comp. Appl. Math. 6, 19-26 (1980) * E. Hairer, S. P. Norsett and G. Wanner, "Solving Ordinary Differential Equations I", section II.6 (Springer, 1993) * * @author Johannes Courtial */public class RungeKuttaDormandPrince extends AdaptiveRungeKutta{	private static final double		a2=0.2, a3=0.3, a4=0.8, a5=8.0/9.0,		b21=0.2,		b31=3.0/40.0,          b32=9.0/40.0,		b41=44.0/45.0,         b42=-56.0/15.0,      b43=32.0/9.0,		b51=19372.0/6561.0,    b52=-25360.0/2187.0, b53=64448.0/6561.0, b54=-212.0/729.0,		b61=9017.0/3168.0,     b62=-355.0/33.0,     b63=46732.0/5247.0, b64=49.0/176.0,     b65=-5103.0/18656.0,		c1=35.0/384.0, c3=500.0/1113.0, c4=125.0/192.0, c5=-2187.0/6784.0, c6=11.0/84.0,		// differences between the fifth-order and fourth-order weights		dc1=71.0/57600.0, dc3=-71.0/16695.0, dc4=71.0/1920.0, dc5=-17253.0/339200.0, dc6=22.0/525.0, dc7=-1.0/40.0,		// coefficients of the continuous extension		d1=-12715105075.0/11282082432.0, d3=87487479700.0/32700410799.0, d4=-10690763975.0/1880347072.0,		d5=701980252875.0/199316789632.0, d6=-1453857185.0/822651844.0, d7=69997945.0/29380423.0;	// the derivatives at the stages of the latest step (ak1 = k1/dt etc.), kept for dense output	private double		ak1[], ak2[], ak3[], ak4[], ak5[], ak6[], ak7[], temp[];	// coefficients of the interpolating polynomial of the latest step	private double		rcont2[], rcont3[], rcont4[], rcont5[];	/**	 * Given values f[0,1,...] and their derivatives dfdt[...] known at t,	 * use the fifth-order Dormand-Prince Runge-Kutta method to advance the solution over an	 * interval dt and return the incremented variables as fOut[...].	 * Also return an estimate of the local truncation error in fErr[] using the	 * embedded fourth-order method.	 * @see math.ODE.AdaptiveRungeKutta#calculateEmbeddedRungeKuttaStep(double[], double[], double, double, double[], double[], math.ODE.Derivatives)	 */	@Override	protected void calculateEmbeddedRungeKuttaStep	(		double f[],		double dfdt[],		double t,		double dt,		double fOut[],		double fErr[],		Derivatives derivs	)	{		int			xMax = f.length, x;		if((ak1 == null) || (ak1.length != xMax))		{			ak1 = new double[xMax];			ak2 = new double[xMax];			ak3 = new double[xMax];			ak4 = new double[xMax];			ak5 = new double[xMax];			ak6 = new double[xMax];			ak7 = new double[xMax];			temp = new double[xMax];			rcont2 = new double[xMax];			rcont3 = new double[xMax];			rcont4 = new double[xMax];			rcont5 = new double[xMax];		}		for(x=0; x<xMax; x++) ak1[x] = dfdt[x];		// calculate ak2 = k2/dt		for(x=0; x<xMax; x++)			temp[x] = f[x] + b21*dt*ak1[x];		derivs.calculateDerivatives(t+a2*dt, temp, ak2);		// calculate ak3 = k3/dt		for(x=0; x<xMax; x++)			temp[x] = f[x] + dt*(b31*ak1[x] + b32*ak2[x]);		derivs.calculateDerivatives(t+a3*dt, temp, ak3);		// calculate ak4 = k4/dt		for(x=0; x<xMax; x++)			temp[x] = f[x] + dt*(b41*ak1[x] + b42*ak2[x] + b43*ak3[x]);		derivs.calculateDerivatives(t+a4*dt, temp, ak4);		// calculate ak5 = k5/dt		for(x=0; x<xMax; x++)			temp[x] = f[x] + dt*(b51*ak1[x] + b52*ak2[x] + b53*ak3[x] + b54*ak4[x]);		derivs.calculateDerivatives(t+a5*dt, temp, ak5);		// calculate ak6 = k6/dt		for(x=0; x<xMax; x++)			temp[x] = f[x] + dt*(b61*ak1[x] + b62*ak2[x] + b63*ak3[x] + b64*ak4[x] + b65*ak5[x]);		derivs.calculateDerivatives(t+dt, temp, ak6);		// accumulate increments with proper weights		for(x=0; x<xMax; x++)			fOut[x] = f[x] + dt*(c1*ak1[x] + c3*ak3[x] + c4*ak4[x] + c5*ak5[x] + c6*ak6[x]);		// calculate ak7 = k7/dt, the derivatives at the end of the step		derivs.calculateDerivatives(t+dt, fOut, ak7);		// estimate error as difference between fourth and fifth order methods		for(x=0; x<xMax; x++)			fErr[x] = dt*(dc1*ak1[x] + dc3*ak3[x] + dc4*ak4[x] + dc5*ak5[x] + dc6*ak6[x] + dc7*ak7[x]);	}	/* (non-Javadoc)	 * @see math.ODE.AdaptiveRungeKutta#stepTaken()	 */	@Override	protected void stepTaken()	{		for(int x=0; x<f0.length; x++)		{			double fDiff = f1[x] - f0[x];			double bspl = dt*ak1[x] - fDiff;			rcont2[x] = fDiff;			rcont3[x] = bspl;			rcont4[x] = fDiff - dt*ak7[x] - bspl;			rcont5[x] = dt*(d1*ak1[x] + d3*ak3[x] + d4*ak4[x] + d5*ak5[x] + d6*ak6[x] + d7*ak7[x]);		}	}	/**	 * The derivatives at the end of the step are those of the last stage, so no further evaluation is required.	 * @see math.ODE.AdaptiveRungeKutta#calculateDerivativesAtEndOfStep(double[], math.ODE.Derivatives)	 */	@Override	public void calculateDerivativesAtEndOfStep(double dfdt[], Derivatives derivs)	{		for(int x=0; x<dfdt.length; x++) dfdt[x] = ak7[x];	}	/* (non-Javadoc)	 * @see math.ODE.AdaptiveRungeKutta#calculateDenseOutput(double, double[], math.ODE.Derivatives)	 */	@Override	public void calculateDenseOutput(double theta, double fOut[], Derivatives derivs)	{		double theta1 = 1.0 - theta;		for(int x=0; x<fOut.length; x++)			fOut[x] = f0[x] + theta*(rcont2[x] + theta1*(rcont3[x] + theta*(rcont4[x] + theta1*rcont5[x])));	}}
\ No newline at end of file
@@ -410,7 +410,8 @@ implements CameraWithRayForImagePixel, Camera, IPanelComponent, ActionListener,
 		double apertureRadius = apertureSize.getApertureRadius();
 		int raysPerPixel =
 				// the blur quality only matters if the aperture size is not "Pinhole"
-				(apertureSize == ApertureSizeType.PINHOLE)?1:blurQuality.getRaysPerPixel();
+				// (or in adaptive sampling, where the rays also anti-alias the image)
+				((apertureSize == ApertureSizeType.PINHOLE) && !isAdaptiveSampling())?1:blurQuality.getRaysPerPixel();
 				// CORRECTION: this is no longer true, as the blur quality also matters when simulating artefacts that lead to
 				// blurring, such as pixellation effects of GCLAs
 				// blurQuality.getRaysPerPixel();
@@ -419,6 +420,18 @@ implements CameraWithRayForImagePixel, Camera, IPanelComponent, ActionListener,
 		setRaysPerPixel(raysPerPixel);
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.cameras.AnyFocusSurfaceCamera#setAdaptiveSampling(boolean)
+	 */
+	@Override
+	public void setAdaptiveSampling(boolean adaptiveSampling)
+	{
+		super.setAdaptiveSampling(adaptiveSampling);
+		
+		// the number of rays per pixel depends on whether or not adaptive sampling is on
+		if(blurQuality != null) setBlur(apertureSize, blurQuality);
+	}
+
 	/**
 	 * initialise the edit panel
 	 */
@@ -4,4 +4,9 @@ public interface RenderQuality
 {
 	public QualityType getBlurQuality();
 	public QualityType getAntiAliasingQuality();
+	
+	/**
+	 * @return	true if the number of rays per pixel should adapt to each pixel, with the blur quality's number of rays per pixel as the maximum
+	 */
+	public boolean isAdaptiveSampling();
 }
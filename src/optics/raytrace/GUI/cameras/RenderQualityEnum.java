@@ -4,16 +4,26 @@ public enum RenderQualityEnum implements RenderQuality
 {
 	DRAFT("Draft quality (but fast)", "Draft", QualityType.RUBBISH, QualityType.NORMAL),
 	STANDARD("Standard quality", "Standard", QualityType.NORMAL, QualityType.GOOD),
-	GREAT("Great quality (but slow!)", "Great", QualityType.SUPER, QualityType.GREAT);
+	GREAT("Great quality (but slow!)", "Great", QualityType.SUPER, QualityType.GREAT),
+	// adaptive sampling traces many rays only where the pixel colour varies, and the rays anti-alias the image,
+	// so the detector resolution doesn't need to be increased
+	STANDARD_ADAPTIVE("Standard quality, adaptive sampling", "StandardAdaptive", QualityType.GREAT, QualityType.NORMAL, true),
+	GREAT_ADAPTIVE("Great quality, adaptive sampling", "GreatAdaptive", QualityType.SUPER, QualityType.GOOD, true);
 	
 	private String description, briefDescription;
 	private QualityType blurQuality, antiAliasingQuality;
-	private RenderQualityEnum(String description, String briefDescription, QualityType blurQuality, QualityType antiAliasingQuality)
+	private boolean adaptiveSampling;
+	private RenderQualityEnum(String description, String briefDescription, QualityType blurQuality, QualityType antiAliasingQuality, boolean adaptiveSampling)
 	{
 		this.description = description;
 		this.briefDescription = briefDescription;
 		this.blurQuality = blurQuality;
 		this.antiAliasingQuality = antiAliasingQuality;
+		this.adaptiveSampling = adaptiveSampling;
+	}
+	private RenderQualityEnum(String description, String briefDescription, QualityType blurQuality, QualityType antiAliasingQuality)
+	{
+		this(description, briefDescription, blurQuality, antiAliasingQuality, false);
 	}
 	
 	@Override
@@ -28,4 +38,7 @@ public enum RenderQualityEnum implements RenderQuality
 	
 	@Override
 	public QualityType getAntiAliasingQuality() {return antiAliasingQuality;}
+	
+	@Override
+	public boolean isAdaptiveSampling() {return adaptiveSampling;}
 }
@@ -14,8 +14,8 @@ import optics.raytrace.GUI.lowLevel.LabelledStringPanel;
 import optics.raytrace.GUI.lowLevel.SceneObjectListPanel;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.Studio;
+import optics.raytrace.sceneObjects.InstancedSceneObjectArray;
 import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
-import optics.raytrace.sceneObjects.transformations.Translation;
 import math.*;
 
 /**
@@ -171,18 +171,25 @@ public class EditableArray extends EditableSceneObjectCollection implements Acti
 		// get rid of anything that's in this SceneObjectContainer at the moment...
 		clear();
 		
-		if(arrayUnitCell != null)
-		// ... and add copies of the unit cell
-		for(double x=xMin; x<=xMax; x+=dx)
-		{
-			for(double y=yMin; y<=yMax; y+=dy)
-			{
-				for(double z=zMin; z<=zMax; z+=dz)
-				{
-					addSceneObject(arrayUnitCell.clone().transform(new Translation(new Vector3D(x, y, z))));
-				}
-			}
-		}
+		if(arrayUnitCell == null) return;
+
+		// ... and add an array of instances of (a copy of) the unit cell, which share that copy rather than each being a copy of their own;
+		// count the cells in each direction in the same way in which they were counted when each was a separate copy
+		int nX=0, nY=0, nZ=0;
+		for(double x=xMin; x<=xMax; x+=dx) nX++;
+		for(double y=yMin; y<=yMax; y+=dy) nY++;
+		for(double z=zMin; z<=zMax; z+=dz) nZ++;
+
+		addSceneObject(new InstancedSceneObjectArray(
+				"array of "+arrayUnitCell.getDescription(),
+				arrayUnitCell.clone(),
+				new Vector3D(xMin, yMin, zMin),	// offset
+				new Vector3D(dx, 0, 0), nX,
+				new Vector3D(0, dy, 0), nY,
+				new Vector3D(0, 0, dz), nZ,
+				this,	// parent
+				getStudio()
+			));
 	}
 
 	/**
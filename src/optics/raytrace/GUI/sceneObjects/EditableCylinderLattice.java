@@ -17,6 +17,7 @@ import optics.raytrace.GUI.lowLevel.LabelledStringPanel;
 import optics.raytrace.GUI.lowLevel.LabelledVector3DPanel;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.Studio;
+import optics.raytrace.sceneObjects.InstancedSceneObjectArray;
 import optics.raytrace.surfaces.SurfaceColour;
 import math.*;
 
@@ -458,69 +459,95 @@ public class EditableCylinderLattice extends EditableSceneObjectCollection imple
 		this.shadowThrowing = shadowThrowing;
 	}
 
+	/**
+	 * @param direction
+	 * @param min
+	 * @param max
+	 * @param n
+	 * @return	the shift between neighbouring ones of n cylinders evenly spaced in the given direction between min and max
+	 */
+	private static Vector3D getPeriod(Vector3D direction, double min, double max, int n)
+	{
+		// if there is only one cylinder, the period doesn't matter, provided it is not zero
+		return (n == 1)?direction:direction.getProductWith((max-min)/(n-1));
+	}
+
+	/**
+	 * Each set of parallel cylinders is an array of instances of the first cylinder in the set, which all share that cylinder
+	 * rather than each being a separate copy.
+	 */
 	private void addCylinders()
 	{
 		// create all the cylinders
 		EditableSceneObjectCollection redCylinders = new EditableSceneObjectCollection("red cylinders", true, this, getStudio());
-		for(int i=0; i<nX; i++)
+		if((nX > 0) && (nY > 0))
 		{
-			for(int j=0; j<nY; j++)
-			{
-				double
-					x = (nX == 1)?xMin:(xMin + i*(xMax-xMin)/(nX-1)),
-					y = (nY == 1)?yMin:(yMin + j*(yMax-yMin)/(nY-1));
-				redCylinders.addSceneObject(new EditableParametrisedCylinder(
-						"red cylinder",
-						Vector3D.sum(centre, xVector.getProductWith(x), yVector.getProductWith(y), zVector.getProductWith(zMin)),//new Vector3D(x, y, zMin),	// start point
-						Vector3D.sum(centre, xVector.getProductWith(x), yVector.getProductWith(y), zVector.getProductWith(zMax)),//new Vector3D(x, y, zMax),	// end point
-						radius,	// radius
-						new SurfaceColour("red shiny", DoubleColour.RED, DoubleColour.WHITE, shadowThrowing),
-						redCylinders,
-						getStudio()
+			redCylinders.addSceneObject(new InstancedSceneObjectArray(
+					"red cylinders",
+					new EditableParametrisedCylinder(
+							"red cylinder",
+							Vector3D.sum(centre, xVector.getProductWith(xMin), yVector.getProductWith(yMin), zVector.getProductWith(zMin)),	// start point
+							Vector3D.sum(centre, xVector.getProductWith(xMin), yVector.getProductWith(yMin), zVector.getProductWith(zMax)),	// end point
+							radius,	// radius
+							new SurfaceColour("red shiny", DoubleColour.RED, DoubleColour.WHITE, shadowThrowing),
+							redCylinders,
+							getStudio()
+						),
+					Vector3D.O,	// offset
+					getPeriod(xVector, xMin, xMax, nX), nX,
+					getPeriod(yVector, yMin, yMax, nY), nY,
+					zVector, 1,
+					redCylinders,
+					getStudio()
 				));
-			}
 		}
 		addSceneObject(redCylinders);
 
 		EditableSceneObjectCollection blueCylinders = new EditableSceneObjectCollection("blue cylinders", true, this, getStudio());
-		for(int k=0; k<nZ; k++)
+		if((nY > 0) && (nZ > 0))
 		{
-			for(int j=0; j<nY; j++)
-			{
-				double
-					y = (nY == 1)?yMin:(yMin + j*(yMax-yMin)/(nY-1)),
-					z = (nZ == 1)?zMin:(zMin + k*(zMax-zMin)/(nZ-1));
-				blueCylinders.addSceneObject(new EditableParametrisedCylinder(
-						"blue cylinder",
-						Vector3D.sum(centre, xVector.getProductWith(xMin), yVector.getProductWith(y), zVector.getProductWith(z)), //new Vector3D(xMin, y, z),	// start point
-						Vector3D.sum(centre, xVector.getProductWith(xMax), yVector.getProductWith(y), zVector.getProductWith(z)),//new Vector3D(xMax, y, z),	// end point
-						radius,	// radius
-						new SurfaceColour("blue shiny", DoubleColour.BLUE, DoubleColour.WHITE, shadowThrowing),
-						blueCylinders,
-						getStudio()
+			blueCylinders.addSceneObject(new InstancedSceneObjectArray(
+					"blue cylinders",
+					new EditableParametrisedCylinder(
+							"blue cylinder",
+							Vector3D.sum(centre, xVector.getProductWith(xMin), yVector.getProductWith(yMin), zVector.getProductWith(zMin)),	// start point
+							Vector3D.sum(centre, xVector.getProductWith(xMax), yVector.getProductWith(yMin), zVector.getProductWith(zMin)),	// end point
+							radius,	// radius
+							new SurfaceColour("blue shiny", DoubleColour.BLUE, DoubleColour.WHITE, shadowThrowing),
+							blueCylinders,
+							getStudio()
+						),
+					Vector3D.O,	// offset
+					getPeriod(yVector, yMin, yMax, nY), nY,
+					getPeriod(zVector, zMin, zMax, nZ), nZ,
+					xVector, 1,
+					blueCylinders,
+					getStudio()
 				));
-			}
 		}
 		addSceneObject(blueCylinders);
 
 		EditableSceneObjectCollection greenCylinders = new EditableSceneObjectCollection("green cylinders", true, this, getStudio());
-		for(int i=0; i<nX; i++)
+		if((nX > 0) && (nZ > 0))
 		{
-			for(int k=0; k<nZ; k++)
-			{
-				double
-					x = (nX == 1)?xMin:(xMin + i*(xMax-xMin)/(nX-1)),
-					z = (nZ == 1)?zMin:(zMin + k*(zMax-zMin)/(nZ-1));
-				greenCylinders.addSceneObject(new EditableParametrisedCylinder(
-						"green cylinder",
-						Vector3D.sum(centre, xVector.getProductWith(x), yVector.getProductWith(yMin), zVector.getProductWith(z)),//new Vector3D(x, yMin, z),	// start point
-						Vector3D.sum(centre, xVector.getProductWith(x), yVector.getProductWith(yMax), zVector.getProductWith(z)),//new Vector3D(x, yMax, z),	// end point
-						radius,	// radius
-						new SurfaceColour("green shiny", DoubleColour.GREEN, DoubleColour.WHITE, shadowThrowing),
-						greenCylinders,
-						getStudio()
+			greenCylinders.addSceneObject(new InstancedSceneObjectArray(
+					"green cylinders",
+					new EditableParametrisedCylinder(
+							"green cylinder",
+							Vector3D.sum(centre, xVector.getProductWith(xMin), yVector.getProductWith(yMin), zVector.getProductWith(zMin)),	// start point
+							Vector3D.sum(centre, xVector.getProductWith(xMin), yVector.getProductWith(yMax), zVector.getProductWith(zMin)),	// end point
+							radius,	// radius
+							new SurfaceColour("green shiny", DoubleColour.GREEN, DoubleColour.WHITE, shadowThrowing),
+							greenCylinders,
+							getStudio()
+						),
+					Vector3D.O,	// offset
+					getPeriod(xVector, xMin, xMax, nX), nX,
+					getPeriod(zVector, zMin, zMax, nZ), nZ,
+					yVector, 1,
+					greenCylinders,
+					getStudio()
 				));
-			}
 		}
 		addSceneObject(greenCylinders);
 	}
@@ -17,9 +17,13 @@ import optics.raytrace.GUI.lowLevel.GUIBitsAndBobs;
 import optics.raytrace.GUI.lowLevel.LabelledStringPanel;
 import optics.raytrace.GUI.lowLevel.SceneObjectListPanel;
 import optics.raytrace.GUI.lowLevel.SceneObjectTablePanel;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.LightSource;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectPrimitive;
@@ -133,6 +137,14 @@ implements SceneObject, IPanelComponent, ActionListener, Cloneable, Serializable
 		this.sceneObjectContainer = sceneObjectContainer;
 	}
 
+	public boolean isUseBoundingVolumeHierarchy() {
+		return sceneObjectContainer.isUseBoundingVolumeHierarchy();
+	}
+
+	public void setUseBoundingVolumeHierarchy(boolean useBoundingVolumeHierarchy) {
+		sceneObjectContainer.setUseBoundingVolumeHierarchy(useBoundingVolumeHierarchy);
+	}
+
 	/**
 	 * initialise the edit panel
 	 */
@@ -470,6 +482,30 @@ implements SceneObject, IPanelComponent, ActionListener, Cloneable, Serializable
 		return sceneObjectContainer.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject);
 	}
 
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return sceneObjectContainer.findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+	}
+
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return sceneObjectContainer.getRaySpans(ray, originObject);
+	}
+
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		return sceneObjectContainer.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance);
+	}
+
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return sceneObjectContainer.getAxisAlignedBoundingBox();
+	}
+
 	@Override
 	public EditableSceneObjectCollection transform(Transformation t)
 	{
@@ -497,6 +533,14 @@ implements SceneObject, IPanelComponent, ActionListener, Cloneable, Serializable
 		return sceneObjectContainer.getColourAvoidingOrigin(ray, originObject, l, scene, traceLevel, raytraceExceptionHandler);
 	}
 
+	@Override
+	public DoubleColour getColourOrContinuationAvoidingOrigin(Ray ray,
+			SceneObjectPrimitive originObject, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		return sceneObjectContainer.getColourOrContinuationAvoidingOrigin(ray, originObject, l, scene, traceLevel, raytraceExceptionHandler, continuation);
+	}
+
 	@Override
 	public String getDescription()
 	{
@@ -562,6 +606,10 @@ implements SceneObject, IPanelComponent, ActionListener, Cloneable, Serializable
 	@Override
 	public void setParent(SceneObject parent) {
 		this.parent = parent;
+		
+		// the container takes the place of this collection in the hierarchy, so that its modifications propagate upwards
+		// (see SceneObjectContainer.invalidateBoundingVolumeHierarchy)
+		sceneObjectContainer.setParent(parent);
 	}
 
 	@Override
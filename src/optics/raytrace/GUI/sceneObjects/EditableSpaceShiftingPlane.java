@@ -13,6 +13,7 @@ import optics.raytrace.GUI.lowLevel.LabelledStringPanel;
 import optics.raytrace.GUI.lowLevel.LabelledVector3DPanel;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -280,4 +281,15 @@ implements IPanelComponent
 			);
 	}
 
+	/**
+	 * As getColourAtIntersection is overridden, simply return the colour it calculates.
+	 * @see optics.raytrace.core.SceneObjectPrimitive#getColourOrContinuationAtIntersection(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuationAtIntersection(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		return getColourAtIntersection(r, i, scene, l, traceLevel, raytraceExceptionHandler);
+	}
+
 }
@@ -0,0 +1,362 @@
+package optics.raytrace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import optics.raytrace.core.RayWithTrajectory;
+import optics.raytrace.core.RenderScheduler;
+import optics.raytrace.core.Studio;
+
+/**
+ * Renders the frames of a NonInteractiveTIMEngine (a movie, or a batch run) without a window, e.g. on a render node
+ * that doesn't have a display.
+ *
+ * Several frames are rendered simultaneously.
+ * Each frame is rendered by its own copy of the engine (a serialised and de-serialised copy of the original), so that
+ * populateStudio can set up the frame's studio without interfering with the other frames.
+ * The tiles of all frames in flight are rendered in the shared render pool (see RenderScheduler), which uses all cores,
+ * so while one frame is finishing its last tiles, the others keep the remaining cores busy.
+ * The number of frames in flight is limited by the number of cores and by the memory, estimated from the memory
+ * the first frame needs.
+ *
+ * The images (BMP files) and parameter files are written without any AWT windows being opened.
+ *
+ * Use from the command line, e.g.
+ *
+ * 		java -Djava.awt.headless=true optics.raytrace.NonInteractiveTIMBatchRenderer <class name of engine> [firstFrame [lastFrame]] [-framesInFlight <n>] [-outputDirectory <directory>]
+ *
+ * or call runHeadless() on an engine.
+ *
+ * @author Johannes Courtial
+ */
+public class NonInteractiveTIMBatchRenderer
+{
+	/**
+	 * the engine whose frames are to be rendered
+	 */
+	private NonInteractiveTIMEngine engine;
+
+	/**
+	 * the number of frames rendered simultaneously; 0 means the number gets chosen automatically
+	 */
+	private int framesInFlight = 0;
+
+	/**
+	 * the directory into which the images and parameter files are written; null means the current directory
+	 */
+	private File outputDirectory = null;
+
+	/**
+	 * @param engine	the engine whose frames (from engine.getFirstFrame() to engine.getLastFrame()) are to be rendered
+	 */
+	public NonInteractiveTIMBatchRenderer(NonInteractiveTIMEngine engine)
+	{
+		this.engine = engine;
+	}
+
+
+	/////////////////////////
+	// GET AND SET METHODS //
+	/////////////////////////
+
+	public NonInteractiveTIMEngine getEngine() {
+		return engine;
+	}
+
+	public int getFramesInFlight() {
+		return framesInFlight;
+	}
+
+	/**
+	 * @param framesInFlight	the number of frames rendered simultaneously; 0 to choose the number automatically
+	 */
+	public void setFramesInFlight(int framesInFlight) {
+		this.framesInFlight = framesInFlight;
+	}
+
+	public File getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	/**
+	 * @param outputDirectory	the directory into which the images and parameter files are written; null for the current directory
+	 */
+	public void setOutputDirectory(File outputDirectory) {
+		this.outputDirectory = outputDirectory;
+	}
+
+
+	///////////////
+	// RENDERING //
+	///////////////
+
+	/**
+	 * @param frame
+	 * @return	a copy of the engine, with its frame set to <i>frame</i>, or the engine itself if it cannot be copied
+	 */
+	private NonInteractiveTIMEngine getEngineForFrame(int frame)
+	{
+		NonInteractiveTIMEngine frameEngine;
+		try
+		{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			ObjectOutputStream out = new ObjectOutputStream(bytes);
+			out.writeObject(engine);
+			out.close();
+
+			ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+			frameEngine = (NonInteractiveTIMEngine)in.readObject();
+			in.close();
+		}
+		catch (IOException | ClassNotFoundException e)
+		{
+			// the engine cannot be copied (probably because one of its fields cannot be serialised);
+			// use the engine itself, which means that the frames have to be rendered one after the other
+			return null;
+		}
+		frameEngine.setFrame(frame);
+		return frameEngine;
+	}
+
+	/**
+	 * Set up the studio of the given engine, render it, and save the image and the parameters
+	 * @param frameEngine
+	 * @throws Exception
+	 */
+	private void renderFrame(NonInteractiveTIMEngine frameEngine)
+	throws Exception
+	{
+		frameEngine.populateStudio();
+		Studio studio = frameEngine.studio;
+
+		if(frameEngine.isTraceRaysWithTrajectory()) RayWithTrajectory.traceRaysWithTrajectory(studio.getScene());
+
+		studio.takePhoto();
+
+		String filename = (outputDirectory == null)?frameEngine.getFilename():(new File(outputDirectory, frameEngine.getFilename())).getPath();
+		studio.savePhoto(filename, "bmp");
+		frameEngine.saveParameters(filename);
+	}
+
+	/**
+	 * @param memoryPerFrame	estimated memory needed for rendering one frame, in bytes
+	 * @param numberOfFrames	the number of frames still to be rendered
+	 * @return	the number of frames that can be rendered simultaneously, given the number of cores and the memory
+	 */
+	private int calculateFramesInFlight(long memoryPerFrame, int numberOfFrames)
+	{
+		if(framesInFlight > 0) return Math.min(framesInFlight, numberOfFrames);
+
+		Runtime runtime = Runtime.getRuntime();
+
+		// there is no point in rendering more frames simultaneously than there are cores...
+		int frames = runtime.availableProcessors();
+
+		// ... or more than fit into (3/4 of) the free memory
+		long freeMemory = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+		frames = (int)Math.min(frames, Math.max(1, (3*freeMemory/4) / Math.max(1, memoryPerFrame)));
+
+		return Math.max(1, Math.min(frames, numberOfFrames));
+	}
+
+	/**
+	 * Render all frames from engine.getFirstFrame() to engine.getLastFrame() and save them.
+	 * While the frames are being rendered, the shared render pool (see RenderScheduler) uses all cores;
+	 * afterwards, it gets restored to its previous number of threads.
+	 * @return	the number of frames that could not be rendered (0 if all is well)
+	 */
+	public int render()
+	{
+		int firstFrame = engine.getFirstFrame(), lastFrame = Math.max(engine.getFirstFrame(), engine.getLastFrame());
+		if(!engine.movie && (engine.getNonInteractiveTIMAction() != NonInteractiveTIMActionEnum.BATCH_RUN)) lastFrame = firstFrame;
+
+		// no need to leave a core free for the GUI while rendering, but any GUI started later should get it back
+		int previousParallelism = RenderScheduler.getParallelism();
+		RenderScheduler.setParallelism(Runtime.getRuntime().availableProcessors());
+		try
+		{
+			return render(firstFrame, lastFrame);
+		}
+		finally
+		{
+			RenderScheduler.setParallelism(previousParallelism);
+		}
+	}
+
+	/**
+	 * Render the frames from firstFrame to lastFrame and save them
+	 * @param firstFrame
+	 * @param lastFrame
+	 * @return	the number of frames that could not be rendered (0 if all is well)
+	 */
+	private int render(int firstFrame, int lastFrame)
+	{
+		long startTimeMillis = System.currentTimeMillis();
+		int failedFrames = 0;
+
+		// render the first frame on its own, and estimate from it how much memory a frame needs
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long usedMemoryBefore = runtime.totalMemory() - runtime.freeMemory();
+		NonInteractiveTIMEngine frameEngine = getEngineForFrame(firstFrame);
+		boolean copiesPossible = (frameEngine != null);
+		if(!copiesPossible)
+		{
+			System.out.println("NonInteractiveTIMBatchRenderer::render: cannot copy "+engine.getClass().getSimpleName()+", so rendering the frames one after the other");
+			frameEngine = engine;
+			frameEngine.setFrame(firstFrame);
+		}
+		try
+		{
+			System.out.println("Rendering frame #"+firstFrame);
+			renderFrame(frameEngine);
+		}
+		catch(Exception e)
+		{
+			e.printStackTrace();
+			failedFrames++;
+		}
+		long memoryPerFrame = runtime.totalMemory() - runtime.freeMemory() - usedMemoryBefore;
+		frameEngine = null;
+
+		if(!copiesPossible)
+		{
+			for(int frame=firstFrame+1; frame<=lastFrame; frame++)
+			{
+				engine.setFrame(frame);
+				try
+				{
+					System.out.println("Rendering frame #"+frame);
+					renderFrame(engine);
+				}
+				catch(Exception e)
+				{
+					e.printStackTrace();
+					failedFrames++;
+				}
+			}
+		}
+		else if(lastFrame > firstFrame)
+		{
+			int frames = calculateFramesInFlight(memoryPerFrame, lastFrame - firstFrame);
+			System.out.println(
+					"Rendering frames #"+(firstFrame+1)+" to #"+lastFrame+", "+frames+" at a time, on "+RenderScheduler.getParallelism()+" threads " +
+					"(about "+Math.max(1, RenderScheduler.getParallelism()/frames)+" per frame; estimated memory per frame "+(memoryPerFrame >> 20)+" MB)"
+				);
+
+			ExecutorService frameThreads = Executors.newFixedThreadPool(frames);
+			final AtomicInteger framesDone = new AtomicInteger(1);
+			final int numberOfFrames = lastFrame - firstFrame + 1;
+			ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for(int frame=firstFrame+1; frame<=lastFrame; frame++)
+			{
+				final int currentFrame = frame;
+				results.add(frameThreads.submit(() -> {
+					// copy the engine only when the frame gets rendered, so that there are only as many copies as frames in flight
+					NonInteractiveTIMEngine currentFrameEngine = getEngineForFrame(currentFrame);
+					if(currentFrameEngine == null) throw new IllegalStateException(
+							"NonInteractiveTIMBatchRenderer::render: cannot copy "+engine.getClass().getSimpleName()+" for frame #"+currentFrame+
+							" (although it could be copied for frame #"+firstFrame+"), so frame #"+currentFrame+" cannot be rendered"
+						);
+					renderFrame(currentFrameEngine);
+					System.out.println("Frame #"+currentFrame+" done ("+framesDone.incrementAndGet()+" out of "+numberOfFrames+")");
+					return true;
+				}));
+			}
+			frameThreads.shutdown();
+
+			for(Future<Boolean> result : results)
+			{
+				try
+				{
+					result.get();
+				}
+				catch (InterruptedException e)
+				{
+					e.printStackTrace();
+					failedFrames++;
+				}
+				catch (ExecutionException e)
+				{
+					e.getCause().printStackTrace();
+					failedFrames++;
+				}
+			}
+		}
+
+		System.out.println(
+				"Rendered "+(lastFrame-firstFrame+1-failedFrames)+" frame(s) in "+(System.currentTimeMillis()-startTimeMillis)/1000.+" s" +
+				((failedFrames > 0)?"; "+failedFrames+" frame(s) failed":"")
+			);
+
+		return failedFrames;
+	}
+
+
+	/**
+	 * Command-line entry point;
+	 * arguments: &lt;class name of engine&gt; [firstFrame [lastFrame]] [-framesInFlight &lt;n&gt;] [-outputDirectory &lt;directory&gt;]
+	 * @param args
+	 */
+	public static void main(final String[] args)
+	{
+		// make sure no window gets opened
+		System.setProperty("java.awt.headless", "true");
+
+		if(args.length < 1)
+		{
+			System.err.println("Usage: java optics.raytrace.NonInteractiveTIMBatchRenderer <class name of engine> [firstFrame [lastFrame]] [-framesInFlight <n>] [-outputDirectory <directory>]");
+			System.exit(1);
+		}
+
+		NonInteractiveTIMEngine engine;
+		try
+		{
+			engine = (NonInteractiveTIMEngine)Class.forName(args[0]).getDeclaredConstructor().newInstance();
+		}
+		catch (Exception e)
+		{
+			System.err.println("NonInteractiveTIMBatchRenderer::main: cannot create an instance of "+args[0]+" using its constructor without arguments");
+			e.printStackTrace();
+			System.exit(1);
+			return;
+		}
+
+		NonInteractiveTIMBatchRenderer renderer = new NonInteractiveTIMBatchRenderer(engine);
+
+		int numberOfFrameArguments = 0;
+		for(int i=1; i<args.length; i++)
+		{
+			if(args[i].equals("-framesInFlight") && (i+1 < args.length)) renderer.setFramesInFlight(Integer.parseInt(args[++i]));
+			else if(args[i].equals("-outputDirectory") && (i+1 < args.length)) renderer.setOutputDirectory(new File(args[++i]));
+			else if(numberOfFrameArguments == 0)
+			{
+				engine.setFirstFrame(Integer.parseInt(args[i]));
+				engine.setLastFrame(Math.max(engine.getLastFrame(), engine.getFirstFrame()));
+				numberOfFrameArguments++;
+			}
+			else if(numberOfFrameArguments == 1)
+			{
+				engine.setLastFrame(Integer.parseInt(args[i]));
+				numberOfFrameArguments++;
+			}
+			else
+			{
+				System.err.println("NonInteractiveTIMBatchRenderer::main: unexpected argument "+args[i]);
+				System.exit(1);
+			}
+		}
+
+		System.exit((renderer.render() == 0)?0:2);
+	}
+}
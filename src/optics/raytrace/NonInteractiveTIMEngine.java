@@ -646,7 +646,7 @@ implements RenderPanel, StatusIndicator, ActionListener, Runnable, Serializable
 								
 		Vector3D topDirection = cameraTopDirection;
 		if(cameraViewDirection.getPartPerpendicularTo(cameraTopDirection).getLength() == 0) topDirection = new Vector3D(1, 0, 0);
-		return new EditableRelativisticAnyFocusSurfaceCamera(
+		EditableRelativisticAnyFocusSurfaceCamera camera = new EditableRelativisticAnyFocusSurfaceCamera(
 				"Camera",
 				cameraPosition,	// centre of aperture
 				cameraViewDirection,	// viewDirection
@@ -670,7 +670,8 @@ implements RenderPanel, StatusIndicator, ActionListener, Runnable, Serializable
 				renderQuality.getBlurQuality(),	// blur quality
 				renderQuality.getAntiAliasingQuality()	// anti-aliasing quality
 			);
-
+		camera.setAdaptiveSampling(renderQuality.isAdaptiveSampling());
+		return camera;
 	}
 	
 
@@ -812,6 +813,20 @@ implements RenderPanel, StatusIndicator, ActionListener, Runnable, Serializable
 		render();
 	}
 
+	/**
+	 * Renders and saves all frames (from firstFrame to lastFrame if movie=true or the action is BATCH_RUN,
+	 * otherwise only firstFrame) without opening a window, several frames at a time.
+	 * Use this instead of run() on machines without a display.
+	 * @return	the number of frames that could not be rendered (0 if all is well)
+	 * @see NonInteractiveTIMBatchRenderer
+	 */
+	public int runHeadless()
+	{
+		System.setProperty("java.awt.headless", "true");
+
+		return (new NonInteractiveTIMBatchRenderer(this)).render();
+	}
+
 	
 	//
 	// RenderPanel methods
@@ -49,6 +49,45 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 	 */
 	protected int raysPerPixel;
 
+	/**
+	 * If true, the number of rays traced for each pixel adapts to the pixel:
+	 * after minRaysPerPixel rays, rays are added only while the estimated standard error of the pixel colour exceeds
+	 * maxStandardError, up to a maximum of raysPerPixel rays.
+	 * Pixels whose rays all have similar colours (e.g. flat sky) are then calculated with few rays,
+	 * pixels that show blurred edges or high-contrast detail with many.
+	 * As the rays start from random positions on the pixel, this also anti-aliases the image.
+	 */
+	protected boolean adaptiveSampling = false;
+
+	/**
+	 * In adaptive sampling, the minimum number of rays traced for each pixel
+	 */
+	protected int minRaysPerPixel = 16;
+
+	/**
+	 * In adaptive sampling, rays are added while the estimated standard error of any colour component of the
+	 * (exposure-compensated) pixel colour is greater than this
+	 */
+	protected double maxStandardError = 0.01;
+
+	/**
+	 * If greater than 0, the points on the focus scene that are imaged to points on the pixels are pre-calculated, at the start
+	 * of each render, for a grid of focusMapSubdivisions x focusMapSubdivisions points on each pixel (see FocusMap);
+	 * each ray then uses the grid point closest to its random point on the pixel.
+	 * The focus map is re-used in subsequent renders for as long as the camera's geometry and its focus scene are unchanged;
+	 * in-place changes to the contents of a focus scene that is a SceneObjectContainer or EditableSceneObjectCollection are detected
+	 * automatically, but if any other focus scene gets changed without calling setFocusScene, call invalidateFocusMap.
+	 * The focus map needs approximately (25 + 8 d) bytes per grid point, where d is the number of pre-calculated data per
+	 * pixel-image position (see FocusMap), so at HD resolution focusMapSubdivisions should be at most 2 or 3.
+	 * If 0, the image position is calculated separately for each ray.
+	 */
+	protected int focusMapSubdivisions = 0;
+
+	/**
+	 * the focus map, if focusMapSubdivisions > 0 and it has been calculated
+	 */
+	private transient volatile FocusMap focusMap = null;
+
 	/**
 	 * A constructor which allows for diffraction.
 	 * @param description
@@ -154,6 +193,10 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 		diffractiveAperture = original.isDiffractiveAperture();
 		lambda = original.getLambda();
 		raysPerPixel = original.getRaysPerPixel();
+		adaptiveSampling = original.isAdaptiveSampling();
+		minRaysPerPixel = original.getMinRaysPerPixel();
+		maxStandardError = original.getMaxStandardError();
+		focusMapSubdivisions = original.getFocusMapSubdivisions();
 	}
 
 	/* (non-Javadoc)
@@ -172,6 +215,7 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 
 	public void setFocusScene(SceneObject focusScene) {
 		this.focusScene = focusScene;
+		invalidateFocusMap();
 	}
 
 	public Vector3D getApertureCentre()
@@ -222,6 +266,102 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 		this.raysPerPixel = raysPerPixel;
 	}
 
+	public boolean isAdaptiveSampling() {
+		return adaptiveSampling;
+	}
+
+	/**
+	 * Switch adaptive sampling on or off; if it is on, raysPerPixel is the maximum number of rays traced for each pixel
+	 * @param adaptiveSampling
+	 */
+	public void setAdaptiveSampling(boolean adaptiveSampling) {
+		this.adaptiveSampling = adaptiveSampling;
+	}
+
+	public int getMinRaysPerPixel() {
+		return minRaysPerPixel;
+	}
+
+	public void setMinRaysPerPixel(int minRaysPerPixel) {
+		this.minRaysPerPixel = minRaysPerPixel;
+	}
+
+	public double getMaxStandardError() {
+		return maxStandardError;
+	}
+
+	public void setMaxStandardError(double maxStandardError) {
+		this.maxStandardError = maxStandardError;
+	}
+
+	public int getFocusMapSubdivisions() {
+		return focusMapSubdivisions;
+	}
+
+	/**
+	 * @param focusMapSubdivisions	if greater than 0, use a focus map with this number of grid points in each direction on each pixel; if 0, don't;
+	 * 	note that the memory required grows with the square of this number (see FocusMap)
+	 */
+	public void setFocusMapSubdivisions(int focusMapSubdivisions) {
+		this.focusMapSubdivisions = focusMapSubdivisions;
+		invalidateFocusMap();
+	}
+
+	/**
+	 * @return	the focus map, calculated if necessary, or null if focusMapSubdivisions is 0
+	 */
+	public FocusMap getFocusMap()
+	{
+		if(focusMapSubdivisions <= 0) return null;
+
+		FocusMap map = focusMap;
+		if((map == null) || (map.getSubdivisions() != focusMapSubdivisions) || !map.isFor(this))
+		{
+			synchronized(this)
+			{
+				map = focusMap;
+				if((map == null) || (map.getSubdivisions() != focusMapSubdivisions) || !map.isFor(this))
+				{
+					map = new FocusMap(this, focusMapSubdivisions);
+					map.calculatePixelImagePositionData(this);
+					focusMap = map;
+				}
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * Discard the focus map, so that it gets re-calculated before it is next used.
+	 * Call this after changing the focus scene other than through setFocusScene, unless the change was made to the contents of a
+	 * SceneObjectContainer or EditableSceneObjectCollection, which is detected automatically.
+	 */
+	public void invalidateFocusMap()
+	{
+		focusMap = null;
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.CameraClass#prepareForRendering(optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource)
+	 */
+	@Override
+	protected void prepareForRendering(SceneObject scene, LightSource lights)
+	{
+		super.prepareForRendering(scene, lights);
+
+		if(focusMapSubdivisions > 0)
+		{
+			FocusMap map = focusMap;
+			if((map != null) && (map.getSubdivisions() == focusMapSubdivisions) && map.isFor(this))
+			{
+				// the pixel-image positions can be re-used, but the data calculated from them might depend on
+				// parameters (e.g. those of a shutter model) that have changed since the last render
+				map.calculatePixelImagePositionData(this);
+			}
+			else getFocusMap();
+		}
+	}
+
 	//	public Ray getCentralRayForPixel(double i, double j)
 	//	{
 	//		return super.getCentralRayForPixel(i, j);
@@ -233,17 +373,34 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 	 */
 	protected Vector3D randomPointOnEntrancePupil()
 	{
-		double x, y;
-
-		do
+		// calculate two random numbers, a and b, with -1 <= a, b < +1...
+		Sampler sampler = Sampler.getCurrent();
+		double
+			a = 2*sampler.getDouble()-1,
+			b = 2*sampler.getDouble()-1;
+
+		// ... and map the square (a,b) onto the circular aperture of radius apertureRadius,
+		// using the concentric mapping of Shirley and Chiu, which (unlike picking random points
+		// until one falls within the aperture) preserves any stratification of the samples
+		double r, phi;
+		if((a == 0) && (b == 0))
 		{
-			// calculate two random numbers, x and y, with -apertureRadius <= x, y <= +apertureRadius...
-			x = apertureRadius*(2*Math.random()-1);
-			y = apertureRadius*(2*Math.random()-1);
-		}		
-		// ... while the coordinates (x,y) don't fall within the circular aperture of radius apertureRadius,
-		// that is, UNTIL the coordinates (x,y) fall within the aperture
-		while(x*x+y*y > apertureRadius*apertureRadius);
+			r = 0;
+			phi = 0;
+		}
+		else if(Math.abs(a) > Math.abs(b))
+		{
+			r = a;
+			phi = 0.25*Math.PI*(b/a);
+		}
+		else
+		{
+			r = b;
+			phi = 0.5*Math.PI - 0.25*Math.PI*(a/b);
+		}
+		double
+			x = apertureRadius*r*Math.cos(phi),
+			y = apertureRadius*r*Math.sin(phi);
 
 		// the coordinates (x,y) should now fall within the circular aperture of radius apertureRadius
 
@@ -324,10 +481,40 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 		//				);
 		//		}
 
+		// the focus map, if one is being used
+		FocusMap map = getFocusMap();
+
 		DoubleColour sumColour = new DoubleColour(0,0,0);
-		for(int poa=0; poa<raysPerPixel; poa++)
+		// in adaptive sampling, the sums of the squares of the colour components of the rays, from which their variance is estimated
+		double sumOfSquaresR = 0, sumOfSquaresG = 0, sumOfSquaresB = 0;
+		int poa;
+		for(poa=0; poa<raysPerPixel; poa++)
 		{
-			Vector3D pixelImagePosition = 
+			// in adaptive sampling, stop once the pixel colour is known accurately enough
+			if(
+					adaptiveSampling &&
+					(poa >= Math.max(2, minRaysPerPixel)) &&
+					isStandardErrorSmallEnough(sumColour, sumOfSquaresR, sumOfSquaresG, sumOfSquaresB, poa)
+				)
+				break;
+
+			// tell the sampler which of this pixel's rays is being traced
+			Sampler.getCurrent().startSample(poa, raysPerPixel);
+
+			Vector3D pixelImagePosition;
+			double[] pixelImagePositionData = null;
+			if((map != null) && map.containsPixel(i, j))
+			{
+				// look up the image position of the grid point closest to a random point on the pixel
+				// (using the random numbers in the same order as getImagePositionOfPointOnPixel)
+				Sampler sampler = Sampler.getCurrent();
+				double u = sampler.getDouble();
+				int index = map.getIndex((int)i, (int)j, u, sampler.getDouble());
+				pixelImagePosition = map.getPixelImagePosition(index);
+				pixelImagePositionInFront = map.isPixelImagePositionInFront(index);
+				pixelImagePositionData = map.getPixelImagePositionData(index);
+			}
+			else pixelImagePosition = 
 					getImagePositionOfPointOnPixel(i, j);
 			//  getPixelCentreImagePosition(i,j);	// position of the image of pixel (i,j)
 			// is there an image position?
@@ -352,24 +539,16 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 
 			Vector3D currentPointOnEntrancePupil = randomPointOnEntrancePupil();
 			try {
-			Ray ray = getRay(currentPointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront);
-
-			sumColour = sumColour.add(
-					(scene == null)?
-							// in case there is nothing in the scene, let the raytrace-exception handler deal with it
-							getRaytraceExceptionHandler().getColourOfRayFromNowhere(
-									ray,
-									(SceneObject)null,	// originObject
-									lights, scene, maxTraceLevel
-									):
-										scene.getColour(
-												ray,
-												lights,
-												scene,
-												maxTraceLevel,
-												getRaytraceExceptionHandler()
-												)
-					);
+			Ray ray = getRay(currentPointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront, pixelImagePositionData);
+
+			DoubleColour colour = getRayColour(ray, scene, lights);
+			sumColour = sumColour.add(colour);
+			if(adaptiveSampling)
+			{
+				sumOfSquaresR += colour.getR()*colour.getR();
+				sumOfSquaresG += colour.getG()*colour.getG();
+				sumOfSquaresB += colour.getB()*colour.getB();
+			}
 			}
 			catch(EvanescentException e) {
 				//Don't do anything here which is equivalent to adding a black ray.
@@ -377,7 +556,101 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 			}
 		}
 
-		return sumColour.multiply(exposureCompensation.toIntensityFactor()/raysPerPixel);
+		return sumColour.multiply(exposureCompensation.toIntensityFactor()/poa);
+	}
+
+	/**
+	 * @param ray
+	 * @param scene
+	 * @param lights
+	 * @return	the colour of the (backwards-traced) ray
+	 * @throws RayTraceException
+	 */
+	private DoubleColour getRayColour(Ray ray, SceneObject scene, LightSource lights)
+	throws RayTraceException
+	{
+		return
+				(scene == null)?
+						// in case there is nothing in the scene, let the raytrace-exception handler deal with it
+						getRaytraceExceptionHandler().getColourOfRayFromNowhere(
+								ray,
+								(SceneObject)null,	// originObject
+								lights, scene, maxTraceLevel
+								):
+									scene.getColour(
+											ray,
+											lights,
+											scene,
+											maxTraceLevel,
+											getRaytraceExceptionHandler()
+											);
+	}
+
+	/**
+	 * Calculate the colour of a single ray of a light field (see LightField).
+	 * This is the colour calculatePixelColour calculates for each of the rays it averages over, without the exposure compensation.
+	 * @param ray
+	 * @param scene
+	 * @param lights
+	 * @return	the colour of the (backwards-traced) ray
+	 * @throws RayTraceException
+	 */
+	protected DoubleColour calculateLightFieldRayColour(Ray ray, SceneObject scene, LightSource lights)
+	throws RayTraceException
+	{
+		return getRayColour(ray, scene, lights);
+	}
+
+	/**
+	 * Record the light field of the scene, i.e. the colours of the rays from a grid of
+	 * pupilSamplesPerDirection x pupilSamplesPerDirection points on the entrance pupil to each pixel (see LightField).
+	 * The current aperture radius is the largest aperture radius for which images can be synthesised from the light field.
+	 * @param filename	the name of the file in which the light field is stored
+	 * @param scene
+	 * @param lights
+	 * @param pupilSamplesPerDirection
+	 * @return	the light field
+	 * @throws IOException
+	 */
+	public LightField captureLightField(String filename, SceneObject scene, LightSource lights, int pupilSamplesPerDirection)
+	throws IOException
+	{
+		return LightField.capture(filename, this, scene, lights, pupilSamplesPerDirection);
+	}
+
+	/**
+	 * @param sumColour	the sum of the colours of n rays
+	 * @param sumOfSquaresR	the sum of the squares of the red components of the colours of the rays
+	 * @param sumOfSquaresG	the sum of the squares of the green components
+	 * @param sumOfSquaresB	the sum of the squares of the blue components
+	 * @param n	the number of rays, at least 2
+	 * @return	true if the estimated standard error of each component of the (exposure-compensated) mean colour of the rays is no greater than maxStandardError
+	 */
+	private boolean isStandardErrorSmallEnough(DoubleColour sumColour, double sumOfSquaresR, double sumOfSquaresG, double sumOfSquaresB, int n)
+	{
+		// the greatest of the estimated variances of the colour components of the individual rays...
+		double variance = Math.max(
+				getVariance(sumColour.getR(), sumOfSquaresR, n),
+				Math.max(
+						getVariance(sumColour.getG(), sumOfSquaresG, n),
+						getVariance(sumColour.getB(), sumOfSquaresB, n)
+					)
+			);
+		
+		// ... divided by n is the square of the standard error of the mean
+		double intensityFactor = exposureCompensation.toIntensityFactor();
+		return intensityFactor*intensityFactor*variance/n <= maxStandardError*maxStandardError;
+	}
+	
+	/**
+	 * @param sum	the sum of n values
+	 * @param sumOfSquares	the sum of the squares of the n values
+	 * @param n
+	 * @return	the estimated variance of the values
+	 */
+	private static double getVariance(double sum, double sumOfSquares, int n)
+	{
+		return (sumOfSquares - sum*sum/n)/(n-1);
 	}
 
 	/**
@@ -426,6 +699,35 @@ public class AnyFocusSurfaceCamera extends PinholeCamera implements Serializable
 		}
 	}
 
+	/**
+	 * Create a ray that intersects the entrance pupil at a given point and passes through the pixelImagePosition,
+	 * using data pre-calculated for the pixelImagePosition by calculatePixelImagePositionData (see FocusMap).
+	 * Subclasses that pre-calculate such data override this; by default, the data are ignored.
+	 * @param pointOnEntrancePupil	the position on the entrance pupil
+	 * @param pixelImagePosition	the position of the image of the pixel
+	 * @param pixelImagePositionInFront	does pixelImagePosition lie in front of the camera?
+	 * @param pixelImagePositionData	the data pre-calculated for pixelImagePosition, or null if there are none
+	 * @return
+	 * @throws EvanescentException
+	 */
+	protected Ray getRay(Vector3D pointOnEntrancePupil, Vector3D pixelImagePosition, boolean pixelImagePositionInFront, double[] pixelImagePositionData)
+	throws EvanescentException
+	{
+		return getRay(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront);
+	}
+
+	/**
+	 * Pre-calculate those data needed by getRay that depend on the pixel-image position, but not on the point on the entrance pupil.
+	 * This gets called for every grid point of the focus map at the start of each render.
+	 * @param pixelImagePosition
+	 * @param pixelImagePositionInFront
+	 * @return	the data, or null if there are none (which is the default)
+	 */
+	protected double[] calculatePixelImagePositionData(Vector3D pixelImagePosition, boolean pixelImagePositionInFront)
+	{
+		return null;
+	}
+
 	/**
 	 * Summarize the curved-focus camera in a string of text.
 	 * @return The string representation of the text.
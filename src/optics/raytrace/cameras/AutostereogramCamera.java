@@ -6,7 +6,9 @@ import java.awt.image.BufferedImage;
 import optics.DoubleColour;
 import optics.raytrace.GUI.core.RaytraceWorker;
 import optics.raytrace.core.LightSource;
+import optics.raytrace.core.RandomSampler;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.Sampler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.exceptions.RayTraceException;
 import math.MyMath;
@@ -235,17 +237,22 @@ public class AutostereogramCamera extends PinholeCamera
 			nDotsMax = (int)(getDotsPerPixel() * ccd.getDetectorPixelsHorizontal() * ccd.getDetectorPixelsVertical());
 			// ... and the number of dots we are aiming for
 		
+		// place the dots using a sampler of their own, seeded with the camera's sampler seed,
+		// so that the same seed always gives the same dots
+		// (a local one, so that the sampler the current thread is using remains unchanged)
+		Sampler dotSampler = new RandomSampler(getSamplerSeed());
+
 		double i, j, dotHue;
 		Vector3D startStereogramIntersectionPoint, stereogramIntersectionPoint;
 		Vector2D coordinates;
 		while(nDots < nDotsMax)
 		{
 			// start with a random colour...
-			dotHue = 2*Math.PI*Math.random();
+			dotHue = 2*Math.PI*dotSampler.getDouble();
 				
 			// ... on a random pixel on the CCD, whose the random indices are
-			i = Math.random() * (ccd.getDetectorPixelsHorizontal()-1);
-			j = Math.random() * (ccd.getDetectorPixelsVertical()-1);
+			i = dotSampler.getDouble() * (ccd.getDetectorPixelsHorizontal()-1);
+			j = dotSampler.getDouble() * (ccd.getDetectorPixelsVertical()-1);
 			
 			startStereogramIntersectionPoint = ccd.getPositionOnPixel((int)(i+0.5), (int)(j+0.5));
 			
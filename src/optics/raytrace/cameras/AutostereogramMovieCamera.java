@@ -6,7 +6,9 @@ import java.awt.image.BufferedImage;
 import optics.DoubleColour;
 import optics.raytrace.GUI.core.RaytraceWorker;
 import optics.raytrace.core.LightSource;
+import optics.raytrace.core.RandomSampler;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.Sampler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.exceptions.RayTraceException;
 import math.MyMath;
@@ -270,12 +272,17 @@ public class AutostereogramMovieCamera extends PinholeCamera
 		cosHues1 = new double[ccd.getDetectorPixelsHorizontal()][ccd.getDetectorPixelsVertical()];
 		sinHues1 = new double[ccd.getDetectorPixelsHorizontal()][ccd.getDetectorPixelsVertical()];
 
+		// place the dots using a sampler of their own, seeded with the camera's sampler seed,
+		// so that the same seed always gives the same dots
+		// (a local one, so that the sampler the current thread is using remains unchanged)
+		Sampler dotSampler = new RandomSampler(getSamplerSeed());
+
 		for(n = 0; n<1000; n++)
 			placeDot(
-					(int)(Math.random()*ccd.getDetectorPixelsHorizontal()),
-					(int)(Math.random()*ccd.getDetectorPixelsVertical()),
-					Math.random()-0.5,
-					Math.random()-0.5
+					(int)(dotSampler.getDouble()*ccd.getDetectorPixelsHorizontal()),
+					(int)(dotSampler.getDouble()*ccd.getDetectorPixelsVertical()),
+					dotSampler.getDouble()-0.5,
+					dotSampler.getDouble()-0.5
 				);
 		
 		// take a note of all the new hues
@@ -0,0 +1,335 @@
+package optics.raytrace.cameras;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import math.Vector3D;
+import optics.raytrace.core.Ray;
+import optics.raytrace.core.RenderScheduler;
+import optics.raytrace.core.SceneObject;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
+
+/**
+ * The pixel-image positions of an AnyFocusSurfaceCamera, i.e. the points on the camera's focus scene that are imaged to points on the
+ * detector pixels, pre-calculated for a regular grid of subdivisions x subdivisions points on each pixel.
+ *
+ * Without a focus map, the camera finds the pixel-image position of a random point on the pixel by tracing a ray through the
+ * focus scene for every ray it traces through the scene; with a focus map, it looks up the pixel-image position of the closest
+ * grid point instead.
+ * The focus map can be re-used for as long as the camera's geometry and its focus scene remain unchanged (see isFor);
+ * if the focus scene is a SceneObjectContainer or an EditableSceneObjectCollection, changes to its contents made in place
+ * (e.g. through the GUI) are detected through the container's modification stamp.
+ *
+ * For each pixel-image position, the camera can also pre-calculate data that do not depend on the point on the entrance pupil
+ * (see AnyFocusSurfaceCamera.calculatePixelImagePositionData), e.g. those parts of the shutter model of a relativistic camera
+ * that depend only on the pixel-image position.
+ * As these data can depend on parameters that are not part of the camera geometry, they get re-calculated for each render.
+ *
+ * All values are stored in flat arrays, so the memory required is approximately (25 + 8 d) bytes per grid point,
+ * where d is the number of pre-calculated data per grid point (0 for most cameras, up to 4 for a relativistic camera's shutter model).
+ * For a 1920 x 1080 pixel detector, this is up to about 120 MB for 1 subdivision, 470 MB for 2, 1.1 GB for 3, and 1.9 GB for 4,
+ * so at HD resolution subdivisions should be kept at 2, or at most 3, unless the JVM has a correspondingly large heap.
+ * Focus maps whose arrays would exceed the maximum Java array length are rejected.
+ *
+ * @author Johannes Courtial
+ */
+public class FocusMap
+{
+	/**
+	 * the number of grid points on each pixel in the horizontal and vertical directions
+	 */
+	private int subdivisions;
+
+	/**
+	 * the camera parameters the focus map has been calculated for
+	 */
+	private SceneObject focusScene;
+	private long focusSceneModificationStamp;
+	private Vector3D pinholePosition, detectorCentre, horizontalSpanVector, verticalSpanVector;
+	private int detectorPixelsHorizontal, detectorPixelsVertical;
+	private boolean allowFocussingBehindCamera;
+
+	/**
+	 * the pixel-image positions of the grid points, three elements (x, y, z) per grid point
+	 */
+	private double[] pixelImagePositions;
+
+	/**
+	 * for each grid point, whether the pixel-image position lies in front of the camera, behind it, or whether there is none
+	 */
+	private byte[] pixelImagePositionTypes;
+
+	private static final byte
+		NO_PIXEL_IMAGE_POSITION = 0,
+		PIXEL_IMAGE_POSITION_IN_FRONT = 1,
+		PIXEL_IMAGE_POSITION_BEHIND = 2;
+
+	/**
+	 * the largest array length that is safe on all common JVMs
+	 */
+	private static final long MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+	/**
+	 * the pre-calculated data of the grid points, dataLength elements per grid point; null if the camera doesn't pre-calculate any
+	 */
+	private double[] pixelImagePositionData;
+
+	/**
+	 * the number of pre-calculated data per grid point
+	 */
+	private int dataLength;
+
+	/**
+	 * Calculate the pixel-image positions of all grid points, in parallel on the render pool
+	 * @param camera
+	 * @param subdivisions	the number of grid points on each pixel in the horizontal and vertical directions
+	 */
+	public FocusMap(AnyFocusSurfaceCamera camera, int subdivisions)
+	{
+		if(subdivisions < 1) throw new IllegalArgumentException("FocusMap::FocusMap: subdivisions = "+subdivisions+" < 1");
+
+		this.subdivisions = subdivisions;
+		focusScene = camera.getFocusScene();
+		// take the stamp before calculating the positions, so that any change made during the calculation invalidates the map
+		focusSceneModificationStamp = SceneObjectContainer.getModificationStamp(focusScene);
+		pinholePosition = camera.getPinholePosition().clone();
+		detectorCentre = camera.getDetectorCentre().clone();
+		horizontalSpanVector = camera.getHorizontalSpanVector().clone();
+		verticalSpanVector = camera.getVerticalSpanVector().clone();
+		detectorPixelsHorizontal = camera.getDetectorPixelsHorizontal();
+		detectorPixelsVertical = camera.getDetectorPixelsVertical();
+		allowFocussingBehindCamera = camera.allowFocussingBehindCamera;
+
+		long gridPoints = (long)detectorPixelsHorizontal*detectorPixelsVertical*subdivisions*subdivisions;
+		if(3*gridPoints > MAX_ARRAY_LENGTH) throw new IllegalArgumentException(
+				"FocusMap::FocusMap: "+detectorPixelsHorizontal+" x "+detectorPixelsVertical+" pixels with "+subdivisions+" x "+subdivisions+
+				" grid points each are too many for a focus map"
+			);
+		pixelImagePositions = new double[(int)(3*gridPoints)];
+		pixelImagePositionTypes = new byte[(int)gridPoints];
+
+		invoke(new RowRangeTask(camera, false, 0, detectorPixelsVertical));
+	}
+
+	/**
+	 * @param camera
+	 * @return	true if the focus map has been calculated for the current geometry and focus scene of the camera
+	 */
+	public boolean isFor(AnyFocusSurfaceCamera camera)
+	{
+		return
+			(focusScene == camera.getFocusScene()) &&
+			(focusSceneModificationStamp == SceneObjectContainer.getModificationStamp(focusScene)) &&
+			(detectorPixelsHorizontal == camera.getDetectorPixelsHorizontal()) &&
+			(detectorPixelsVertical == camera.getDetectorPixelsVertical()) &&
+			(allowFocussingBehindCamera == camera.allowFocussingBehindCamera) &&
+			pinholePosition.equals(camera.getPinholePosition()) &&
+			detectorCentre.equals(camera.getDetectorCentre()) &&
+			horizontalSpanVector.equals(camera.getHorizontalSpanVector()) &&
+			verticalSpanVector.equals(camera.getVerticalSpanVector());
+	}
+
+	public int getSubdivisions() {
+		return subdivisions;
+	}
+
+	/**
+	 * (Re-)calculate the camera's pre-calculated data for each pixel-image position, in parallel on the render pool
+	 * @param camera
+	 */
+	public void calculatePixelImagePositionData(AnyFocusSurfaceCamera camera)
+	{
+		pixelImagePositionData = null;
+		dataLength = 0;
+
+		// find the number of data per grid point from the first grid point that has a pixel-image position
+		int first = 0;
+		while((first < pixelImagePositionTypes.length) && (pixelImagePositionTypes[first] == NO_PIXEL_IMAGE_POSITION)) first++;
+		if(first == pixelImagePositionTypes.length) return;
+		double[] firstData = camera.calculatePixelImagePositionData(getPixelImagePosition(first), isPixelImagePositionInFront(first));
+
+		// if the camera doesn't pre-calculate any data, don't allocate the array
+		if((firstData == null) || (firstData.length == 0)) return;
+
+		if((long)firstData.length*pixelImagePositionTypes.length > MAX_ARRAY_LENGTH) throw new IllegalStateException(
+				"FocusMap::calculatePixelImagePositionData: "+firstData.length+" data for each of "+pixelImagePositionTypes.length+
+				" grid points are too many for a focus map"
+			);
+		dataLength = firstData.length;
+		pixelImagePositionData = new double[dataLength*pixelImagePositionTypes.length];
+		invoke(new RowRangeTask(camera, true, 0, detectorPixelsVertical));
+	}
+
+	/**
+	 * Calculate the camera's pre-calculated data for the grid point and store them in the flat array
+	 * @param camera
+	 * @param index
+	 */
+	private void calculatePixelImagePositionData(AnyFocusSurfaceCamera camera, int index)
+	{
+		if(pixelImagePositionTypes[index] == NO_PIXEL_IMAGE_POSITION) return;
+
+		double[] d = camera.calculatePixelImagePositionData(getPixelImagePosition(index), isPixelImagePositionInFront(index));
+		if((d == null) || (d.length != dataLength)) throw new IllegalStateException(
+				"FocusMap::calculatePixelImagePositionData: the camera returned "+((d == null)?"no":(""+d.length))+
+				" data for grid point "+index+", but "+dataLength+" for other grid points"
+			);
+		System.arraycopy(d, 0, pixelImagePositionData, dataLength*index, dataLength);
+	}
+
+	/**
+	 * Run the task on the render pool, or, if this is already happening on the render pool (e.g. when the focus map gets calculated
+	 * when the first pixel is rendered), in the current pool
+	 * @param task
+	 */
+	private static void invoke(RecursiveAction task)
+	{
+		if(ForkJoinTask.inForkJoinPool()) task.invoke();
+		else RenderScheduler.getPool().invoke(task);
+	}
+
+	/**
+	 * The task of calculating the pixel-image positions, or the pre-calculated data, of the grid points in a range of pixel rows,
+	 * splitting itself into two halves if the range contains more than one row
+	 */
+	private class RowRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 5412378923413265409L;
+
+		private final AnyFocusSurfaceCamera camera;
+		private final boolean data;	// calculate the pre-calculated data (true) or the pixel-image positions (false)?
+		private final int firstRow, lastRow;	// the range is firstRow (inclusive) to lastRow (exclusive)
+
+		public RowRangeTask(AnyFocusSurfaceCamera camera, boolean data, int firstRow, int lastRow)
+		{
+			this.camera = camera;
+			this.data = data;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(lastRow - firstRow > 1)
+			{
+				int middleRow = (firstRow + lastRow) / 2;
+				invokeAll(new RowRangeTask(camera, data, firstRow, middleRow), new RowRangeTask(camera, data, middleRow, lastRow));
+			}
+			else if(lastRow > firstRow)
+			{
+				int j = firstRow;
+				for(int i=0; i<detectorPixelsHorizontal; i++)
+					for(int b=0; b<subdivisions; b++)
+						for(int a=0; a<subdivisions; a++)
+						{
+							int index = getIndex(i, j, a, b);
+							if(data) calculatePixelImagePositionData(camera, index);
+							else calculatePixelImagePosition(
+									camera,
+									i + (a + 0.5)/subdivisions - 0.5,
+									j + (b + 0.5)/subdivisions - 0.5,
+									index
+								);
+						}
+			}
+		}
+	}
+
+	/**
+	 * Calculate the pixel-image position of the point (i, j) on the detector, in the same way as the camera does without a focus map
+	 * @param camera
+	 * @param i
+	 * @param j
+	 * @param index
+	 */
+	private void calculatePixelImagePosition(AnyFocusSurfaceCamera camera, double i, double j, int index)
+	{
+		Ray ray = camera.getCentralRayForPixel(i, j);
+		Vector3D p = focusScene.getClosestRayIntersection(ray).p;
+		byte type = PIXEL_IMAGE_POSITION_IN_FRONT;
+		if((p == null) && allowFocussingBehindCamera)
+		{
+			// there is no pixel-image position in front of the camera; look behind the camera
+			p = focusScene.getClosestRayIntersection(ray.getReversedRay()).p;
+			type = PIXEL_IMAGE_POSITION_BEHIND;
+		}
+
+		if(p == null) pixelImagePositionTypes[index] = NO_PIXEL_IMAGE_POSITION;
+		else
+		{
+			pixelImagePositions[3*index  ] = p.x;
+			pixelImagePositions[3*index+1] = p.y;
+			pixelImagePositions[3*index+2] = p.z;
+			pixelImagePositionTypes[index] = type;
+		}
+	}
+
+	/**
+	 * @param i	horizontal pixel index
+	 * @param j	vertical pixel index
+	 * @param a	horizontal index of the grid point on the pixel
+	 * @param b	vertical index of the grid point on the pixel
+	 * @return	the index of the grid point
+	 */
+	private int getIndex(int i, int j, int a, int b)
+	{
+		return ((j*detectorPixelsHorizontal + i)*subdivisions + b)*subdivisions + a;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return	true if (i, j) are the (integer) indices of a pixel covered by the focus map
+	 */
+	public boolean containsPixel(double i, double j)
+	{
+		return (i == Math.rint(i)) && (j == Math.rint(j)) && (i >= 0) && (i < detectorPixelsHorizontal) && (j >= 0) && (j < detectorPixelsVertical);
+	}
+
+	/**
+	 * @param i	horizontal pixel index
+	 * @param j	vertical pixel index
+	 * @param u	horizontal position on the pixel, from 0 to 1
+	 * @param v	vertical position on the pixel, from 0 to 1
+	 * @return	the index of the grid point closest to the position (u, v) on pixel (i, j)
+	 */
+	public int getIndex(int i, int j, double u, double v)
+	{
+		return getIndex(
+				i, j,
+				Math.max(0, Math.min((int)(u*subdivisions), subdivisions-1)),
+				Math.max(0, Math.min((int)(v*subdivisions), subdivisions-1))
+			);
+	}
+
+	/**
+	 * @param index
+	 * @return	the pixel-image position of the grid point, or null if there is none
+	 */
+	public Vector3D getPixelImagePosition(int index)
+	{
+		if(pixelImagePositionTypes[index] == NO_PIXEL_IMAGE_POSITION) return null;
+		return new Vector3D(pixelImagePositions[3*index], pixelImagePositions[3*index+1], pixelImagePositions[3*index+2]);
+	}
+
+	/**
+	 * @param index
+	 * @return	true if the pixel-image position of the grid point lies in front of the camera
+	 */
+	public boolean isPixelImagePositionInFront(int index)
+	{
+		return pixelImagePositionTypes[index] != PIXEL_IMAGE_POSITION_BEHIND;
+	}
+
+	/**
+	 * @param index
+	 * @return	the pre-calculated data for the pixel-image position of the grid point, or null if there are none
+	 */
+	public double[] getPixelImagePositionData(int index)
+	{
+		if((pixelImagePositionData == null) || (pixelImagePositionTypes[index] == NO_PIXEL_IMAGE_POSITION)) return null;
+		return Arrays.copyOfRange(pixelImagePositionData, dataLength*index, dataLength*(index+1));
+	}
+}
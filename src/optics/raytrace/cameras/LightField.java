@@ -0,0 +1,636 @@
+package optics.raytrace.cameras;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import math.Vector3D;
+import optics.DoubleColour;
+import optics.raytrace.core.LightSource;
+import optics.raytrace.core.Ray;
+import optics.raytrace.core.RenderScheduler;
+import optics.raytrace.core.Sampler;
+import optics.raytrace.core.SceneObject;
+import optics.raytrace.exceptions.EvanescentException;
+import optics.raytrace.exceptions.RayTraceException;
+
+/**
+ * The light field recorded by an AnyFocusSurfaceCamera, i.e. the colours of the rays from a grid of
+ * pupilSamplesPerDirection x pupilSamplesPerDirection points on the camera's entrance pupil to the centre of each pixel.
+ *
+ * Each recorded ray is the straight line through a point on the entrance pupil and the position of a pixel centre on the
+ * camera's detector, which lies in front of the entrance pupil, like the detector of a pinhole camera.
+ * The detector is extended by a margin of pixels on each side, wide enough to contain the rays through pixels near the
+ * edge of the image when the camera is focussed on anything beyond the detector.
+ * An AnyFocusSurfaceCamera with the same geometry, but any focus scene and any aperture radius up to the one with which the
+ * light field was recorded, averages over rays that pass through the same points on the entrance pupil, but through different
+ * points on the detector.
+ * synthesiseImage finds the colours of these rays by interpolating between the recorded rays through the same point on the
+ * entrance pupil, without tracing any rays through the scene.
+ * The quality of the synthesised image depends on the number of points on the entrance pupil:
+ * if there are too few, out-of-focus objects appear as several displaced copies rather than blurred.
+ *
+ * The colours are stored as (linear, unclamped) floats in a file that is mapped into memory, so light fields that do not
+ * fit into the Java heap can be recorded, and a light field can be loaded again later.
+ * The file starts with a header that describes the camera geometry; the colours follow, pixel row by pixel row,
+ * including the rows and columns in the margin.
+ * Within a row, the colours are stored pixel by pixel, and for each pixel point on the entrance pupil by point on the
+ * entrance pupil; the points on the entrance pupil outside the circle with the recording aperture radius are stored as black.
+ *
+ * In relativistic cameras, the time of each recorded ray is that given by the shutter model for a pixel-image position
+ * on the detector; synthesised images are therefore only exact for shutter models that do not depend on the pixel-image position.
+ *
+ * @author Johannes Courtial
+ */
+public class LightField
+{
+	/**
+	 * the first four bytes of a light-field file
+	 */
+	private static final int MAGIC_NUMBER = 0x4C464C44;	// "LFLD"
+
+	/**
+	 * the number of bytes at the start of a light-field file reserved for the header
+	 */
+	private static final int HEADER_SIZE = 128;
+
+	private String filename;
+
+	/**
+	 * the number of pixels in the horizontal and vertical directions
+	 */
+	private int width, height;
+
+	/**
+	 * the number of pixels by which the recorded detector area extends beyond the detector on each side
+	 */
+	private int margin;
+
+	/**
+	 * the number of points on the entrance pupil in the horizontal and vertical directions
+	 */
+	private int pupilSamplesPerDirection;
+
+	/**
+	 * the radius of the aperture with which the light field was recorded
+	 */
+	private double apertureRadius;
+
+	/**
+	 * the camera geometry: the centre of the entrance pupil, the centre of pixel (0, 0),
+	 * and the vectors spanning the detector horizontally and vertically
+	 */
+	private Vector3D apertureCentre, pixel00Centre, horizontalSpanVector, verticalSpanVector;
+
+	/**
+	 * the mapped colours, one buffer per pixel row
+	 */
+	private MappedByteBuffer[] mappedRows;
+	private FloatBuffer[] rows;
+
+	/**
+	 * Create a light field with the camera's geometry and map the file into memory
+	 * @param filename
+	 * @param camera
+	 * @param pupilSamplesPerDirection
+	 * @throws IOException
+	 */
+	private LightField(String filename, AnyFocusSurfaceCamera camera, int pupilSamplesPerDirection)
+	throws IOException
+	{
+		if(pupilSamplesPerDirection < 1) throw new IllegalArgumentException("LightField::LightField: pupilSamplesPerDirection = "+pupilSamplesPerDirection+" < 1");
+
+		this.filename = filename;
+		width = camera.getDetectorPixelsHorizontal();
+		height = camera.getDetectorPixelsVertical();
+		this.pupilSamplesPerDirection = pupilSamplesPerDirection;
+		apertureRadius = camera.getApertureRadius();
+		apertureCentre = camera.getApertureCentre().clone();
+		pixel00Centre = camera.getCCD().getPixelCentrePosition(0, 0).clone();
+		horizontalSpanVector = camera.getHorizontalSpanVector().clone();
+		verticalSpanVector = camera.getVerticalSpanVector().clone();
+
+		// the ray from a point on the entrance pupil to a point on the focus scene beyond the detector intersects the detector
+		// no further from the ray from the aperture centre than the point on the entrance pupil is from the aperture centre
+		margin = (int)Math.ceil(apertureRadius*Math.max(
+				(width-1)/horizontalSpanVector.getLength(),
+				(height-1)/verticalSpanVector.getLength()
+			));
+
+		RandomAccessFile file = new RandomAccessFile(filename, "rw");
+		try
+		{
+			file.setLength(HEADER_SIZE + (long)getNumberOfRows()*getRowSize());
+			file.writeInt(MAGIC_NUMBER);
+			file.writeInt(width);
+			file.writeInt(height);
+			file.writeInt(margin);
+			file.writeInt(pupilSamplesPerDirection);
+			file.writeDouble(apertureRadius);
+			writeVector3D(file, apertureCentre);
+			writeVector3D(file, pixel00Centre);
+			writeVector3D(file, horizontalSpanVector);
+			writeVector3D(file, verticalSpanVector);
+			mapRows(file.getChannel(), FileChannel.MapMode.READ_WRITE);
+		}
+		finally
+		{
+			// the mapping remains valid after the file is closed
+			file.close();
+		}
+	}
+
+	/**
+	 * Load a light field from a file and map the file into memory
+	 * @param filename
+	 * @throws IOException
+	 */
+	private LightField(String filename)
+	throws IOException
+	{
+		this.filename = filename;
+
+		RandomAccessFile file = new RandomAccessFile(filename, "r");
+		try
+		{
+			if(file.readInt() != MAGIC_NUMBER) throw new IOException("LightField::LightField: "+filename+" is not a light-field file");
+			width = file.readInt();
+			height = file.readInt();
+			margin = file.readInt();
+			pupilSamplesPerDirection = file.readInt();
+			apertureRadius = file.readDouble();
+			apertureCentre = readVector3D(file);
+			pixel00Centre = readVector3D(file);
+			horizontalSpanVector = readVector3D(file);
+			verticalSpanVector = readVector3D(file);
+			if(file.length() < HEADER_SIZE + (long)getNumberOfRows()*getRowSize())
+				throw new IOException("LightField::LightField: "+filename+" is too short for a light field of "+width+"x"+height+" pixels");
+			mapRows(file.getChannel(), FileChannel.MapMode.READ_ONLY);
+		}
+		finally
+		{
+			file.close();
+		}
+	}
+
+	/**
+	 * Record the light field of the scene seen by the camera, using the camera's current aperture radius
+	 * as the largest aperture radius for which images can be synthesised.
+	 * The rays are traced in parallel on the render threads.
+	 * @param filename	the name of the file in which the light field is stored; an existing file gets overwritten
+	 * @param camera
+	 * @param scene
+	 * @param lights
+	 * @param pupilSamplesPerDirection	the number of points on the entrance pupil in the horizontal and vertical directions
+	 * @return	the light field
+	 * @throws IOException
+	 */
+	public static LightField capture(String filename, final AnyFocusSurfaceCamera camera, final SceneObject scene, final LightSource lights, int pupilSamplesPerDirection)
+	throws IOException
+	{
+		final LightField lightField = new LightField(filename, camera, pupilSamplesPerDirection);
+
+		invoke(new RowRangeTask(
+				new RowCalculation()
+				{
+					@Override
+					public void calculateRow(int j)
+					{
+						lightField.captureRow(j, camera, scene, lights);
+					}
+				},
+				0, lightField.getNumberOfRows()
+			));
+
+		return lightField;
+	}
+
+	/**
+	 * Load a light field recorded earlier
+	 * @param filename
+	 * @return	the light field
+	 * @throws IOException
+	 */
+	public static LightField load(String filename)
+	throws IOException
+	{
+		return new LightField(filename);
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getPupilSamplesPerDirection() {
+		return pupilSamplesPerDirection;
+	}
+
+	/**
+	 * @return	the radius of the aperture with which the light field was recorded, which is the largest aperture radius for which images can be synthesised
+	 */
+	public double getApertureRadius() {
+		return apertureRadius;
+	}
+
+	/**
+	 * @param camera
+	 * @return	true if the light field has been recorded with the camera's current geometry
+	 */
+	public boolean isFor(AnyFocusSurfaceCamera camera)
+	{
+		return
+			(width == camera.getDetectorPixelsHorizontal()) &&
+			(height == camera.getDetectorPixelsVertical()) &&
+			apertureCentre.equals(camera.getApertureCentre()) &&
+			pixel00Centre.equals(camera.getCCD().getPixelCentrePosition(0, 0)) &&
+			horizontalSpanVector.equals(camera.getHorizontalSpanVector()) &&
+			verticalSpanVector.equals(camera.getVerticalSpanVector());
+	}
+
+	/**
+	 * Synthesise the image the camera would take of the scene, using the camera's focus scene, aperture radius and exposure compensation.
+	 * Instead of tracing rays through the scene, the colours of the rays are interpolated from the light field.
+	 * If the camera's aperture radius is greater than that with which the light field was recorded, the latter is used.
+	 * The pixels are calculated in parallel on the render threads.
+	 * @param camera	a camera with the geometry with which the light field was recorded
+	 * @return	the image
+	 */
+	public BufferedImage synthesiseImage(final AnyFocusSurfaceCamera camera)
+	{
+		if(!isFor(camera)) throw new IllegalArgumentException("LightField::synthesiseImage: the camera geometry differs from that with which the light field was recorded");
+
+		// select the points on the entrance pupil within the camera's aperture;
+		// if there are none (e.g. because the camera's aperture radius is 0), select those closest to the centre
+		double radius = Math.min(camera.getApertureRadius(), apertureRadius);
+		double smallestDistance = Double.POSITIVE_INFINITY;
+		for(int b=0; b<pupilSamplesPerDirection; b++)
+			for(int a=0; a<pupilSamplesPerDirection; a++)
+				smallestDistance = Math.min(smallestDistance, Math.hypot(getPupilCoordinate(a), getPupilCoordinate(b)));
+		radius = Math.max(radius, smallestDistance);
+
+		int numberOfSelectedPoints = 0;
+		final int[] selectedPoints = new int[pupilSamplesPerDirection*pupilSamplesPerDirection];
+		final Vector3D[] pointsOnEntrancePupil = new Vector3D[selectedPoints.length];
+		for(int b=0; b<pupilSamplesPerDirection; b++)
+			for(int a=0; a<pupilSamplesPerDirection; a++)
+				if(Math.hypot(getPupilCoordinate(a), getPupilCoordinate(b)) <= radius)
+				{
+					selectedPoints[numberOfSelectedPoints] = b*pupilSamplesPerDirection + a;
+					pointsOnEntrancePupil[numberOfSelectedPoints] = getPointOnEntrancePupil(getPupilCoordinate(a), getPupilCoordinate(b));
+					numberOfSelectedPoints++;
+				}
+		final int n = numberOfSelectedPoints;
+
+		final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		invoke(new RowRangeTask(
+				new RowCalculation()
+				{
+					@Override
+					public void calculateRow(int j)
+					{
+						for(int i=0; i<width; i++)
+							image.setRGB(i, j, synthesisePixelColour(i, j, camera, selectedPoints, pointsOnEntrancePupil, n).getRGB());
+					}
+				},
+				0, height
+			));
+
+		return image;
+	}
+
+
+	//
+	// recording
+	//
+
+	/**
+	 * Trace the rays of the light field for all pixels in row j of the recorded detector area,
+	 * which is row j - margin of the detector
+	 * @param j
+	 * @param camera
+	 * @param scene
+	 * @param lights
+	 */
+	private void captureRow(int j, AnyFocusSurfaceCamera camera, SceneObject scene, LightSource lights)
+	{
+		FloatBuffer row = rows[j];
+		int samplesPerPixel = pupilSamplesPerDirection*pupilSamplesPerDirection;
+		for(int i=0; i<getNumberOfColumns(); i++)
+		{
+			Sampler sampler = Sampler.useThreadSampler(camera.getSamplerType(), camera.getSamplerSeed());
+			sampler.startPixel(i-margin, j-margin);
+
+			Vector3D pixelPosition = getPixelCentrePosition(i-margin, j-margin);
+			for(int b=0; b<pupilSamplesPerDirection; b++)
+				for(int a=0; a<pupilSamplesPerDirection; a++)
+				{
+					int sample = b*pupilSamplesPerDirection + a;
+					double x = getPupilCoordinate(a), y = getPupilCoordinate(b);
+
+					DoubleColour colour;
+					if(x*x + y*y > apertureRadius*apertureRadius) colour = DoubleColour.BLACK;	// outside the aperture
+					else
+					{
+						sampler.startSample(sample, samplesPerPixel);
+						try {
+							Ray ray = camera.getRay(getPointOnEntrancePupil(x, y), pixelPosition, true);
+							colour = camera.calculateLightFieldRayColour(ray, scene, lights);
+						}
+						catch(EvanescentException e)
+						{
+							colour = DoubleColour.BLACK;
+						}
+						catch(RayTraceException e)
+						{
+							colour = DoubleColour.YELLOW;
+							e.printStackTrace();
+						}
+					}
+
+					int index = 3*(i*samplesPerPixel + sample);
+					row.put(index, (float)colour.getR());
+					row.put(index+1, (float)colour.getG());
+					row.put(index+2, (float)colour.getB());
+				}
+		}
+		mappedRows[j].force();
+	}
+
+
+	//
+	// synthesis
+	//
+
+	/**
+	 * @param i
+	 * @param j
+	 * @param camera
+	 * @param selectedPoints	the indices of the points on the entrance pupil to average over
+	 * @param pointsOnEntrancePupil	the positions of these points
+	 * @param n	the number of these points
+	 * @return	the (exposure-compensated) colour of pixel (i, j) of the image taken by the camera
+	 */
+	private DoubleColour synthesisePixelColour(int i, int j, AnyFocusSurfaceCamera camera, int[] selectedPoints, Vector3D[] pointsOnEntrancePupil, int n)
+	{
+		// the position of the image of the centre of pixel (i,j), found as in AnyFocusSurfaceCamera.calculatePixelColour
+		Vector3D pixelImagePosition = camera.getPixelCentreImagePosition(i, j);
+		if((pixelImagePosition == null) && camera.allowFocussingBehindCamera)
+			pixelImagePosition = camera.getPixelImagePositionBehind(i, j);
+		if(pixelImagePosition == null) return DoubleColour.GREEN;
+
+		Vector3D detectorNormal = Vector3D.crossProduct(horizontalSpanVector, verticalSpanVector);
+		double
+			hh = Vector3D.scalarProduct(horizontalSpanVector, horizontalSpanVector),
+			hv = Vector3D.scalarProduct(horizontalSpanVector, verticalSpanVector),
+			vv = Vector3D.scalarProduct(verticalSpanVector, verticalSpanVector),
+			det = hh*vv - hv*hv;
+
+		double r = 0, g = 0, b = 0;
+		int count = 0;
+		float[] colour = new float[3];
+		for(int k=0; k<n; k++)
+		{
+			// the ray through the point on the entrance pupil and the pixel-image position
+			// (or, if the pixel-image position lies behind the camera, its straight-line continuation)...
+			Vector3D e = pointsOnEntrancePupil[k];
+			Vector3D d = Vector3D.difference(pixelImagePosition, e);
+
+			// ... intersects the detector at the position p...
+			double dn = Vector3D.scalarProduct(d, detectorNormal);
+			if(dn == 0) continue;
+			Vector3D p = Vector3D.sum(e, d.getProductWith(Vector3D.scalarProduct(Vector3D.difference(pixel00Centre, e), detectorNormal) / dn));
+
+			// ... which corresponds to (non-integer) pixel coordinates (x, y)
+			Vector3D q = Vector3D.difference(p, pixel00Centre);
+			double
+				qh = Vector3D.scalarProduct(q, horizontalSpanVector),
+				qv = Vector3D.scalarProduct(q, verticalSpanVector),
+				x = (qh*vv - qv*hv) / det * (width-1),
+				y = (qv*hh - qh*hv) / det * (height-1);
+
+			if(interpolateColour(x, y, selectedPoints[k], colour))
+			{
+				r += colour[0];
+				g += colour[1];
+				b += colour[2];
+				count++;
+			}
+		}
+
+		if(count == 0) return DoubleColour.BLACK;
+		return new DoubleColour(r/count, g/count, b/count).multiply(camera.getExposureCompensation().toIntensityFactor());
+	}
+
+	/**
+	 * Interpolate bilinearly between the recorded colours of the rays through the same point on the entrance pupil
+	 * and the centres of the four pixels surrounding the position (x, y) on the detector
+	 * @param x	horizontal pixel coordinate on the detector
+	 * @param y	vertical pixel coordinate on the detector
+	 * @param sample	the index of the point on the entrance pupil
+	 * @param colour	array that will hold the red, green and blue components of the interpolated colour
+	 * @return	true if (x, y) lies within the recorded detector area, false otherwise (in which case colour is unchanged)
+	 */
+	private boolean interpolateColour(double x, double y, int sample, float[] colour)
+	{
+		// the coordinates within the recorded detector area
+		x += margin;
+		y += margin;
+		int numberOfColumns = getNumberOfColumns(), numberOfRows = getNumberOfRows();
+		if(!((x >= 0) && (x <= numberOfColumns-1) && (y >= 0) && (y <= numberOfRows-1))) return false;
+
+		int
+			i0 = Math.min((int)x, Math.max(numberOfColumns-2, 0)),
+			j0 = Math.min((int)y, Math.max(numberOfRows-2, 0)),
+			i1 = Math.min(i0+1, numberOfColumns-1),
+			j1 = Math.min(j0+1, numberOfRows-1);
+		double tx = x - i0, ty = y - j0;
+
+		int samplesPerPixel = pupilSamplesPerDirection*pupilSamplesPerDirection;
+		int
+			index0 = 3*(i0*samplesPerPixel + sample),
+			index1 = 3*(i1*samplesPerPixel + sample);
+		FloatBuffer row0 = rows[j0], row1 = rows[j1];
+		for(int c=0; c<3; c++)
+			colour[c] = (float)(
+					(1-ty)*((1-tx)*row0.get(index0+c) + tx*row0.get(index1+c)) +
+					ty*((1-tx)*row1.get(index0+c) + tx*row1.get(index1+c))
+				);
+		return true;
+	}
+
+
+	//
+	// geometry
+	//
+
+	/**
+	 * @param a	the index of a point on the entrance pupil in the horizontal or vertical direction
+	 * @return	the corresponding coordinate, in the range from -apertureRadius to apertureRadius
+	 */
+	private double getPupilCoordinate(int a)
+	{
+		return apertureRadius*((2*a+1.)/pupilSamplesPerDirection - 1);
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return	the point on the entrance pupil with coordinates (x, y), as in AnyFocusSurfaceCamera.randomPointOnEntrancePupil
+	 */
+	private Vector3D getPointOnEntrancePupil(double x, double y)
+	{
+		return Vector3D.sum(
+				apertureCentre,
+				horizontalSpanVector.getWithLength(x),
+				verticalSpanVector.getWithLength(y)
+			);
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return	the position of the centre of pixel (i, j), as in CCD.getPixelCentrePosition
+	 */
+	private Vector3D getPixelCentrePosition(double i, double j)
+	{
+		return Vector3D.sum(
+				pixel00Centre,
+				horizontalSpanVector.getProductWith(i/(width-1.0)),
+				verticalSpanVector.getProductWith(j/(height-1.0))
+			);
+	}
+
+
+	//
+	// file
+	//
+
+	/**
+	 * @return	the number of pixel columns in the recorded detector area, including the margin
+	 */
+	private int getNumberOfColumns()
+	{
+		return width + 2*margin;
+	}
+
+	/**
+	 * @return	the number of pixel rows in the recorded detector area, including the margin
+	 */
+	private int getNumberOfRows()
+	{
+		return height + 2*margin;
+	}
+
+	/**
+	 * @return	the number of bytes occupied by a pixel row in the file
+	 */
+	private long getRowSize()
+	{
+		return 4L*3*getNumberOfColumns()*pupilSamplesPerDirection*pupilSamplesPerDirection;
+	}
+
+	/**
+	 * Map each pixel row of the file into memory
+	 * @param channel
+	 * @param mode
+	 * @throws IOException
+	 */
+	private void mapRows(FileChannel channel, FileChannel.MapMode mode)
+	throws IOException
+	{
+		if(getRowSize() > Integer.MAX_VALUE) throw new IOException("LightField::mapRows: a pixel row of "+getRowSize()+" bytes is too big to be mapped into memory");
+
+		mappedRows = new MappedByteBuffer[getNumberOfRows()];
+		rows = new FloatBuffer[getNumberOfRows()];
+		for(int j=0; j<getNumberOfRows(); j++)
+		{
+			mappedRows[j] = channel.map(mode, HEADER_SIZE + j*getRowSize(), getRowSize());
+			rows[j] = mappedRows[j].order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+		}
+	}
+
+	private static void writeVector3D(DataOutput out, Vector3D v)
+	throws IOException
+	{
+		out.writeDouble(v.x);
+		out.writeDouble(v.y);
+		out.writeDouble(v.z);
+	}
+
+	private static Vector3D readVector3D(DataInput in)
+	throws IOException
+	{
+		double x = in.readDouble(), y = in.readDouble();
+		return new Vector3D(x, y, in.readDouble());
+	}
+
+
+	//
+	// parallelisation
+	//
+
+	/**
+	 * Run the task on the render pool, or, if this is already happening on the render pool, in the current pool
+	 * @param task
+	 */
+	private static void invoke(RecursiveAction task)
+	{
+		if(ForkJoinTask.inForkJoinPool()) task.invoke();
+		else RenderScheduler.getPool().invoke(task);
+	}
+
+	/**
+	 * A calculation that is performed for each pixel row
+	 */
+	private interface RowCalculation
+	{
+		/**
+		 * perform the calculation for row j
+		 * @param j
+		 */
+		public void calculateRow(int j);
+	}
+
+	/**
+	 * The task of performing a calculation for each pixel row in a range,
+	 * splitting itself into two halves if the range contains more than one row
+	 */
+	private static class RowRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -3684512047625290093L;
+
+		private final RowCalculation calculation;
+		private final int firstRow, lastRow;	// the range is firstRow (inclusive) to lastRow (exclusive)
+
+		public RowRangeTask(RowCalculation calculation, int firstRow, int lastRow)
+		{
+			this.calculation = calculation;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(lastRow - firstRow > 1)
+			{
+				int middleRow = (firstRow + lastRow) / 2;
+				invokeAll(new RowRangeTask(calculation, firstRow, middleRow), new RowRangeTask(calculation, middleRow, lastRow));
+			}
+			else if(lastRow > firstRow) calculation.calculateRow(firstRow);
+		}
+	}
+}
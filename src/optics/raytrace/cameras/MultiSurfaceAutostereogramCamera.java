@@ -6,7 +6,9 @@ import java.awt.image.BufferedImage;
 import optics.DoubleColour;
 import optics.raytrace.GUI.core.RaytraceWorker;
 import optics.raytrace.core.LightSource;
+import optics.raytrace.core.RandomSampler;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.Sampler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.exceptions.RayTraceException;
 import math.MyMath;
@@ -359,16 +361,21 @@ public class MultiSurfaceAutostereogramCamera extends PinholeCamera
 			nDotsMax = (int)(getDotsPerPixel() * ccd.getDetectorPixelsHorizontal() * ccd.getDetectorPixelsVertical());
 			// ... and the number of dots we are aiming for
 		
+		// place the dots using a sampler of their own, seeded with the camera's sampler seed,
+		// so that the same seed always gives the same dots
+		// (a local one, so that the sampler the current thread is using remains unchanged)
+		Sampler dotSampler = new RandomSampler(getSamplerSeed());
+
 		// make sure we get more than the minimum number of dots
 		while(nDots < nDotsMax)
 		{
 			// start with a random colour for this dot (and its "daughter dots")...
-			double dotHue = 2*Math.PI*Math.random();
+			double dotHue = 2*Math.PI*dotSampler.getDouble();
 				
 			// ... and find a random position for the "mother dot" by placing it on a
 			// randomly picked CCD pixel
-			double i = Math.random() * (ccd.getDetectorPixelsHorizontal()-1);	// horizontal index of pixel
-			double j = Math.random() * (ccd.getDetectorPixelsVertical()-1);	// vertical index of pixel
+			double i = dotSampler.getDouble() * (ccd.getDetectorPixelsHorizontal()-1);	// horizontal index of pixel
+			double j = dotSampler.getDouble() * (ccd.getDetectorPixelsVertical()-1);	// vertical index of pixel
 			Vector3D dotPosition = ccd.getPositionOnPixel((int)(i+0.5), (int)(j+0.5));
 			
 			// now place the dot and its daughter dots
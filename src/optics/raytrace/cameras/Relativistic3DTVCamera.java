@@ -6,6 +6,7 @@ import optics.raytrace.GUI.lowLevel.Format3DType;
 import optics.raytrace.GUI.lowLevel.OrientationType;
 import optics.raytrace.cameras.shutterModels.AperturePlaneShutterModel;
 import optics.raytrace.cameras.shutterModels.ShutterModel;
+import optics.raytrace.core.AccumulationBuffer;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.Studio;
@@ -42,6 +43,22 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 	
 	// private variables
 	private RelativisticAnyFocusSurfaceCamera leftCamera, rightCamera;
+
+	/**
+	 * if true, the images seen by the left and right eyes are kept in a StereoImagePair during each render,
+	 * from which other stereo formats can then be derived without rendering again
+	 */
+	protected boolean recordStereoImagePair = false;
+
+	/**
+	 * the images seen by the left and right eyes during the last render, if recordStereoImagePair is true
+	 */
+	private transient StereoImagePair stereoImagePair = null;
+
+	/**
+	 * the CCD's accumulation buffer during the render(s) recorded in stereoImagePair; null if the CCD didn't accumulate
+	 */
+	private transient AccumulationBuffer stereoImagePairAccumulationBuffer = null;
 	          
 	
 	/**
@@ -214,6 +231,7 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 		this.framePixelsVertical = original.getFramePixelsVertical();
 		this.framePackingOrientation = original.getFramePackingOrientation();
 		this.gapBetweenFrames = original.getGapBetweenFrames();
+		this.recordStereoImagePair = original.isRecordStereoImagePair();
 	}
 	
 	@Override
@@ -406,6 +424,45 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 		if(rightCamera != null) rightCamera.setRaysPerPixel(raysPerPixel);
 	}
 
+	@Override
+	public void setFocusMapSubdivisions(int focusMapSubdivisions)
+	{
+		super.setFocusMapSubdivisions(focusMapSubdivisions);
+		
+		if(leftCamera != null) leftCamera.setFocusMapSubdivisions(focusMapSubdivisions);
+		if(rightCamera != null) rightCamera.setFocusMapSubdivisions(focusMapSubdivisions);
+	}
+
+	/**
+	 * The pixels are calculated by the left and right cameras, so it is they that need to prepare for rendering
+	 * (a focus map of this camera would not be used).
+	 * @see optics.raytrace.cameras.AnyFocusSurfaceCamera#prepareForRendering(optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource)
+	 */
+	@Override
+	protected void prepareForRendering(SceneObject scene, LightSource lights)
+	{
+		if(leftCamera != null) leftCamera.prepareForRendering(scene, lights);
+		if(rightCamera != null) rightCamera.prepareForRendering(scene, lights);
+
+		if(recordStereoImagePair && (leftCamera != null))
+		{
+			int width = leftCamera.getDetectorPixelsHorizontal(), height = leftCamera.getDetectorPixelsVertical();
+			AccumulationBuffer accumulationBuffer = getCCD().getAccumulationBuffer();
+			if((stereoImagePair == null) || (stereoImagePair.getWidth() != width) || (stereoImagePair.getHeight() != height))
+				stereoImagePair = new StereoImagePair(width, height);
+			// if the CCD keeps accumulating the colours of several renders in the same buffer, so does the stereo-image pair;
+			// if the CCD doesn't accumulate, or has started accumulating in a new (or loaded) buffer, the pair starts afresh
+			// (the eye images can't be recovered from a loaded buffer, so they then contain only the renders from now on)
+			else if((accumulationBuffer == null) || (accumulationBuffer != stereoImagePairAccumulationBuffer)) stereoImagePair.clear();
+			stereoImagePairAccumulationBuffer = accumulationBuffer;
+		}
+		else
+		{
+			stereoImagePair = null;
+			stereoImagePairAccumulationBuffer = null;
+		}
+	}
+
 	@Override
 	public void setMaxTraceLevel(int maxTraceLevel)
 	{
@@ -461,6 +518,24 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 		if(rightCamera != null) rightCamera.setDetectorPixelsVertical(framePixelsVertical);
 	}
 	
+	public boolean isRecordStereoImagePair() {
+		return recordStereoImagePair;
+	}
+
+	/**
+	 * @param recordStereoImagePair	if true, keep the images seen by the left and right eyes during each render (see getStereoImagePair)
+	 */
+	public void setRecordStereoImagePair(boolean recordStereoImagePair) {
+		this.recordStereoImagePair = recordStereoImagePair;
+	}
+
+	/**
+	 * @return	the images seen by the left and right eyes during the last render, or null if they have not been recorded
+	 */
+	public StereoImagePair getStereoImagePair() {
+		return stereoImagePair;
+	}
+
 	public Vector3D getEyeSeparation()
 	{
 		return eyeSeparation;
@@ -488,7 +563,7 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 			if(i < getFramePixelsHorizontal())
 			{
 				// use the left-eye camera
-				return leftCamera.calculatePixelColour(i, j, scene, lights);
+				return recordLeftPixelColour(i, j, leftCamera.calculatePixelColour(i, j, scene, lights));
 			}
 			else if(i < getFramePixelsHorizontal() + getGapBetweenFrames())
 			{
@@ -498,7 +573,8 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 			else
 			{
 				// use the right-eye camera
-				return rightCamera.calculatePixelColour(i-getFramePixelsHorizontal()-getGapBetweenFrames(), j, scene, lights);
+				double iRight = i-getFramePixelsHorizontal()-getGapBetweenFrames();
+				return recordRightPixelColour(iRight, j, rightCamera.calculatePixelColour(iRight, j, scene, lights));
 			}
 		}
 		else
@@ -507,7 +583,7 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 			if(j < getFramePixelsVertical())
 			{
 				// use the left-eye camera
-				return leftCamera.calculatePixelColour(i, j, scene, lights);
+				return recordLeftPixelColour(i, j, leftCamera.calculatePixelColour(i, j, scene, lights));
 			}
 			else if(j < getFramePixelsVertical() + getGapBetweenFrames())
 			{
@@ -517,8 +593,37 @@ public class Relativistic3DTVCamera extends RelativisticAnyFocusSurfaceCamera
 			else
 			{
 				// use the right-eye camera
-				return rightCamera.calculatePixelColour(i, j-getFramePixelsVertical()-getGapBetweenFrames(), scene, lights);
+				double jRight = j-getFramePixelsVertical()-getGapBetweenFrames();
+				return recordRightPixelColour(i, jRight, rightCamera.calculatePixelColour(i, jRight, scene, lights));
 			}
 		}
 	}
+
+	/**
+	 * If required, keep the colour of pixel (i, j) of the picture seen by the left eye
+	 * @param i
+	 * @param j
+	 * @param colour
+	 * @return	colour
+	 */
+	private DoubleColour recordLeftPixelColour(double i, double j, DoubleColour colour)
+	{
+		StereoImagePair pair = stereoImagePair;
+		if(pair != null) pair.recordLeftPixelColour((int)i, (int)j, colour);
+		return colour;
+	}
+
+	/**
+	 * If required, keep the colour of pixel (i, j) of the picture seen by the right eye
+	 * @param i
+	 * @param j
+	 * @param colour
+	 * @return	colour
+	 */
+	private DoubleColour recordRightPixelColour(double i, double j, DoubleColour colour)
+	{
+		StereoImagePair pair = stereoImagePair;
+		if(pair != null) pair.recordRightPixelColour((int)i, (int)j, colour);
+		return colour;
+	}
 }
\ No newline at end of file
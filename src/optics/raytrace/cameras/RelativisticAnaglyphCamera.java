@@ -6,6 +6,7 @@ import optics.raytrace.cameras.shutterModels.DetectorPlaneShutterModel;
 import optics.raytrace.cameras.shutterModels.FocusSurfaceShutterModel;
 import optics.raytrace.cameras.shutterModels.ShutterModel;
 import optics.raytrace.cameras.shutterModels.ShutterModelType;
+import optics.raytrace.core.AccumulationBuffer;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.Studio;
@@ -41,6 +42,22 @@ public class RelativisticAnaglyphCamera extends RelativisticAnyFocusSurfaceCamer
 	
 	// private variables
 	protected RelativisticAnyFocusSurfaceCamera leftCamera, rightCamera;
+
+	/**
+	 * if true, the images seen by the left and right eyes are kept in a StereoImagePair during each render,
+	 * from which other stereo formats can then be derived without rendering again
+	 */
+	protected boolean recordStereoImagePair = false;
+
+	/**
+	 * the images seen by the left and right eyes during the last render, if recordStereoImagePair is true
+	 */
+	private transient StereoImagePair stereoImagePair = null;
+
+	/**
+	 * the CCD's accumulation buffer during the render(s) recorded in stereoImagePair; null if the CCD didn't accumulate
+	 */
+	private transient AccumulationBuffer stereoImagePairAccumulationBuffer = null;
 	          
 	/**
 	 * 
@@ -232,6 +249,7 @@ public class RelativisticAnaglyphCamera extends RelativisticAnyFocusSurfaceCamer
 
 		this.eyeSeparation = original.getEyeSeparation();
 		this.colour = original.isColour();
+		this.recordStereoImagePair = original.isRecordStereoImagePair();
 	}
 	
 	@Override
@@ -359,6 +377,45 @@ public class RelativisticAnaglyphCamera extends RelativisticAnyFocusSurfaceCamer
 		if(rightCamera != null) rightCamera.setRaysPerPixel(raysPerPixel);
 	}
 
+	@Override
+	public void setFocusMapSubdivisions(int focusMapSubdivisions)
+	{
+		super.setFocusMapSubdivisions(focusMapSubdivisions);
+		
+		if(leftCamera != null) leftCamera.setFocusMapSubdivisions(focusMapSubdivisions);
+		if(rightCamera != null) rightCamera.setFocusMapSubdivisions(focusMapSubdivisions);
+	}
+
+	/**
+	 * The pixels are calculated by the left and right cameras, so it is they that need to prepare for rendering
+	 * (a focus map of this camera would not be used).
+	 * @see optics.raytrace.cameras.AnyFocusSurfaceCamera#prepareForRendering(optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource)
+	 */
+	@Override
+	protected void prepareForRendering(SceneObject scene, LightSource lights)
+	{
+		if(leftCamera != null) leftCamera.prepareForRendering(scene, lights);
+		if(rightCamera != null) rightCamera.prepareForRendering(scene, lights);
+
+		if(recordStereoImagePair && (leftCamera != null))
+		{
+			int width = leftCamera.getDetectorPixelsHorizontal(), height = leftCamera.getDetectorPixelsVertical();
+			AccumulationBuffer accumulationBuffer = getCCD().getAccumulationBuffer();
+			if((stereoImagePair == null) || (stereoImagePair.getWidth() != width) || (stereoImagePair.getHeight() != height))
+				stereoImagePair = new StereoImagePair(width, height);
+			// if the CCD keeps accumulating the colours of several renders in the same buffer, so does the stereo-image pair;
+			// if the CCD doesn't accumulate, or has started accumulating in a new (or loaded) buffer, the pair starts afresh
+			// (the eye images can't be recovered from a loaded buffer, so they then contain only the renders from now on)
+			else if((accumulationBuffer == null) || (accumulationBuffer != stereoImagePairAccumulationBuffer)) stereoImagePair.clear();
+			stereoImagePairAccumulationBuffer = accumulationBuffer;
+		}
+		else
+		{
+			stereoImagePair = null;
+			stereoImagePairAccumulationBuffer = null;
+		}
+	}
+
 	@Override
 	public void setMaxTraceLevel(int maxTraceLevel)
 	{
@@ -410,6 +467,24 @@ public class RelativisticAnaglyphCamera extends RelativisticAnyFocusSurfaceCamer
 		if(rightCamera != null) rightCamera.setDetectorPixelsVertical(detectorPixelsVertical);
 	}
 	
+	public boolean isRecordStereoImagePair() {
+		return recordStereoImagePair;
+	}
+
+	/**
+	 * @param recordStereoImagePair	if true, keep the images seen by the left and right eyes during each render (see getStereoImagePair)
+	 */
+	public void setRecordStereoImagePair(boolean recordStereoImagePair) {
+		this.recordStereoImagePair = recordStereoImagePair;
+	}
+
+	/**
+	 * @return	the images seen by the left and right eyes during the last render, or null if they have not been recorded
+	 */
+	public StereoImagePair getStereoImagePair() {
+		return stereoImagePair;
+	}
+
 	public Vector3D getEyeSeparation()
 	{
 		return eyeSeparation;
@@ -427,30 +502,14 @@ public class RelativisticAnaglyphCamera extends RelativisticAnyFocusSurfaceCamer
 			leftColour = leftCamera.calculatePixelColour(i, j, scene, lights),
 			rightColour = rightCamera.calculatePixelColour(i, j, scene, lights);
 		
-//		// also store together the picture seen by the left and right eye
-//		leftCamera.getCCD().setPixelColour(i, j, leftColour.getRGB());
-//		rightCamera.getCCD().setPixelColour(i, j, rightColour.getRGB());
-		
-		if(isColour())
+		// also keep the pictures seen by the left and right eye, if required
+		StereoImagePair pair = stereoImagePair;
+		if(pair != null)
 		{
-			// from http://en.wikipedia.org/wiki/Anaglyph_image:
-			// "In recent simple practice, the left eye image is filtered to remove blue & green.
-			// The right eye image is filtered to remove red."
-			return new DoubleColour(
-					leftColour.getR(),
-					rightColour.getG(),
-					rightColour.getB()
-				);
-		}
-		else
-		{
-			// display left image in red, and right image in blue or green & blue;
-			// the latter works very well with the combination of my laptop monitor and 3D glasses
-			return new DoubleColour(
-					leftColour.getLuminance(),
-					0, // rightColour.getLuminance(),
-					rightColour.getLuminance()	// * DoubleColour.LUMINANCE_R_FACTOR / DoubleColour.LUMINANCE_B_FACTOR
-				);
+			pair.recordLeftPixelColour((int)i, (int)j, leftColour);
+			pair.recordRightPixelColour((int)i, (int)j, rightColour);
 		}
+		
+		return StereoImagePair.getAnaglyphColour(leftColour, rightColour, isColour());
 	}
 }
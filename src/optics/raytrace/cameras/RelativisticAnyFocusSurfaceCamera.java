@@ -281,6 +281,19 @@ public class RelativisticAnyFocusSurfaceCamera extends AnyFocusSurfaceCamera imp
 		return super.calculatePixelColour(i, j, getCameraFrameScene(), lights);
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.cameras.AnyFocusSurfaceCamera#calculateLightFieldRayColour(optics.raytrace.core.Ray, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource)
+	 */
+	@Override
+	protected DoubleColour calculateLightFieldRayColour(Ray ray, SceneObject scene, LightSource lights)
+	throws RayTraceException
+	{
+		sceneFrameScene = scene;
+		
+		// as in calculatePixelColour, trace through the objects that are at rest in the camera frame first
+		return super.calculateLightFieldRayColour(ray, getCameraFrameScene(), lights);
+	}
+
 	/* 
 	 * Gets called when ray tracing in the camera frame has finished.
 	 * This method then continues tracing the same ray in the scene frame.
@@ -356,6 +369,26 @@ public class RelativisticAnyFocusSurfaceCamera extends AnyFocusSurfaceCamera imp
 	 */
 	@Override
 	protected Ray getRay(Vector3D pointOnEntrancePupil, Vector3D pixelImagePosition, boolean pixelImagePositionInFront) throws EvanescentException
+	{
+		return getRay(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront, null);
+	}
+
+	/**
+	 * The pre-calculated data are those of the shutter model.
+	 * @see optics.raytrace.cameras.AnyFocusSurfaceCamera#calculatePixelImagePositionData(math.Vector3D, boolean)
+	 */
+	@Override
+	protected double[] calculatePixelImagePositionData(Vector3D pixelImagePosition, boolean pixelImagePositionInFront)
+	{
+		return shutterModel.getPixelImagePositionData(pixelImagePosition, pixelImagePositionInFront);
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.cameras.AnyFocusSurfaceCamera#getRay(math.Vector3D, math.Vector3D, boolean, double[])
+	 */
+	@Override
+	protected Ray getRay(Vector3D pointOnEntrancePupil, Vector3D pixelImagePosition, boolean pixelImagePositionInFront, double[] pixelImagePositionData)
+	throws EvanescentException
 	{
 		// a vector from the point on the entrance pupil to the pixel-image position
 		Vector3D pointOnPupil2Image = pixelImagePosition.getDifferenceWith(pointOnEntrancePupil);
@@ -378,7 +411,7 @@ public class RelativisticAnyFocusSurfaceCamera extends AnyFocusSurfaceCamera imp
 							// We could also use the ccd span vectors to calculate this.
 							// However, we think this would be more computationally intensive.
 							),
-					shutterModel.getAperturePlaneTransmissionTime(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront),	// time
+					shutterModel.getAperturePlaneTransmissionTime(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront, pixelImagePositionData),	// time
 					false	// reportToConsole
 				);
 		}
@@ -386,7 +419,7 @@ public class RelativisticAnyFocusSurfaceCamera extends AnyFocusSurfaceCamera imp
 		return new Ray(
 			pointOnEntrancePupil,	// start position
 			incidentDirection,
-			shutterModel.getAperturePlaneTransmissionTime(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront),	// time
+			shutterModel.getAperturePlaneTransmissionTime(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront, pixelImagePositionData),	// time
 			false	// reportToConsole
 		);
 	}
@@ -0,0 +1,173 @@
+package optics.raytrace.cameras;
+
+import java.awt.image.BufferedImage;
+
+import optics.DoubleColour;
+import optics.raytrace.GUI.lowLevel.OrientationType;
+import optics.raytrace.core.AccumulationBuffer;
+
+/**
+ * The (linear, unclamped) images seen by the left and right eyes of a stereo camera,
+ * e.g. a RelativisticAnaglyphCamera or a Relativistic3DTVCamera, recorded during a single render.
+ *
+ * Any number of stereo formats can be derived from the pair afterwards, without rendering the scene again:
+ * the individual eye images, colour and grey anaglyphs, and side-by-side or top-and-bottom frame-packed images.
+ *
+ * Each eye image is kept in an AccumulationBuffer, so progressive renders accumulate in the pair just like in the camera's CCD,
+ * and the eye images can be saved as PFM files.
+ *
+ * @author Johannes Courtial
+ */
+public class StereoImagePair
+{
+	private AccumulationBuffer leftBuffer, rightBuffer;
+
+	/**
+	 * Create an empty pair of eye images of width x height pixels
+	 * @param width
+	 * @param height
+	 */
+	public StereoImagePair(int width, int height)
+	{
+		leftBuffer = new AccumulationBuffer(width, height);
+		rightBuffer = new AccumulationBuffer(width, height);
+	}
+
+	public int getWidth() {
+		return leftBuffer.getWidth();
+	}
+
+	public int getHeight() {
+		return leftBuffer.getHeight();
+	}
+
+	/**
+	 * @return	the buffer holding the image seen by the left eye
+	 */
+	public AccumulationBuffer getLeftBuffer() {
+		return leftBuffer;
+	}
+
+	/**
+	 * @return	the buffer holding the image seen by the right eye
+	 */
+	public AccumulationBuffer getRightBuffer() {
+		return rightBuffer;
+	}
+
+	/**
+	 * Record the colour of pixel (i, j) of the image seen by the left eye
+	 * @param i
+	 * @param j
+	 * @param colour
+	 */
+	public void recordLeftPixelColour(int i, int j, DoubleColour colour)
+	{
+		leftBuffer.addSample(i, j, colour);
+	}
+
+	/**
+	 * Record the colour of pixel (i, j) of the image seen by the right eye
+	 * @param i
+	 * @param j
+	 * @param colour
+	 */
+	public void recordRightPixelColour(int i, int j, DoubleColour colour)
+	{
+		rightBuffer.addSample(i, j, colour);
+	}
+
+	/**
+	 * Forget both eye images
+	 */
+	public void clear()
+	{
+		leftBuffer.clear();
+		rightBuffer.clear();
+	}
+
+	/**
+	 * @param leftColour	the colour seen by the left eye
+	 * @param rightColour	the colour seen by the right eye
+	 * @param colour	true for a colour anaglyph, false for a grey one
+	 * @return	the colour of the corresponding anaglyph pixel
+	 */
+	public static DoubleColour getAnaglyphColour(DoubleColour leftColour, DoubleColour rightColour, boolean colour)
+	{
+		if(colour)
+		{
+			// from http://en.wikipedia.org/wiki/Anaglyph_image:
+			// "In recent simple practice, the left eye image is filtered to remove blue & green.
+			// The right eye image is filtered to remove red."
+			return new DoubleColour(
+					leftColour.getR(),
+					rightColour.getG(),
+					rightColour.getB()
+				);
+		}
+		else
+		{
+			// display left image in red, and right image in blue or green & blue;
+			// the latter works very well with the combination of my laptop monitor and 3D glasses
+			return new DoubleColour(
+					leftColour.getLuminance(),
+					0, // rightColour.getLuminance(),
+					rightColour.getLuminance()	// * DoubleColour.LUMINANCE_R_FACTOR / DoubleColour.LUMINANCE_B_FACTOR
+				);
+		}
+	}
+
+	/**
+	 * @return	the (tone-mapped) image seen by the left eye
+	 */
+	public BufferedImage getLeftImage()
+	{
+		BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+		leftBuffer.drawToneMappedImage(image);
+		return image;
+	}
+
+	/**
+	 * @return	the (tone-mapped) image seen by the right eye
+	 */
+	public BufferedImage getRightImage()
+	{
+		BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+		rightBuffer.drawToneMappedImage(image);
+		return image;
+	}
+
+	/**
+	 * @param colour	true for a colour anaglyph, false for a grey one
+	 * @return	the anaglyph calculated from the (linear) colours of the eye images, as calculated by RelativisticAnaglyphCamera
+	 */
+	public BufferedImage getAnaglyph(boolean colour)
+	{
+		BufferedImage image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+		for(int j=0; j<getHeight(); j++)
+			for(int i=0; i<getWidth(); i++)
+				image.setRGB(i, j, getAnaglyphColour(leftBuffer.getColour(i, j), rightBuffer.getColour(i, j), colour).getRGB());
+		return image;
+	}
+
+	/**
+	 * @param framePackingOrientation	HORIZONTAL for side-by-side frames, VERTICAL for top-and-bottom frames
+	 * @param gapBetweenFrames	the number of black pixels between the frames
+	 * @return	the (tone-mapped) eye images, packed into one image as calculated by Relativistic3DTVCamera, with the left-eye image on the left or at the top
+	 */
+	public BufferedImage getFramePackedImage(OrientationType framePackingOrientation, int gapBetweenFrames)
+	{
+		boolean horizontal = (framePackingOrientation == OrientationType.HORIZONTAL);
+		int
+			di = horizontal?(getWidth() + gapBetweenFrames):0,	// the offset of the right-eye frame
+			dj = horizontal?0:(getHeight() + gapBetweenFrames);
+		BufferedImage image = new BufferedImage(getWidth() + di, getHeight() + dj, BufferedImage.TYPE_INT_RGB);	// initially black
+		for(int j=0; j<getHeight(); j++)
+			for(int i=0; i<getWidth(); i++)
+			{
+				image.setRGB(i, j, leftBuffer.getToneMappedRGB(i, j));
+				image.setRGB(i+di, j+dj, rightBuffer.getToneMappedRGB(i, j));
+			}
+		return image;
+	}
+}
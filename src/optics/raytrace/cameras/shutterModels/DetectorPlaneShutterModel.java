@@ -108,9 +108,20 @@ public class DetectorPlaneShutterModel extends InstantShutterModel
 	public double getAperturePlaneTransmissionTime(Vector3D pointOnLensAperture, Vector3D pixelImagePosition,
 			boolean pixelImagePositionInFront)
 	{
-		// a vector from the point on the lens aperture to the pixel-image position
-		Vector3D pointOnPupil2Image = pixelImagePosition.getDifferenceWith(pointOnLensAperture);
-		
+		return getAperturePlaneTransmissionTime(
+				pointOnLensAperture, pixelImagePosition, pixelImagePositionInFront,
+				getPixelImagePositionData(pixelImagePosition, pixelImagePositionInFront)
+			);
+	}
+
+	/**
+	 * The pre-calculated data consist of the position of the detector pixel, p (3 elements), and,
+	 * for an ideal lens, the distance from p to the pixel-image position, |pi| (1 element).
+	 * @see optics.raytrace.cameras.shutterModels.ShutterModel#getPixelImagePositionData(math.Vector3D, boolean)
+	 */
+	@Override
+	public double[] getPixelImagePositionData(Vector3D pixelImagePosition, boolean pixelImagePositionInFront)
+	{
 		// calculate the position of the detector pixel
 		
 		// vector from centre of lens aperture to pixel-image position
@@ -124,6 +135,24 @@ public class DetectorPlaneShutterModel extends InstantShutterModel
 		// detector-pixel position
 		Vector3D p = Vector3D.difference(camera.getApertureCentre(), pc);
 
+		return new double[] {p.x, p.y, p.z, Vector3D.difference(pixelImagePosition, p).getLength()};
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.cameras.shutterModels.ShutterModel#getAperturePlaneTransmissionTime(math.Vector3D, math.Vector3D, boolean, double[])
+	 */
+	@Override
+	public double getAperturePlaneTransmissionTime(Vector3D pointOnLensAperture, Vector3D pixelImagePosition,
+			boolean pixelImagePositionInFront, double[] pixelImagePositionData)
+	{
+		if(pixelImagePositionData == null) pixelImagePositionData = getPixelImagePositionData(pixelImagePosition, pixelImagePositionInFront);
+
+		// a vector from the point on the lens aperture to the pixel-image position
+		Vector3D pointOnPupil2Image = pixelImagePosition.getDifferenceWith(pointOnLensAperture);
+
+		// detector-pixel position
+		Vector3D p = new Vector3D(pixelImagePositionData[0], pixelImagePositionData[1], pixelImagePositionData[2]);
+
 		// vector from the detector-pixel position to the point on the lens aperture, e
 		Vector3D pe = Vector3D.difference(pointOnLensAperture, p);
 
@@ -143,9 +172,9 @@ public class DetectorPlaneShutterModel extends InstantShutterModel
 			// light takes from e to p, |pe|/c, has to equal the time from i to p (through the centre of the lens),
 			// |pi|/c.
 			// Therefore deltaT = 1/c (|pi| - |pe| - |ei|).
-			Vector3D pi = Vector3D.difference(pixelImagePosition, p);
+			double piLength = pixelImagePositionData[3];
 			Vector3D ei = pointOnPupil2Image;
-			double deltaT = (pi.getLength() - pe.getLength() - (pixelImagePositionInFront?1:-1) * ei.getLength()) / LorentzTransformation.c;
+			double deltaT = (piLength - pe.getLength() - (pixelImagePositionInFront?1:-1) * ei.getLength()) / LorentzTransformation.c;
 
 			// the time the (backwards-traced) light ray leaves the entrance pupil is then
 			return getShutterOpeningTime() - pe.getLength() / LorentzTransformation.c - deltaT;
@@ -80,6 +80,31 @@ public class FixedPointSurfaceShutterModel extends ShutterModel
 		return getTimeWhenPositionIsStationary(pixelImagePosition) + (pixelImagePositionInFront?1:-1) * pointOnPupil2Image.getLength() / LorentzTransformation.c;
 	}
 
+	/**
+	 * The pre-calculated data consist of the time when the pixel-image position is stationary.
+	 * @see optics.raytrace.cameras.shutterModels.ShutterModel#getPixelImagePositionData(math.Vector3D, boolean)
+	 */
+	@Override
+	public double[] getPixelImagePositionData(Vector3D pixelImagePosition, boolean pixelImagePositionInFront)
+	{
+		return new double[] {getTimeWhenPositionIsStationary(pixelImagePosition)};
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.cameras.shutterModels.ShutterModel#getAperturePlaneTransmissionTime(math.Vector3D, math.Vector3D, boolean, double[])
+	 */
+	@Override
+	public double getAperturePlaneTransmissionTime(Vector3D pointOnEntrancePupil, Vector3D pixelImagePosition,
+			boolean pixelImagePositionInFront, double[] pixelImagePositionData)
+	{
+		if(pixelImagePositionData == null) return getAperturePlaneTransmissionTime(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront);
+
+		// a vector from the point on the entrance pupil to the pixel-image position
+		Vector3D pointOnPupil2Image = pixelImagePosition.getDifferenceWith(pointOnEntrancePupil);
+
+		return pixelImagePositionData[0] + (pixelImagePositionInFront?1:-1) * pointOnPupil2Image.getLength() / LorentzTransformation.c;
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.cameras.shutterModels.ShutterModel#getShutterModelType()
 	 */
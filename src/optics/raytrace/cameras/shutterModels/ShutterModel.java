@@ -36,6 +36,34 @@ public abstract class ShutterModel implements Serializable
 	 */
 	public abstract double getAperturePlaneTransmissionTime(Vector3D pointOnEntrancePupil, Vector3D pixelImagePosition, boolean pixelImagePositionInFront);
 
+	/**
+	 * Pre-calculate those parts of the aperture-plane transmission time that depend only on the pixel-image position,
+	 * so that they can be re-used for all rays focussed on that position (see optics.raytrace.cameras.FocusMap).
+	 * By default, there are no such data.
+	 * @param pixelImagePosition	position that is imaged to the relevant detector pixel
+	 * @param pixelImagePositionInFront	is the pixel-image position in front of the entrance pupil?
+	 * @return	the pre-calculated data, or null if there are none
+	 */
+	public double[] getPixelImagePositionData(Vector3D pixelImagePosition, boolean pixelImagePositionInFront)
+	{
+		return null;
+	}
+
+	/**
+	 * Calculate the time when a backwards-traced light ray passes through the camera's entrance pupil,
+	 * using data pre-calculated by getPixelImagePositionData.
+	 * By default, the data are ignored.
+	 * @param pointOnEntrancePupil	position where the light ray passes through the entrance pupil
+	 * @param pixelImagePosition	position that is imaged to the relevant detector pixel
+	 * @param pixelImagePositionInFront	is the pixel-image position in front of the entrance pupil?
+	 * @param pixelImagePositionData	the data returned by getPixelImagePositionData for the pixel-image position, or null
+	 * @return	time when the light ray passes through the camera's entrance pupil
+	 */
+	public double getAperturePlaneTransmissionTime(Vector3D pointOnEntrancePupil, Vector3D pixelImagePosition, boolean pixelImagePositionInFront, double[] pixelImagePositionData)
+	{
+		return getAperturePlaneTransmissionTime(pointOnEntrancePupil, pixelImagePosition, pixelImagePositionInFront);
+	}
+
 	/**
 	 * @return	the shutter-model type
 	 */
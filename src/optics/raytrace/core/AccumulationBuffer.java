@@ -0,0 +1,423 @@
+package optics.raytrace.core;
+
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import optics.DoubleColour;
+
+/**
+ * A high-dynamic-range image in which the colours of several renders ("samples") of each pixel can be accumulated.
+ *
+ * For each pixel, the buffer stores the (unclamped, linear) sums of the red, green and blue components of the
+ * colours of all samples, as floats, and the number of samples.
+ * The colour of a pixel is the mean of its samples.
+ * Unlike a BufferedImage, in which each colour is clamped to 8 bits per component when the pixel is rendered, the buffer
+ * can therefore be used to render an image progressively (in several passes, each of which adds a sample to each pixel),
+ * to resume a render, and to merge renders of the same image calculated on different computers.
+ *
+ * The buffer can be saved as, and loaded from, PFM (portable float map) files, which store the mean colours as
+ * little-endian floats; the sample counts can be saved as a separate, greyscale, PFM file.
+ *
+ * For display, the colours get tone-mapped, i.e. multiplied by the exposure and then mapped into the range [0, 1]
+ * according to the tone-mapping type.
+ *
+ * Different threads can add samples to different pixels simultaneously, but not to the same pixel.
+ *
+ * @author Johannes Courtial
+ */
+public class AccumulationBuffer implements Serializable
+{
+	private static final long serialVersionUID = -2795187447327722385L;
+
+	/**
+	 * The ways in which the colours can be mapped into the range [0, 1] for display
+	 */
+	public enum ToneMappingType
+	{
+		/**
+		 * each colour component greater than 1 gets replaced by 1, just like when rendering into a BufferedImage
+		 */
+		CLAMP("Clamp"),
+		/**
+		 * each colour component c gets replaced by c/(1+c) (Reinhard et al.), which preserves some detail in the highlights
+		 */
+		REINHARD("Reinhard");
+
+		private String description;
+		private ToneMappingType(String description) {this.description = description;}
+		@Override
+		public String toString() {return description;}
+	}
+
+	private int width, height;
+
+	/**
+	 * the sums of the red, green and blue components of the samples of each pixel;
+	 * the components of pixel (i, j) are at indices 3*(j*width+i), 3*(j*width+i)+1 and 3*(j*width+i)+2
+	 */
+	private float[] sums;
+
+	/**
+	 * the number of samples of each pixel; the number of samples of pixel (i, j) is at index j*width+i
+	 */
+	private int[] sampleCounts;
+
+	/**
+	 * the factor by which the colours are multiplied before they are tone-mapped
+	 */
+	private double exposure = 1;
+
+	private ToneMappingType toneMappingType = ToneMappingType.CLAMP;
+
+	/**
+	 * Create an empty buffer for an image of width x height pixels
+	 * @param width
+	 * @param height
+	 */
+	public AccumulationBuffer(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+		sums = new float[3*width*height];
+		sampleCounts = new int[width*height];
+	}
+
+	/**
+	 * Create a copy of the original
+	 * @param original
+	 */
+	public AccumulationBuffer(AccumulationBuffer original)
+	{
+		width = original.getWidth();
+		height = original.getHeight();
+		sums = original.sums.clone();
+		sampleCounts = original.sampleCounts.clone();
+		exposure = original.getExposure();
+		toneMappingType = original.getToneMappingType();
+	}
+
+	@Override
+	public AccumulationBuffer clone()
+	{
+		return new AccumulationBuffer(this);
+	}
+
+
+	/////////////////////////
+	// GET AND SET METHODS //
+	/////////////////////////
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public double getExposure() {
+		return exposure;
+	}
+
+	public void setExposure(double exposure) {
+		this.exposure = exposure;
+	}
+
+	public ToneMappingType getToneMappingType() {
+		return toneMappingType;
+	}
+
+	public void setToneMappingType(ToneMappingType toneMappingType) {
+		this.toneMappingType = toneMappingType;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return	the number of samples of pixel (i, j)
+	 */
+	public int getSampleCount(int i, int j)
+	{
+		return sampleCounts[j*width+i];
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return	the (linear, unclamped) colour of pixel (i, j), i.e. the mean of its samples; black if there are none
+	 */
+	public DoubleColour getColour(int i, int j)
+	{
+		int k = j*width+i, n = sampleCounts[k];
+		if(n == 0) return DoubleColour.BLACK;
+		return new DoubleColour(sums[3*k]/(double)n, sums[3*k+1]/(double)n, sums[3*k+2]/(double)n);
+	}
+
+
+	//////////////////
+	// ACCUMULATION //
+	//////////////////
+
+	/**
+	 * Add a sample to pixel (i, j)
+	 * @param i
+	 * @param j
+	 * @param colour	the colour of the sample
+	 */
+	public void addSample(int i, int j, DoubleColour colour)
+	{
+		addSamples(i, j, colour.getR(), colour.getG(), colour.getB(), 1);
+	}
+
+	/**
+	 * Add n samples to pixel (i, j)
+	 * @param i
+	 * @param j
+	 * @param sumR	the sum of the red components of the colours of the samples
+	 * @param sumG	the sum of the green components
+	 * @param sumB	the sum of the blue components
+	 * @param n	the number of samples
+	 */
+	public void addSamples(int i, int j, double sumR, double sumG, double sumB, int n)
+	{
+		int k = j*width+i;
+		sums[3*k] += sumR;
+		sums[3*k+1] += sumG;
+		sums[3*k+2] += sumB;
+		sampleCounts[k] += n;
+	}
+
+	/**
+	 * Add all the samples in <i>other</i>, a buffer of the same size, to this buffer,
+	 * e.g. to merge renders of the same image calculated separately
+	 * @param other
+	 */
+	public void add(AccumulationBuffer other)
+	{
+		if((other.getWidth() != width) || (other.getHeight() != height))
+			throw new IllegalArgumentException("AccumulationBuffer::add: the buffers have different sizes ("+width+"x"+height+" and "+other.getWidth()+"x"+other.getHeight()+")");
+
+		for(int k=0; k<sums.length; k++) sums[k] += other.sums[k];
+		for(int k=0; k<sampleCounts.length; k++) sampleCounts[k] += other.sampleCounts[k];
+	}
+
+	/**
+	 * Forget all samples
+	 */
+	public void clear()
+	{
+		Arrays.fill(sums, 0);
+		Arrays.fill(sampleCounts, 0);
+	}
+
+
+	//////////////////
+	// TONE MAPPING //
+	//////////////////
+
+	/**
+	 * @param c	a colour component, multiplied by the exposure
+	 * @return	the tone-mapped colour component, in the range [0, 1]
+	 */
+	private double toneMap(double c)
+	{
+		if(c <= 0) return 0;
+		switch(toneMappingType)
+		{
+		case REINHARD:
+			return c/(1+c);
+		case CLAMP:
+		default:
+			return Math.min(c, 1);
+		}
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @return	the tone-mapped colour of pixel (i, j), in the format of BufferedImage.getRGB
+	 */
+	public int getToneMappedRGB(int i, int j)
+	{
+		int k = j*width+i, n = sampleCounts[k];
+		if(n == 0) return DoubleColour.BLACK.getRGB();
+		double f = exposure/n;
+		return
+				(255 << 24) |
+				(int)(255*toneMap(f*sums[3*k])) << 16 |
+				(int)(255*toneMap(f*sums[3*k+1])) << 8 |
+				(int)(255*toneMap(f*sums[3*k+2]));
+	}
+
+	/**
+	 * Draw the tone-mapped image into <i>image</i>, which must have the same size as the buffer
+	 * @param image
+	 */
+	public void drawToneMappedImage(BufferedImage image)
+	{
+		for(int j=0; j<height; j++)
+			for(int i=0; i<width; i++)
+				image.setRGB(i, j, getToneMappedRGB(i, j));
+	}
+
+
+	///////////////
+	// PFM FILES //
+	///////////////
+
+	/**
+	 * Save the (linear, unclamped) mean colours of the pixels as a colour PFM (portable float map) file
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void savePFM(String filename)
+	throws IOException
+	{
+		float[] values = new float[3*width*height];
+		for(int k=0; k<sampleCounts.length; k++)
+		{
+			int n = sampleCounts[k];
+			if(n > 0) for(int c=0; c<3; c++) values[3*k+c] = sums[3*k+c]/n;
+		}
+		writePFM(filename, values, 3);
+	}
+
+	/**
+	 * Save the number of samples of each pixel as a greyscale PFM (portable float map) file
+	 * @param filename
+	 * @throws IOException
+	 */
+	public void saveSampleCountsPFM(String filename)
+	throws IOException
+	{
+		float[] values = new float[width*height];
+		for(int k=0; k<sampleCounts.length; k++) values[k] = sampleCounts[k];
+		writePFM(filename, values, 1);
+	}
+
+	/**
+	 * Load a buffer from a colour PFM file (e.g. one saved with savePFM) and, optionally, a greyscale PFM file
+	 * with the corresponding sample counts (e.g. one saved with saveSampleCountsPFM).
+	 * @param filename	the name of the colour PFM file
+	 * @param sampleCountsFilename	the name of the PFM file containing the sample counts; if null, each pixel is taken to have one sample
+	 * @return	the buffer
+	 * @throws IOException
+	 */
+	public static AccumulationBuffer loadPFM(String filename, String sampleCountsFilename)
+	throws IOException
+	{
+		int[] size = new int[2];
+		float[] colours = readPFM(filename, 3, size);
+		float[] counts = (sampleCountsFilename == null)?null:readPFM(sampleCountsFilename, 1, size);
+
+		AccumulationBuffer buffer = new AccumulationBuffer(size[0], size[1]);
+		for(int k=0; k<buffer.sampleCounts.length; k++)
+		{
+			int n = (counts == null)?1:Math.round(counts[k]);
+			buffer.sampleCounts[k] = n;
+			for(int c=0; c<3; c++) buffer.sums[3*k+c] = n*colours[3*k+c];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Write a PFM file.
+	 * The rows of a PFM file go from the bottom of the image to the top; the values are little-endian floats.
+	 * @param filename
+	 * @param values	the values, channel by channel, pixel by pixel, row by row, starting with the top row
+	 * @param channels	3 for a colour PFM file, 1 for a greyscale PFM file
+	 * @throws IOException
+	 */
+	private void writePFM(String filename, float[] values, int channels)
+	throws IOException
+	{
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(filename));
+		try
+		{
+			out.write((((channels == 3)?"PF":"Pf") + "\n" + width + " " + height + "\n-1.0\n").getBytes("US-ASCII"));
+
+			ByteBuffer row = ByteBuffer.allocate(4*channels*width).order(ByteOrder.LITTLE_ENDIAN);
+			for(int j=height-1; j>=0; j--)
+			{
+				row.clear();
+				for(int k=channels*j*width; k<channels*(j+1)*width; k++) row.putFloat(values[k]);
+				out.write(row.array());
+			}
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	/**
+	 * Read a PFM file
+	 * @param filename
+	 * @param channels	3 for a colour PFM file, 1 for a greyscale PFM file
+	 * @param size	if size[0] and size[1] are 0, the width and height of the image are returned in them;
+	 * otherwise, they are the required width and height
+	 * @return	the values, channel by channel, pixel by pixel, row by row, starting with the top row
+	 * @throws IOException
+	 */
+	private static float[] readPFM(String filename, int channels, int[] size)
+	throws IOException
+	{
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+		try
+		{
+			String type = readPFMToken(in);
+			if(!type.equals((channels == 3)?"PF":"Pf"))
+				throw new IOException("AccumulationBuffer::readPFM: "+filename+" is not a "+((channels == 3)?"colour":"greyscale")+" PFM file");
+			int
+				w = Integer.parseInt(readPFMToken(in)),
+				h = Integer.parseInt(readPFMToken(in));
+			double scale = Double.parseDouble(readPFMToken(in));
+
+			if((size[0] == 0) && (size[1] == 0))
+			{
+				size[0] = w;
+				size[1] = h;
+			}
+			else if((size[0] != w) || (size[1] != h))
+				throw new IOException("AccumulationBuffer::readPFM: "+filename+" has size "+w+"x"+h+", not "+size[0]+"x"+size[1]);
+
+			float[] values = new float[channels*w*h];
+			byte[] bytes = new byte[4*channels*w];
+			ByteBuffer row = ByteBuffer.wrap(bytes).order((scale < 0)?ByteOrder.LITTLE_ENDIAN:ByteOrder.BIG_ENDIAN);
+			for(int j=h-1; j>=0; j--)
+			{
+				in.readFully(bytes);
+				row.rewind();
+				for(int k=channels*j*w; k<channels*(j+1)*w; k++) values[k] = row.getFloat();
+			}
+			return values;
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * @param in
+	 * @return	the next white-space-delimited token of the header of a PFM file; consumes the single white-space character after it
+	 * @throws IOException
+	 */
+	private static String readPFMToken(DataInputStream in)
+	throws IOException
+	{
+		StringBuilder token = new StringBuilder();
+		int c;
+		// skip leading white space
+		do c = in.read(); while((c != -1) && Character.isWhitespace(c));
+		while((c != -1) && !Character.isWhitespace(c))
+		{
+			token.append((char)c);
+			c = in.read();
+		}
+		return token.toString();
+	}
+}
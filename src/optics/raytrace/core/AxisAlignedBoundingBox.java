@@ -0,0 +1,423 @@
+package optics.raytrace.core;
+
+import java.io.Serializable;
+
+import math.MyMath;
+import math.Vector3D;
+
+/**
+ * An axis-aligned bounding box, i.e. a cuboid with sides parallel to the coordinate planes.
+ *
+ * Bounding boxes are used to find out quickly which scene objects a ray cannot possibly intersect.
+ * They are conservative, i.e. any point on the surface of a scene object lies inside its bounding box,
+ * but the bounding box can be (much) bigger than the scene object.
+ * A scene object that does not know its extent (or that is infinitely big, like a plane) returns
+ * the INFINITE bounding box, which never allows any rays to be discarded.
+ *
+ * Objects of this class are immutable.
+ *
+ * @author Johannes Courtial
+ */
+public class AxisAlignedBoundingBox implements Serializable
+{
+	private static final long serialVersionUID = -6178389214312542301L;
+
+	/**
+	 * the bounding box of everything
+	 */
+	public static final AxisAlignedBoundingBox INFINITE = new AxisAlignedBoundingBox(
+			Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+			Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY,
+			Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY
+		);
+
+	/**
+	 * the bounding box of nothing
+	 */
+	public static final AxisAlignedBoundingBox EMPTY = new AxisAlignedBoundingBox(
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+			Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+		);
+
+	private final double xMin, xMax, yMin, yMax, zMin, zMax;
+
+	/**
+	 * @param xMin
+	 * @param xMax
+	 * @param yMin
+	 * @param yMax
+	 * @param zMin
+	 * @param zMax
+	 */
+	public AxisAlignedBoundingBox(double xMin, double xMax, double yMin, double yMax, double zMin, double zMax)
+	{
+		this.xMin = xMin;
+		this.xMax = xMax;
+		this.yMin = yMin;
+		this.yMax = yMax;
+		this.zMin = zMin;
+		this.zMax = zMax;
+	}
+
+	/**
+	 * @param min	the corner with the smallest x, y and z coordinates
+	 * @param max	the corner with the largest x, y and z coordinates
+	 */
+	public AxisAlignedBoundingBox(Vector3D min, Vector3D max)
+	{
+		this(min.x, max.x, min.y, max.y, min.z, max.z);
+	}
+
+
+	//
+	// bounding boxes of simple shapes
+	//
+
+	/**
+	 * @param points
+	 * @return	the smallest axis-aligned bounding box that contains all the points
+	 */
+	public static AxisAlignedBoundingBox getBoundingBoxOfPoints(Vector3D ... points)
+	{
+		double
+			xMin = Double.POSITIVE_INFINITY, xMax = Double.NEGATIVE_INFINITY,
+			yMin = Double.POSITIVE_INFINITY, yMax = Double.NEGATIVE_INFINITY,
+			zMin = Double.POSITIVE_INFINITY, zMax = Double.NEGATIVE_INFINITY;
+
+		for(Vector3D p:points)
+		{
+			xMin = Math.min(xMin, p.x);
+			xMax = Math.max(xMax, p.x);
+			yMin = Math.min(yMin, p.y);
+			yMax = Math.max(yMax, p.y);
+			zMin = Math.min(zMin, p.z);
+			zMax = Math.max(zMax, p.z);
+		}
+
+		return new AxisAlignedBoundingBox(xMin, xMax, yMin, yMax, zMin, zMax);
+	}
+
+	/**
+	 * @param centre
+	 * @param radius	radius; a negative radius (an inside-out sphere) is treated like a positive one
+	 * @return	the bounding box of a sphere
+	 */
+	public static AxisAlignedBoundingBox getBoundingBoxOfSphere(Vector3D centre, double radius)
+	{
+		double r = Math.abs(radius);
+		return new AxisAlignedBoundingBox(
+				centre.x - r, centre.x + r,
+				centre.y - r, centre.y + r,
+				centre.z - r, centre.z + r
+			);
+	}
+
+	/**
+	 * A disc of radius r and with normal n extends, in the direction of the coordinate axis i, by r*sqrt(1-n_i^2)
+	 * either side of its centre.
+	 * @param centre
+	 * @param normal	normal to the plane of the disc; does not need to be normalised
+	 * @param radius
+	 * @return	the bounding box of a disc
+	 */
+	public static AxisAlignedBoundingBox getBoundingBoxOfDisc(Vector3D centre, Vector3D normal, double radius)
+	{
+		Vector3D n = normal.getNormalised();
+		double
+			r = Math.abs(radius),
+			dx = r*Math.sqrt(Math.max(0, 1-n.x*n.x)),
+			dy = r*Math.sqrt(Math.max(0, 1-n.y*n.y)),
+			dz = r*Math.sqrt(Math.max(0, 1-n.z*n.z));
+		return new AxisAlignedBoundingBox(
+				centre.x - dx, centre.x + dx,
+				centre.y - dy, centre.y + dy,
+				centre.z - dz, centre.z + dz
+			);
+	}
+
+
+	//
+	// getters
+	//
+
+	public double getXMin() {
+		return xMin;
+	}
+
+	public double getXMax() {
+		return xMax;
+	}
+
+	public double getYMin() {
+		return yMin;
+	}
+
+	public double getYMax() {
+		return yMax;
+	}
+
+	public double getZMin() {
+		return zMin;
+	}
+
+	public double getZMax() {
+		return zMax;
+	}
+
+	/**
+	 * @return	the corner with the smallest x, y and z coordinates
+	 */
+	public Vector3D getMin()
+	{
+		return new Vector3D(xMin, yMin, zMin);
+	}
+
+	/**
+	 * @return	the corner with the largest x, y and z coordinates
+	 */
+	public Vector3D getMax()
+	{
+		return new Vector3D(xMax, yMax, zMax);
+	}
+
+	/**
+	 * @return	the centre of the box
+	 */
+	public Vector3D getCentre()
+	{
+		return new Vector3D(0.5*(xMin+xMax), 0.5*(yMin+yMax), 0.5*(zMin+zMax));
+	}
+
+	/**
+	 * @param axis	0 for x, 1 for y, 2 for z
+	 * @return	the minimum coordinate in the direction of the given axis
+	 */
+	public double getMin(int axis)
+	{
+		switch(axis)
+		{
+		case 0:
+			return xMin;
+		case 1:
+			return yMin;
+		default:
+			return zMin;
+		}
+	}
+
+	/**
+	 * @param axis	0 for x, 1 for y, 2 for z
+	 * @return	the maximum coordinate in the direction of the given axis
+	 */
+	public double getMax(int axis)
+	{
+		switch(axis)
+		{
+		case 0:
+			return xMax;
+		case 1:
+			return yMax;
+		default:
+			return zMax;
+		}
+	}
+
+
+	//
+	// useful methods
+	//
+
+	/**
+	 * @return	true if the box contains no points
+	 */
+	public boolean isEmpty()
+	{
+		return (xMin > xMax) || (yMin > yMax) || (zMin > zMax);
+	}
+
+	/**
+	 * @return	true if the box extends infinitely in any direction (or if any of its coordinates is NaN)
+	 */
+	public boolean isInfinite()
+	{
+		return !(
+				Double.isFinite(xMin) && Double.isFinite(xMax) &&
+				Double.isFinite(yMin) && Double.isFinite(yMax) &&
+				Double.isFinite(zMin) && Double.isFinite(zMax)
+			);
+	}
+
+	/**
+	 * @return	the surface area of the box; used as a measure of the probability that a random ray hits the box
+	 */
+	public double getSurfaceArea()
+	{
+		if(isEmpty()) return 0;
+		double
+			dx = xMax - xMin,
+			dy = yMax - yMin,
+			dz = zMax - zMin;
+		return 2*(dx*dy + dy*dz + dz*dx);
+	}
+
+	/**
+	 * @param p
+	 * @return	true if the point p lies inside (or on the surface of) the box
+	 */
+	public boolean contains(Vector3D p)
+	{
+		return
+				(p.x >= xMin) && (p.x <= xMax) &&
+				(p.y >= yMin) && (p.y <= yMax) &&
+				(p.z >= zMin) && (p.z <= zMax);
+	}
+
+	/**
+	 * @param b
+	 * @return	the smallest box that contains both this box and b
+	 */
+	public AxisAlignedBoundingBox getUnionWith(AxisAlignedBoundingBox b)
+	{
+		if(b.isEmpty()) return this;
+		if(isEmpty()) return b;
+		return new AxisAlignedBoundingBox(
+				Math.min(xMin, b.xMin), Math.max(xMax, b.xMax),
+				Math.min(yMin, b.yMin), Math.max(yMax, b.yMax),
+				Math.min(zMin, b.zMin), Math.max(zMax, b.zMax)
+			);
+	}
+
+	/**
+	 * @param b
+	 * @return	the box that contains all the points that lie inside both this box and b
+	 */
+	public AxisAlignedBoundingBox getIntersectionWith(AxisAlignedBoundingBox b)
+	{
+		return new AxisAlignedBoundingBox(
+				Math.max(xMin, b.xMin), Math.min(xMax, b.xMax),
+				Math.max(yMin, b.yMin), Math.min(yMax, b.yMax),
+				Math.max(zMin, b.zMin), Math.min(zMax, b.zMax)
+			);
+	}
+
+	/**
+	 * @param margin
+	 * @return	this box, expanded by margin in all directions
+	 */
+	public AxisAlignedBoundingBox getExpanded(double margin)
+	{
+		if(isEmpty()) return this;
+		return new AxisAlignedBoundingBox(
+				xMin - margin, xMax + margin,
+				yMin - margin, yMax + margin,
+				zMin - margin, zMax + margin
+			);
+	}
+
+	/**
+	 * Calculate the bounding box of this box after it has been transformed.
+	 * The result is exact for affine transformations (such as translations, rotations and linear transformations),
+	 * as those map the box onto a parallelepiped whose corners are the transformed corners of the box.
+	 * @param t
+	 * @return	the bounding box of the transformed box
+	 */
+	public AxisAlignedBoundingBox transform(Transformation t)
+	{
+		if(isEmpty() || isInfinite()) return this;
+
+		return getBoundingBoxOfPoints(
+				t.transformPosition(new Vector3D(xMin, yMin, zMin)),
+				t.transformPosition(new Vector3D(xMin, yMin, zMax)),
+				t.transformPosition(new Vector3D(xMin, yMax, zMin)),
+				t.transformPosition(new Vector3D(xMin, yMax, zMax)),
+				t.transformPosition(new Vector3D(xMax, yMin, zMin)),
+				t.transformPosition(new Vector3D(xMax, yMin, zMax)),
+				t.transformPosition(new Vector3D(xMax, yMax, zMin)),
+				t.transformPosition(new Vector3D(xMax, yMax, zMax))
+			);
+	}
+
+	/**
+	 * Calculate the distance along a ray at which the ray enters the box.
+	 * The box is expanded slightly to avoid rays that graze it being missed due to rounding errors.
+	 * @param p	start point of the ray
+	 * @param d	normalised direction of the ray
+	 * @param maxDistance	ray segments beyond this distance are ignored
+	 * @return	the distance (>= 0) from p at which the ray enters the box, or Double.POSITIVE_INFINITY if the ray misses the box within maxDistance
+	 */
+	public double getRayEntryDistance(Vector3D p, Vector3D d, double maxDistance)
+	{
+		return getRayEntryDistance(
+				xMin - MyMath.TINY, xMax + MyMath.TINY,
+				yMin - MyMath.TINY, yMax + MyMath.TINY,
+				zMin - MyMath.TINY, zMax + MyMath.TINY,
+				p.x, p.y, p.z,
+				1./d.x, 1./d.y, 1./d.z,
+				maxDistance
+			);
+	}
+
+	/**
+	 * The slab test, with everything passed as primitive doubles so that no objects need to be created.
+	 * @param xMin
+	 * @param xMax
+	 * @param yMin
+	 * @param yMax
+	 * @param zMin
+	 * @param zMax
+	 * @param px	x coordinate of the ray start point
+	 * @param py	y coordinate of the ray start point
+	 * @param pz	z coordinate of the ray start point
+	 * @param invDx	1 / (x component of the normalised ray direction)
+	 * @param invDy	1 / (y component of the normalised ray direction)
+	 * @param invDz	1 / (z component of the normalised ray direction)
+	 * @param maxDistance
+	 * @return	the distance (>= 0) from p at which the ray enters the box, or Double.POSITIVE_INFINITY if the ray misses the box within maxDistance
+	 */
+	public static double getRayEntryDistance(
+			double xMin, double xMax, double yMin, double yMax, double zMin, double zMax,
+			double px, double py, double pz,
+			double invDx, double invDy, double invDz,
+			double maxDistance
+		)
+	{
+		double tNear = 0, tFar = maxDistance, t1, t2;
+
+		// x slab
+		t1 = (xMin - px)*invDx;
+		t2 = (xMax - px)*invDx;
+		// if the ray runs parallel to the slab (invD infinite) and starts on its boundary, 0*infinity = NaN; treat as "inside"
+		if(t1 != t1) t1 = Double.NEGATIVE_INFINITY;
+		if(t2 != t2) t2 = Double.POSITIVE_INFINITY;
+		tNear = Math.max(tNear, Math.min(t1, t2));
+		tFar = Math.min(tFar, Math.max(t1, t2));
+		if(tNear > tFar) return Double.POSITIVE_INFINITY;
+
+		// y slab
+		t1 = (yMin - py)*invDy;
+		t2 = (yMax - py)*invDy;
+		if(t1 != t1) t1 = Double.NEGATIVE_INFINITY;
+		if(t2 != t2) t2 = Double.POSITIVE_INFINITY;
+		tNear = Math.max(tNear, Math.min(t1, t2));
+		tFar = Math.min(tFar, Math.max(t1, t2));
+		if(tNear > tFar) return Double.POSITIVE_INFINITY;
+
+		// z slab
+		t1 = (zMin - pz)*invDz;
+		t2 = (zMax - pz)*invDz;
+		if(t1 != t1) t1 = Double.NEGATIVE_INFINITY;
+		if(t2 != t2) t2 = Double.POSITIVE_INFINITY;
+		tNear = Math.max(tNear, Math.min(t1, t2));
+		tFar = Math.min(tFar, Math.max(t1, t2));
+		if(tNear > tFar) return Double.POSITIVE_INFINITY;
+
+		return tNear;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "AxisAlignedBoundingBox [x: "+xMin+" to "+xMax+", y: "+yMin+" to "+yMax+", z: "+zMin+" to "+zMax+"]";
+	}
+}
@@ -29,6 +29,11 @@ implements Serializable, Cloneable
 	private BufferedImage
 		image;	// the image "recorded" by the detector
 	
+	/**
+	 * if not null, the colours of all renders of each pixel are accumulated in here, and the image shows the tone-mapped mean colours
+	 */
+	private transient AccumulationBuffer accumulationBuffer;
+	
 	/**
 	 * Construct a detector array from its position, the orientation of the 
 	 * detector is then given by the horizontal and Vector3D spans.  
@@ -112,6 +117,49 @@ implements Serializable, Cloneable
 		this.image = image;
 	}
 
+	/**
+	 * @return	the buffer in which the colours of all renders of each pixel are accumulated; null if the detector doesn't accumulate
+	 */
+	public AccumulationBuffer getAccumulationBuffer() {
+		return accumulationBuffer;
+	}
+
+	/**
+	 * Set the buffer in which the colours of all renders of each pixel are accumulated, e.g. one loaded from a file to resume a render;
+	 * null stops the detector from accumulating
+	 * @param accumulationBuffer
+	 */
+	public void setAccumulationBuffer(AccumulationBuffer accumulationBuffer) {
+		this.accumulationBuffer = accumulationBuffer;
+	}
+	
+	/**
+	 * Start accumulating the colours of all subsequent renders of each pixel in a new, empty, accumulation buffer
+	 */
+	public void startAccumulating()
+	{
+		accumulationBuffer = new AccumulationBuffer(detectorPixelsHorizontal, detectorPixelsVertical);
+	}
+
+	/**
+	 * Record the colour calculated for pixel (i, j).
+	 * If the detector accumulates, the colour gets added to the accumulation buffer and the pixel in the image shows the
+	 * tone-mapped mean of all colours recorded for it; otherwise the pixel in the image simply gets set to the colour.
+	 * Different threads can record the colours of different pixels simultaneously.
+	 * @param i
+	 * @param j
+	 * @param colour
+	 */
+	public void recordPixelColour(int i, int j, DoubleColour colour)
+	{
+		if(accumulationBuffer == null) setPixelColour(i, j, colour.getRGB());
+		else
+		{
+			accumulationBuffer.addSample(i, j, colour);
+			setPixelColour(i, j, accumulationBuffer.getToneMappedRGB(i, j));
+		}
+	}
+
 	public Vector3D getHorizontalSpanVector() {
 		return getSpanVector1();
 	}
@@ -141,6 +189,13 @@ implements Serializable, Cloneable
 	 */
 	public void allocateImageMemory()
 	{
+		// if the detector accumulates, but the size of the image has changed, the accumulated colours are meaningless
+		if(
+				(accumulationBuffer != null) &&
+				((accumulationBuffer.getWidth() != detectorPixelsHorizontal) || (accumulationBuffer.getHeight() != detectorPixelsVertical))
+			)
+			startAccumulating();
+
 		image = new BufferedImage(
 				detectorPixelsHorizontal,
 				detectorPixelsVertical,
@@ -166,7 +221,7 @@ implements Serializable, Cloneable
 	 */
 	public Vector3D getPositionOnPixel(double i, double j)
 	{
-		return getPixelCentrePosition(i+Math.random()-0.5, j+Math.random()-0.5);
+		return getPixelCentrePosition(i+Sampler.random()-0.5, j+Sampler.random()-0.5);
 //		return getCorner().getSumWith(
 //				getHorizontalSpanVector().getProductWith(((double)i)/(getDetectorPixelsHorizontal()-1.0))
 //		).getSumWith(
@@ -200,13 +255,26 @@ implements Serializable, Cloneable
 	/**
 	 * This method will save the detector image in a given format.
 	 * Possible formats include all those mentioned in javax.imageio.ImageIO.write,
-	 * plus CSV (comma-separated).
+	 * plus CSV (comma-separated) and PFM (portable float map).
+	 * A PFM file contains the linear, unclamped, colours from the accumulation buffer, if there is one
+	 * (see AccumulationBuffer.savePFM), otherwise the colours of the image.
 	 * @param filename The name of the file that the image is saved as.
 	 * @param format The format of the image.
 	 */
 	public void saveImage(String filename, String format) {
 		try {
-			if(format == "CSV") {
+			if("PFM".equals(format)) {
+				AccumulationBuffer buffer = accumulationBuffer;
+				if(buffer == null)
+				{
+					// there is no accumulation buffer; save the image instead
+					buffer = new AccumulationBuffer(image.getWidth(), image.getHeight());
+					for (int j=0; j<image.getHeight(); j++)
+						for (int i=0; i<image.getWidth(); i++)
+							buffer.addSample(i, j, new DoubleColour(image.getRGB(i, j)));
+				}
+				buffer.savePFM(filename);
+			} else if(format == "CSV") {
 				FileOutputStream fileOutputStream = new FileOutputStream(filename);
 				PrintStream printStream = new PrintStream(fileOutputStream);
 				System.out.println("saving a CSV file..." + toString());
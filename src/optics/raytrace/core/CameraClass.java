@@ -24,6 +24,21 @@ public abstract class CameraClass implements Camera
 	protected int maxTraceLevel;
 	protected CentredCCD ccd;
 	protected RaytraceExceptionHandler raytraceExceptionHandler;
+	
+	/**
+	 * width and height, in pixels, of the tiles in which the image gets rendered
+	 */
+	protected int renderTileSize = RenderScheduler.DEFAULT_TILE_SIZE;
+	
+	/**
+	 * the type of sampler that provides the "random" numbers used while rendering, e.g. for anti-aliasing and blur
+	 */
+	protected SamplerType samplerType = SamplerType.RANDOM;
+	
+	/**
+	 * the seed of the sampler; rendering the same scene with the same seed gives the same image
+	 */
+	protected long samplerSeed = 0;
 	          
 	/**
 	 * Create a new camera
@@ -108,6 +123,9 @@ public abstract class CameraClass implements Camera
 		description = original.getDescription();
 		maxTraceLevel = original.getMaxTraceLevel();
 		raytraceExceptionHandler = original.getRaytraceExceptionHandler();
+		renderTileSize = original.getRenderTileSize();
+		samplerType = original.getSamplerType();
+		samplerSeed = original.getSamplerSeed();
 	}
 	
 	/* (non-Javadoc)
@@ -159,6 +177,62 @@ public abstract class CameraClass implements Camera
 		this.maxTraceLevel = maxTraceLevel;
 	}
 
+	/**
+	 * @return	the width and height, in pixels, of the tiles in which the image gets rendered
+	 */
+	public int getRenderTileSize()
+	{
+		return renderTileSize;
+	}
+
+	/**
+	 * Set the width and height, in pixels, of the tiles in which the image gets rendered, e.g. 16 or 32.
+	 * Smaller tiles balance the load between the render threads better; larger tiles have less overhead.
+	 * @param renderTileSize
+	 */
+	public void setRenderTileSize(int renderTileSize)
+	{
+		this.renderTileSize = renderTileSize;
+	}
+
+	/**
+	 * @return	the type of sampler that provides the "random" numbers used while rendering
+	 */
+	public SamplerType getSamplerType()
+	{
+		// cameras saved before there was a sampler type don't have one
+		if(samplerType == null) return SamplerType.RANDOM;
+		return samplerType;
+	}
+
+	/**
+	 * Set the type of sampler that provides the "random" numbers used while rendering.
+	 * Stratified and low-discrepancy (Halton) samplers reach the same noise level as a random sampler with fewer rays per pixel.
+	 * @param samplerType
+	 */
+	public void setSamplerType(SamplerType samplerType)
+	{
+		this.samplerType = samplerType;
+	}
+
+	/**
+	 * @return	the seed of the sampler
+	 */
+	public long getSamplerSeed()
+	{
+		return samplerSeed;
+	}
+
+	/**
+	 * Set the seed of the sampler; rendering the same scene with the same seed gives the same image,
+	 * irrespective of the number of render threads
+	 * @param samplerSeed
+	 */
+	public void setSamplerSeed(long samplerSeed)
+	{
+		this.samplerSeed = samplerSeed;
+	}
+
 	public CentredCCD getCCD() {
 		return ccd;
 	}
@@ -251,8 +325,62 @@ public abstract class CameraClass implements Camera
 		return ccd.getImage();
 	}
 	
+	/**
+	 * Calculate the colour of pixel (i, j) and store it in the CCD.
+	 * This gets called from the render threads, so it has to be thread-safe.
+	 * The render thread's sampler gets set up for pixel (i, j) first.
+	 * If the CCD accumulates the colours of several renders, the colour gets added to the CCD's accumulation buffer.
+	 * @param i
+	 * @param j
+	 * @param scene
+	 * @param lights
+	 */
+	public void renderPixel(int i, int j, SceneObject scene, LightSource lights)
+	{
+		// if the CCD accumulates, this is render pass no. (number of colours accumulated so far)
+		AccumulationBuffer accumulationBuffer = ccd.getAccumulationBuffer();
+		Sampler.useThreadSampler(getSamplerType(), samplerSeed).startPixel(
+				i, j,
+				(accumulationBuffer == null)?0:accumulationBuffer.getSampleCount(i, j)
+			);
+
+		DoubleColour c;
+		try {
+			c = calculatePixelColour(i, j, scene, lights);
+		} catch (RayTraceException e) {
+			if(e instanceof EvanescentException)
+				c = DoubleColour.BLACK;
+			else
+			{
+				c = DoubleColour.YELLOW;
+				e.printStackTrace();
+			}
+		}
+		catch(Exception e)
+		{
+			// if there is another exception, catch it here so that the rest of the image is rendered;
+			// but note that this should not happen!
+			c = DoubleColour.YELLOW;
+			e.printStackTrace();
+		}
+
+		ccd.recordPixelColour(i, j, c);
+	}
+	
+	/**
+	 * Called by takePhoto before any pixel is rendered.
+	 * Cameras that can pre-calculate quantities that are needed for every pixel (e.g. the points their pixels are focussed on)
+	 * can override this to do so once per render, rather than once per pixel or per ray.
+	 * Nothing needs to be done here by default.
+	 * @param scene
+	 * @param lights
+	 */
+	protected void prepareForRendering(SceneObject scene, LightSource lights)
+	{
+	}
+
 	/* (non-Javadoc)
-	 * (multi-threading code by Richard Bowman)
+	 * (multi-threading code originally by Richard Bowman; now tile-based, see RenderScheduler)
 	 * @see optics.raytrace.core.Camera#takePhoto(optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, optics.raytrace.GUI.core.RaytraceWorker)
 	 */
 	@Override
@@ -279,110 +407,12 @@ public abstract class CameraClass implements Camera
 			ccd.allocateImageMemory();
 		}
 		
-		class CameraWorker implements Runnable
-		{
-			public CameraWorker(CCD ccd, SceneObject scene, LightSource lights)
-			{
-				this.ccd=ccd;
-				this.scene=scene;
-				this.lights=lights;
-			}
-			
-			private CCD ccd;
-			private SceneObject scene;
-			private LightSource lights;
-			private int lineToRender;
-			
-			public void setLineToRender(int j) {lineToRender=j;}
-			@Override
-			public void run(){
-				//render a line
-				for (int i=0; i<ccd.getDetectorPixelsHorizontal(); i++) {
-					DoubleColour c;
-					try {
-						c = calculatePixelColour(i, lineToRender, scene, lights);
-					} catch (RayTraceException e) {
-						if(e instanceof EvanescentException)
-							c = DoubleColour.BLACK;
-						else
-						{
-							c = DoubleColour.YELLOW;
-							e.printStackTrace();
-						}
-					}
-					catch(Exception e)
-					{
-						// if there is another exception, catch it here so that the rest of the line is rendered;
-						// but note that this should not happen!
-						c = DoubleColour.YELLOW;
-						e.printStackTrace();
-					}
-
-					ccd.setPixelColour(i, lineToRender, c.getRGB());
-				}
-			}
-		}
-		
-		
-		int nthreads=Runtime.getRuntime().availableProcessors();
-		if(nthreads > 1) nthreads = nthreads - 1;	// leave one processor free to do GUI stuff
-		
-		CameraWorker[] workers= new CameraWorker[nthreads];
-		for(int i=0; i<nthreads; i++) workers[i]=new CameraWorker(ccd,scene,lights); //make an array of worker objects, which tell the threads what to do
-
-		long latestImageUpdateTimeMillis = -1;
-
-		// now calculate the image
-		for (int j=0; j<ccd.getDetectorPixelsVertical(); j+=nthreads) {
-			Thread[] threads=new Thread[nthreads];
-			for(int i=0; i<nthreads; i++) threads[i]=new Thread(workers[i]); //make new threads for the workers
-			for(int i=0; i<nthreads && i+j<ccd.getDetectorPixelsVertical(); i++){
-				workers[i].setLineToRender(j+i);				//assign one line of the image to each worker object
-				threads[i].start();								//and set them going
-			}
-			try
-			{
-				for(int i=0; i<nthreads; i++) threads[i].join();	//wait for all the workers to finish
-			}
-			catch (InterruptedException e)
-			{
-				// don't do anything, assuming (hoping?) that someone clicked the "Stop" button
-				// System.out.println("CameraClass::takePhoto: ");
-				// e.printStackTrace();
-			}
-			
-			// is this a RaytraceWorker?
-			if(raytraceWorker != null)
-			{
-				// check whether the calculation has been cancelled
-				if(raytraceWorker.isCancelled()) return ccd.getImage();
-
-				//
-				// give some feedback on progress
-				//
-				
-				// the simplest way of giving feedback (note that the method being called
-				// has to be thread-safe!)
-				raytraceWorker.setStatus(description + " rendering... (on "+nthreads+" processors/cores; " + 100*(j+1)/ccd.getDetectorPixelsVertical() + "% completed.)");
-
-				// check how long it has been since the latest image update
-				if((System.currentTimeMillis() - latestImageUpdateTimeMillis) > 100)
-				{
-					// it's been less than 100ms --- update the image again
-					raytraceWorker.showIntermediateImage(ccd.getImage());
-					latestImageUpdateTimeMillis = System.currentTimeMillis();
-				}
-				
-				// the proper way of giving feedback, which doesn't work though...
-				// raytraceWorker.setProgress((int)(100.*j/ccd.getDetectorPixelsVertical()));
-				// raytraceWorker.publish();	// doesn't work
-			}
-			else
-			{
-				// otherwise print feedback onto the console
-				System.out.println("Rendering line " + j + " out of " + ccd.getDetectorPixelsVertical() + " (on "+nthreads+" processors/cores)");
-			}
-		}
+		// let the camera pre-calculate whatever it can re-use for all pixels
+		prepareForRendering(scene, lights);
+
+		// render the image, tile by tile, on the persistent render threads
+		RenderScheduler.render(this, scene, lights, raytraceWorker);
+
 		return ccd.getImage();
 	}
 
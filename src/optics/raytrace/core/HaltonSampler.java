@@ -0,0 +1,59 @@
+package optics.raytrace.core;
+
+/**
+ * A sampler that returns low-discrepancy samples from the Halton sequence.
+ * 
+ * Dimension d of sample no. s is the radical inverse of s in base PRIMES[d], i.e. the digits of s, written in
+ * base PRIMES[d], mirrored at the decimal point.
+ * So that neighbouring pixels don't use exactly the same samples, the sequence is shifted (modulo 1) by
+ * a random amount for each pixel and each dimension (Cranley-Patterson rotation).
+ * Dimensions beyond the last prime in PRIMES are independent random numbers.
+ * 
+ * @author Johannes Courtial
+ */
+public class HaltonSampler extends Sampler
+{
+	/**
+	 * the bases of the first dimensions
+	 */
+	public static final int[] PRIMES = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53};
+	
+	public HaltonSampler(long seed)
+	{
+		super(seed);
+	}
+	
+	@Override
+	public SamplerType getSamplerType()
+	{
+		return SamplerType.HALTON;
+	}
+
+	@Override
+	public double getDouble()
+	{
+		int d = dimension++;
+		
+		if(d >= PRIMES.length) return random.nextDouble();
+
+		double value = radicalInverse(sampleIndex, PRIMES[d]) + toDouble(pixelSeed + d);
+		return (value >= 1)?(value - 1):value;
+	}
+
+	/**
+	 * @param i	a non-negative integer
+	 * @param base
+	 * @return	the radical inverse of i in the given base, in the range [0, 1)
+	 */
+	public static double radicalInverse(int i, int base)
+	{
+		double inverseBase = 1./base, factor = inverseBase, value = 0;
+		while(i > 0)
+		{
+			value += (i % base) * factor;
+			i /= base;
+			factor *= inverseBase;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,29 @@
+package optics.raytrace.core;
+
+/**
+ * A sampler that returns independent pseudo-random numbers.
+ * The numbers are generated by a SplittableRandom that gets seeded separately for each pixel
+ * (with a seed derived from the sampler's seed and the pixel coordinates).
+ * 
+ * @author Johannes Courtial
+ */
+public class RandomSampler extends Sampler
+{
+	public RandomSampler(long seed)
+	{
+		super(seed);
+	}
+	
+	@Override
+	public SamplerType getSamplerType()
+	{
+		return SamplerType.RANDOM;
+	}
+
+	@Override
+	public double getDouble()
+	{
+		dimension++;
+		return random.nextDouble();
+	}
+}
@@ -0,0 +1,134 @@
+package optics.raytrace.core;
+
+import optics.DoubleColour;
+
+/**
+ * The continuation of a ray that has been redirected by a surface.
+ *
+ * Surfaces that simply redirect a ray (for example transparent, refractive or ideal-thin-lens surfaces)
+ * used to calculate their colour by tracing the redirected ray through the scene, i.e. by calling
+ * scene.getColourAvoidingOrigin(...) recursively.
+ * A ray passing through a stack of such surfaces therefore resulted in deeply nested calls.
+ * Instead, such surfaces can now describe the redirected ray --- the new ray, the scene object it should avoid,
+ * the scene in which it should be traced, its trace level, and the factor by which its colour needs to be multiplied ---
+ * in a RayContinuation, which the caller then traces in a loop
+ * (see SceneObjectClass.getColourAtIntersection).
+ *
+ * A RayContinuation is re-used for all the redirected rays in one such loop.
+ * The colour factors of all the surfaces the ray has been redirected by are accumulated.
+ *
+ * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(Ray, RaySceneObjectIntersection, SceneObject, LightSource, int, RaytraceExceptionHandler, RayContinuation)
+ * @author Johannes Courtial
+ */
+public class RayContinuation
+{
+	/**
+	 * the redirected ray
+	 */
+	private Ray ray;
+
+	/**
+	 * the scene object the redirected ray leaves, which should therefore be avoided
+	 */
+	private SceneObjectPrimitive originObject;
+
+	/**
+	 * the scene in which the redirected ray is to be traced
+	 */
+	private SceneObject scene;
+
+	/**
+	 * the trace level with which the redirected ray is to be traced
+	 */
+	private int traceLevel;
+
+	/**
+	 * the factors by which the red, green and blue components of the colour of the redirected ray need to be multiplied,
+	 * accumulated over all the surfaces the ray has been redirected by so far
+	 */
+	private double redFactor, greenFactor, blueFactor;
+
+	/**
+	 * Create a new continuation, with colour factors 1
+	 */
+	public RayContinuation()
+	{
+		redFactor = 1;
+		greenFactor = 1;
+		blueFactor = 1;
+	}
+
+	/**
+	 * Set the continuation to a new ray, whose colour needs to be multiplied by <i>factor</i>
+	 * @param ray	the redirected ray
+	 * @param originObject	the scene object the redirected ray leaves
+	 * @param scene	the scene in which the redirected ray is to be traced
+	 * @param traceLevel	the trace level with which the redirected ray is to be traced
+	 * @param factor	the factor by which the colour of the redirected ray needs to be multiplied, e.g. a transmission coefficient
+	 */
+	public void continueWith(Ray ray, SceneObjectPrimitive originObject, SceneObject scene, int traceLevel, double factor)
+	{
+		this.ray = ray;
+		this.originObject = originObject;
+		this.scene = scene;
+		this.traceLevel = traceLevel;
+		redFactor *= factor;
+		greenFactor *= factor;
+		blueFactor *= factor;
+	}
+
+	/**
+	 * Set the continuation to a new ray, whose colour needs to be multiplied, component by component, by <i>filter</i>
+	 * @param ray	the redirected ray
+	 * @param originObject	the scene object the redirected ray leaves
+	 * @param scene	the scene in which the redirected ray is to be traced
+	 * @param traceLevel	the trace level with which the redirected ray is to be traced
+	 * @param filter	the colour by which the colour of the redirected ray needs to be multiplied
+	 */
+	public void continueWith(Ray ray, SceneObjectPrimitive originObject, SceneObject scene, int traceLevel, DoubleColour filter)
+	{
+		continueWith(ray, originObject, scene, traceLevel, 1);
+		redFactor *= filter.getR();
+		greenFactor *= filter.getG();
+		blueFactor *= filter.getB();
+	}
+
+	/**
+	 * @return	the redirected ray
+	 */
+	public Ray getRay() {
+		return ray;
+	}
+
+	/**
+	 * @return	the scene object the redirected ray leaves
+	 */
+	public SceneObjectPrimitive getOriginObject() {
+		return originObject;
+	}
+
+	/**
+	 * @return	the scene in which the redirected ray is to be traced
+	 */
+	public SceneObject getScene() {
+		return scene;
+	}
+
+	/**
+	 * @return	the trace level with which the redirected ray is to be traced
+	 */
+	public int getTraceLevel() {
+		return traceLevel;
+	}
+
+	/**
+	 * @param colour	the colour of the final redirected ray
+	 * @return	the colour, multiplied by the colour factors of all the surfaces the ray has been redirected by
+	 */
+	public DoubleColour getColour(DoubleColour colour)
+	{
+		if((redFactor == 1) && (greenFactor == 1) && (blueFactor == 1)) return colour;
+		if((redFactor == greenFactor) && (greenFactor == blueFactor)) return colour.multiply(redFactor);
+		return new DoubleColour(colour.getR()*redFactor, colour.getG()*greenFactor, colour.getB()*blueFactor);
+	}
+}
@@ -0,0 +1,203 @@
+package optics.raytrace.core;
+
+import math.*;
+
+/**
+ * A reusable record of the closest intersection found so far between a ray and scene objects.
+ *
+ * This is the allocation-free counterpart of RaySceneObjectIntersection, used with
+ * SceneObject.findClosestRayIntersectionAvoidingOrigin(Ray, SceneObjectPrimitive, RaySceneObjectIntersectionRecord).
+ * An intersection is stored as the distance along the ray (the ray parameter; the ray direction is normalised) and the
+ * scene-object primitive that was hit.
+ * The intersection point, the surface normal there, and a corresponding RaySceneObjectIntersection
+ * are calculated only when asked for.
+ *
+ * Note that the distance along the ray is not the same as the time of the intersection, which is what the
+ * variable t in Ray and RaySceneObjectIntersection stands for.
+ *
+ * A record is not thread-safe; each thread should use its own.
+ *
+ * @author Johannes Courtial
+ */
+public class RaySceneObjectIntersectionRecord
+{
+	/**
+	 * the ray whose intersections are being recorded
+	 */
+	private Ray ray;
+
+	/**
+	 * the distance along the ray of the closest intersection so far, or the maximum distance of interest if there is none yet
+	 */
+	private double distance;
+
+	/**
+	 * the primitive scene object involved in the closest intersection so far; null if there is none yet
+	 */
+	private SceneObjectPrimitive o;
+
+	/**
+	 * the intersection, if it has been handed over as a RaySceneObjectIntersection (or has already been calculated); null otherwise
+	 */
+	private RaySceneObjectIntersection intersection;
+
+	/**
+	 * the normalised outwards-facing surface normal at the intersection point, once it has been calculated
+	 */
+	private Vector3D normalisedOutwardsSurfaceNormal;
+
+	/**
+	 * Create a record of intersections with the given ray
+	 * @param ray
+	 */
+	public RaySceneObjectIntersectionRecord(Ray ray)
+	{
+		reset(ray, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Create an empty record, which needs to be reset with a ray before it is used
+	 */
+	public RaySceneObjectIntersectionRecord()
+	{
+		this(null);
+	}
+
+	/**
+	 * Forget any recorded intersection, and start recording intersections with the given ray,
+	 * considering only those closer than maxDistance
+	 * @param ray
+	 * @param maxDistance
+	 */
+	public void reset(Ray ray, double maxDistance)
+	{
+		this.ray = ray;
+		distance = maxDistance;
+		o = null;
+		intersection = null;
+		normalisedOutwardsSurfaceNormal = null;
+	}
+
+	/**
+	 * Record an intersection a distance <i>distance</i> along the ray with the primitive scene object o,
+	 * provided it is in front of the ray's start point and closer than the closest intersection so far
+	 * @param distance
+	 * @param o
+	 * @return	true if the intersection has been recorded, false otherwise
+	 */
+	public boolean record(double distance, SceneObjectPrimitive o)
+	{
+		if((distance > 0) && (distance < this.distance))
+		{
+			this.distance = distance;
+			this.o = o;
+			intersection = null;
+			normalisedOutwardsSurfaceNormal = null;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Record the intersection i, provided it is in front of the ray's start point and closer than the closest intersection so far.
+	 * This is how scene objects that don't calculate the distance along the ray themselves hand over their intersections.
+	 * @param i
+	 * @return	true if the intersection has been recorded, false otherwise
+	 */
+	public boolean record(RaySceneObjectIntersection i)
+	{
+		if(i == RaySceneObjectIntersection.NO_INTERSECTION) return false;
+
+		if(record(Vector3D.getDistance(i.p, ray.getP()), i.o))
+		{
+			intersection = i;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return	true if an intersection has been recorded
+	 */
+	public boolean isIntersection()
+	{
+		return o != null;
+	}
+
+	/**
+	 * @return	the ray
+	 */
+	public Ray getRay()
+	{
+		return ray;
+	}
+
+	/**
+	 * @return	the distance along the ray of the recorded intersection, or the maximum distance of interest if no intersection has been recorded
+	 */
+	public double getDistance()
+	{
+		return distance;
+	}
+
+	/**
+	 * @return	the primitive scene object involved in the recorded intersection; null if none has been recorded
+	 */
+	public SceneObjectPrimitive getSceneObjectPrimitive()
+	{
+		return o;
+	}
+
+	/**
+	 * @return	the position of the recorded intersection
+	 */
+	public Vector3D getP()
+	{
+		return getRaySceneObjectIntersection().p;
+	}
+
+	/**
+	 * @return	the time of the recorded intersection (for relativistic raytracing)
+	 */
+	public double getT()
+	{
+		// as the ray is a backwards-traced ray, advancing it means going backwards in time (see Ray.getAdvancedRay)
+		if(intersection != null) return intersection.t;
+		return ray.getT() - distance/SpaceTimeTransformation.c;
+	}
+
+	/**
+	 * @return	the normalised outwards-facing surface normal at the recorded intersection
+	 */
+	public Vector3D getNormalisedOutwardsSurfaceNormal()
+	{
+		if(normalisedOutwardsSurfaceNormal == null) normalisedOutwardsSurfaceNormal = getRaySceneObjectIntersection().getNormalisedOutwardsSurfaceNormal();
+		return normalisedOutwardsSurfaceNormal;
+	}
+
+	/**
+	 * @return	the recorded intersection as a RaySceneObjectIntersection, or RaySceneObjectIntersection.NO_INTERSECTION if none has been recorded
+	 */
+	public RaySceneObjectIntersection getRaySceneObjectIntersection()
+	{
+		if(o == null) return RaySceneObjectIntersection.NO_INTERSECTION;
+
+		if(intersection == null)
+		{
+			// calculate the intersection point exactly as Ray.getAdvancedRay does
+			Vector3D p = ray.getP(), d = ray.getD();
+			intersection = new RaySceneObjectIntersection(
+					new Vector3D(p.x + d.x*distance, p.y + d.y*distance, p.z + d.z*distance),
+					o,
+					getT()
+				);
+		}
+		return intersection;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "<RaySceneObjectIntersectionRecord, distance = "+distance+", o = "+o+">";
+	}
+}
@@ -0,0 +1,378 @@
+package optics.raytrace.core;
+
+import java.util.Arrays;
+
+import math.*;
+
+/**
+ * The parts of a ray that lie inside a scene object, as a list of spans along the ray.
+ *
+ * Each span is the stretch of the ray between the point where it enters the scene object and the point where it exits it again.
+ * Spans are described by the distances along the ray (the ray parameter; the ray direction is normalised) of these points,
+ * together with the scene-object primitives whose surfaces the ray crosses there.
+ * A span that starts at the ray's start point, because the ray starts inside the scene object, has no entry primitive (i.e. null),
+ * and neither do span ends through which no surface can be seen, e.g. because they are at infinity or because they
+ * lie on an invisible surface.
+ *
+ * Only the part of the ray in front of its start point is considered, so all distances are &gt;= 0.
+ * The spans are sorted by distance and do not overlap.
+ *
+ * Span lists are used to combine scene objects by constructive solid geometry (intersection, union, difference)
+ * without having to check for every intersection with every scene object whether or not it lies inside all the others;
+ * see SceneObject.getRaySpans(Ray, SceneObjectPrimitive).
+ *
+ * Note that the distance along the ray is not the same as the time of the intersection, which is what the
+ * variable t in Ray and RaySceneObjectIntersection stands for.
+ *
+ * @see optics.raytrace.core.RaySceneObjectIntersectionRecord
+ * @author Johannes Courtial
+ */
+public class RaySpanList
+{
+	private double[] entryDistances, exitDistances;
+	private SceneObjectPrimitive[] entryObjects, exitObjects;
+	private int numberOfSpans;
+
+	/**
+	 * Create an empty span list, i.e. that of a ray that lies completely outside the scene object
+	 */
+	public RaySpanList()
+	{
+		entryDistances = new double[2];
+		exitDistances = new double[2];
+		entryObjects = new SceneObjectPrimitive[2];
+		exitObjects = new SceneObjectPrimitive[2];
+		numberOfSpans = 0;
+	}
+
+	/**
+	 * @return	a span list that covers the whole ray, i.e. that of a ray that lies completely inside the scene object
+	 */
+	public static RaySpanList getCompleteRay()
+	{
+		RaySpanList spans = new RaySpanList();
+		spans.addSpan(0, null, Double.POSITIVE_INFINITY, null);
+		return spans;
+	}
+
+	/**
+	 * @param inside	true if the ray lies completely inside the scene object, false if it lies completely outside
+	 * @return	a span list that covers the whole ray if inside is true, and that is empty otherwise
+	 */
+	public static RaySpanList getCompleteRayOrNothing(boolean inside)
+	{
+		return inside?getCompleteRay():new RaySpanList();
+	}
+
+	/**
+	 * Calculate the spans of a scene object, but without calculating anything if the ray misses the scene object's bounding box,
+	 * in which case the ray lies either completely inside or completely outside the scene object
+	 * (completely inside e.g. if the scene object is the inverse of a sphere).
+	 * @param sceneObject
+	 * @param ray
+	 * @param originObject	the SceneObject on which ray originated
+	 * @return	the spans of the ray inside the scene object, or null if the scene object cannot calculate them
+	 */
+	public static RaySpanList getRaySpans(SceneObject sceneObject, Ray ray, SceneObjectPrimitive originObject)
+	{
+		AxisAlignedBoundingBox box = sceneObject.getAxisAlignedBoundingBox();
+		if(!box.isInfinite() && (box.getRayEntryDistance(ray.getP(), ray.getD(), Double.POSITIVE_INFINITY) == Double.POSITIVE_INFINITY))
+		{
+			// the ray misses the bounding box, and therefore all the surfaces of the scene object
+			return getCompleteRayOrNothing(sceneObject.insideObject(ray.getP()));
+		}
+
+		return sceneObject.getRaySpans(ray, originObject);
+	}
+
+
+	//
+	// building span lists
+	//
+
+	/**
+	 * Add a span to the end of the list.
+	 * The span is clipped to the part of the ray in front of the ray's start point; if the clipped span is empty, it is not added.
+	 * Spans must be added in order of increasing distance; a span that starts where the previous one ends is merged with it.
+	 * @param entryDistance	the distance along the ray at which the ray enters the scene object
+	 * @param entryObject	the primitive whose surface the ray crosses when entering, or null
+	 * @param exitDistance	the distance along the ray at which the ray exits the scene object
+	 * @param exitObject	the primitive whose surface the ray crosses when exiting, or null
+	 */
+	public void addSpan(double entryDistance, SceneObjectPrimitive entryObject, double exitDistance, SceneObjectPrimitive exitObject)
+	{
+		if(entryDistance <= 0)
+		{
+			// the ray starts inside
+			entryDistance = 0;
+			entryObject = null;
+		}
+		if(!(exitDistance > entryDistance)) return;
+
+		if((numberOfSpans > 0) && (entryDistance <= exitDistances[numberOfSpans-1]))
+		{
+			// the span continues the previous one
+			if(exitDistance > exitDistances[numberOfSpans-1])
+			{
+				exitDistances[numberOfSpans-1] = exitDistance;
+				exitObjects[numberOfSpans-1] = exitObject;
+			}
+			return;
+		}
+
+		if(numberOfSpans == entryDistances.length)
+		{
+			entryDistances = Arrays.copyOf(entryDistances, 2*numberOfSpans);
+			exitDistances = Arrays.copyOf(exitDistances, 2*numberOfSpans);
+			entryObjects = Arrays.copyOf(entryObjects, 2*numberOfSpans);
+			exitObjects = Arrays.copyOf(exitObjects, 2*numberOfSpans);
+		}
+		entryDistances[numberOfSpans] = entryDistance;
+		entryObjects[numberOfSpans] = entryObject;
+		exitDistances[numberOfSpans] = exitDistance;
+		exitObjects[numberOfSpans] = exitObject;
+		numberOfSpans++;
+	}
+
+	/**
+	 * Add the span(s) inside a scene object bounded by the two intersections with a quadric surface such as a sphere or a cylinder.
+	 * If the surface is inside out (e.g. a sphere with negative radius), the inside lies outside the two intersections.
+	 * If the ray starts on the surface of the primitive (i.e. if the origin object is the primitive), the intersection
+	 * closer than MyMath.TINY is taken to be at the ray's start point, so that it isn't reported as an intersection.
+	 * @param distance1	the distance along the ray of the first intersection
+	 * @param distance2	the distance along the ray of the second intersection (&gt;= distance1)
+	 * @param primitive	the quadric surface
+	 * @param insideOut	true if the inside lies outside the two intersections
+	 * @param originObject	the SceneObject on which ray originated
+	 */
+	public void addQuadricSpans(double distance1, double distance2, SceneObjectPrimitive primitive, boolean insideOut, SceneObjectPrimitive originObject)
+	{
+		if(originObject == primitive)
+		{
+			if(Math.abs(distance1) < MyMath.TINY) distance1 = 0;
+			if(Math.abs(distance2) < MyMath.TINY) distance2 = 0;
+		}
+
+		if(insideOut)
+		{
+			addSpan(Double.NEGATIVE_INFINITY, null, distance1, primitive);
+			addSpan(distance2, primitive, Double.POSITIVE_INFINITY, null);
+		}
+		else addSpan(distance1, primitive, distance2, primitive);
+	}
+
+
+	//
+	// getters
+	//
+
+	public int getNumberOfSpans()
+	{
+		return numberOfSpans;
+	}
+
+	public boolean isEmpty()
+	{
+		return numberOfSpans == 0;
+	}
+
+	/**
+	 * @param i
+	 * @return	the distance along the ray at which the ray enters the scene object at the start of the ith span
+	 */
+	public double getEntryDistance(int i)
+	{
+		return entryDistances[i];
+	}
+
+	/**
+	 * @param i
+	 * @return	the primitive whose surface the ray crosses at the start of the ith span, or null
+	 */
+	public SceneObjectPrimitive getEntryObject(int i)
+	{
+		return entryObjects[i];
+	}
+
+	/**
+	 * @param i
+	 * @return	the distance along the ray at which the ray exits the scene object at the end of the ith span
+	 */
+	public double getExitDistance(int i)
+	{
+		return exitDistances[i];
+	}
+
+	/**
+	 * @param i
+	 * @return	the primitive whose surface the ray crosses at the end of the ith span, or null
+	 */
+	public SceneObjectPrimitive getExitObject(int i)
+	{
+		return exitObjects[i];
+	}
+
+	/**
+	 * @param distance
+	 * @return	true if the point the given distance along the ray lies (strictly) inside one of the spans
+	 */
+	public boolean contains(double distance)
+	{
+		for(int i=0; (i<numberOfSpans) && (entryDistances[i] < distance); i++)
+			if(distance < exitDistances[i]) return true;
+		return false;
+	}
+
+
+	//
+	// combining span lists
+	//
+
+	/**
+	 * @param b
+	 * @return	the spans that lie inside both this and b
+	 */
+	public RaySpanList getIntersectionWith(RaySpanList b)
+	{
+		RaySpanList result = new RaySpanList();
+
+		int i=0, j=0;
+		while((i < numberOfSpans) && (j < b.numberOfSpans))
+		{
+			// the later entry and the earlier exit bound the overlap
+			boolean entryA = (entryDistances[i] >= b.entryDistances[j]);
+			boolean exitA = (exitDistances[i] <= b.exitDistances[j]);
+			result.addSpan(
+					entryA?entryDistances[i]:b.entryDistances[j],
+					entryA?entryObjects[i]:b.entryObjects[j],
+					exitA?exitDistances[i]:b.exitDistances[j],
+					exitA?exitObjects[i]:b.exitObjects[j]
+				);
+
+			// move on from the span that ends first
+			if(exitA) i++;
+			else j++;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @param b
+	 * @return	the spans that lie inside this or b (or both)
+	 */
+	public RaySpanList getUnionWith(RaySpanList b)
+	{
+		RaySpanList result = new RaySpanList();
+
+		int i=0, j=0;
+		while((i < numberOfSpans) || (j < b.numberOfSpans))
+		{
+			// add the span that starts first; addSpan merges overlapping spans
+			if((j == b.numberOfSpans) || ((i < numberOfSpans) && (entryDistances[i] <= b.entryDistances[j])))
+			{
+				result.addSpan(entryDistances[i], entryObjects[i], exitDistances[i], exitObjects[i]);
+				i++;
+			}
+			else
+			{
+				result.addSpan(b.entryDistances[j], b.entryObjects[j], b.exitDistances[j], b.exitObjects[j]);
+				j++;
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * The complement of a span list is the list of the gaps between the spans.
+	 * The surface through which the ray exits a span is the surface through which it enters the gap that follows, and vice versa.
+	 * @return	the spans that lie outside this
+	 */
+	public RaySpanList getComplement()
+	{
+		RaySpanList result = new RaySpanList();
+
+		double gapStart = 0;
+		SceneObjectPrimitive gapStartObject = null;
+		for(int i=0; i<numberOfSpans; i++)
+		{
+			result.addSpan(gapStart, gapStartObject, entryDistances[i], entryObjects[i]);
+			gapStart = exitDistances[i];
+			gapStartObject = exitObjects[i];
+		}
+		result.addSpan(gapStart, gapStartObject, Double.POSITIVE_INFINITY, null);
+
+		return result;
+	}
+
+	/**
+	 * @param b
+	 * @return	the spans that lie inside this but outside b
+	 */
+	public RaySpanList getDifferenceWith(RaySpanList b)
+	{
+		return getIntersectionWith(b.getComplement());
+	}
+
+	/**
+	 * @param o
+	 * @return	the same spans, but with all surfaces that can be seen replaced by the surface of o (or, if o is null, with no surfaces that can be seen)
+	 */
+	public RaySpanList getWithObject(SceneObjectPrimitive o)
+	{
+		RaySpanList result = new RaySpanList();
+
+		for(int i=0; i<numberOfSpans; i++)
+			result.addSpan(
+					entryDistances[i], (entryObjects[i] == null)?null:o,
+					exitDistances[i], (exitObjects[i] == null)?null:o
+				);
+
+		return result;
+	}
+
+
+	//
+	// intersections
+	//
+
+	/**
+	 * @param ray
+	 * @param i
+	 * @return	the intersection at which the ray enters the scene object at the start of the ith span, or RaySceneObjectIntersection.NO_INTERSECTION if there is no visible surface there
+	 */
+	public RaySceneObjectIntersection getEntryIntersection(Ray ray, int i)
+	{
+		return getRaySceneObjectIntersection(ray, entryDistances[i], entryObjects[i]);
+	}
+
+	/**
+	 * @param ray
+	 * @param i
+	 * @return	the intersection at which the ray exits the scene object at the end of the ith span, or RaySceneObjectIntersection.NO_INTERSECTION if there is no visible surface there
+	 */
+	public RaySceneObjectIntersection getExitIntersection(Ray ray, int i)
+	{
+		return getRaySceneObjectIntersection(ray, exitDistances[i], exitObjects[i]);
+	}
+
+	private static RaySceneObjectIntersection getRaySceneObjectIntersection(Ray ray, double distance, SceneObjectPrimitive o)
+	{
+		if(o == null) return RaySceneObjectIntersection.NO_INTERSECTION;
+
+		// calculate the intersection exactly as a RaySceneObjectIntersectionRecord does
+		RaySceneObjectIntersectionRecord record = new RaySceneObjectIntersectionRecord(ray);
+		record.record(distance, o);
+		return record.getRaySceneObjectIntersection();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder s = new StringBuilder("<RaySpanList");
+		for(int i=0; i<numberOfSpans; i++)
+			s.append(", [").append(entryDistances[i]).append(", ").append(exitDistances[i]).append("]");
+		return s.append(">").toString();
+	}
+}
@@ -0,0 +1,286 @@
+package optics.raytrace.core;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import optics.raytrace.GUI.core.RaytraceWorker;
+
+/**
+ * Renders the image of a camera in square tiles, using a persistent, work-stealing thread pool.
+ *
+ * The pool is created the first time it is needed and then shared between all renders,
+ * so no threads are created per frame (or per line).
+ * The tiles are handed out by recursively splitting the list of tiles into halves;
+ * idle threads steal halves from busy ones, so one slow tile no longer stalls all the other cores.
+ *
+ * While the tiles are being rendered, the calling thread keeps the RaytraceWorker (if there is one)
+ * informed about progress, shows intermediate images, and checks whether the render has been cancelled.
+ *
+ * @author Johannes Courtial
+ */
+public class RenderScheduler
+{
+	/**
+	 * default width and height of a tile, in pixels
+	 */
+	public static final int DEFAULT_TILE_SIZE = 32;
+
+	/**
+	 * minimum time, in milliseconds, between updates of the intermediate image and the status
+	 */
+	public static final long FEEDBACK_INTERVAL_MILLIS = 100;
+
+	/**
+	 * the persistent thread pool in which all tiles are rendered
+	 */
+	private static ForkJoinPool pool = null;
+
+	/**
+	 * @return	the number of threads in the render pool, i.e. the number of processors/cores, minus one to leave one free for GUI stuff
+	 */
+	public static int getDefaultParallelism()
+	{
+		int nthreads=Runtime.getRuntime().availableProcessors();
+		if(nthreads > 1) nthreads = nthreads - 1;	// leave one processor free to do GUI stuff
+		return nthreads;
+	}
+
+	/**
+	 * @return	the render pool, which gets created the first time this method is called
+	 */
+	public static synchronized ForkJoinPool getPool()
+	{
+		if(pool == null) pool = new ForkJoinPool(getDefaultParallelism());
+		return pool;
+	}
+
+	/**
+	 * Replace the render pool with one that uses the given number of threads, e.g. to render several frames simultaneously,
+	 * each with fewer threads.
+	 * The old pool finishes any tiles that have already been submitted to it.
+	 * @param parallelism	number of threads
+	 */
+	public static synchronized void setParallelism(int parallelism)
+	{
+		if((pool != null) && (pool.getParallelism() == parallelism)) return;
+		if(pool != null) pool.shutdown();
+		pool = new ForkJoinPool(Math.max(1, parallelism));
+	}
+
+	/**
+	 * @return	the number of threads in the render pool
+	 */
+	public static int getParallelism()
+	{
+		return getPool().getParallelism();
+	}
+
+	/**
+	 * The task of rendering a range of tiles, indexed from 0 (top left) to
+	 * (number of tiles - 1) (bottom right), row by row.
+	 * If the range contains more than one tile, the task splits itself into two halves.
+	 */
+	private static class TileRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -6003155606457015536L;
+
+		private final CameraClass camera;
+		private final SceneObject scene;
+		private final LightSource lights;
+		private final int firstTile, lastTile;	// the range of tiles is firstTile (inclusive) to lastTile (exclusive)
+		private final int tileSize, tilesHorizontal, width, height;
+		private final AtomicBoolean cancelled;
+		private final AtomicInteger tilesCompleted;
+
+		public TileRangeTask(
+				CameraClass camera, SceneObject scene, LightSource lights,
+				int firstTile, int lastTile,
+				int tileSize, int tilesHorizontal, int width, int height,
+				AtomicBoolean cancelled, AtomicInteger tilesCompleted
+			)
+		{
+			this.camera = camera;
+			this.scene = scene;
+			this.lights = lights;
+			this.firstTile = firstTile;
+			this.lastTile = lastTile;
+			this.tileSize = tileSize;
+			this.tilesHorizontal = tilesHorizontal;
+			this.width = width;
+			this.height = height;
+			this.cancelled = cancelled;
+			this.tilesCompleted = tilesCompleted;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(cancelled.get()) return;
+
+			if(lastTile - firstTile > 1)
+			{
+				// split the range of tiles into two halves, either of which can be stolen by an idle thread
+				int middleTile = (firstTile + lastTile) / 2;
+				invokeAll(
+						new TileRangeTask(camera, scene, lights, firstTile, middleTile, tileSize, tilesHorizontal, width, height, cancelled, tilesCompleted),
+						new TileRangeTask(camera, scene, lights, middleTile, lastTile, tileSize, tilesHorizontal, width, height, cancelled, tilesCompleted)
+					);
+			}
+			else
+			{
+				// render a single tile
+				int
+					iMin = (firstTile % tilesHorizontal) * tileSize,
+					jMin = (firstTile / tilesHorizontal) * tileSize,
+					iMax = Math.min(iMin + tileSize, width),
+					jMax = Math.min(jMin + tileSize, height);
+
+				for(int j=jMin; j<jMax; j++)
+				{
+					// check for cancellation once per line of the tile
+					if(cancelled.get()) return;
+
+					for(int i=iMin; i<iMax; i++) camera.renderPixel(i, j, scene, lights);
+				}
+
+				tilesCompleted.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * Render the image of the camera, tile by tile, into the camera's CCD.
+	 * The CCD's image memory must already have been allocated.
+	 * @param camera
+	 * @param scene
+	 * @param lights
+	 * @param raytraceWorker	null, if there is no RaytraceWorker
+	 * @return	true if the image was rendered completely, false if the render was cancelled
+	 */
+	public static boolean render(
+			CameraClass camera,
+			SceneObject scene,
+			LightSource lights,
+			RaytraceWorker raytraceWorker
+		)
+	{
+		CCD ccd = camera.getCCD();
+		int
+			width = ccd.getDetectorPixelsHorizontal(),
+			height = ccd.getDetectorPixelsVertical(),
+			tileSize = Math.max(1, camera.getRenderTileSize()),
+			tilesHorizontal = (width + tileSize - 1) / tileSize,
+			tilesVertical = (height + tileSize - 1) / tileSize,
+			numberOfTiles = tilesHorizontal * tilesVertical;
+
+		AtomicBoolean cancelled = new AtomicBoolean(false);
+		AtomicInteger tilesCompleted = new AtomicInteger(0);
+
+		TileRangeTask task = new TileRangeTask(
+				camera, scene, lights,
+				0, numberOfTiles,
+				tileSize, tilesHorizontal, width, height,
+				cancelled, tilesCompleted
+			);
+
+		if(ForkJoinTask.inForkJoinPool())
+		{
+			// this render has been started from within a render (e.g. a camera that takes photos of its own);
+			// render in the current pool, without feedback
+			task.invoke();
+			return true;
+		}
+
+		ForkJoinPool pool = getPool();
+		int nthreads = pool.getParallelism();
+		long
+			startTimeMillis = System.currentTimeMillis(),
+			latestImageUpdateTimeMillis = -1,
+			latestConsoleFeedbackTimeMillis = startTimeMillis;
+
+		pool.execute(task);
+
+		while(!task.isDone())
+		{
+			try
+			{
+				task.get(FEEDBACK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e)
+			{
+				// the tiles are still being rendered; give feedback (below)
+			}
+			catch (InterruptedException e)
+			{
+				// don't do anything, assuming (hoping?) that someone clicked the "Stop" button;
+				// whether or not the render has been cancelled gets checked below
+			}
+			catch (ExecutionException e)
+			{
+				// this should not happen, as renderPixel catches all exceptions
+				e.printStackTrace();
+			}
+
+			int completed = tilesCompleted.get();
+			double tilesPerSecond = 1000.*completed / Math.max(1, System.currentTimeMillis() - startTimeMillis);
+
+			// is this a RaytraceWorker?
+			if(raytraceWorker != null)
+			{
+				// check whether the calculation has been cancelled
+				if(raytraceWorker.isCancelled())
+				{
+					// tell the tiles to stop and wait until the threads have noticed, so that they don't draw into the next image
+					cancelled.set(true);
+					task.quietlyJoin();
+					return false;
+				}
+
+				//
+				// give some feedback on progress
+				//
+
+				// the simplest way of giving feedback (note that the method being called
+				// has to be thread-safe!)
+				raytraceWorker.setStatus(
+						camera.getDescription() + " rendering... (on "+nthreads+" processors/cores; " +
+						100*completed/numberOfTiles + "% completed; " +
+						String.format("%.1f", tilesPerSecond) + " tiles/s)"
+					);
+
+				// check how long it has been since the latest image update
+				if((System.currentTimeMillis() - latestImageUpdateTimeMillis) > FEEDBACK_INTERVAL_MILLIS)
+				{
+					raytraceWorker.showIntermediateImage(ccd.getImage());
+					latestImageUpdateTimeMillis = System.currentTimeMillis();
+				}
+			}
+			else if(System.currentTimeMillis() - latestConsoleFeedbackTimeMillis > 1000)
+			{
+				// otherwise print feedback onto the console, about once a second
+				System.out.println(
+						"Rendered " + completed + " out of " + numberOfTiles + " tiles of " + tileSize + "x" + tileSize + " pixels " +
+						"(on "+nthreads+" processors/cores; " + String.format("%.1f", tilesPerSecond) + " tiles/s)"
+					);
+				latestConsoleFeedbackTimeMillis = System.currentTimeMillis();
+			}
+		}
+
+		if(raytraceWorker == null)
+		{
+			long millis = Math.max(1, System.currentTimeMillis() - startTimeMillis);
+			System.out.println(
+					"Rendered " + numberOfTiles + " tiles of " + tileSize + "x" + tileSize + " pixels in " + millis + " ms " +
+					"(on "+nthreads+" processors/cores; " + String.format("%.1f", 1000.*numberOfTiles/millis) + " tiles/s)"
+				);
+		}
+
+		return true;
+	}
+}
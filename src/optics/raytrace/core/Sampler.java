@@ -0,0 +1,240 @@
+package optics.raytrace.core;
+
+import java.util.SplittableRandom;
+
+/**
+ * Provides the "random" numbers used while rendering, for example to pick a point on a pixel (anti-aliasing)
+ * or on a camera's entrance pupil (blur), or a diffraction angle.
+ * 
+ * Each render thread has its own samplers, so render threads don't compete for a shared generator (as they do
+ * when calling Math.random()).
+ * The render code obtains the current thread's sampler with Sampler.getCurrent(), or simply calls Sampler.random()
+ * instead of Math.random().
+ * 
+ * Before a pixel gets rendered, the sampler is told which pixel it is (see startPixel(int, int)), and,
+ * for cameras that trace several rays per pixel, which ray (see startSample(int, int)).
+ * The numbers the sampler then returns depend only on the sampler's seed, the pixel, the sample index,
+ * and the order in which the numbers are requested --- the "dimension" of the sample.
+ * Renders are therefore reproducible, irrespective of the order in which the render threads process the pixels.
+ * Subclasses that don't simply return independent random numbers distribute the samples of each pixel such that
+ * the same noise level is reached with fewer rays per pixel.
+ * 
+ * A sampler is not thread-safe.
+ * 
+ * @see optics.raytrace.core.SamplerType
+ * @author Johannes Courtial
+ */
+public abstract class Sampler
+{
+	/**
+	 * the seed from which all the numbers are derived
+	 */
+	protected long seed;
+	
+	/**
+	 * a seed derived from the seed and the current pixel
+	 */
+	protected long pixelSeed;
+	
+	/**
+	 * the index of the current sample, and the number of samples of the current pixel
+	 */
+	protected int sampleIndex, samplesPerPixel;
+	
+	/**
+	 * the index of the number that will be returned next within the current sample, i.e. the dimension
+	 */
+	protected int dimension;
+	
+	/**
+	 * pseudo-random numbers, seeded with the pixel seed whenever a new pixel is started
+	 */
+	protected SplittableRandom random;
+
+	/**
+	 * Create a new sampler
+	 * @param seed
+	 */
+	public Sampler(long seed)
+	{
+		this.seed = seed;
+		random = new SplittableRandom(seed);
+		pixelSeed = mix(seed);
+		sampleIndex = 0;
+		samplesPerPixel = 1;
+		dimension = 0;
+	}
+	
+	/**
+	 * @return	the type of this sampler
+	 */
+	public abstract SamplerType getSamplerType();
+
+	/**
+	 * @return	the next number of the current sample, in the range [0, 1)
+	 */
+	public abstract double getDouble();
+
+	/**
+	 * @return	the seed
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * Start the (only) sample of pixel (i, j).
+	 * Cameras that trace several rays per pixel call startSample(int, int) before each of them.
+	 * @param i
+	 * @param j
+	 */
+	public void startPixel(int i, int j)
+	{
+		startPixel(i, j, 0);
+	}
+	
+	/**
+	 * Start the (only) sample of pixel (i, j) in render pass no. <i>pass</i>.
+	 * Different passes get different numbers, so that renders of the same pixel that are accumulated
+	 * (see AccumulationBuffer) don't simply repeat each other.
+	 * @param i
+	 * @param j
+	 * @param pass
+	 */
+	public void startPixel(int i, int j, int pass)
+	{
+		pixelSeed = mix(seed ^ mix((((long)i) << 32) ^ (j & 0xFFFFFFFFL)) ^ mix(~(long)pass));
+		random = new SplittableRandom(pixelSeed);
+		startSample(0, 1);
+	}
+	
+	/**
+	 * Start sample no. <i>sampleIndex</i> (0 <= <i>sampleIndex</i> < <i>samplesPerPixel</i>) of the current pixel.
+	 * @param sampleIndex
+	 * @param samplesPerPixel
+	 */
+	public void startSample(int sampleIndex, int samplesPerPixel)
+	{
+		this.sampleIndex = sampleIndex;
+		this.samplesPerPixel = Math.max(1, samplesPerPixel);
+		dimension = 0;
+	}
+
+	/**
+	 * Scrambles the bits of z (this is the final step of the SplitMix64 generator)
+	 * @param z
+	 * @return	a number whose bits depend on all the bits of z
+	 */
+	protected static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * @param z
+	 * @return	a number in the range [0, 1) that depends on all the bits of z
+	 */
+	protected static double toDouble(long z)
+	{
+		return (mix(z) >>> 11) * 0x1.0p-53;
+	}
+
+	
+	//
+	// the samplers of the current thread
+	//
+
+	/**
+	 * the samplers of each thread, one for each sampler type
+	 */
+	private static final ThreadLocal<Sampler[]> threadSamplers = new ThreadLocal<Sampler[]>()
+	{
+		@Override
+		protected Sampler[] initialValue()
+		{
+			return new Sampler[SamplerType.values().length];
+		}
+	};
+
+	/**
+	 * the sampler each thread is currently using;
+	 * initially a random sampler with an arbitrary seed, so that code that runs outside a render gets
+	 * random numbers without any set-up
+	 */
+	private static final ThreadLocal<Sampler> currentSampler = new ThreadLocal<Sampler>()
+	{
+		@Override
+		protected Sampler initialValue()
+		{
+			return new RandomSampler(System.nanoTime() ^ mix(Thread.currentThread().getId()));
+		}
+	};
+
+	/**
+	 * @param samplerType
+	 * @param seed
+	 * @return	a new sampler of the given type
+	 */
+	public static Sampler createSampler(SamplerType samplerType, long seed)
+	{
+		switch(samplerType)
+		{
+		case STRATIFIED:
+			return new StratifiedSampler(seed);
+		case HALTON:
+			return new HaltonSampler(seed);
+		case RANDOM:
+		default:
+			return new RandomSampler(seed);
+		}
+	}
+
+	/**
+	 * Make the current thread's sampler of the given type, with the given seed, the current thread's current sampler,
+	 * and return it.
+	 * The sampler is created only the first time it is needed (or when the seed changes), and then re-used.
+	 * @param samplerType
+	 * @param seed
+	 * @return	the current thread's (now current) sampler of the given type
+	 */
+	public static Sampler useThreadSampler(SamplerType samplerType, long seed)
+	{
+		Sampler[] samplers = threadSamplers.get();
+		Sampler sampler = samplers[samplerType.ordinal()];
+		if((sampler == null) || (sampler.getSeed() != seed))
+		{
+			sampler = createSampler(samplerType, seed);
+			samplers[samplerType.ordinal()] = sampler;
+		}
+		currentSampler.set(sampler);
+		return sampler;
+	}
+
+	/**
+	 * @return	the sampler the current thread is using
+	 */
+	public static Sampler getCurrent()
+	{
+		return currentSampler.get();
+	}
+	
+	/**
+	 * Make <i>sampler</i> the sampler the current thread is using
+	 * @param sampler
+	 */
+	public static void setCurrent(Sampler sampler)
+	{
+		currentSampler.set(sampler);
+	}
+
+	/**
+	 * Use this instead of Math.random() in code that gets called while rendering.
+	 * @return	the next number of the current thread's current sampler, in the range [0, 1)
+	 */
+	public static double random()
+	{
+		return currentSampler.get().getDouble();
+	}
+}
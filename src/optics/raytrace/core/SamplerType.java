@@ -0,0 +1,29 @@
+package optics.raytrace.core;
+
+/**
+ * Allows selection of the type of sampler that provides the "random" numbers used while rendering
+ * @see optics.raytrace.core.Sampler
+ * 
+ * @author Johannes Courtial
+ */
+public enum SamplerType
+{
+	/**
+	 * Independent pseudo-random numbers, generated by a SplittableRandom that is seeded separately for each pixel
+	 */
+	RANDOM("Random"),
+	/**
+	 * Stratified (jittered-grid) samples:
+	 * the samples of each pixel are distributed over a grid of cells, one sample per cell, each at a random position within its cell
+	 */
+	STRATIFIED("Stratified"),
+	/**
+	 * Low-discrepancy samples from the Halton sequence, randomly shifted (Cranley-Patterson rotation) for each pixel
+	 */
+	HALTON("Halton");
+	
+	private String description;
+	private SamplerType(String description) {this.description = description;}	
+	@Override
+	public String toString() {return description;}
+}
@@ -65,8 +65,40 @@ public interface SceneObject
 	 */
 	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject);
 
+	/**
+	 * The allocation-free version of getClosestRayIntersectionAvoidingOrigin.
+	 * 
+	 * If the ray intersects this SceneObject (or any SceneObject contained within it) closer to its start point than the
+	 * intersection currently stored in the record (or, if the record doesn't contain an intersection yet, the record's maximum distance),
+	 * store the closest such intersection in the record.
+	 * Scene objects that can calculate the distance along the ray to their intersections directly
+	 * do so without creating any new objects;
+	 * containers pass the record on to their contents, so that intersections are compared on their distance along the ray.
+	 * 
+	 * @param ray		the ray, which must be the record's ray
+	 * @param originObject	the SceneObject on which ray originated
+	 * @param record	the record of the closest intersection found so far
+	 * @return	true if a closer intersection has been found and stored in the record, false otherwise
+	 */
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record);
+
 	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject);
 
+	/**
+	 * Does the ray intersect any shadow-throwing SceneObject (this one or any contained in it) less than a distance maxDistance from its start point?
+	 * 
+	 * This is what is needed to check if a point is in a shadow:  it doesn't matter which object casts the shadow,
+	 * only that there is one between the point and the light source.
+	 * Unlike getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin, this method can therefore stop looking
+	 * as soon as it has found any intersection closer than maxDistance, and it can ignore anything further away.
+	 * 
+	 * @param ray	the ray
+	 * @param originObject	the SceneObject on which ray originated
+	 * @param maxDistance	the distance from the ray's start point (in units of the length of the ray's direction vector, which is normalised) beyond which intersections are ignored
+	 * @return	true if there is an intersection with a shadow-throwing scene object closer than maxDistance, false otherwise
+	 */
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance);
+
 	/**
 	 * Finds the (n+1)th-closest intersection between the ray and this.
 	 * 
@@ -94,6 +126,31 @@ public interface SceneObject
 
 	public RaySceneObjectIntersection getNextClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersection i);
 
+	/**
+	 * Returns an axis-aligned box that contains all the surfaces of this SceneObject with which a ray can intersect.
+	 * The box must be conservative, i.e. it may be bigger than necessary, but not smaller.
+	 * Scene objects that are infinitely big, or whose extent is unknown, return AxisAlignedBoundingBox.INFINITE.
+	 * 
+	 * @return	the axis-aligned bounding box
+	 */
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox();
+
+	/**
+	 * Calculates the spans along the ray that lie inside this SceneObject, together with the primitives whose surfaces
+	 * the ray crosses at the start and end of each span.
+	 * Scene objects that are combined by constructive solid geometry (SceneObjectIntersection, SceneObjectUnion, etc.)
+	 * use these to find the surface of the combination without testing each intersection with each of their parts
+	 * for whether or not it lies inside all other parts.
+	 * 
+	 * Only scene objects whose surface is exactly the boundary of their inside can calculate their spans.
+	 * 
+	 * @param ray	the ray
+	 * @param originObject	the SceneObject on which ray originated
+	 * @return	the spans of the ray inside this SceneObject, or null if this SceneObject cannot calculate them
+	 * @see optics.raytrace.core.RaySpanList
+	 */
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject);
+
 	/**
 	 * Returns the SceneObject, transformed according to a geometrical transformation.
 	 * 
@@ -147,6 +204,23 @@ public interface SceneObject
 	 */
 	public DoubleColour getColourAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
 	throws RayTraceException;
+
+	/**
+	 * Like getColourAvoidingOrigin, but if the ray hits a surface that simply redirects it, the redirected ray is described
+	 * in <i>continuation</i> and null is returned, so that the caller can trace the redirected ray in a loop rather than recursively.
+	 * 
+	 * @param ray ray with which the object is seen
+	 * @param originObject	the scene object the ray leaves
+	 * @param l light source(s) illuminating the object
+	 * @param scene	the entire scene, in case it's required for further ray tracing
+	 * @param traceLevel
+	 * @param raytraceExceptionHandler
+	 * @param continuation	the continuation, which gets set if the ray is redirected
+	 * @return the colour of the intersection point, or null if the ray has been redirected
+	 * @see optics.raytrace.core.RayContinuation
+	 */
+	public DoubleColour getColourOrContinuationAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException;
 	
 	public abstract SceneObject clone();
 	
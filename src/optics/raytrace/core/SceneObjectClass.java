@@ -233,6 +233,57 @@ public abstract class SceneObjectClass implements SceneObject, Serializable, Clo
 			);
 	}
 
+	/**
+	 * This default implementation calculates the closest intersection using getClosestRayIntersectionAvoidingOrigin,
+	 * and hands it over to the record.
+	 * Scene objects that can calculate the distance along the ray to their intersections without creating any objects
+	 * should override this method.
+	 * @see optics.raytrace.core.SceneObject#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
+
+	/**
+	 * This default implementation simply checks how far away the closest shadow-throwing intersection is.
+	 * Scene objects that contain other scene objects should override this method so that it stops at the first suitable intersection.
+	 * @see optics.raytrace.core.SceneObject#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		RaySceneObjectIntersection i = getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject);
+		
+		if(i == RaySceneObjectIntersection.NO_INTERSECTION) return false;
+		
+		return i.p.getDifferenceWith(ray.getP()).getModSquared() < maxDistance*maxDistance;
+	}
+
+	/**
+	 * This default implementation returns the infinite bounding box, which is always conservative.
+	 * Scene objects that know their extent should override this method.
+	 * @see optics.raytrace.core.SceneObject#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return AxisAlignedBoundingBox.INFINITE;
+	}
+
+	/**
+	 * This default implementation returns null, i.e. it says that this scene object cannot calculate the spans along a ray
+	 * that lie inside it.
+	 * Scene objects whose surface is exactly the boundary of their inside should override this method.
+	 * @see optics.raytrace.core.SceneObject#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return null;
+	}
+
 	/**
 	 * Returns the SceneObject, transformed according to a geometrical transformation.
 	 * 
@@ -314,8 +365,29 @@ public abstract class SceneObjectClass implements SceneObject, Serializable, Clo
 			);
 	}
 	
+	@Override
+	public DoubleColour getColourOrContinuationAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		if(traceLevel < 0) return DoubleColour.BLACK;
+		
+		RaySceneObjectIntersection intersection = getClosestRayIntersectionAvoidingOrigin(ray, originObject);
+
+		return getColourOrContinuationAtIntersection(
+				intersection,
+				ray,
+				l,
+				scene,
+				traceLevel,
+				raytraceExceptionHandler,
+				continuation
+			);
+	}
+
 	/**
-	 * For a specific intersection point, calculate the corresponding colour
+	 * For a specific intersection point, calculate the corresponding colour.
+	 * If the surface at the intersection point simply redirects the ray, the redirected ray gets traced further,
+	 * in a loop rather than recursively.
 	 * @param intersection
 	 * @param ray
 	 * @param l
@@ -326,6 +398,44 @@ public abstract class SceneObjectClass implements SceneObject, Serializable, Clo
 	 */
 	protected DoubleColour getColourAtIntersection(RaySceneObjectIntersection intersection, Ray ray, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
 	throws RayTraceException
+	{
+		RayContinuation continuation = new RayContinuation();
+		
+		DoubleColour colour = getColourOrContinuationAtIntersection(intersection, ray, l, scene, traceLevel, raytraceExceptionHandler, continuation);
+		
+		// keep tracing the redirected ray until it hits a surface that doesn't simply redirect it (or until it doesn't hit anything)
+		while(colour == null)
+		{
+			colour = continuation.getScene().getColourOrContinuationAvoidingOrigin(
+					continuation.getRay(),
+					continuation.getOriginObject(),
+					l,
+					continuation.getScene(),
+					continuation.getTraceLevel(),
+					raytraceExceptionHandler,
+					continuation
+				);
+		}
+		
+		// multiply by the colour factors of all the surfaces the ray has been redirected by
+		return continuation.getColour(colour);
+	}
+
+	/**
+	 * For a specific intersection point, calculate the corresponding colour, or, if the surface at the intersection point
+	 * simply redirects the ray, describe the redirected ray in <i>continuation</i>.
+	 * @param intersection
+	 * @param ray
+	 * @param l
+	 * @param scene
+	 * @param traceLevel
+	 * @param raytraceExceptionHandler
+	 * @param continuation
+	 * @return the colour, or null if the ray has been redirected
+	 * @throws RayTraceException
+	 */
+	protected DoubleColour getColourOrContinuationAtIntersection(RaySceneObjectIntersection intersection, Ray ray, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
 	{
 		// if there is no intersection...
 		if (intersection == RaySceneObjectIntersection.NO_INTERSECTION)
@@ -342,7 +452,7 @@ public abstract class SceneObjectClass implements SceneObject, Serializable, Clo
 
 		if(ray.isRayWithTrajectory()) ((RayWithTrajectory)ray).addIntersectionPoint(intersection.p);
 		
-		return intersection.o.getColourAtIntersection(ray, intersection, scene, l, traceLevel-1, raytraceExceptionHandler);
+		return intersection.o.getColourOrContinuationAtIntersection(ray, intersection, scene, l, traceLevel-1, raytraceExceptionHandler, continuation);
 	}
 
 
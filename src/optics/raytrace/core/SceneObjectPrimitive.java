@@ -68,23 +68,54 @@ public abstract class SceneObjectPrimitive extends SceneObjectClass implements S
 	public DoubleColour getColourAtIntersection(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
 	throws RayTraceException
 	{
-		if(r.isReportToConsole())
+		if(r.isReportToConsole()) reportIntersectionToConsole(i, traceLevel);
+
+		// null surfaces should be shown as black silhouettes
+		if (surfaceProperty==null)
 		{
-			System.out.println(
-					"Intersection: "+i.toOneLiner()
-					+", normal: "+getNormalisedOutwardsSurfaceNormal(i.p)
-					+", traceLevel="+traceLevel
-					+" (SceneObjectPrimitive::getColourAtIntersection)"
-				);
+			return DoubleColour.BLACK;
 		}
 
+		return surfaceProperty.getColour(r, i, scene, l, traceLevel, raytraceExceptionHandler);
+	}
+
+	/**
+	 * Like getColourAtIntersection, but if the surface property simply redirects the ray, the redirected ray is described in
+	 * <i>continuation</i> and null is returned.
+	 * Subclasses that override getColourAtIntersection must also override this method.
+	 * 
+	 * @param r	incoming light ray
+	 * @param i	intersection between incoming light ray and primitive scene object
+	 * @param scene	scene object(s) making up the scene to be rendered
+	 * @param l	light source(s) illuminating the scene
+	 * @param traceLevel	recursion limit
+	 * @param raytraceExceptionHandler
+	 * @param continuation	the continuation, which gets set if the ray is redirected
+	 * @return	colour under which intersection is seen, or null if the ray has been redirected
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(Ray, RaySceneObjectIntersection, SceneObject, LightSource, int, RaytraceExceptionHandler, RayContinuation)
+	 */
+	public DoubleColour getColourOrContinuationAtIntersection(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		if(r.isReportToConsole()) reportIntersectionToConsole(i, traceLevel);
+
 		// null surfaces should be shown as black silhouettes
 		if (surfaceProperty==null)
 		{
 			return DoubleColour.BLACK;
 		}
 
-		return surfaceProperty.getColour(r, i, scene, l, traceLevel, raytraceExceptionHandler);
+		return surfaceProperty.getColourOrContinuation(r, i, scene, l, traceLevel, raytraceExceptionHandler, continuation);
+	}
+
+	private void reportIntersectionToConsole(RaySceneObjectIntersection i, int traceLevel)
+	{
+		System.out.println(
+				"Intersection: "+i.toOneLiner()
+				+", normal: "+getNormalisedOutwardsSurfaceNormal(i.p)
+				+", traceLevel="+traceLevel
+				+" (SceneObjectPrimitive::getColourAtIntersection)"
+			);
 	}
 
 	/**
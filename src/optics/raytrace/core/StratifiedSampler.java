@@ -0,0 +1,90 @@
+package optics.raytrace.core;
+
+/**
+ * A sampler that returns stratified (jittered-grid) samples.
+ * 
+ * The numbers of each sample are grouped into pairs (dimensions 0 and 1, 2 and 3, ...),
+ * e.g. the position on a pixel and the position on the entrance pupil.
+ * For each pair, the unit square is divided into a grid of nx x ny cells, with nx x ny >= samplesPerPixel.
+ * Each sample of a pixel gets its own cell, and a random position within that cell.
+ * Which sample gets which cell is randomly permuted for each pixel and each pair of dimensions,
+ * so that the pairs are not correlated with each other.
+ * 
+ * @author Johannes Courtial
+ */
+public class StratifiedSampler extends Sampler
+{
+	/**
+	 * the number of columns and rows of the grid of cells
+	 */
+	private int nx, ny;
+	
+	public StratifiedSampler(long seed)
+	{
+		super(seed);
+	}
+	
+	@Override
+	public SamplerType getSamplerType()
+	{
+		return SamplerType.STRATIFIED;
+	}
+
+	@Override
+	public void startSample(int sampleIndex, int samplesPerPixel)
+	{
+		super.startSample(sampleIndex, samplesPerPixel);
+		nx = (int)Math.ceil(Math.sqrt(this.samplesPerPixel));
+		ny = (this.samplesPerPixel + nx - 1) / nx;
+	}
+
+	@Override
+	public double getDouble()
+	{
+		int pair = dimension / 2;
+		boolean second = (dimension % 2 == 1);
+		dimension++;
+
+		// the cell of the current sample for this pair of dimensions
+		int cell = permute(sampleIndex, nx*ny, (int)mix(pixelSeed + pair));
+		
+		if(second) return (cell / nx + random.nextDouble()) / ny;
+		else return (cell % nx + random.nextDouble()) / nx;
+	}
+
+	/**
+	 * Calculates element no. i of a pseudo-random permutation of the numbers 0, 1, ..., l-1,
+	 * without having to store the permutation;
+	 * see A. Kensler, "Correlated Multi-Jittered Sampling", Pixar Technical Memo 13-01 (2013)
+	 * @param i	the index, 0 <= i < l
+	 * @param l	the length of the permutation
+	 * @param p	determines the permutation
+	 * @return	element no. i of the permutation
+	 */
+	public static int permute(int i, int l, int p)
+	{
+		int w = l - 1;
+		w |= w >>> 1;
+		w |= w >>> 2;
+		w |= w >>> 4;
+		w |= w >>> 8;
+		w |= w >>> 16;
+		do
+		{
+			i ^= p; i *= 0xe170893d;
+			i ^= p >>> 16;
+			i ^= (i & w) >>> 4;
+			i ^= p >>> 8; i *= 0x0929eb3f;
+			i ^= p >>> 23;
+			i ^= (i & w) >>> 1; i *= 1 | p >>> 27;
+			i *= 0x6935fa69;
+			i ^= (i & w) >>> 11; i *= 0x74dcb303;
+			i ^= (i & w) >>> 2; i *= 0x9e501cc3;
+			i ^= (i & w) >>> 2; i *= 0xc860a3df;
+			i &= w;
+			i ^= i >>> 5;
+		}
+		while (Integer.compareUnsigned(i, l) >= 0);
+		return Integer.remainderUnsigned(i + p, l);
+	}
+}
@@ -29,6 +29,29 @@ public abstract class SurfaceProperty implements Serializable
 	public abstract DoubleColour getColour(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
 	throws RayTraceException;
 
+	/**
+	 * Like getColour, but surface properties that simply redirect the ray, i.e. whose colour is that of a single new ray,
+	 * multiplied by a constant factor, can instead describe the new ray in <i>continuation</i> and return null.
+	 * The new ray can then be traced in a loop rather than recursively, which matters when rays pass through many such surfaces.
+	 * 
+	 * This default implementation simply returns the colour calculated by getColour.
+	 * 
+	 * @param r
+	 * @param i
+	 * @param scene
+	 * @param l
+	 * @param traceLevel
+	 * @param raytraceExceptionHandler
+	 * @param continuation	the continuation, to be set if the ray is redirected
+	 * @return the colour of the ray r hitting intersection i, or null if the ray has been redirected
+	 * @see optics.raytrace.core.RayContinuation
+	 */
+	public DoubleColour getColourOrContinuation(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		return getColour(r, i, scene, l, traceLevel, raytraceExceptionHandler);
+	}
+
 	/* (non-Javadoc)
 	 * @see java.lang.Object#clone()
 	 */
@@ -82,22 +82,9 @@ public class PhongLightSource extends LightSource implements Serializable
 		// TODO is time 0 appropriate?
 		Ray r2=new Ray(i.p,	d, 0, false);	// ray from the intersection point to the light source
 
-		// ... and see if it intersects with anything BEFORE it hits the light source
-		RaySceneObjectIntersection i2=scene.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(r2, i.o);
-
-		// the light ray hits something...
-		if(i2!=RaySceneObjectIntersection.NO_INTERSECTION)
-		{
-			// but is it further away than the light source?
-			if(i2.p.getDifferenceWith(i.p).getModSquared() > d.getModSquared())
-			{	
-				// yes, so it's not casting a shadow, so the ray doesn't intersect
-				// with this thing BEFORE it hits the light source
-				i2 = RaySceneObjectIntersection.NO_INTERSECTION;
-			}
-		}
-
-		if(i2==RaySceneObjectIntersection.NO_INTERSECTION)
+		// ... and see if it intersects with anything BEFORE it hits the light source;
+		// it doesn't matter what it intersects with, so the search can stop at the first shadow-throwing object between the two
+		if(!scene.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(r2, i.o, d.getLength()))
 		{
 			// there is nothing in between the intersection point and the light source;
 			// calculate the diffuse and specular contributions to the Phong reflection model
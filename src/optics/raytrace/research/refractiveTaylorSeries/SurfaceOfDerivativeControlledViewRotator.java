@@ -198,6 +198,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setOcularPlaneCentre(Vector3D ocularPlaneCentre) {
 		this.ocularPlaneCentre = ocularPlaneCentre;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getComponentNormal() {
@@ -206,6 +207,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setComponentNormal(Vector3D componentNormal) {
 		this.componentNormal = componentNormal;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getEyePosition() {
@@ -214,6 +216,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setEyePosition(Vector3D eyePosition) {
 		this.eyePosition = eyePosition;
+		invalidatePixelCache();
 	}
 
 	public SceneObject getViewObject() {
@@ -222,6 +225,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setViewObject(SceneObject viewObject) {
 		this.viewObject = viewObject;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getRotationAxisDirection() {
@@ -230,6 +234,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setRotationAxisDirection(Vector3D rotationAxisDirection) {
 		this.rotationAxisDirection = rotationAxisDirection;
+		invalidatePixelCache();
 	}
 
 	public double getRotationAngle() {
@@ -238,6 +243,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setRotationAngle(double rotationAngle) {
 		this.rotationAngle = rotationAngle;
+		invalidatePixelCache();
 	}
 
 	public double getMagnificationFactor() {
@@ -246,6 +252,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setMagnificationFactor(double magnificationFactor) {
 		this.magnificationFactor = magnificationFactor;
+		invalidatePixelCache();
 	}
 
 	public boolean isAddWedgeHologram() {
@@ -254,6 +261,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setAddWedgeHologram(boolean addWedgeHologram) {
 		this.addWedgeHologram = addWedgeHologram;
+		invalidatePixelCache();
 	}
 
 	public int getNoOfSurfaces() {
@@ -262,6 +270,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setNoOfSurfaces(int noOfSurfaces) {
 		this.noOfSurfaces = noOfSurfaces;
+		invalidatePixelCache();
 	}
 
 	public int getPolynomialOrder() {
@@ -270,6 +279,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setPolynomialOrder(int polynomialOrder) {
 		this.polynomialOrder = polynomialOrder;
+		invalidatePixelCache();
 	}
 
 	public double[] getDz() {
@@ -278,6 +288,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setDz(double[] dz) {
 		this.dz = dz;
+		invalidatePixelCache();
 	}
 
 	public double[][][] getA() {
@@ -286,6 +297,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setA(double[][][] a) {
 		this.a = a;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector1() {
@@ -294,6 +306,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setPeriodVector1(Vector3D periodVector1) {
 		this.periodVector1 = periodVector1;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector2() {
@@ -302,6 +315,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setPeriodVector2(Vector3D periodVector2) {
 		this.periodVector2 = periodVector2;
+		invalidatePixelCache();
 	}
 
 	public double getSurfaceTransmissionCoefficient() {
@@ -310,6 +324,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setSurfaceTransmissionCoefficient(double surfaceTransmissionCoefficient) {
 		this.surfaceTransmissionCoefficient = surfaceTransmissionCoefficient;
+		invalidatePixelCache();
 	}
 
 	public int getMaxStepsInArray() {
@@ -330,6 +345,7 @@ public class SurfaceOfDerivativeControlledViewRotator extends SurfaceOfPixelArra
 
 	public void setShadowThrowing(boolean shadowThrowing) {
 		this.shadowThrowing = shadowThrowing;
+		invalidatePixelCache();
 	}
 
 	@Override
@@ -127,6 +127,42 @@ public class CentredParallelogram extends SceneObjectPrimitive implements Serial
 //		return new RaySceneObjectIntersection (i,this);
 	}
 
+	/**
+	 * Calculates the distance to the intersection without creating any objects.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		double distance = Plane.getDistanceToIntersection(ray, centre, getNormalisedOutwardsSurfaceNormal(null));
+
+		// if the ray starts on this parallelogram, ignore intersections closer than TINY (see SceneObjectPrimitive.getClosestRayIntersectionAvoidingOrigin);
+		// also don't bother if the record already holds a closer intersection
+		if((distance < ((originObject == this)?MyMath.TINY:0.0)) || !(distance < record.getDistance())) return false;
+
+		// the vector from the centre to the intersection point...
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			x = p.x + d.x*distance - centre.x,
+			y = p.y + d.y*distance - centre.y,
+			z = p.z + d.z*distance - centre.z;
+
+		// ... decomposed into alpha*spanVector1 + beta*spanVector2 (cf. Vector3D.calculateDecomposition)
+		double
+			v1v1 = spanVector1.getModSquared(),
+			v2v2 = spanVector2.getModSquared(),
+			v1v2 = Vector3D.scalarProduct(spanVector1, spanVector2),
+			xv1 = x*spanVector1.x + y*spanVector1.y + z*spanVector1.z,
+			xv2 = x*spanVector2.x + y*spanVector2.y + z*spanVector2.z,
+			determinant = v1v1*v2v2 - v1v2*v1v2,
+			alpha = (v2v2*xv1 - v1v2*xv2) / determinant,
+			beta = (v1v1*xv2 - v1v2*xv1) / determinant;
+
+		if (alpha < -0.5 || +0.5 < alpha || beta < -0.5 || +0.5 < beta) return false;
+
+		return record.record(distance, this);
+	}
+
 	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray, SceneObject excludeObject)
 	{
 		return getClosestRayIntersection(ray);
@@ -139,6 +175,23 @@ public class CentredParallelogram extends SceneObjectPrimitive implements Serial
 	}
 
 	// TransformableSceneObject method
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		Vector3D
+			halfSpan1 = spanVector1.getProductWith(0.5),
+			halfSpan2 = spanVector2.getProductWith(0.5);
+		return AxisAlignedBoundingBox.getBoundingBoxOfPoints(
+				Vector3D.sum(centre, halfSpan1, halfSpan2),
+				Vector3D.sum(centre, halfSpan1, halfSpan2.getReverse()),
+				Vector3D.sum(centre, halfSpan1.getReverse(), halfSpan2),
+				Vector3D.sum(centre, halfSpan1.getReverse(), halfSpan2.getReverse())
+			);
+	}
+
 	@Override
 	public CentredParallelogram transform(Transformation t)
 	{
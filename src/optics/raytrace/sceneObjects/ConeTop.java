@@ -2,6 +2,7 @@ package optics.raytrace.sceneObjects;
 
 import java.io.Serializable;
 
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.SceneObject;
@@ -175,6 +176,21 @@ public class ConeTop extends SceneObjectPrimitive implements Serializable
 		return Vector3D.crossProduct(Vector3D.crossProduct(axis, v), v).getNormalised();
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// a cone top with negative height is infinitely long
+		if(height < 0) return AxisAlignedBoundingBox.INFINITE;
+
+		// the cone top is contained in the bounding box of its apex and its base
+		return
+				AxisAlignedBoundingBox.getBoundingBoxOfPoints(apex).getUnionWith(
+				AxisAlignedBoundingBox.getBoundingBoxOfDisc(Vector3D.sum(apex, axis.getProductWith(height)), axis, height*tanTheta));
+	}
+
 	@Override
 	public ConeTop transform(Transformation t)
 	{
@@ -1,8 +1,12 @@
 package optics.raytrace.sceneObjects;
 
+import math.MyMath;
 import math.Vector3D;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectPrimitive;
 import optics.raytrace.core.Studio;
@@ -253,6 +257,125 @@ public class CylinderMantle extends SceneObjectPrimitive
 		return RaySceneObjectIntersection.NO_INTERSECTION;
 	}
 
+	/**
+	 * Calculates the distances to the intersections without creating any objects.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			vx = p.x - startPoint.x,
+			vy = p.y - startPoint.y,
+			vz = p.z - startPoint.z,
+			va = vx*axis.x + vy*axis.y + vz*axis.z,	// component of v in the direction of the axis
+			da = d.x*axis.x + d.y*axis.y + d.z*axis.z,	// component of ray.d in the direction of the axis
+			// parts of v and ray.d that are perpendicular to the axis (which is normalised)
+			vPx = vx - va*axis.x, vPy = vy - va*axis.y, vPz = vz - va*axis.z,
+			dPx = d.x - da*axis.x, dPy = d.y - da*axis.y, dPz = d.z - da*axis.z;
+
+		// coefficients in the quadratic equation for the distance
+		double a = dPx*dPx + dPy*dPy + dPz*dPz;
+
+		if(a==0.0) return false;	// would give division by zero later
+
+		double
+			b2 = vPx*dPx + vPy*dPy + vPz*dPz,	// b/2
+			c = vPx*vPx + vPy*vPy + vPz*vPz - radius*radius,
+			discriminant4 = b2*b2 - a*c;	// discriminant/4
+
+		if(discriminant4 < 0.0) return false;
+
+		double sqrtDiscriminant2 = Math.sqrt(discriminant4);	// sqrt(discriminant)/2
+
+		// if the ray starts on this cylinder mantle, ignore intersections closer than TINY (see SceneObjectPrimitive.getClosestRayIntersectionAvoidingOrigin)
+		double minDistance = (originObject == this)?MyMath.TINY:0.0;
+
+		// first try the intersection with the lesser distance, then the one with the greater distance
+		double tSmaller = (-b2-sqrtDiscriminant2)/a;
+		if((tSmaller >= minDistance) && (tSmaller > 0.0) && isOnMantle(va + da*tSmaller)) return record.record(tSmaller, this);
+
+		double tBigger = (-b2+sqrtDiscriminant2)/a;
+		if((tBigger >= minDistance) && isOnMantle(va + da*tBigger)) return record.record(tBigger, this);
+
+		return false;
+	}
+
+	/**
+	 * The inside of the (infinitely long) cylinder is the span between the two intersections with the mantle;
+	 * if the radius is negative, the inside is the outside of the cylinder.
+	 * If the cylinder is not infinitely long, its inside is additionally restricted to the slab between the planes through
+	 * the start and end points, whose boundaries are not surfaces (there are no end caps) and therefore cannot be seen.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			vx = p.x - startPoint.x,
+			vy = p.y - startPoint.y,
+			vz = p.z - startPoint.z,
+			va = vx*axis.x + vy*axis.y + vz*axis.z,	// component of v in the direction of the axis
+			da = d.x*axis.x + d.y*axis.y + d.z*axis.z,	// component of ray.d in the direction of the axis
+			// parts of v and ray.d that are perpendicular to the axis (which is normalised)
+			vPx = vx - va*axis.x, vPy = vy - va*axis.y, vPz = vz - va*axis.z,
+			dPx = d.x - da*axis.x, dPy = d.y - da*axis.y, dPz = d.z - da*axis.z;
+
+		// coefficients in the quadratic equation for the distance, as in findClosestRayIntersectionAvoidingOrigin
+		double
+			a = dPx*dPx + dPy*dPy + dPz*dPz,
+			b2 = vPx*dPx + vPy*dPy + vPz*dPz,	// b/2
+			c = vPx*vPx + vPy*vPy + vPz*vPz - radius*radius,
+			discriminant4 = b2*b2 - a*c;	// discriminant/4
+
+		RaySpanList spans;
+		if(a == 0.0)
+		{
+			// the ray is parallel to the axis, so it is either always or never inside the infinitely long cylinder
+			spans = RaySpanList.getCompleteRayOrNothing(-c*Math.signum(radius) > 0);
+		}
+		else if(discriminant4 < 0.0)
+		{
+			// the ray misses the infinitely long cylinder
+			spans = RaySpanList.getCompleteRayOrNothing(radius < 0);
+		}
+		else
+		{
+			double sqrtDiscriminant2 = Math.sqrt(discriminant4);	// sqrt(discriminant)/2
+			spans = new RaySpanList();
+			spans.addQuadricSpans(
+					(-b2-sqrtDiscriminant2)/a,
+					(-b2+sqrtDiscriminant2)/a,
+					this,
+					radius < 0,	// insideOut
+					originObject
+				);
+		}
+		if(infinite || spans.isEmpty()) return spans;
+
+		// restrict the spans to the slab 0 <= w <= length, where w = va + da*distance
+		RaySpanList slab;
+		if(da == 0.0) slab = RaySpanList.getCompleteRayOrNothing(isOnMantle(va));
+		else
+		{
+			double distance1 = -va/da, distance2 = (length-va)/da;
+			slab = new RaySpanList();
+			slab.addSpan(Math.min(distance1, distance2), null, Math.max(distance1, distance2), null);
+		}
+		return spans.getIntersectionWith(slab);
+	}
+
+	/**
+	 * @param w	the component, in the direction of the axis, of the vector from the start point to a point on the infinitely long cylinder mantle
+	 * @return	true if the point lies on the part of the cylinder mantle we want
+	 */
+	private boolean isOnMantle(double w)
+	{
+		return infinite || (w>=0 && w<=length);
+	}
+
 	@Override
 	public Vector3D getNormalisedOutwardsSurfaceNormal(Vector3D p)
 	{
@@ -260,6 +383,20 @@ public class CylinderMantle extends SceneObjectPrimitive
 		return Ap.getDifferenceWith(Ap.getProjectionOnto(axis)).getWithLength(Math.signum(radius));	// the surface normal at p is simply given by p-A, projected into plane perpendicular to a
 	}
 	
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		if(infinite) return AxisAlignedBoundingBox.INFINITE;
+
+		// the mantle is contained in the bounding box of the discs at either end
+		return
+				AxisAlignedBoundingBox.getBoundingBoxOfDisc(startPoint, axis, radius).getUnionWith(
+				AxisAlignedBoundingBox.getBoundingBoxOfDisc(endPoint, axis, radius));
+	}
+
 	@Override
 	public CylinderMantle transform(Transformation t)
 	{
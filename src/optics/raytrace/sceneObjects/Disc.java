@@ -91,6 +91,41 @@ public class Disc extends Plane implements Serializable
 		return i;
 	}
 
+	/**
+	 * Calculates the distance to the intersection without creating any objects.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		Vector3D centre = getPointOnPlane();
+		double distance = getDistanceToIntersection(ray, centre, getNormal());
+
+		// if the ray starts on this disc, ignore intersections closer than TINY (see SceneObjectPrimitive.getClosestRayIntersectionAvoidingOrigin);
+		// also don't bother if the record already holds a closer intersection
+		if((distance < ((originObject == this)?MyMath.TINY:0.0)) || !(distance < record.getDistance())) return false;
+
+		// is the intersection point within the disc?
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			x = p.x + d.x*distance - centre.x,
+			y = p.y + d.y*distance - centre.y,
+			z = p.z + d.z*distance - centre.z;
+		if(x*x + y*y + z*z > radius*radius) return false;
+
+		return record.record(distance, this);
+	}
+
+	/**
+	 * A disc has a surface but no inside, so its surface is not the boundary of its inside.
+	 * @see optics.raytrace.sceneObjects.Plane#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return null;
+	}
+
 	/**
 	 * Returns false as this is an object without volume.
 	 * 
@@ -102,6 +137,15 @@ public class Disc extends Plane implements Serializable
 		return false;
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.sceneObjects.Plane#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return AxisAlignedBoundingBox.getBoundingBoxOfDisc(getCentre(), getNormal(), radius);
+	}
+
 	@Override
 	public Disc transform(Transformation t) {
 		return new Disc(description, t.transformPosition(getCentre()), t.transformDirection(getNormal()), radius, getSurfaceProperty(), getParent(), getStudio());
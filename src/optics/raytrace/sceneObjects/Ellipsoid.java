@@ -194,6 +194,25 @@ public class Ellipsoid extends SceneObjectPrimitive implements Serializable
 		return Vector3D.difference(p, centre).toBasis(aHat, bHat, cHat).getComponentwiseProductWith(2./a2, 2./b2, 2./c2).fromBasis(aHat, bHat, cHat).getNormalised();	
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// for orthogonal semi-axes a, b and c, the ellipsoid extends by sqrt(a_i^2 + b_i^2 + c_i^2) either side of its centre
+		// in the direction of coordinate axis i
+		double
+			dx = Math.sqrt(a.x*a.x + b.x*b.x + c.x*c.x),
+			dy = Math.sqrt(a.y*a.y + b.y*b.y + c.y*c.y),
+			dz = Math.sqrt(a.z*a.z + b.z*b.z + c.z*c.z);
+		return new AxisAlignedBoundingBox(
+				centre.x - dx, centre.x + dx,
+				centre.y - dy, centre.y + dy,
+				centre.z - dz, centre.z + dz
+			);
+	}
+
 	@Override
 	public Ellipsoid transform(Transformation t)
 	{
@@ -0,0 +1,593 @@
+package optics.raytrace.sceneObjects;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import math.*;
+import optics.raytrace.core.*;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectPrimitiveIntersection;
+import optics.raytrace.utility.CopyModeType;
+
+/**
+ * A container for the lens sections of a Fresnel-lens surface (@see optics.raytrace.sceneObjects.FresnelLensSurface).
+ *
+ * Each lens section is the intersection of a lens surface, the outside of a Belin cone and the inside of the back plane,
+ * and so forms a ring around the optical axis.
+ * If the back plane is perpendicular to the optical axis, the lens sections are rotationally symmetric around the optical axis,
+ * and the container works out, for each lens section, the range of distances from the optical axis its points can have, and the
+ * range of <i>w</i> coordinates (i.e. positions along the optical axis) of all lens sections.
+ * It can then calculate, for each ray, the range of distances from the optical axis the ray covers while its <i>w</i> coordinate is in that range,
+ * and intersect the ray only with the lens sections whose ring overlaps with this range.
+ * The number of lens sections that need to be intersected with a ray then no longer grows with the number of lens sections.
+ *
+ * Lens sections found to be empty are never intersected with any ray.
+ * Any other scene objects, and any lens section whose ring can't be worked out (e.g. because its back plane is not
+ * perpendicular to the optical axis, or because it is not bounded), are intersected with every ray, like in a normal SceneObjectContainer.
+ *
+ * @author Johannes Courtial
+ */
+public class FresnelLensSectionContainer extends SceneObjectContainer
+{
+	private static final long serialVersionUID = -2193546210397648114L;
+
+	/**
+	 * The lens sections' ring index; worked out the first time it is needed, and discarded whenever the contents of the container change
+	 */
+	private transient volatile RingIndex ringIndex = null;
+
+	/**
+	 * @param description
+	 * @param parent
+	 * @param studio
+	 */
+	public FresnelLensSectionContainer(String description, SceneObject parent, Studio studio)
+	{
+		super(description, parent, studio);
+	}
+
+	/**
+	 * @param original
+	 * @param copyMode one of SHARE_DATA or CLONE_DATA
+	 */
+	public FresnelLensSectionContainer(SceneObjectContainer original, CopyModeType copyMode)
+	{
+		super(original, copyMode);
+	}
+
+	@Override
+	public FresnelLensSectionContainer clone()
+	{
+		return new FresnelLensSectionContainer(this, CopyModeType.CLONE_DATA);
+	}
+
+	@Override
+	public FresnelLensSectionContainer transform(Transformation t)
+	{
+		FresnelLensSectionContainer c = new FresnelLensSectionContainer(description, getParent(), getStudio());
+		c.setUseBoundingVolumeHierarchy(useBoundingVolumeHierarchy);
+
+		for(int i=0; i<sceneObjects.size();i++)
+		{
+			c.addSceneObject((sceneObjects.get(i)).transform(t), visibilities.get(i), visibilitiesWhenTrajectoryTracing.get(i));
+		}
+
+		return c;
+	}
+
+	/**
+	 * Also discards the ring index, so that it gets worked out again the next time it is needed.
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#invalidateBoundingVolumeHierarchy()
+	 */
+	@Override
+	public void invalidateBoundingVolumeHierarchy()
+	{
+		ringIndex = null;
+		super.invalidateBoundingVolumeHierarchy();
+	}
+
+
+	//
+	// the ring index
+	//
+
+	/**
+	 * The rings the (visible) lens sections occupy.
+	 * All calculations are done in the Cartesian (u, v, w) coordinate system of the lens surfaces, in which the focal point is at the origin
+	 * and <i>wHat</i> is the optical-axis direction;
+	 * the distance of a point from the optical axis is <i>rho</i> = sqrt(<i>u</i>^2+<i>v</i>^2).
+	 */
+	private static class RingIndex
+	{
+		Vector3D focalPoint, wHat, uHat;
+		double n;
+
+		/**
+		 * the range of <i>w</i> coordinates of all lens sections
+		 */
+		double wMin, wMax;
+
+		/**
+		 * the lens sections, sorted by <i>rhoMin</i>
+		 */
+		SceneObject[] sections;
+
+		/**
+		 * the minimum and maximum distance from the optical axis of any point of the corresponding lens section
+		 */
+		double[] rhoMin, rhoMax;
+
+		/**
+		 * <i>rhoMaxSoFar</i>[<i>i</i>] is the greatest of <i>rhoMax</i>[0] to <i>rhoMax</i>[<i>i</i>]
+		 */
+		double[] rhoMaxSoFar;
+
+		/**
+		 * the scene objects that are not lens sections, or whose extent can't be worked out, and which get intersected with every ray
+		 */
+		SceneObject[] alwaysIntersectedSceneObjects;
+	}
+
+	/**
+	 * the number of points far away from the focal point that are checked to lie outside each lens section
+	 */
+	private static final int NUMBER_OF_FAR_POINTS = 720;
+
+	/**
+	 * @return	the ring index, which gets worked out if necessary
+	 */
+	private RingIndex getRingIndex()
+	{
+		RingIndex index = ringIndex;
+		if(index == null) index = buildRingIndex();
+		return index;
+	}
+
+	private synchronized RingIndex buildRingIndex()
+	{
+		// another thread might have built the ring index while this one was waiting
+		if(ringIndex == null)
+		{
+			ringIndex = calculateRingIndex();
+		}
+		return ringIndex;
+	}
+
+	/**
+	 * the margin by which the range of a lens section, or of a ray, is widened to allow for rounding errors
+	 * @param x
+	 * @return
+	 */
+	private static double margin(double x)
+	{
+		return MyMath.TINY + 1e-9*Math.abs(x);
+	}
+
+	/**
+	 * @return	the ring index of the visible lens sections
+	 */
+	private RingIndex calculateRingIndex()
+	{
+		ArrayList<SceneObject> sectionList = new ArrayList<SceneObject>();
+		ArrayList<double[]> extentList = new ArrayList<double[]>();
+		ArrayList<SceneObject> alwaysIntersectedList = new ArrayList<SceneObject>();
+
+		RingIndex index = new RingIndex();
+		index.wMin = Double.POSITIVE_INFINITY;
+		index.wMax = Double.NEGATIVE_INFINITY;
+
+		for(int i=0; i<sceneObjects.size(); i++)
+		{
+			if(!isSceneObjectVisible(i)) continue;
+
+			double[] extent = calculateExtent(sceneObjects.get(i), index);
+			if(extent == null) alwaysIntersectedList.add(sceneObjects.get(i));
+			else if(extent.length > 0)
+			{
+				sectionList.add(sceneObjects.get(i));
+				extentList.add(extent);
+				index.wMin = Math.min(index.wMin, extent[2]);
+				index.wMax = Math.max(index.wMax, extent[3]);
+			}
+			// else the lens section is empty, so it doesn't need to be intersected with any ray
+		}
+
+		// sort the lens sections by rhoMin
+		Integer[] order = new Integer[sectionList.size()];
+		for(int i=0; i<order.length; i++) order[i] = i;
+		Arrays.sort(order, (i1, i2) -> Double.compare(extentList.get(i1)[0], extentList.get(i2)[0]));
+
+		index.sections = new SceneObject[order.length];
+		index.rhoMin = new double[order.length];
+		index.rhoMax = new double[order.length];
+		index.rhoMaxSoFar = new double[order.length];
+		for(int i=0; i<order.length; i++)
+		{
+			index.sections[i] = sectionList.get(order[i]);
+			index.rhoMin[i] = extentList.get(order[i])[0];
+			index.rhoMax[i] = extentList.get(order[i])[1];
+			index.rhoMaxSoFar[i] = (i==0)?index.rhoMax[i]:Math.max(index.rhoMaxSoFar[i-1], index.rhoMax[i]);
+		}
+		index.alwaysIntersectedSceneObjects = alwaysIntersectedList.toArray(new SceneObject[alwaysIntersectedList.size()]);
+		return index;
+	}
+
+	/**
+	 * Work out the range of distances from the optical axis, and the range of <i>w</i> coordinates, of the points of a lens section.
+	 * The first lens section sets the (u, v, w) coordinate system of the ring index.
+	 * @param sceneObject
+	 * @param index
+	 * @return	{rhoMin, rhoMax, wMin, wMax}; an empty array if the lens section is empty; null if the scene object is not a lens section or its extent can't be worked out
+	 */
+	private static double[] calculateExtent(SceneObject sceneObject, RingIndex index)
+	{
+		// is the scene object a lens section, i.e. the intersection of a lens surface, the outside of a Belin cone, and the inside of an invisible plane?
+		if(!(sceneObject instanceof SceneObjectPrimitiveIntersection)) return null;
+		SceneObjectPrimitiveIntersection section = (SceneObjectPrimitiveIntersection)sceneObject;
+		if(
+				(size(section.getPositiveSceneObjectPrimitives()) != 1) ||
+				(size(section.getNegativeSceneObjectPrimitives()) != 1) ||
+				(size(section.getInvisiblePositiveSceneObjectPrimitives()) != 1) ||
+				(size(section.getInvisibleNegativeSceneObjectPrimitives()) != 0) ||
+				(size(section.getClippedSceneObjectPrimitives()) != 0) ||
+				!(section.getPositiveSceneObjectPrimitives().get(0) instanceof LensSurface) ||
+				!(section.getNegativeSceneObjectPrimitives().get(0) instanceof BelinCone) ||
+				!(section.getInvisiblePositiveSceneObjectPrimitives().get(0) instanceof Plane)
+			) return null;
+		LensSurface lensSurface = (LensSurface)(section.getPositiveSceneObjectPrimitives().get(0));
+		BelinCone belinCone = (BelinCone)(section.getNegativeSceneObjectPrimitives().get(0));
+		Plane backPlane = (Plane)(section.getInvisiblePositiveSceneObjectPrimitives().get(0));
+
+		// all lens surfaces must share the same focal point, optical axis, and refractive index...
+		if(index.focalPoint == null)
+		{
+			index.focalPoint = lensSurface.getFocalPoint();
+			index.wHat = lensSurface.getOpticalAxisDirectionOutwards();
+			index.uHat = lensSurface.getUHat();
+			index.n = lensSurface.getRefractiveIndex();
+		}
+		Vector3D focalPoint = index.focalPoint, wHat = index.wHat, uHat = index.uHat;
+		double n = index.n;
+		if(
+				!isInSameCoordinateSystem(lensSurface, focalPoint, wHat, n) ||
+				!isInSameCoordinateSystem(belinCone.getLensSurface(), focalPoint, wHat, n)
+			) return null;
+
+		// ... and the back plane and the Belin cone's contour plane must be perpendicular to the optical axis
+		if(
+				(Math.abs(Math.abs(Vector3D.scalarProduct(backPlane.getNormal().getNormalised(), wHat)) - 1) > MyMath.TINY) ||
+				(Math.abs(Math.abs(Vector3D.scalarProduct(belinCone.getContourNormal().getNormalised(), wHat)) - 1) > MyMath.TINY)
+			) return null;
+
+		// the w coordinates of the back plane, the Belin cone's contour plane, and the Belin cone's apex
+		double wP = Vector3D.scalarProduct(Vector3D.difference(backPlane.getPointOnPlane(), focalPoint), wHat);
+		double wE = Vector3D.scalarProduct(Vector3D.difference(belinCone.getPointInContourPlane(), focalPoint), wHat);
+		double wA = Vector3D.scalarProduct(Vector3D.difference(belinCone.getApex(), focalPoint), wHat);
+		if(Math.abs(wE - wP) > MyMath.TINY) return null;
+
+		// the w coordinate of the lens surface's vertex, i.e. its intersection with the optical axis
+		double f = lensSurface.getFocalLength();
+		double wV = -f;
+
+		// The lens section is bounded by parts of the back plane, the lens surface, and the Belin cone.
+		// In the half-plane that contains the optical axis and the u axis, the back plane is the line w = wP,
+		// the Belin cone is the line rho = k (w - wA), and the lens surface is a curve on which rho changes monotonically with w.
+		// The greatest and smallest values of rho and w in the lens section are therefore found either at the "corners",
+		// i.e. the points where two of these intersect, on the optical axis (where rho = 0), or at infinity.
+
+		// the radius of the lens surface's intersection with the back plane (NaN if there is none)...
+		double r = calculateContourRadius(f, n, wP, false);
+		// ... and that of the Belin cone's contour, which is the intersection of the whole hyperboloid that contains the
+		// Belin cone's lens surface with the contour plane (NaN if there is none, in which case the Belin cone has no surface)
+		double rC = calculateContourRadius(belinCone.getLensSurface().getFocalLength(), n, wP, true);
+		if(Math.abs(wP - wA) < MyMath.TINY) return null;
+
+		// collect the corners
+		ArrayList<double[]> corners = new ArrayList<double[]>();	// {w, rho}
+		if(!Double.isNaN(r)) corners.add(new double[] {wP, r});
+		if(!Double.isNaN(rC))
+		{
+			corners.add(new double[] {wP, rC});
+
+			// find where the Belin cone intersects the lens surface, which satisfies (a w - n)^2 = 1 + m rho^2 (see LensSurface.calculateW);
+			// this leads to a quadratic equation of the form qA w^2 + qB w + qC = 0
+			double k = rC / (wP - wA);
+			double a = -(n+1)/f;
+			double m = (n+1)/((n-1)*f*f);
+			double qA = a*a - m*k*k;
+			double qB = -2*a*n + 2*m*k*k*wA;
+			double qC = n*n - 1 - m*k*k*wA*wA;
+			for(double w : solveQuadraticEquation(qA, qB, qC))
+			{
+				double rho = k*(w - wA);
+				if(
+						(a*w - n >= 1 - 1e-9) &&	// on the branch of the hyperboloid that is the lens surface
+						(rho >= -margin(rC))	// on the nappe of the Belin cone on the lens side of the apex
+					)
+					corners.add(new double[] {w, Math.abs(rho)});
+			}
+		}
+
+		// which parts of the optical axis lie inside the lens section?
+		// The optical axis can only enter or leave the lens section where it intersects the back plane, the lens surface, or the Belin cone
+		double[] axisW = new double[] {wP, wV, wA};
+		Arrays.sort(axisW);
+		double span = axisW[2] - axisW[0] + 1;
+		if(
+				section.insideObject(getPoint(focalPoint, wHat, uHat, axisW[0] - span, 0)) ||
+				section.insideObject(getPoint(focalPoint, wHat, uHat, axisW[2] + span, 0))
+			) return null;	// the lens section is unbounded
+		boolean axisInside = false;
+		for(int j=0; j<2; j++)
+		{
+			if(section.insideObject(getPoint(focalPoint, wHat, uHat, 0.5*(axisW[j] + axisW[j+1]), 0)))
+			{
+				axisInside = true;
+				corners.add(new double[] {axisW[j], 0});
+				corners.add(new double[] {axisW[j+1], 0});
+			}
+		}
+
+		// check that no part of the lens section reaches far out
+		double farDistance = span;
+		for(double[] corner : corners) farDistance = Math.max(farDistance, Math.abs(corner[0]) + corner[1]);
+		farDistance *= 100;
+		for(int j=0; j<=NUMBER_OF_FAR_POINTS; j++)
+		{
+			double theta = Math.PI*j/NUMBER_OF_FAR_POINTS;
+			if(section.insideObject(getPoint(focalPoint, wHat, uHat, farDistance*Math.cos(theta), farDistance*Math.sin(theta)))) return null;
+		}
+
+		// a bounded lens section whose boundary has no corners and which doesn't touch the optical axis is empty
+		if(corners.isEmpty()) return new double[0];
+
+		double rhoMin = (axisInside?0:Double.POSITIVE_INFINITY), rhoMax = 0;
+		double wMin = Double.POSITIVE_INFINITY, wMax = Double.NEGATIVE_INFINITY;
+		for(double[] corner : corners)
+		{
+			wMin = Math.min(wMin, corner[0]);
+			wMax = Math.max(wMax, corner[0]);
+			rhoMin = Math.min(rhoMin, corner[1]);
+			rhoMax = Math.max(rhoMax, corner[1]);
+		}
+		return new double[] {rhoMin - margin(rhoMin), rhoMax + margin(rhoMax), wMin - margin(wMin), wMax + margin(wMax)};
+	}
+
+	/**
+	 * @param list
+	 * @return	the number of elements in the list, which is 0 if the list hasn't been created
+	 */
+	private static int size(ArrayList<SceneObjectPrimitive> list)
+	{
+		return (list == null)?0:list.size();
+	}
+
+	/**
+	 * @param lensSurface
+	 * @param focalPoint
+	 * @param wHat
+	 * @param n
+	 * @return	true if the lens surface has the given focal point, outwards optical-axis direction, and refractive index
+	 */
+	private static boolean isInSameCoordinateSystem(LensSurface lensSurface, Vector3D focalPoint, Vector3D wHat, double n)
+	{
+		return
+				(Vector3D.getDistance(lensSurface.getFocalPoint(), focalPoint) < MyMath.TINY) &&
+				(Vector3D.getDistance(lensSurface.getOpticalAxisDirectionOutwards(), wHat) < MyMath.TINY) &&
+				(lensSurface.getRefractiveIndex() == n);
+	}
+
+	/**
+	 * @param f	focal length of the lens surface
+	 * @param n	refractive index
+	 * @param wP	w coordinate of a plane perpendicular to the optical axis
+	 * @param bothBranches	if true, consider both branches of the hyperboloid of which the lens surface is one branch
+	 * @return	the radius of the circle in which the lens surface (or the hyperboloid) intersects the plane, or NaN if it doesn't
+	 */
+	private static double calculateContourRadius(double f, double n, double wP, boolean bothBranches)
+	{
+		// the lens surface is given by w = -f/(n+1) (n + S), where S = sqrt(1 + (n+1)/(n-1) rho^2 / f^2) (see LensSurface.calculateW);
+		// the other branch of the hyperboloid has S = -sqrt(...)
+		double s = -(n+1)*wP/f - n;
+		if((bothBranches?Math.abs(s):s) < 1) return Double.NaN;
+		return Math.abs(f)*Math.sqrt((s*s - 1)*(n-1)/(n+1));
+	}
+
+	/**
+	 * @param qA
+	 * @param qB
+	 * @param qC
+	 * @return	the real solutions of the equation qA x^2 + qB x + qC = 0
+	 */
+	private static double[] solveQuadraticEquation(double qA, double qB, double qC)
+	{
+		if(qA == 0)
+		{
+			if(qB == 0) return new double[0];
+			return new double[] {-qC/qB};
+		}
+		double discriminant = qB*qB - 4*qA*qC;
+		if(discriminant < 0) return new double[0];
+		double sqrtDiscriminant = Math.sqrt(discriminant);
+		return new double[] {(-qB - sqrtDiscriminant)/(2*qA), (-qB + sqrtDiscriminant)/(2*qA)};
+	}
+
+	/**
+	 * @return	the point with coordinates (u, v, w) = (rho, 0, w)
+	 */
+	private static Vector3D getPoint(Vector3D focalPoint, Vector3D wHat, Vector3D uHat, double w, double rho)
+	{
+		return Vector3D.sum(focalPoint, wHat.getProductWith(w), uHat.getProductWith(rho));
+	}
+
+	/**
+	 * Work out the range of distances from the optical axis the ray covers while its <i>w</i> coordinate is in the range of the lens sections,
+	 * and from that the range of indices of lens sections whose ring overlaps with this range.
+	 * @param index
+	 * @param ray
+	 * @return	{first index, last index, minimum rho} of the lens sections the ray could intersect, or null if it can't intersect any
+	 */
+	private static double[] getCandidateSections(RingIndex index, Ray ray)
+	{
+		if(index.sections.length == 0) return null;
+
+		Vector3D f2p = Vector3D.difference(ray.getP(), index.focalPoint);
+		Vector3D d = ray.getD();
+		double pW = Vector3D.scalarProduct(f2p, index.wHat);
+		double dW = Vector3D.scalarProduct(d, index.wHat);
+
+		// the range of distances along the ray in which the ray's w coordinate lies in the range of the lens sections
+		double s1, s2;
+		if(dW == 0)
+		{
+			if((pW < index.wMin) || (pW > index.wMax)) return null;
+			s1 = 0;
+			s2 = Double.POSITIVE_INFINITY;
+		}
+		else
+		{
+			double sA = (index.wMin - pW)/dW;
+			double sB = (index.wMax - pW)/dW;
+			s1 = Math.max(0, Math.min(sA, sB));
+			s2 = Math.max(sA, sB);
+			if(s2 < s1) return null;
+		}
+
+		// the square of the distance of the point a distance s along the ray from the optical axis is rho2(s) = c + 2 b s + a s^2
+		double pU2 = f2p.getModSquared() - pW*pW;
+		double dU2 = Math.max(0, d.getModSquared() - dW*dW);
+		double pUdU = Vector3D.scalarProduct(f2p, d) - pW*dW;
+		double rho2Min, rho2Max;
+		if(Double.isInfinite(s2))
+		{
+			rho2Max = (dU2 > 0)?Double.POSITIVE_INFINITY:pU2;
+		}
+		else
+		{
+			rho2Max = Math.max(pU2 + s1*(2*pUdU + s1*dU2), pU2 + s2*(2*pUdU + s2*dU2));
+		}
+		rho2Min = Math.min(pU2 + s1*(2*pUdU + s1*dU2), (Double.isInfinite(s2)?Double.POSITIVE_INFINITY:pU2 + s2*(2*pUdU + s2*dU2)));
+		if(dU2 > 0)
+		{
+			// the ray is closest to the optical axis at s = -pUdU/dU2
+			double sClosest = -pUdU/dU2;
+			if((sClosest > s1) && (sClosest < s2)) rho2Min = Math.min(rho2Min, pU2 - pUdU*pUdU/dU2);
+		}
+		double rhoMin = Math.sqrt(Math.max(0, rho2Min));
+		double rhoMax = Math.sqrt(Math.max(0, rho2Max));
+		rhoMin -= margin(rhoMin);
+		rhoMax += margin(rhoMax);
+
+		// the first lens section that could overlap is the first one whose rhoMaxSoFar >= rhoMin...
+		int first = Arrays.binarySearch(index.rhoMaxSoFar, rhoMin);
+		if(first < 0) first = -first - 1;
+		else while((first > 0) && (index.rhoMaxSoFar[first-1] >= rhoMin)) first--;
+
+		// ... and the last one is the last one whose rhoMin <= the ray's rhoMax
+		int last = Arrays.binarySearch(index.rhoMin, rhoMax);
+		if(last < 0) last = -last - 2;
+		else while((last < index.rhoMin.length-1) && (index.rhoMin[last+1] <= rhoMax)) last++;
+
+		if(last < first) return null;
+		return new double[] {first, last, rhoMin};
+	}
+
+
+	//
+	// SceneObject methods
+	//
+
+	/**
+	 * Passes the record on only to the lens sections whose ring the ray can reach (and to any other visible scene objects).
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		if(useBoundingVolumeHierarchy) return super.findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+
+		RingIndex index = getRingIndex();
+		boolean found = false;
+
+		// note that the record only accepts intersections that are closer than the closest one so far
+		for(SceneObject o : index.alwaysIntersectedSceneObjects)
+			if(o.findClosestRayIntersectionAvoidingOrigin(ray, originObject, record)) found = true;
+
+		double[] candidates = getCandidateSections(index, ray);
+		if(candidates != null)
+			for(int i=(int)candidates[0]; i<=(int)candidates[1]; i++)
+				if(index.rhoMax[i] >= candidates[2])
+					if(index.sections[i].findClosestRayIntersectionAvoidingOrigin(ray, originObject, record)) found = true;
+
+		return found;
+	}
+
+	/**
+	 * As findClosestRayIntersectionAvoidingOrigin is overridden, so must this be.
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
+	{
+		if(useBoundingVolumeHierarchy) return super.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject);
+
+		RingIndex index = getRingIndex();
+		RaySceneObjectIntersection closest = RaySceneObjectIntersection.NO_INTERSECTION;
+
+		for(SceneObject o : index.alwaysIntersectedSceneObjects)
+			closest = getCloser(closest, o.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject), ray);
+
+		double[] candidates = getCandidateSections(index, ray);
+		if(candidates != null)
+			for(int i=(int)candidates[0]; i<=(int)candidates[1]; i++)
+				if(index.rhoMax[i] >= candidates[2])
+					closest = getCloser(closest, index.sections[i].getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject), ray);
+
+		return closest;
+	}
+
+	/**
+	 * @param closest	the closest intersection so far
+	 * @param current	another intersection
+	 * @param ray
+	 * @return	whichever of the two intersections is closer to the ray's start point
+	 */
+	private static RaySceneObjectIntersection getCloser(RaySceneObjectIntersection closest, RaySceneObjectIntersection current, Ray ray)
+	{
+		if(current == RaySceneObjectIntersection.NO_INTERSECTION) return closest;
+
+		double currentdistance = (current.p).getDifferenceWith(ray.getP()).getLength();
+		if(currentdistance <= 0) return closest;
+		if(closest == RaySceneObjectIntersection.NO_INTERSECTION) return current;
+		return (currentdistance < (closest.p).getDifferenceWith(ray.getP()).getLength())?current:closest;
+	}
+
+	/**
+	 * As findClosestRayIntersectionAvoidingOrigin is overridden, so must this be.
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		if(useBoundingVolumeHierarchy) return super.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance);
+
+		RingIndex index = getRingIndex();
+
+		for(SceneObject o : index.alwaysIntersectedSceneObjects)
+			if(o.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance)) return true;
+
+		double[] candidates = getCandidateSections(index, ray);
+		if(candidates != null)
+			for(int i=(int)candidates[0]; i<=(int)candidates[1]; i++)
+				if(index.rhoMax[i] >= candidates[2])
+					if(index.sections[i].hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance)) return true;
+
+		return false;
+	}
+
+	@Override
+	public String getType()
+	{
+		return "Fresnel-lens sections";
+	}
+}
@@ -8,6 +8,7 @@ import optics.raytrace.exceptions.InconsistencyException;
 import optics.raytrace.sceneObjects.solidGeometry.SceneObjectPrimitiveIntersection;
 import optics.raytrace.surfaces.RefractiveSimple;
 import optics.raytrace.surfaces.SurfaceColour;
+import optics.raytrace.utility.CopyModeType;
 
 
 /**
@@ -432,6 +433,10 @@ public class FresnelLensSurface extends EditableSceneObjectCollection
 		// clear out anything that's already in here before adding the objects (again)
 		clear();
 		
+		// intersect each ray only with the lens sections whose ring it can reach
+		if(!(getSceneObjectContainer() instanceof FresnelLensSectionContainer))
+			setSceneObjectContainer(new FresnelLensSectionContainer(getSceneObjectContainer(), CopyModeType.SHARE_DATA));
+		
 		// create a unit vector along the optical-axis direction and facing outwards
 		Vector3D opticalAxisDirectionOutwards = opticalAxisDirection.getWithLength(Math.signum(Vector3D.scalarProduct(opticalAxisDirection, outwardsPrincipalishPlaneNormal)));
 		
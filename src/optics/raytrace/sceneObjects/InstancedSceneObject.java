@@ -0,0 +1,223 @@
+package optics.raytrace.sceneObjects;
+
+import java.util.ArrayList;
+
+import math.Vector3D;
+import optics.raytrace.core.*;
+import optics.raytrace.sceneObjects.transformations.RigidTransformation;
+
+/**
+ * An instance of a prototype scene object, placed in the scene by a rigid transformation.
+ *
+ * Unlike prototype.clone().transform(t), an instance doesn't copy the prototype.
+ * Instead, it transforms each ray into the prototype's coordinate system and intersects it with the prototype there.
+ * Any number of instances can therefore share the same prototype, which must not be changed while it is being shared.
+ *
+ * The intersected primitives are InstancedSceneObjectPrimitives, i.e. views of the prototype's primitives in the scene's coordinate system.
+ *
+ * @see optics.raytrace.sceneObjects.InstancedSceneObjectArray
+ * @author Johannes Courtial
+ */
+public class InstancedSceneObject extends SceneObjectClass
+{
+	private static final long serialVersionUID = -3394405946062185624L;
+
+	/**
+	 * the shared prototype
+	 */
+	private SceneObject prototype;
+
+	/**
+	 * the transformation from the prototype's coordinate system into that of the scene
+	 */
+	private RigidTransformation transformation;
+
+	/**
+	 * @param description
+	 * @param prototype	the shared prototype
+	 * @param transformation	the transformation from the prototype's coordinate system into that of the scene
+	 * @param parent
+	 * @param studio
+	 */
+	public InstancedSceneObject(String description, SceneObject prototype, RigidTransformation transformation, SceneObject parent, Studio studio)
+	{
+		super(description, parent, studio);
+
+		this.prototype = prototype;
+		this.transformation = transformation;
+	}
+
+	/**
+	 * Create an instance of the prototype, shifted by offset
+	 * @param description
+	 * @param prototype	the shared prototype
+	 * @param offset
+	 * @param parent
+	 * @param studio
+	 */
+	public InstancedSceneObject(String description, SceneObject prototype, Vector3D offset, SceneObject parent, Studio studio)
+	{
+		this(description, prototype, new RigidTransformation(offset), parent, studio);
+	}
+
+	/**
+	 * The copy shares the prototype with the original
+	 * @param original
+	 */
+	public InstancedSceneObject(InstancedSceneObject original)
+	{
+		super(original);
+
+		prototype = original.getPrototype();
+		transformation = original.getTransformation();
+	}
+
+	@Override
+	public InstancedSceneObject clone()
+	{
+		return new InstancedSceneObject(this);
+	}
+
+
+	//
+	// getters
+	//
+
+	public SceneObject getPrototype() {
+		return prototype;
+	}
+
+	public RigidTransformation getTransformation() {
+		return transformation;
+	}
+
+
+	//
+	// SceneObject methods
+	//
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray)
+	{
+		return InstancedSceneObjectPrimitive.getIntersectionInSceneCoordinates(
+				prototype.getClosestRayIntersection(InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation)),
+				this, 0, transformation
+			);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return InstancedSceneObjectPrimitive.getIntersectionInSceneCoordinates(
+				prototype.getClosestRayIntersectionAvoidingOrigin(
+						InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation),
+						InstancedSceneObjectPrimitive.getOriginObjectInPrototype(originObject, this, 0)
+					),
+				this, 0, transformation
+			);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObject(Ray ray)
+	{
+		return InstancedSceneObjectPrimitive.getIntersectionInSceneCoordinates(
+				prototype.getClosestRayIntersectionWithShadowThrowingSceneObject(InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation)),
+				this, 0, transformation
+			);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return InstancedSceneObjectPrimitive.getIntersectionInSceneCoordinates(
+				prototype.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(
+						InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation),
+						InstancedSceneObjectPrimitive.getOriginObjectInPrototype(originObject, this, 0)
+					),
+				this, 0, transformation
+			);
+	}
+
+	/**
+	 * As the transformation preserves distances, the prototype can look for intersections closer than the closest one so far
+	 * in its own coordinate system.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		Ray prototypeRay = InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation);
+		RaySceneObjectIntersectionRecord prototypeRecord = new RaySceneObjectIntersectionRecord();
+		prototypeRecord.reset(prototypeRay, record.getDistance());
+		if(!prototype.findClosestRayIntersectionAvoidingOrigin(prototypeRay, InstancedSceneObjectPrimitive.getOriginObjectInPrototype(originObject, this, 0), prototypeRecord))
+			return false;
+
+		return record.record(
+				prototypeRecord.getDistance(),
+				InstancedSceneObjectPrimitive.getSuitableInstancedSceneObjectPrimitive(this, 0, prototypeRecord.getSceneObjectPrimitive(), transformation)
+			);
+	}
+
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		return prototype.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(
+				InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation),
+				InstancedSceneObjectPrimitive.getOriginObjectInPrototype(originObject, this, 0),
+				maxDistance
+			);
+	}
+
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return InstancedSceneObjectPrimitive.getRaySpansInSceneCoordinates(
+				prototype.getRaySpans(
+						InstancedSceneObjectPrimitive.getRayInPrototypeCoordinates(ray, transformation),
+						InstancedSceneObjectPrimitive.getOriginObjectInPrototype(originObject, this, 0)
+					),
+				this, 0, transformation
+			);
+	}
+
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return prototype.getAxisAlignedBoundingBox().transform(transformation);
+	}
+
+	@Override
+	public boolean insideObject(Vector3D p)
+	{
+		return prototype.insideObject(transformation.inverseTransformPosition(p));
+	}
+
+	/**
+	 * If t is a rigid transformation, the result is another instance of the same prototype;
+	 * otherwise it is a stand-alone copy of the prototype, placed where this instance is and then transformed according to t.
+	 * @see optics.raytrace.core.SceneObject#transform(optics.raytrace.core.Transformation)
+	 */
+	@Override
+	public SceneObject transform(Transformation t)
+	{
+		if(t instanceof RigidTransformation)
+			return new InstancedSceneObject(description, prototype, transformation.getFollowedBy((RigidTransformation)t), getParent(), getStudio());
+
+		return prototype.transform(transformation).transform(t);
+	}
+
+	@Override
+	public ArrayList<SceneObjectPrimitive> getSceneObjectPrimitives()
+	{
+		ArrayList<SceneObjectPrimitive> SOPs = new ArrayList<SceneObjectPrimitive>();
+		for(SceneObjectPrimitive sop : prototype.getSceneObjectPrimitives())
+			SOPs.add(InstancedSceneObjectPrimitive.getSuitableInstancedSceneObjectPrimitive(this, 0, sop, transformation));
+		return SOPs;
+	}
+
+	@Override
+	public String getType()
+	{
+		return "Instance";
+	}
+}
@@ -0,0 +1,696 @@
+package optics.raytrace.sceneObjects;
+
+import java.util.ArrayList;
+
+import math.MyMath;
+import math.Vector3D;
+import optics.raytrace.core.*;
+import optics.raytrace.sceneObjects.transformations.RigidTransformation;
+
+/**
+ * A regular (1D, 2D or 3D) array of instances of a shared prototype scene object.
+ *
+ * The instance in cell (i, j, k), where 0 &lt;= i &lt; numbersOfCells[0] etc., is the prototype, shifted by
+ * offset + i*periods[0] + j*periods[1] + k*periods[2].
+ * The cells are not stored individually; instead, for each ray the array works out which cells the ray passes through,
+ * and intersects the ray only with the prototype, in the coordinate system of each of those cells.
+ * Neither the memory required nor the cost of intersecting a ray with the array therefore grows with the number of cells.
+ *
+ * To find the cells a ray passes through, the ray is followed through the lattice spanned by the periods (a 3D-DDA),
+ * and at each lattice cell the ray enters, the instances whose bounding box can reach it are intersected.
+ * If the periods don't span 3D space, or if the prototype's bounding box is infinite, all cells are intersected with every ray.
+ *
+ * The intersected primitives are InstancedSceneObjectPrimitives.
+ *
+ * @see optics.raytrace.sceneObjects.InstancedSceneObject
+ * @author Johannes Courtial
+ */
+public class InstancedSceneObjectArray extends SceneObjectClass
+{
+	private static final long serialVersionUID = 5542136920434871097L;
+
+	/**
+	 * the shared prototype
+	 */
+	private SceneObject prototype;
+
+	/**
+	 * the shift of the instance in cell (0, 0, 0)
+	 */
+	private Vector3D offset;
+
+	/**
+	 * the shifts between neighbouring cells in the three directions of the array
+	 */
+	private Vector3D[] periods;
+
+	/**
+	 * the numbers of cells in the three directions of the array
+	 */
+	private int[] numbersOfCells;
+
+	/**
+	 * The lattice in which the ray is followed; worked out the first time it is needed
+	 */
+	private transient volatile Lattice lattice = null;
+
+	/**
+	 * @param description
+	 * @param prototype	the shared prototype
+	 * @param offset	the shift of the instance in cell (0, 0, 0)
+	 * @param period1	the shift between neighbouring cells in the first direction
+	 * @param numberOfCells1	the number of cells in the first direction
+	 * @param period2	the shift between neighbouring cells in the second direction
+	 * @param numberOfCells2	the number of cells in the second direction
+	 * @param period3	the shift between neighbouring cells in the third direction
+	 * @param numberOfCells3	the number of cells in the third direction
+	 * @param parent
+	 * @param studio
+	 */
+	public InstancedSceneObjectArray(
+			String description,
+			SceneObject prototype,
+			Vector3D offset,
+			Vector3D period1, int numberOfCells1,
+			Vector3D period2, int numberOfCells2,
+			Vector3D period3, int numberOfCells3,
+			SceneObject parent,
+			Studio studio
+		)
+	{
+		super(description, parent, studio);
+
+		this.prototype = prototype;
+		this.offset = offset;
+		periods = new Vector3D[] {period1, period2, period3};
+		numbersOfCells = new int[] {Math.max(0, numberOfCells1), Math.max(0, numberOfCells2), Math.max(0, numberOfCells3)};
+	}
+
+	/**
+	 * The copy shares the prototype with the original
+	 * @param original
+	 */
+	public InstancedSceneObjectArray(InstancedSceneObjectArray original)
+	{
+		super(original);
+
+		prototype = original.getPrototype();
+		offset = original.getOffset();
+		periods = original.periods.clone();
+		numbersOfCells = original.numbersOfCells.clone();
+	}
+
+	@Override
+	public InstancedSceneObjectArray clone()
+	{
+		return new InstancedSceneObjectArray(this);
+	}
+
+
+	//
+	// getters
+	//
+
+	public SceneObject getPrototype() {
+		return prototype;
+	}
+
+	public Vector3D getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @param direction	0, 1 or 2
+	 * @return	the shift between neighbouring cells in the given direction
+	 */
+	public Vector3D getPeriod(int direction) {
+		return periods[direction];
+	}
+
+	/**
+	 * @param direction	0, 1 or 2
+	 * @return	the number of cells in the given direction
+	 */
+	public int getNumberOfCells(int direction) {
+		return numbersOfCells[direction];
+	}
+
+	/**
+	 * @return	the total number of cells
+	 */
+	public int getNumberOfCells() {
+		return numbersOfCells[0]*numbersOfCells[1]*numbersOfCells[2];
+	}
+
+
+	//
+	// cells
+	//
+
+	/**
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return	the index that distinguishes the instance in cell (i, j, k) from all the others
+	 */
+	private int getCellIndex(int i, int j, int k)
+	{
+		return (i*numbersOfCells[1] + j)*numbersOfCells[2] + k;
+	}
+
+	/**
+	 * @param i
+	 * @param j
+	 * @param k
+	 * @return	the shift of the instance in cell (i, j, k)
+	 */
+	private Vector3D getCellOffset(int i, int j, int k)
+	{
+		return new Vector3D(
+				offset.x + i*periods[0].x + j*periods[1].x + k*periods[2].x,
+				offset.y + i*periods[0].y + j*periods[1].y + k*periods[2].y,
+				offset.z + i*periods[0].z + j*periods[1].z + k*periods[2].z
+			);
+	}
+
+	/**
+	 * @param ray
+	 * @param cellOffset
+	 * @return	the ray in the coordinate system of the cell with the given offset, i.e. that of the prototype
+	 */
+	private static Ray getRayInCellCoordinates(Ray ray, Vector3D cellOffset)
+	{
+		return new Ray(ray.getP().getDifferenceWith(cellOffset), ray.getK(), ray.getD(), ray.getT(), ray.isReportToConsole());
+	}
+
+	/**
+	 * @param originObject
+	 * @return	the index of the cell that contains originObject, or -1 if it's not part of this array
+	 */
+	private int getOriginCellIndex(SceneObjectPrimitive originObject)
+	{
+		if((originObject instanceof InstancedSceneObjectPrimitive) && (((InstancedSceneObjectPrimitive)originObject).getInstance() == this))
+			return ((InstancedSceneObjectPrimitive)originObject).getInstanceIndex();
+		return -1;
+	}
+
+	/**
+	 * The lattice spanned by the periods, in which the ray is followed, and the extent of the prototype in that lattice
+	 */
+	private static class Lattice
+	{
+		/**
+		 * true if the prototype's bounding box is empty, so no ray can intersect any instance
+		 */
+		boolean empty;
+
+		/**
+		 * the vectors reciprocal to the periods, which give the lattice coordinates of a position;
+		 * null if the cells have to be searched exhaustively
+		 */
+		Vector3D[] reciprocalVectors;
+
+		/**
+		 * the range of lattice coordinates of the prototype's bounding box
+		 */
+		double[] lMin, lMax;
+	}
+
+	private Lattice getLattice()
+	{
+		Lattice l = lattice;
+		if(l == null) l = calculateLattice();
+		return l;
+	}
+
+	private synchronized Lattice calculateLattice()
+	{
+		if(lattice != null) return lattice;
+
+		Lattice l = new Lattice();
+		AxisAlignedBoundingBox box = prototype.getAxisAlignedBoundingBox();
+		l.empty = box.isEmpty();
+
+		double volume = Vector3D.scalarProduct(periods[0], Vector3D.crossProduct(periods[1], periods[2]));
+		if(!l.empty && !box.isInfinite() && (Math.abs(volume) > 1e-12*periods[0].getLength()*periods[1].getLength()*periods[2].getLength()))
+		{
+			l.reciprocalVectors = new Vector3D[] {
+					Vector3D.crossProduct(periods[1], periods[2]).getProductWith(1/volume),
+					Vector3D.crossProduct(periods[2], periods[0]).getProductWith(1/volume),
+					Vector3D.crossProduct(periods[0], periods[1]).getProductWith(1/volume)
+			};
+
+			// the lattice coordinates of the corners of the (slightly expanded) bounding box
+			double margin = MyMath.TINY + 1e-9*Math.max(box.getMin().getLength(), box.getMax().getLength());
+			box = box.getExpanded(margin);
+			l.lMin = new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+			l.lMax = new double[] {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+			for(int corner=0; corner<8; corner++)
+			{
+				Vector3D c = new Vector3D(
+						((corner & 1) == 0)?box.getXMin():box.getXMax(),
+						((corner & 2) == 0)?box.getYMin():box.getYMax(),
+						((corner & 4) == 0)?box.getZMin():box.getZMax()
+					);
+				for(int a=0; a<3; a++)
+				{
+					double la = Vector3D.scalarProduct(c, l.reciprocalVectors[a]);
+					l.lMin[a] = Math.min(l.lMin[a], la);
+					l.lMax[a] = Math.max(l.lMax[a], la);
+				}
+			}
+		}
+
+		lattice = l;
+		return l;
+	}
+
+	/**
+	 * Something to do with the candidate cells a ray passes through
+	 */
+	private abstract static class CellVisitor
+	{
+		/**
+		 * cells that the ray only reaches beyond this distance don't need to be visited
+		 */
+		double maxDistance;
+
+		CellVisitor(double maxDistance)
+		{
+			this.maxDistance = maxDistance;
+		}
+
+		/**
+		 * @param i
+		 * @param j
+		 * @param k
+		 * @return	true if no further cells need to be visited
+		 */
+		abstract boolean visit(int i, int j, int k);
+	}
+
+	/**
+	 * Visit (at least) all the cells whose instance the ray can intersect, roughly in order of increasing distance along the ray.
+	 * Every cell whose instance the ray can intersect closer than some distance has been visited by the time the visitor
+	 * gets to see the first cell that the ray only reaches beyond that distance, so the visitor can stop the search by
+	 * reducing its maxDistance.
+	 * @param ray
+	 * @param visitor
+	 */
+	private void visitCandidateCells(Ray ray, CellVisitor visitor)
+	{
+		Lattice l = getLattice();
+		if(l.empty) return;
+
+		if(l.reciprocalVectors == null)
+		{
+			// search exhaustively
+			visitCells(new int[] {0, 0, 0}, new int[] {numbersOfCells[0]-1, numbersOfCells[1]-1, numbersOfCells[2]-1}, visitor);
+			return;
+		}
+
+		// the lattice coordinates of the ray's start point and direction
+		Vector3D p = ray.getP().getDifferenceWith(offset), d = ray.getD();
+		double[] l0 = new double[3], ld = new double[3];
+		for(int a=0; a<3; a++)
+		{
+			l0[a] = Vector3D.scalarProduct(p, l.reciprocalVectors[a]);
+			ld[a] = Vector3D.scalarProduct(d, l.reciprocalVectors[a]);
+		}
+
+		// clip the ray to the region that contains instances
+		double sStart = 0, sEnd = Double.POSITIVE_INFINITY;
+		for(int a=0; a<3; a++)
+		{
+			double lo = l.lMin[a], hi = l.lMax[a] + numbersOfCells[a] - 1;
+			if(ld[a] == 0)
+			{
+				if((l0[a] < lo) || (l0[a] > hi)) return;
+			}
+			else
+			{
+				double s1 = (lo - l0[a])/ld[a], s2 = (hi - l0[a])/ld[a];
+				sStart = Math.max(sStart, Math.min(s1, s2));
+				sEnd = Math.min(sEnd, Math.max(s1, s2));
+			}
+		}
+		if((sStart > sEnd) || (sStart > visitor.maxDistance)) return;
+
+		// follow the ray through the lattice;
+		// while it is in lattice cell g, the candidate cells (in each direction) are those with index in the range [lo, hi]
+		int[] g = new int[3], step = new int[3], lo = new int[3], hi = new int[3];
+		double[] sNext = new double[3], sDelta = new double[3];
+		for(int a=0; a<3; a++)
+		{
+			g[a] = (int)Math.floor(l0[a] + sStart*ld[a]);
+			if(ld[a] > 0)
+			{
+				step[a] = 1;
+				sNext[a] = (g[a] + 1 - l0[a])/ld[a];
+				sDelta[a] = 1/ld[a];
+			}
+			else if(ld[a] < 0)
+			{
+				step[a] = -1;
+				sNext[a] = (g[a] - l0[a])/ld[a];
+				sDelta[a] = -1/ld[a];
+			}
+			else
+			{
+				step[a] = 0;
+				sNext[a] = Double.POSITIVE_INFINITY;
+				sDelta[a] = Double.POSITIVE_INFINITY;
+			}
+			lo[a] = getLowestCandidateCell(l, a, g[a]);
+			hi[a] = getHighestCandidateCell(l, a, g[a]);
+		}
+		if(visitCells(lo, hi, visitor)) return;
+
+		while(true)
+		{
+			// the direction in which the ray leaves the current lattice cell
+			int a = (sNext[0] < sNext[1])?((sNext[0] < sNext[2])?0:2):((sNext[1] < sNext[2])?1:2);
+			if((sNext[a] > sEnd) || (sNext[a] > visitor.maxDistance)) return;
+
+			g[a] += step[a];
+			sNext[a] += sDelta[a];
+
+			// the candidate cells have shifted by one in direction a; visit only those that haven't been visited already
+			int newLo = getLowestCandidateCell(l, a, g[a]), newHi = getHighestCandidateCell(l, a, g[a]);
+			int[] sliceLo = lo.clone(), sliceHi = hi.clone();
+			if(step[a] > 0)
+			{
+				sliceLo[a] = Math.max(newLo, hi[a]+1);
+				sliceHi[a] = newHi;
+			}
+			else
+			{
+				sliceLo[a] = newLo;
+				sliceHi[a] = Math.min(newHi, lo[a]-1);
+			}
+			lo[a] = newLo;
+			hi[a] = newHi;
+			if(visitCells(sliceLo, sliceHi, visitor)) return;
+		}
+	}
+
+	/**
+	 * @param l
+	 * @param a	direction
+	 * @param g	lattice coordinate of the lattice cell the ray is in
+	 * @return	the lowest index (in direction a) of the cells whose instance can reach into lattice cell g
+	 */
+	private int getLowestCandidateCell(Lattice l, int a, int g)
+	{
+		return (int)Math.max(0, Math.ceil(g - l.lMax[a]));
+	}
+
+	/**
+	 * @param l
+	 * @param a	direction
+	 * @param g	lattice coordinate of the lattice cell the ray is in
+	 * @return	the highest index (in direction a) of the cells whose instance can reach into lattice cell g
+	 */
+	private int getHighestCandidateCell(Lattice l, int a, int g)
+	{
+		return (int)Math.min(numbersOfCells[a]-1, Math.floor(g + 1 - l.lMin[a]));
+	}
+
+	/**
+	 * @param lo
+	 * @param hi
+	 * @param visitor
+	 * @return	true if the visitor doesn't need to visit any further cells
+	 */
+	private static boolean visitCells(int[] lo, int[] hi, CellVisitor visitor)
+	{
+		for(int i=lo[0]; i<=hi[0]; i++)
+			for(int j=lo[1]; j<=hi[1]; j++)
+				for(int k=lo[2]; k<=hi[2]; k++)
+					if(visitor.visit(i, j, k)) return true;
+		return false;
+	}
+
+
+	//
+	// SceneObject methods
+	//
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray)
+	{
+		return getClosestRayIntersectionAvoidingOrigin(ray, null);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
+	{
+		RaySceneObjectIntersectionRecord record = new RaySceneObjectIntersectionRecord(ray);
+		findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+		return record.getRaySceneObjectIntersection();
+	}
+
+	/**
+	 * As the instances are only shifted, the prototype can look for intersections closer than the closest one so far
+	 * in each cell's coordinate system.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(final Ray ray, SceneObjectPrimitive originObject, final RaySceneObjectIntersectionRecord record)
+	{
+		final int originCellIndex = getOriginCellIndex(originObject);
+		final SceneObjectPrimitive originObjectInPrototype = (originCellIndex < 0)?null:((InstancedSceneObjectPrimitive)originObject).getPrototypePrimitive();
+		final RaySceneObjectIntersectionRecord cellRecord = new RaySceneObjectIntersectionRecord();
+		final boolean[] found = {false};
+
+		visitCandidateCells(ray, new CellVisitor(record.getDistance())
+		{
+			@Override
+			boolean visit(int i, int j, int k)
+			{
+				int cellIndex = getCellIndex(i, j, k);
+				Vector3D cellOffset = getCellOffset(i, j, k);
+				Ray cellRay = getRayInCellCoordinates(ray, cellOffset);
+				cellRecord.reset(cellRay, record.getDistance());
+				if(
+						prototype.findClosestRayIntersectionAvoidingOrigin(cellRay, (cellIndex == originCellIndex)?originObjectInPrototype:null, cellRecord) &&
+						record.record(
+								cellRecord.getDistance(),
+								InstancedSceneObjectPrimitive.getSuitableInstancedSceneObjectPrimitive(
+										InstancedSceneObjectArray.this, cellIndex, cellRecord.getSceneObjectPrimitive(), new RigidTransformation(cellOffset)
+									)
+							)
+					)
+				{
+					found[0] = true;
+					maxDistance = record.getDistance();
+				}
+				return false;
+			}
+		});
+
+		return found[0];
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObject(Ray ray)
+	{
+		return getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, null);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(final Ray ray, SceneObjectPrimitive originObject)
+	{
+		final int originCellIndex = getOriginCellIndex(originObject);
+		final SceneObjectPrimitive originObjectInPrototype = (originCellIndex < 0)?null:((InstancedSceneObjectPrimitive)originObject).getPrototypePrimitive();
+		final RaySceneObjectIntersection[] closest = {RaySceneObjectIntersection.NO_INTERSECTION};
+
+		visitCandidateCells(ray, new CellVisitor(Double.POSITIVE_INFINITY)
+		{
+			@Override
+			boolean visit(int i, int j, int k)
+			{
+				int cellIndex = getCellIndex(i, j, k);
+				Vector3D cellOffset = getCellOffset(i, j, k);
+				Ray cellRay = getRayInCellCoordinates(ray, cellOffset);
+				RaySceneObjectIntersection c = prototype.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(
+						cellRay, (cellIndex == originCellIndex)?originObjectInPrototype:null
+					);
+				if(c != RaySceneObjectIntersection.NO_INTERSECTION)
+				{
+					double distance = Vector3D.getDistance(c.p, cellRay.getP());
+					if(distance < maxDistance)
+					{
+						maxDistance = distance;
+						closest[0] = InstancedSceneObjectPrimitive.getIntersectionInSceneCoordinates(
+								c, InstancedSceneObjectArray.this, cellIndex, new RigidTransformation(cellOffset)
+							);
+					}
+				}
+				return false;
+			}
+		});
+
+		return closest[0];
+	}
+
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(final Ray ray, SceneObjectPrimitive originObject, final double maxDistance)
+	{
+		final int originCellIndex = getOriginCellIndex(originObject);
+		final SceneObjectPrimitive originObjectInPrototype = (originCellIndex < 0)?null:((InstancedSceneObjectPrimitive)originObject).getPrototypePrimitive();
+		final boolean[] found = {false};
+
+		visitCandidateCells(ray, new CellVisitor(maxDistance)
+		{
+			@Override
+			boolean visit(int i, int j, int k)
+			{
+				int cellIndex = getCellIndex(i, j, k);
+				found[0] = prototype.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(
+						getRayInCellCoordinates(ray, getCellOffset(i, j, k)),
+						(cellIndex == originCellIndex)?originObjectInPrototype:null,
+						maxDistance
+					);
+				return found[0];
+			}
+		});
+
+		return found[0];
+	}
+
+	/**
+	 * @return	the union of the ray spans of all the instances the ray passes through, or null if any of those can't calculate its ray spans
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(final Ray ray, SceneObjectPrimitive originObject)
+	{
+		final int originCellIndex = getOriginCellIndex(originObject);
+		final SceneObjectPrimitive originObjectInPrototype = (originCellIndex < 0)?null:((InstancedSceneObjectPrimitive)originObject).getPrototypePrimitive();
+		final RaySpanList[] spans = {new RaySpanList()};
+
+		visitCandidateCells(ray, new CellVisitor(Double.POSITIVE_INFINITY)
+		{
+			@Override
+			boolean visit(int i, int j, int k)
+			{
+				int cellIndex = getCellIndex(i, j, k);
+				Vector3D cellOffset = getCellOffset(i, j, k);
+				RaySpanList cellSpans = prototype.getRaySpans(
+						getRayInCellCoordinates(ray, cellOffset),
+						(cellIndex == originCellIndex)?originObjectInPrototype:null
+					);
+				if(cellSpans == null)
+				{
+					spans[0] = null;
+					return true;
+				}
+				if(cellSpans.getNumberOfSpans() > 0)
+					spans[0] = spans[0].getUnionWith(InstancedSceneObjectPrimitive.getRaySpansInSceneCoordinates(
+							cellSpans, InstancedSceneObjectArray.this, cellIndex, new RigidTransformation(cellOffset)
+						));
+				return false;
+			}
+		});
+
+		return spans[0];
+	}
+
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		if(getNumberOfCells() == 0) return AxisAlignedBoundingBox.EMPTY;
+		AxisAlignedBoundingBox box = prototype.getAxisAlignedBoundingBox();
+		if(box.isEmpty() || box.isInfinite()) return box;
+
+		// the box is the union of those of the instances in the cells at the corners of the array
+		AxisAlignedBoundingBox arrayBox = AxisAlignedBoundingBox.EMPTY;
+		for(int corner=0; corner<8; corner++)
+			arrayBox = arrayBox.getUnionWith(box.transform(new RigidTransformation(getCellOffset(
+					((corner & 1) == 0)?0:numbersOfCells[0]-1,
+					((corner & 2) == 0)?0:numbersOfCells[1]-1,
+					((corner & 4) == 0)?0:numbersOfCells[2]-1
+				))));
+		return arrayBox;
+	}
+
+	@Override
+	public boolean insideObject(Vector3D p)
+	{
+		Lattice l = getLattice();
+		if(l.empty) return false;
+
+		int[] lo, hi;
+		if(l.reciprocalVectors == null)
+		{
+			lo = new int[] {0, 0, 0};
+			hi = new int[] {numbersOfCells[0]-1, numbersOfCells[1]-1, numbersOfCells[2]-1};
+		}
+		else
+		{
+			// only the instances whose bounding box can reach p
+			Vector3D q = p.getDifferenceWith(offset);
+			lo = new int[3];
+			hi = new int[3];
+			for(int a=0; a<3; a++)
+			{
+				int g = (int)Math.floor(Vector3D.scalarProduct(q, l.reciprocalVectors[a]));
+				lo[a] = getLowestCandidateCell(l, a, g);
+				hi[a] = getHighestCandidateCell(l, a, g);
+			}
+		}
+
+		for(int i=lo[0]; i<=hi[0]; i++)
+			for(int j=lo[1]; j<=hi[1]; j++)
+				for(int k=lo[2]; k<=hi[2]; k++)
+					if(prototype.insideObject(p.getDifferenceWith(getCellOffset(i, j, k)))) return true;
+		return false;
+	}
+
+	/**
+	 * Assumes that t is an affine transformation (as are all transformations used in practice), so that it maps the array onto
+	 * an array of instances of the transformed prototype.
+	 * @see optics.raytrace.core.SceneObject#transform(optics.raytrace.core.Transformation)
+	 */
+	@Override
+	public SceneObject transform(Transformation t)
+	{
+		return new InstancedSceneObjectArray(
+				description,
+				prototype.transform(t),
+				t.transformDirection(offset),
+				t.transformDirection(periods[0]), numbersOfCells[0],
+				t.transformDirection(periods[1]), numbersOfCells[1],
+				t.transformDirection(periods[2]), numbersOfCells[2],
+				getParent(),
+				getStudio()
+			);
+	}
+
+	/**
+	 * @return	the primitives of all instances
+	 * @see optics.raytrace.core.SceneObject#getSceneObjectPrimitives()
+	 */
+	@Override
+	public ArrayList<SceneObjectPrimitive> getSceneObjectPrimitives()
+	{
+		ArrayList<SceneObjectPrimitive> prototypePrimitives = prototype.getSceneObjectPrimitives();
+		ArrayList<SceneObjectPrimitive> SOPs = new ArrayList<SceneObjectPrimitive>(getNumberOfCells()*prototypePrimitives.size());
+		for(int i=0; i<numbersOfCells[0]; i++)
+			for(int j=0; j<numbersOfCells[1]; j++)
+				for(int k=0; k<numbersOfCells[2]; k++)
+				{
+					RigidTransformation cellTransformation = new RigidTransformation(getCellOffset(i, j, k));
+					for(SceneObjectPrimitive sop : prototypePrimitives)
+						SOPs.add(InstancedSceneObjectPrimitive.getSuitableInstancedSceneObjectPrimitive(this, getCellIndex(i, j, k), sop, cellTransformation));
+				}
+		return SOPs;
+	}
+
+	@Override
+	public String getType()
+	{
+		return "Array of instances";
+	}
+}
@@ -0,0 +1,322 @@
+package optics.raytrace.sceneObjects;
+
+import math.*;
+import optics.DoubleColour;
+import optics.raytrace.core.*;
+import optics.raytrace.exceptions.RayTraceException;
+import optics.raytrace.sceneObjects.transformations.RigidTransformation;
+
+/**
+ * A scene-object primitive in one instance of a shared prototype, i.e. a view of one of the prototype's primitives,
+ * seen through the rigid transformation that places the instance in the scene.
+ *
+ * Objects of this class are created (cheaply) whenever an instance is intersected with a ray, so two such objects
+ * are considered equal if they show the same prototype primitive in the same instance.
+ * The object's surface property is that of the prototype primitive; surface properties that keep their own reference to a scene object
+ * (rather than using the scene object in the intersection) see positions in the prototype's coordinate system.
+ *
+ * @see optics.raytrace.sceneObjects.InstancedSceneObject
+ * @see optics.raytrace.sceneObjects.InstancedSceneObjectArray
+ * @author Johannes Courtial
+ */
+public class InstancedSceneObjectPrimitive extends SceneObjectPrimitive
+{
+	private static final long serialVersionUID = 8416262305512917437L;
+
+	/**
+	 * the instance (e.g. an InstancedSceneObject) or collection of instances (e.g. an InstancedSceneObjectArray) this primitive is part of
+	 */
+	protected SceneObject instance;
+
+	/**
+	 * distinguishes between the different instances in a collection of instances
+	 */
+	protected int instanceIndex;
+
+	/**
+	 * the primitive in the prototype
+	 */
+	protected SceneObjectPrimitive prototypePrimitive;
+
+	/**
+	 * the transformation from the prototype's coordinate system into that of the scene
+	 */
+	protected RigidTransformation transformation;
+
+	/**
+	 * @param instance	the instance, or collection of instances, this primitive is part of
+	 * @param instanceIndex	distinguishes between the different instances in a collection of instances
+	 * @param prototypePrimitive	the primitive in the prototype
+	 * @param transformation	the transformation from the prototype's coordinate system into that of the scene
+	 */
+	public InstancedSceneObjectPrimitive(SceneObject instance, int instanceIndex, SceneObjectPrimitive prototypePrimitive, RigidTransformation transformation)
+	{
+		super(prototypePrimitive.getDescription(), prototypePrimitive.getSurfaceProperty(), instance, instance.getStudio());
+
+		this.instance = instance;
+		this.instanceIndex = instanceIndex;
+		this.prototypePrimitive = prototypePrimitive;
+		this.transformation = transformation;
+	}
+
+	/**
+	 * The copy shows the same (shared) prototype primitive
+	 * @param original
+	 */
+	public InstancedSceneObjectPrimitive(InstancedSceneObjectPrimitive original)
+	{
+		this(original.instance, original.instanceIndex, original.prototypePrimitive, original.transformation);
+	}
+
+	@Override
+	public InstancedSceneObjectPrimitive clone()
+	{
+		return new InstancedSceneObjectPrimitive(this);
+	}
+
+	/**
+	 * @param instance
+	 * @param instanceIndex
+	 * @param prototypePrimitive
+	 * @param transformation
+	 * @return	a view of prototypePrimitive that is also parametrised if prototypePrimitive is
+	 */
+	public static InstancedSceneObjectPrimitive getSuitableInstancedSceneObjectPrimitive(SceneObject instance, int instanceIndex, SceneObjectPrimitive prototypePrimitive, RigidTransformation transformation)
+	{
+		if(prototypePrimitive instanceof One2OneParametrisedObject) return new One2OneParametrisedInstancedSceneObjectPrimitive(instance, instanceIndex, prototypePrimitive, transformation);
+		else return new InstancedSceneObjectPrimitive(instance, instanceIndex, prototypePrimitive, transformation);
+	}
+
+
+	//
+	// getters
+	//
+
+	public SceneObject getInstance() {
+		return instance;
+	}
+
+	public int getInstanceIndex() {
+		return instanceIndex;
+	}
+
+	public SceneObjectPrimitive getPrototypePrimitive() {
+		return prototypePrimitive;
+	}
+
+	public RigidTransformation getTransformation() {
+		return transformation;
+	}
+
+
+	//
+	// conversion between the scene's and the prototype's coordinate systems
+	//
+
+	/**
+	 * @param ray	a ray in the scene's coordinate system
+	 * @param transformation	the transformation from the prototype's coordinate system into the scene's
+	 * @return	the same ray in the prototype's coordinate system
+	 */
+	public static Ray getRayInPrototypeCoordinates(Ray ray, RigidTransformation transformation)
+	{
+		return new Ray(
+				transformation.inverseTransformPosition(ray.getP()),
+				(ray.getK() == null)?null:transformation.inverseTransformDirection(ray.getK()),
+				transformation.inverseTransformDirection(ray.getD()),
+				ray.getT(),
+				ray.isReportToConsole()
+			);
+	}
+
+	/**
+	 * @param originObject	the primitive on which a ray originated
+	 * @param instance
+	 * @param instanceIndex
+	 * @return	the corresponding primitive in the prototype if originObject is part of the given instance, null otherwise
+	 */
+	public static SceneObjectPrimitive getOriginObjectInPrototype(SceneObjectPrimitive originObject, SceneObject instance, int instanceIndex)
+	{
+		if(originObject instanceof InstancedSceneObjectPrimitive)
+		{
+			InstancedSceneObjectPrimitive o = (InstancedSceneObjectPrimitive)originObject;
+			if((o.instance == instance) && (o.instanceIndex == instanceIndex)) return o.prototypePrimitive;
+		}
+		return null;
+	}
+
+	/**
+	 * @param i	an intersection in the prototype's coordinate system
+	 * @param instance
+	 * @param instanceIndex
+	 * @param transformation
+	 * @return	the same intersection in the scene's coordinate system
+	 */
+	public static RaySceneObjectIntersection getIntersectionInSceneCoordinates(RaySceneObjectIntersection i, SceneObject instance, int instanceIndex, RigidTransformation transformation)
+	{
+		if(i == RaySceneObjectIntersection.NO_INTERSECTION) return i;
+
+		return new RaySceneObjectIntersection(
+				transformation.transformPosition(i.p),
+				getSuitableInstancedSceneObjectPrimitive(instance, instanceIndex, i.o, transformation),
+				i.t
+			);
+	}
+
+	/**
+	 * As the transformation preserves distances, the spans are at the same distances along the ray in both coordinate systems;
+	 * only the primitives need replacing.
+	 * @param spans	ray spans in the prototype's coordinate system (or null)
+	 * @param instance
+	 * @param instanceIndex
+	 * @param transformation
+	 * @return	the same ray spans in the scene's coordinate system
+	 */
+	public static RaySpanList getRaySpansInSceneCoordinates(RaySpanList spans, SceneObject instance, int instanceIndex, RigidTransformation transformation)
+	{
+		if(spans == null) return null;
+
+		RaySpanList s = new RaySpanList();
+		for(int i=0; i<spans.getNumberOfSpans(); i++)
+		{
+			SceneObjectPrimitive entryObject = spans.getEntryObject(i), exitObject = spans.getExitObject(i);
+			s.addSpan(
+					spans.getEntryDistance(i),
+					(entryObject == null)?null:getSuitableInstancedSceneObjectPrimitive(instance, instanceIndex, entryObject, transformation),
+					spans.getExitDistance(i),
+					(exitObject == null)?null:getSuitableInstancedSceneObjectPrimitive(instance, instanceIndex, exitObject, transformation)
+				);
+		}
+		return s;
+	}
+
+
+	//
+	// SceneObjectPrimitive methods
+	//
+
+	@Override
+	public Vector3D getNormalisedOutwardsSurfaceNormal(Vector3D p)
+	{
+		return transformation.transformDirection(prototypePrimitive.getNormalisedOutwardsSurfaceNormal(transformation.inverseTransformPosition(p)));
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray)
+	{
+		return getClosestRayIntersectionAvoidingOrigin(ray, null);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return getIntersectionInSceneCoordinates(
+				prototypePrimitive.getClosestRayIntersectionAvoidingOrigin(
+						getRayInPrototypeCoordinates(ray, transformation),
+						equals(originObject)?prototypePrimitive:null
+					),
+				instance, instanceIndex, transformation
+			);
+	}
+
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return getIntersectionInSceneCoordinates(
+				prototypePrimitive.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(
+						getRayInPrototypeCoordinates(ray, transformation),
+						equals(originObject)?prototypePrimitive:null
+					),
+				instance, instanceIndex, transformation
+			);
+	}
+
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		return prototypePrimitive.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(
+				getRayInPrototypeCoordinates(ray, transformation),
+				equals(originObject)?prototypePrimitive:null,
+				maxDistance
+			);
+	}
+
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return getRaySpansInSceneCoordinates(
+				prototypePrimitive.getRaySpans(
+						getRayInPrototypeCoordinates(ray, transformation),
+						equals(originObject)?prototypePrimitive:null
+					),
+				instance, instanceIndex, transformation
+			);
+	}
+
+	@Override
+	public boolean insideObject(Vector3D p)
+	{
+		return prototypePrimitive.insideObject(transformation.inverseTransformPosition(p));
+	}
+
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return prototypePrimitive.getAxisAlignedBoundingBox().transform(transformation);
+	}
+
+	@Override
+	public boolean isShadowThrowing()
+	{
+		return prototypePrimitive.isShadowThrowing();
+	}
+
+	@Override
+	public DoubleColour getColourAtIntersection(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
+	throws RayTraceException
+	{
+		return prototypePrimitive.getColourAtIntersection(r, i, scene, l, traceLevel, raytraceExceptionHandler);
+	}
+
+	@Override
+	public DoubleColour getColourOrContinuationAtIntersection(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		return prototypePrimitive.getColourOrContinuationAtIntersection(r, i, scene, l, traceLevel, raytraceExceptionHandler, continuation);
+	}
+
+	/**
+	 * @return	a stand-alone copy of the prototype primitive, placed where this instance is and then transformed according to t
+	 */
+	@Override
+	public SceneObjectPrimitive transform(Transformation t)
+	{
+		return prototypePrimitive.transform(transformation).transform(t);
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if(this == o) return true;
+		if(!(o instanceof InstancedSceneObjectPrimitive)) return false;
+		InstancedSceneObjectPrimitive p = (InstancedSceneObjectPrimitive)o;
+		return (instance == p.instance) && (instanceIndex == p.instanceIndex) && prototypePrimitive.equals(p.prototypePrimitive);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31*(31*System.identityHashCode(instance) + instanceIndex) + prototypePrimitive.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "InstancedSceneObjectPrimitive [instance #" + instanceIndex + " of " + prototypePrimitive + "]";
+	}
+
+	@Override
+	public String getType()
+	{
+		return prototypePrimitive.getType();
+	}
+}
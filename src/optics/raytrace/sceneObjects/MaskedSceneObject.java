@@ -7,6 +7,7 @@ import javax.imageio.*;
 
 import java.awt.image.*;
 
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.ParametrisedObject;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
@@ -45,6 +46,16 @@ public class MaskedSceneObject extends SceneObjectClass
 
 	private int maskImagePixelWidth, maskImagePixelHeight;	// width and height (in pixels) of the image
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// the masked scene object is part of the scene object being masked
+		return sceneObject.getAxisAlignedBoundingBox();
+	}
+
 	/**
 	 * the mask image
 	 */
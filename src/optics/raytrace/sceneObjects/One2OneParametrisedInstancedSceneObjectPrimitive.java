@@ -0,0 +1,70 @@
+package optics.raytrace.sceneObjects;
+
+import java.util.ArrayList;
+
+import math.*;
+import optics.raytrace.core.One2OneParametrisedObject;
+import optics.raytrace.core.SceneObject;
+import optics.raytrace.core.SceneObjectPrimitive;
+import optics.raytrace.sceneObjects.transformations.RigidTransformation;
+
+/**
+ * A view of a parametrised primitive in one instance of a shared prototype.
+ * The surface coordinates are those of the corresponding point on the prototype primitive.
+ *
+ * @see optics.raytrace.sceneObjects.InstancedSceneObjectPrimitive
+ * @author Johannes Courtial
+ */
+public class One2OneParametrisedInstancedSceneObjectPrimitive extends InstancedSceneObjectPrimitive
+implements One2OneParametrisedObject
+{
+	private static final long serialVersionUID = 4920184420375208245L;
+
+	/**
+	 * @param instance	the instance, or collection of instances, this primitive is part of
+	 * @param instanceIndex	distinguishes between the different instances in a collection of instances
+	 * @param prototypePrimitive	the primitive in the prototype, which must be a One2OneParametrisedObject
+	 * @param transformation	the transformation from the prototype's coordinate system into that of the scene
+	 */
+	public One2OneParametrisedInstancedSceneObjectPrimitive(SceneObject instance, int instanceIndex, SceneObjectPrimitive prototypePrimitive, RigidTransformation transformation)
+	{
+		super(instance, instanceIndex, prototypePrimitive, transformation);
+	}
+
+	/**
+	 * @param original
+	 */
+	public One2OneParametrisedInstancedSceneObjectPrimitive(One2OneParametrisedInstancedSceneObjectPrimitive original)
+	{
+		super(original);
+	}
+
+	@Override
+	public One2OneParametrisedInstancedSceneObjectPrimitive clone()
+	{
+		return new One2OneParametrisedInstancedSceneObjectPrimitive(this);
+	}
+
+	@Override
+	public ArrayList<String> getSurfaceCoordinateNames() {
+		return ((One2OneParametrisedObject)prototypePrimitive).getSurfaceCoordinateNames();
+	}
+
+	@Override
+	public Vector2D getSurfaceCoordinates(Vector3D p) {
+		return ((One2OneParametrisedObject)prototypePrimitive).getSurfaceCoordinates(transformation.inverseTransformPosition(p));
+	}
+
+	@Override
+	public ArrayList<Vector3D> getSurfaceCoordinateAxes(Vector3D p) {
+		ArrayList<Vector3D> axes = new ArrayList<Vector3D>();
+		for(Vector3D a : ((One2OneParametrisedObject)prototypePrimitive).getSurfaceCoordinateAxes(transformation.inverseTransformPosition(p)))
+			axes.add(transformation.transformDirection(a));
+		return axes;
+	}
+
+	@Override
+	public Vector3D getPointForSurfaceCoordinates(double u, double v) {
+		return transformation.transformPosition(((One2OneParametrisedObject)prototypePrimitive).getPointForSurfaceCoordinates(u, v));
+	}
+}
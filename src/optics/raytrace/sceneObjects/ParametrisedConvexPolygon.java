@@ -198,6 +198,28 @@ public class ParametrisedConvexPolygon extends ParametrisedPlane implements One2
 		return i;
 	}
 
+	/**
+	 * As getClosestRayIntersection is overridden, so must this be
+	 * (otherwise the version inherited from the superclass would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
+
+	/**
+	 * The polygon is only part of the plane, whose inside is nevertheless a half-space,
+	 * so the spans of the plane are not bounded by the polygon.
+	 * @see optics.raytrace.sceneObjects.Plane#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return null;
+	}
+
 	// TransformableSceneObject method
 	@Override
 	public ParametrisedConvexPolygon transform(Transformation t)
@@ -331,11 +331,11 @@ implements One2OneParametrisedObject, Serializable, ShapeWithRandomPointAndBound
 	@Override
 	public Vector3D getRandomPointOnShape() {
 		
-		double randomRadius = Math.random() + Math.random();
+		double randomRadius = Sampler.random() + Sampler.random();
 		if(randomRadius > 1) {
 			randomRadius = 2 - randomRadius; //this looks arbitrary but it is the limiting case of partitioning the circle up into isosceles triangles and taking the random point inside each of those by the method of getting a random point in the paralellogram obtained by mirroring the triangle about its base and 'folding' back the random point if it is in the outer triangle. @see randomPointOnShape in Parametrisedtriangle.
 		}
-		double randomPhi = Math.random()*2*Math.PI;
+		double randomPhi = Sampler.random()*2*Math.PI;
 		return Vector3D.sum(getCentre(),getXDirection().getProductWith(getRadius()*randomRadius*Math.cos(randomPhi)),getYDirection().getProductWith(getRadius()*randomRadius*Math.sin(randomPhi)));
 	}
 
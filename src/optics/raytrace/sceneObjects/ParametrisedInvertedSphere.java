@@ -86,6 +86,27 @@ public class ParametrisedInvertedSphere extends ParametrisedSphere
 		return i;
 	}
 
+	/**
+	 * As getClosestRayIntersection is overridden, so must this be
+	 * (otherwise the version inherited from the superclass would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
+
+	/**
+	 * As insideObject is inverted, the spans inside are the gaps between the spans inside the sphere.
+	 * @see optics.raytrace.sceneObjects.Sphere#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		return super.getRaySpans(ray, originObject).getComplement();
+	}
+
 		
 	@Override
 	public ParametrisedInvertedSphere transform(Transformation t)
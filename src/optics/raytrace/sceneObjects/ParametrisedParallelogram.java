@@ -152,8 +152,8 @@ implements One2OneParametrisedObject, ShapeWithRandomPointAndBoundary
 	{
 		return Vector3D.sum(
 				getCorner(),
-				getSpanVector1().getProductWith(Math.random()),
-				getSpanVector2().getProductWith(Math.random())
+				getSpanVector1().getProductWith(Sampler.random()),
+				getSpanVector2().getProductWith(Sampler.random())
 			);
 	}
 
@@ -156,6 +156,60 @@ public class ParametrisedTriangle extends SceneObjectPrimitive implements One2On
 		return new RaySceneObjectIntersection(intersectionPoint, this, rayAtIntersectionPoint.getT());
 	}
 
+	/**
+	 * Calculates the distance to the intersection without creating any objects.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		double distance = Plane.getDistanceToIntersection(ray, vertex1, surfaceNormal);
+
+		// if the ray starts on this triangle, ignore intersections closer than TINY (see SceneObjectPrimitive.getClosestRayIntersectionAvoidingOrigin);
+		// also don't bother if the record already holds a closer intersection
+		if((distance < ((originObject == this)?MyMath.TINY:0.0)) || !(distance < record.getDistance())) return false;
+
+		// vector from the vertex to the intersection point
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			x = p.x + d.x*distance - vertex1.x,
+			y = p.y + d.y*distance - vertex1.y,
+			z = p.z + d.z*distance - vertex1.z;
+
+		// the same tests as in getClosestRayIntersection, but with the scalar products of the form v.(a_perp_b) calculated as
+		// v.a - (v.b)(a.b)/(b.b), which avoids creating the perpendicular parts
+		double
+			v12v12 = vertex1ToVertex2.getModSquared(),
+			v13v13 = vertex1ToVertex3.getModSquared(),
+			v12v13 = Vector3D.scalarProduct(vertex1ToVertex2, vertex1ToVertex3),
+			xv12 = x*vertex1ToVertex2.x + y*vertex1ToVertex2.y + z*vertex1ToVertex2.z,
+			xv13 = x*vertex1ToVertex3.x + y*vertex1ToVertex3.y + z*vertex1ToVertex3.z;
+
+		// is the intersection point on the right side of span vector 1?
+		if(xv13 - xv12*v12v13/v12v12 < 0) return false;
+
+		// is the intersection point on the right side of span vector 2?
+		if(xv12 - xv13*v12v13/v13v13 < 0) return false;
+
+		if(!semiInfinite)
+		{
+			// the triangle is finite --- check the third side also;
+			// the vector from vertex 2 to the intersection point is x - vertex1ToVertex2,
+			// and the "3rd span vector", from vertex 2 to vertex 3, is vertex1ToVertex3 - vertex1ToVertex2
+			double
+				x2v12 = xv12 - v12v12,	// (x - v12).v12
+				x2v13 = xv13 - v12v13,	// (x - v12).v13
+				x2v23 = x2v13 - x2v12,	// (x - v12).v23
+				v12v23 = v12v13 - v12v12,
+				v23v23 = v13v13 - 2*v12v13 + v12v12;
+
+			// is the intersection point on the right side of span vector 3?
+			if(x2v12 - x2v23*v12v23/v23v23 > 0) return false;
+		}
+
+		return record.record(distance, this);
+	}
+
 	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray, SceneObject excludeObject)
 	{
 		return getClosestRayIntersection(ray);
@@ -168,6 +222,22 @@ public class ParametrisedTriangle extends SceneObjectPrimitive implements One2On
 	}
 
 	// TransformableSceneObject method
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// a semi-infinite triangle is unbounded
+		if(semiInfinite) return AxisAlignedBoundingBox.INFINITE;
+
+		return AxisAlignedBoundingBox.getBoundingBoxOfPoints(
+				vertex1,
+				Vector3D.sum(vertex1, vertex1ToVertex2),
+				Vector3D.sum(vertex1, vertex1ToVertex3)
+			);
+	}
+
 	@Override
 	public ParametrisedTriangle transform(Transformation t)
 	{
@@ -303,8 +373,8 @@ public class ParametrisedTriangle extends SceneObjectPrimitive implements One2On
 	 */
 	@Override
 	public Vector3D getRandomPointOnShape() {
-		double coordinateU = Math.random();
-		double coordinateV = Math.random();
+		double coordinateU = Sampler.random();
+		double coordinateV = Sampler.random();
 		if (coordinateU + coordinateV > 1) {
 			coordinateU = 1 - coordinateU;
 			coordinateV = 1 - coordinateV;
@@ -224,6 +224,71 @@ public class Plane extends SceneObjectPrimitive implements Serializable
 		return new RaySceneObjectIntersection(rayAtIntersectionPoint.getP(), this, rayAtIntersectionPoint.getT());
 	}
 
+	/**
+	 * Calculates the distance to the intersection without creating any objects.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		double distance = getDistanceToIntersection(ray, pointOnPlane, normal);
+
+		// if the ray starts on this plane, ignore intersections closer than TINY (see SceneObjectPrimitive.getClosestRayIntersectionAvoidingOrigin)
+		if(distance < ((originObject == this)?MyMath.TINY:0.0)) return false;
+
+		return record.record(distance, this);
+	}
+
+	/**
+	 * The inside of the plane is the half-space on the side opposite the (outwards) normal,
+	 * so the ray is inside the plane either before or after its intersection with it.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		Vector3D d = ray.getD();
+		double denominator = d.x*normal.x + d.y*normal.y + d.z*normal.z;
+
+		// is the ray parallel to the plane?
+		if(denominator == 0.0) return RaySpanList.getCompleteRayOrNothing(insideObject(ray.getP()));
+
+		double distance = getDistanceToIntersection(ray, pointOnPlane, normal);
+
+		// if the ray starts on this plane, take the intersection to be at the ray's start point
+		if((originObject == this) && (Math.abs(distance) < MyMath.TINY)) distance = 0;
+
+		RaySpanList spans = new RaySpanList();
+		if(denominator > 0)
+			// the ray travels outwards, so it is inside before the intersection
+			spans.addSpan(Double.NEGATIVE_INFINITY, null, distance, this);
+		else
+			// the ray travels inwards, so it is inside after the intersection
+			spans.addSpan(distance, this, Double.POSITIVE_INFINITY, null);
+		return spans;
+	}
+
+	/**
+	 * The allocation-free part of getRayAtClosestRayIntersection
+	 * @param ray
+	 * @param pointOnPlane
+	 * @param normalToPlane
+	 * @return	the distance along the ray to the intersection with the plane, or Double.NEGATIVE_INFINITY if the ray is parallel to the plane
+	 */
+	public static double getDistanceToIntersection(Ray ray, Vector3D pointOnPlane, Vector3D normalToPlane)
+	{
+		Vector3D p = ray.getP(), d = ray.getD();
+		double numerator =
+				(pointOnPlane.x - p.x)*normalToPlane.x +
+				(pointOnPlane.y - p.y)*normalToPlane.y +
+				(pointOnPlane.z - p.z)*normalToPlane.z;
+		double denominator = d.x*normalToPlane.x + d.y*normalToPlane.y + d.z*normalToPlane.z;
+
+		if (denominator == 0.0) return Double.NEGATIVE_INFINITY;
+
+		return numerator / denominator;
+	}
+
 //	@Override
 //	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObject excludeObject) {
 //		return getClosestRayIntersection(ray);
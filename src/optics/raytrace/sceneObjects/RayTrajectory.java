@@ -16,6 +16,7 @@ import optics.raytrace.exceptions.EvanescentException;
 import optics.raytrace.exceptions.RayTraceException;
 import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
 import optics.raytrace.utility.CopyModeType;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 
 /**
  * A ray trajectory
@@ -309,6 +310,17 @@ public class RayTrajectory extends SceneObjectContainer
 		return super.getClosestRayIntersectionAvoidingOrigin(ray, originObject);
 	}
 
+	/**
+	 * As getClosestRayIntersectionAvoidingOrigin is overridden, so must this be
+	 * (otherwise the version inherited from SceneObjectContainer would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
+
 	@Override
 	public String getType()
 	{
@@ -4,6 +4,7 @@ import java.io.Serializable;
 import java.util.ArrayList;
 
 import math.Vector3D;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.ParametrisedObject;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
@@ -203,6 +204,16 @@ public class SceneObjectWithHoles extends SceneObjectClass implements Serializab
 		return getNextClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, i);
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// the holey scene object is part of the wrapped scene object
+		return wrappedSceneObject.getAxisAlignedBoundingBox();
+	}
+
 	@Override
 	public SceneObject transform(Transformation t)
 	{
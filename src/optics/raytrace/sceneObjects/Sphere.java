@@ -110,6 +110,77 @@ public class Sphere extends SceneObjectPrimitive implements Serializable
 			);
 	}
 
+	/**
+	 * Calculates the distances to the intersections without creating any objects.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			vx = p.x - centre.x,
+			vy = p.y - centre.y,
+			vz = p.z - centre.z;
+
+		// coefficients in the quadratic equation for the distance
+		double
+			quadraticA = d.x*d.x + d.y*d.y + d.z*d.z,
+			quadraticB2 = vx*d.x + vy*d.y + vz*d.z,	// b/2
+			quadraticC = vx*vx + vy*vy + vz*vz - radius*radius;
+
+		// discriminant/2
+		double discriminant2 = quadraticB2*quadraticB2-quadraticA*quadraticC;
+		if(discriminant2<0.0) return false;
+
+		// if the ray starts on this sphere, ignore intersections closer than TINY (see SceneObjectPrimitive.getClosestRayIntersectionAvoidingOrigin)
+		double minDistance = (originObject == this)?MyMath.TINY:0.0;
+
+		double sqrtDiscriminant2 = Math.sqrt(discriminant2);
+		double t2=(-quadraticB2-sqrtDiscriminant2)/quadraticA;
+		if(t2 >= minDistance) return record.record(t2, this);
+
+		double t1=(-quadraticB2+sqrtDiscriminant2)/quadraticA;
+		if(t1 >= minDistance) return record.record(t1, this);
+
+		return false;
+	}
+
+	/**
+	 * The inside of the sphere is the span between the two intersections;
+	 * if the radius is negative, the inside is the outside of the sphere.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		Vector3D p = ray.getP(), d = ray.getD();
+		double
+			vx = p.x - centre.x,
+			vy = p.y - centre.y,
+			vz = p.z - centre.z;
+
+		// coefficients in the quadratic equation for the distance, as in findClosestRayIntersectionAvoidingOrigin
+		double
+			quadraticA = d.x*d.x + d.y*d.y + d.z*d.z,
+			quadraticB2 = vx*d.x + vy*d.y + vz*d.z,	// b/2
+			quadraticC = vx*vx + vy*vy + vz*vz - radius*radius;
+
+		double discriminant2 = quadraticB2*quadraticB2-quadraticA*quadraticC;
+		if(discriminant2<0.0) return RaySpanList.getCompleteRayOrNothing(radius < 0);
+
+		double sqrtDiscriminant2 = Math.sqrt(discriminant2);
+		RaySpanList spans = new RaySpanList();
+		spans.addQuadricSpans(
+				(-quadraticB2-sqrtDiscriminant2)/quadraticA,
+				(-quadraticB2+sqrtDiscriminant2)/quadraticA,
+				this,
+				radius < 0,	// insideOut
+				originObject
+			);
+		return spans;
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.sceneObjects.SceneObjectPrimitive#getNormalisedSurfaceNormal(math.Vector3D)
 	 */
@@ -121,6 +192,15 @@ public class Sphere extends SceneObjectPrimitive implements Serializable
 		return Vector3D.difference(p, centre).getWithLength(Math.signum(radius));
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return AxisAlignedBoundingBox.getBoundingBoxOfSphere(centre, radius);
+	}
+
 	@Override
 	public Sphere transform(Transformation t)
 	{
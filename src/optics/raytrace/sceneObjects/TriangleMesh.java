@@ -0,0 +1,753 @@
+package optics.raytrace.sceneObjects;
+
+import java.io.*;
+import java.util.Arrays;
+
+import math.*;
+import optics.raytrace.core.*;
+
+
+/**
+ * Scene object that represents an arbitrary mesh of triangles, such as a scanned object or a CAD model.
+ *
+ * Unlike a collection of ParametrisedTriangles, the mesh is a single scene-object primitive with a single surface property,
+ * and the vertices and triangles are stored in arrays of primitive numbers:
+ * the coordinates of vertex #k are vertices[3k], vertices[3k+1], vertices[3k+2], and
+ * triangle #t has vertices #triangles[3t], #triangles[3t+1], #triangles[3t+2].
+ * The outwards-facing normal of each triangle is in the direction (v1-v0) x (v2-v0), i.e. the vertices of each triangle are
+ * listed anticlockwise when seen from the outside (the usual convention in OBJ, STL and PLY files), unless invertSurface is true.
+ *
+ * For fast intersection with rays, the mesh builds its own bounding-volume hierarchy (BVH) over its triangles,
+ * which is stored in flat arrays, with the node bounding boxes in single precision (rounded outwards).
+ * Including the hierarchy, a typical mesh needs about 50 bytes per triangle.
+ *
+ * Meshes are usually read from files; see TriangleMeshReader.
+ *
+ * @see optics.raytrace.sceneObjects.TriangleMeshReader
+ * @author Johannes Courtial
+ */
+public class TriangleMesh extends SceneObjectPrimitive implements Serializable
+{
+	private static final long serialVersionUID = -2795016364862513958L;
+
+	/**
+	 * number of bins along each axis in which the surface-area heuristic is evaluated during the build of the BVH
+	 */
+	private static final int NUMBER_OF_BINS = 16;
+
+	/**
+	 * maximum number of triangles in a leaf of the BVH
+	 */
+	private static final int MAX_TRIANGLES_IN_LEAF = 4;
+
+	/**
+	 * maximum depth of the BVH
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	/**
+	 * vertex coordinates, three per vertex
+	 */
+	private double[] vertices;
+
+	/**
+	 * vertex indices, three per triangle;
+	 * the triangles are sorted such that the triangles in each leaf of the BVH are consecutive
+	 */
+	private int[] triangles;
+
+	/**
+	 * if false, the outwards normal is in direction (v1-v0) x (v2-v0), otherwise in the opposite direction
+	 */
+	private boolean invertSurface;
+
+	/**
+	 * the bounding boxes of the BVH nodes, six numbers per node, namely xMin, xMax, yMin, yMax, zMin, zMax
+	 */
+	private float[] nodeBounds;
+
+	/**
+	 * two numbers per BVH node;
+	 * for an inner node, the index of its first child (the second child follows immediately) and 0;
+	 * for a leaf, the index of its first triangle and the number of triangles in it
+	 */
+	private int[] nodeData;
+
+	/**
+	 * the number of nodes of the BVH
+	 */
+	private int numberOfNodes;
+
+	/**
+	 * the depth of the BVH, which determines the size of the traversal stack
+	 */
+	private int depth;
+
+	// the bounding boxes and centroids of the triangles, only needed during the build of the BVH
+	private transient float[] triangleBounds;
+	private transient float[] triangleCentroids;
+
+
+	// constructors
+
+	/**
+	 * Creates a triangle mesh.
+	 * This constructor uses the arrays vertices and triangles directly, i.e. they are NOT copied;
+	 * the order of the triangles in the triangles array gets changed when the BVH is built.
+	 * @param description
+	 * @param vertices	vertex coordinates, three per vertex
+	 * @param triangles	vertex indices, three per triangle
+	 * @param invertSurface	if true, the outwards normal of each triangle is in the direction (v2-v0) x (v1-v0)
+	 * @param surfaceProperty
+	 * @param parent
+	 * @param studio
+	 */
+	public TriangleMesh(
+			String description,
+			double[] vertices,
+			int[] triangles,
+			boolean invertSurface,
+			SurfaceProperty surfaceProperty,
+			SceneObject parent,
+			Studio studio
+		)
+	{
+		super(description, surfaceProperty, parent, studio);
+
+		if((vertices.length % 3 != 0) || (triangles.length % 3 != 0))
+			throw new IllegalArgumentException("TriangleMesh::TriangleMesh: the lengths of the vertices and triangles arrays must be multiples of 3");
+		for(int i=0; i<triangles.length; i++)
+			if((triangles[i] < 0) || (3*triangles[i] >= vertices.length))
+				throw new IllegalArgumentException("TriangleMesh::TriangleMesh: triangle #"+(i/3)+" refers to non-existent vertex #"+triangles[i]);
+
+		this.vertices = vertices;
+		this.triangles = triangles;
+		this.invertSurface = invertSurface;
+
+		buildBVH();
+	}
+
+	/**
+	 * Create a clone of original.
+	 * As the vertices, triangles and BVH of a mesh never change, the clone shares them with the original.
+	 * @param original
+	 */
+	public TriangleMesh(TriangleMesh original)
+	{
+		super(original);
+
+		vertices = original.vertices;
+		triangles = original.triangles;
+		invertSurface = original.invertSurface;
+		nodeBounds = original.nodeBounds;
+		nodeData = original.nodeData;
+		numberOfNodes = original.numberOfNodes;
+		depth = original.depth;
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.sceneObjects.SceneObject#clone()
+	 */
+	@Override
+	public TriangleMesh clone()
+	{
+		return new TriangleMesh(this);
+	}
+
+
+
+	// getters
+
+	/**
+	 * @return	the vertex coordinates, three per vertex; don't change them!
+	 */
+	public double[] getVertices() {
+		return vertices;
+	}
+
+	/**
+	 * @return	the vertex indices, three per triangle; don't change them!
+	 */
+	public int[] getTriangles() {
+		return triangles;
+	}
+
+	public boolean isInvertSurface() {
+		return invertSurface;
+	}
+
+	public int getNumberOfVertices()
+	{
+		return vertices.length/3;
+	}
+
+	public int getNumberOfTriangles()
+	{
+		return triangles.length/3;
+	}
+
+	/**
+	 * @param vertexIndex
+	 * @return	the position of the vertex with the given index
+	 */
+	public Vector3D getVertex(int vertexIndex)
+	{
+		return new Vector3D(vertices[3*vertexIndex], vertices[3*vertexIndex+1], vertices[3*vertexIndex+2]);
+	}
+
+	/**
+	 * @param triangle
+	 * @param vertexNumber	0, 1, or 2
+	 * @return	the given vertex of the given triangle
+	 */
+	public Vector3D getVertexForTriangle(int triangle, int vertexNumber)
+	{
+		return getVertex(triangles[3*triangle+vertexNumber]);
+	}
+
+	/**
+	 * @param triangle
+	 * @return	the normalised outwards normal of the given triangle
+	 */
+	public Vector3D getOutwardsSurfaceNormal(int triangle)
+	{
+		int a = 3*triangles[3*triangle], b = 3*triangles[3*triangle+1], c = 3*triangles[3*triangle+2];
+		double
+			e1x = vertices[b] - vertices[a], e1y = vertices[b+1] - vertices[a+1], e1z = vertices[b+2] - vertices[a+2],
+			e2x = vertices[c] - vertices[a], e2y = vertices[c+1] - vertices[a+1], e2z = vertices[c+2] - vertices[a+2];
+		return (new Vector3D(
+				e1y*e2z - e1z*e2y,
+				e1z*e2x - e1x*e2z,
+				e1x*e2y - e1y*e2x
+			)).getWithLength(invertSurface?(-1):(+1));
+	}
+
+	/**
+	 * @return	the number of bytes taken up by the arrays that describe the mesh and its BVH
+	 */
+	public long getMemoryFootprint()
+	{
+		return 8L*vertices.length + 4L*triangles.length + 4L*nodeBounds.length + 4L*nodeData.length;
+	}
+
+
+
+	// the bounding-volume hierarchy
+
+	/**
+	 * Build the BVH, top-down, using the surface-area heuristic (SAH), evaluated over a small number of bins along each axis
+	 * (in the same way as BoundingVolumeHierarchy does for the scene objects in a SceneObjectContainer)
+	 * @see optics.raytrace.sceneObjects.solidGeometry.BoundingVolumeHierarchy
+	 */
+	private void buildBVH()
+	{
+		int n = getNumberOfTriangles();
+
+		triangleBounds = new float[6*n];
+		triangleCentroids = new float[3*n];
+		for(int t=0; t<n; t++) calculateTriangleBoundsAndCentroid(t);
+
+		// a binary tree with n leaves has 2n-1 nodes
+		int maxNumberOfNodes = Math.max(1, 2*n - 1);
+		nodeBounds = new float[6*maxNumberOfNodes];
+		nodeData = new int[2*maxNumberOfNodes];
+		numberOfNodes = 0;
+		depth = 0;
+
+		if(n > 0)
+		{
+			numberOfNodes = 1;
+			depth = build(0, 0, n, 1);
+		}
+
+		// trim the node arrays, and forget the build data
+		nodeBounds = Arrays.copyOf(nodeBounds, 6*numberOfNodes);
+		nodeData = Arrays.copyOf(nodeData, 2*numberOfNodes);
+		triangleBounds = null;
+		triangleCentroids = null;
+	}
+
+	private void calculateTriangleBoundsAndCentroid(int t)
+	{
+		for(int axis=0; axis<3; axis++)
+		{
+			double
+				a = vertices[3*triangles[3*t]+axis],
+				b = vertices[3*triangles[3*t+1]+axis],
+				c = vertices[3*triangles[3*t+2]+axis],
+				min = Math.min(a, Math.min(b, c)),
+				max = Math.max(a, Math.max(b, c));
+			triangleBounds[6*t+2*axis] = roundDown(min);
+			triangleBounds[6*t+2*axis+1] = roundUp(max);
+			triangleCentroids[3*t+axis] = (float)((a + b + c)/3);
+		}
+	}
+
+	/**
+	 * @param d
+	 * @return	the largest float that is smaller than d, minus a bit, so that the float bounding boxes contain the double triangles
+	 */
+	private static float roundDown(double d)
+	{
+		float f = (float)(d - MyMath.TINY);
+		return (f > d - MyMath.TINY)?Math.nextDown(f):f;
+	}
+
+	/**
+	 * @param d
+	 * @return	the smallest float that is greater than d, plus a bit, so that the float bounding boxes contain the double triangles
+	 */
+	private static float roundUp(double d)
+	{
+		float f = (float)(d + MyMath.TINY);
+		return (f < d + MyMath.TINY)?Math.nextUp(f):f;
+	}
+
+	/**
+	 * Turn the node into a subtree that contains the triangles first (inclusive) to last (exclusive)
+	 * @param node
+	 * @param first
+	 * @param last
+	 * @param nodeDepth	the depth of this node (1 for the root)
+	 * @return	the depth of the deepest leaf in the subtree
+	 */
+	private int build(int node, int first, int last, int nodeDepth)
+	{
+		// calculate the bounds of the node, and of the centroids of its triangles
+		float[] bounds = emptyBounds();
+		float[] centroidBounds = emptyBounds();
+		for(int t=first; t<last; t++)
+		{
+			growBounds(bounds, triangleBounds, 6*t);
+			for(int axis=0; axis<3; axis++)
+			{
+				centroidBounds[2*axis] = Math.min(centroidBounds[2*axis], triangleCentroids[3*t+axis]);
+				centroidBounds[2*axis+1] = Math.max(centroidBounds[2*axis+1], triangleCentroids[3*t+axis]);
+			}
+		}
+		System.arraycopy(bounds, 0, nodeBounds, 6*node, 6);
+
+		int count = last - first;
+		if((count <= MAX_TRIANGLES_IN_LEAF) || (nodeDepth >= MAX_DEPTH))
+		{
+			makeLeaf(node, first, count);
+			return nodeDepth;
+		}
+
+		// find the best split, according to the SAH, by binning the centroids along each axis
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestAxis = -1, bestSplit = -1;
+		int[] binCounts = new int[NUMBER_OF_BINS];
+		float[][] binBounds = new float[NUMBER_OF_BINS][];
+		double[] rightAreas = new double[NUMBER_OF_BINS];
+		for(int axis=0; axis<3; axis++)
+		{
+			double cMin = centroidBounds[2*axis], cMax = centroidBounds[2*axis+1];
+			if(cMax <= cMin) continue;	// all centroids lie in the same plane perpendicular to this axis
+			double scale = NUMBER_OF_BINS / (cMax - cMin);
+
+			for(int b=0; b<NUMBER_OF_BINS; b++)
+			{
+				binCounts[b] = 0;
+				binBounds[b] = emptyBounds();
+			}
+			for(int t=first; t<last; t++)
+			{
+				int b = getBin(triangleCentroids[3*t+axis], cMin, scale);
+				binCounts[b]++;
+				growBounds(binBounds[b], triangleBounds, 6*t);
+			}
+
+			// sweep from the right to get the areas of the right-hand sides...
+			float[] accumulated = emptyBounds();
+			for(int b=NUMBER_OF_BINS-1; b>0; b--)
+			{
+				growBounds(accumulated, binBounds[b], 0);
+				rightAreas[b] = getSurfaceArea(accumulated);
+			}
+
+			// ... and from the left to evaluate the cost of splitting between bins b-1 and b
+			accumulated = emptyBounds();
+			int leftCount = 0;
+			for(int b=1; b<NUMBER_OF_BINS; b++)
+			{
+				growBounds(accumulated, binBounds[b-1], 0);
+				leftCount += binCounts[b-1];
+				int rightCount = count - leftCount;
+				if((leftCount == 0) || (rightCount == 0)) continue;
+
+				double cost = leftCount*getSurfaceArea(accumulated) + rightCount*rightAreas[b];
+				if(cost < bestCost)
+				{
+					bestCost = cost;
+					bestAxis = axis;
+					bestSplit = b;
+				}
+			}
+		}
+
+		if(bestAxis < 0)
+		{
+			// the centroids cannot be separated
+			makeLeaf(node, first, count);
+			return nodeDepth;
+		}
+
+		// partition the triangles in place
+		double cMin = centroidBounds[2*bestAxis];
+		double scale = NUMBER_OF_BINS / (centroidBounds[2*bestAxis+1] - cMin);
+		int i = first, j = last - 1;
+		while(i <= j)
+		{
+			if(getBin(triangleCentroids[3*i+bestAxis], cMin, scale) < bestSplit) i++;
+			else swap(i, j--);
+		}
+
+		int leftChild = numberOfNodes;
+		numberOfNodes += 2;
+		nodeData[2*node] = leftChild;
+		nodeData[2*node+1] = 0;
+
+		return Math.max(
+				build(leftChild, first, i, nodeDepth+1),
+				build(leftChild+1, i, last, nodeDepth+1)
+			);
+	}
+
+	private void makeLeaf(int node, int first, int count)
+	{
+		nodeData[2*node] = first;
+		nodeData[2*node+1] = count;
+	}
+
+	private static int getBin(double centroid, double cMin, double scale)
+	{
+		return Math.min(NUMBER_OF_BINS - 1, (int)((centroid - cMin)*scale));
+	}
+
+	private void swap(int i, int j)
+	{
+		for(int k=0; k<3; k++)
+		{
+			int v = triangles[3*i+k];
+			triangles[3*i+k] = triangles[3*j+k];
+			triangles[3*j+k] = v;
+
+			float c = triangleCentroids[3*i+k];
+			triangleCentroids[3*i+k] = triangleCentroids[3*j+k];
+			triangleCentroids[3*j+k] = c;
+		}
+		for(int k=0; k<6; k++)
+		{
+			float b = triangleBounds[6*i+k];
+			triangleBounds[6*i+k] = triangleBounds[6*j+k];
+			triangleBounds[6*j+k] = b;
+		}
+	}
+
+	private static float[] emptyBounds()
+	{
+		return new float[] {
+				Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+				Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+				Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY
+			};
+	}
+
+	private static void growBounds(float[] bounds, float[] b, int offset)
+	{
+		for(int k=0; k<3; k++)
+		{
+			bounds[2*k] = Math.min(bounds[2*k], b[offset+2*k]);
+			bounds[2*k+1] = Math.max(bounds[2*k+1], b[offset+2*k+1]);
+		}
+	}
+
+	private static double getSurfaceArea(float[] bounds)
+	{
+		double
+			dx = bounds[1] - bounds[0],
+			dy = bounds[3] - bounds[2],
+			dz = bounds[5] - bounds[4];
+		if((dx < 0) || (dy < 0) || (dz < 0)) return 0;
+		return 2*(dx*dy + dy*dz + dz*dx);
+	}
+
+	private double getNodeEntryDistance(int node, double px, double py, double pz, double invDx, double invDy, double invDz, double maxDistance)
+	{
+		int k = 6*node;
+		return AxisAlignedBoundingBox.getRayEntryDistance(
+				nodeBounds[k], nodeBounds[k+1], nodeBounds[k+2], nodeBounds[k+3], nodeBounds[k+4], nodeBounds[k+5],
+				px, py, pz,
+				invDx, invDy, invDz,
+				maxDistance
+			);
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		if(numberOfNodes == 0) return AxisAlignedBoundingBox.EMPTY;
+		return new AxisAlignedBoundingBox(nodeBounds[0], nodeBounds[1], nodeBounds[2], nodeBounds[3], nodeBounds[4], nodeBounds[5]);
+	}
+
+
+
+	// SceneObject methods
+
+	/**
+	 * Calculate the factor by which the ray direction has to be multiplied to get from the ray start point to the
+	 * intersection with the given triangle, using the algorithm by Möller and Trumbore
+	 * (T. Möller and B. Trumbore, "Fast, minimum storage ray-triangle intersection", Journal of Graphics Tools 2, 21-28 (1997))
+	 * @return	the factor, or Double.POSITIVE_INFINITY if the ray doesn't intersect the triangle
+	 */
+	private double getFactorToIntersection(int triangle, double px, double py, double pz, double dx, double dy, double dz)
+	{
+		int a = 3*triangles[3*triangle], b = 3*triangles[3*triangle+1], c = 3*triangles[3*triangle+2];
+		double
+			ax = vertices[a], ay = vertices[a+1], az = vertices[a+2],
+			e1x = vertices[b] - ax, e1y = vertices[b+1] - ay, e1z = vertices[b+2] - az,
+			e2x = vertices[c] - ax, e2y = vertices[c+1] - ay, e2z = vertices[c+2] - az;
+
+		// q = d x e2
+		double
+			qx = dy*e2z - dz*e2y,
+			qy = dz*e2x - dx*e2z,
+			qz = dx*e2y - dy*e2x;
+		double det = e1x*qx + e1y*qy + e1z*qz;
+		if(det == 0) return Double.POSITIVE_INFINITY;	// the ray is parallel to the triangle
+		double invDet = 1./det;
+
+		double sx = px - ax, sy = py - ay, sz = pz - az;
+		double u = (sx*qx + sy*qy + sz*qz)*invDet;
+		if((u < 0) || (u > 1)) return Double.POSITIVE_INFINITY;
+
+		// r = s x e1
+		double
+			rx = sy*e1z - sz*e1y,
+			ry = sz*e1x - sx*e1z,
+			rz = sx*e1y - sy*e1x;
+		double v = (dx*rx + dy*ry + dz*rz)*invDet;
+		if((v < 0) || (u + v > 1)) return Double.POSITIVE_INFINITY;
+
+		double factor = (e2x*rx + e2y*ry + e2z*rz)*invDet;
+		return (factor > 0)?factor:Double.POSITIVE_INFINITY;
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObject#getClosestRayIntersection(optics.raytrace.core.Ray)
+	 */
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray)
+	{
+		if(numberOfNodes == 0) return RaySceneObjectIntersection.NO_INTERSECTION;
+
+		// distances along the ray are measured as multiples of d
+		Vector3D p = ray.getP();
+		Vector3D d = ray.getD();
+		double
+			invDx = 1./d.x,
+			invDy = 1./d.y,
+			invDz = 1./d.z;
+
+		double closestFactor = Double.POSITIVE_INFINITY;
+		int closestTriangle = -1;
+
+		// traverse the tree, nearest child first
+		int[] stack = new int[depth];
+		double[] stackDistances = new double[depth];
+		int stackSize = 0;
+
+		int node = 0;
+		double nodeDistance = getNodeEntryDistance(0, p.x, p.y, p.z, invDx, invDy, invDz, closestFactor);
+
+		while(nodeDistance != Double.POSITIVE_INFINITY)
+		{
+			if(nodeDistance <= closestFactor)
+			{
+				int first = nodeData[2*node], count = nodeData[2*node+1];
+				if(count > 0)
+				{
+					// a leaf; intersect its triangles
+					for(int t=first; t<first+count; t++)
+					{
+						double factor = getFactorToIntersection(t, p.x, p.y, p.z, d.x, d.y, d.z);
+						if(factor < closestFactor)
+						{
+							closestFactor = factor;
+							closestTriangle = t;
+						}
+					}
+				}
+				else
+				{
+					// an inner node; visit the nearer child next, and remember the other one for later
+					int left = first, right = left + 1;
+					double
+						leftDistance = getNodeEntryDistance(left, p.x, p.y, p.z, invDx, invDy, invDz, closestFactor),
+						rightDistance = getNodeEntryDistance(right, p.x, p.y, p.z, invDx, invDy, invDz, closestFactor);
+
+					if(leftDistance > rightDistance)
+					{
+						int n = left; left = right; right = n;
+						double t = leftDistance; leftDistance = rightDistance; rightDistance = t;
+					}
+
+					if(leftDistance != Double.POSITIVE_INFINITY)
+					{
+						if(rightDistance != Double.POSITIVE_INFINITY)
+						{
+							stack[stackSize] = right;
+							stackDistances[stackSize] = rightDistance;
+							stackSize++;
+						}
+						node = left;
+						nodeDistance = leftDistance;
+						continue;
+					}
+				}
+			}
+
+			// pop the next node off the stack
+			if(stackSize == 0) break;
+			stackSize--;
+			node = stack[stackSize];
+			nodeDistance = stackDistances[stackSize];
+		}
+
+		if(closestTriangle < 0)
+		{
+			// no intersection
+			return RaySceneObjectIntersection.NO_INTERSECTION;
+		}
+
+		// return the closest intersection
+		Vector3D normal = getOutwardsSurfaceNormal(closestTriangle);
+		Ray rayAtIntersectionPoint = ray.getAdvancedRay(closestFactor);
+
+		return new RaySceneObjectIntersection(
+				new Vector3DWithBonusVector3D(rayAtIntersectionPoint.getP(), normal),
+				this,
+				rayAtIntersectionPoint.getT(),
+				ray,
+				normal
+			);
+	}
+
+	/**
+	 * Is the point p "inside" the mesh?
+	 * This makes sense only if the mesh is closed.
+	 * @param p
+	 * @return true if p is "inside" the mesh, false otherwise
+	 * @see optics.raytrace.core.SceneObject#insideObject(math.Vector3D)
+	 */
+	@Override
+	public boolean insideObject(Vector3D p)
+	{
+		if(getNumberOfTriangles() == 0) return false;
+
+		// find the intersection between a ray from p to the centroid of a triangle...
+		Vector3D direction = Vector3D.difference(
+				Vector3D.sum(getVertexForTriangle(0, 0), getVertexForTriangle(0, 1), getVertexForTriangle(0, 2)).getProductWith(1./3.),
+				p
+			);
+
+		RaySceneObjectIntersection intersection = getClosestRayIntersection(new Ray(
+				p,	// position on ray
+				direction,
+				0,	// time when ray is at p
+				false
+			));
+
+		if(intersection == RaySceneObjectIntersection.NO_INTERSECTION) return false;
+
+		// ... and check whether the ray hits the mesh from the inside, i.e. in the direction of the outwards-facing normal
+		return Vector3D.scalarProduct(
+					direction,
+					intersection.getNormalisedOutwardsSurfaceNormal()
+				) > 0;
+	}
+
+
+	// SceneObjectPrimitive methods
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.sceneObjects.SceneObjectPrimitive#getNormalisedSurfaceNormal(math.Vector3D)
+	 */
+	@Override
+	public Vector3D getNormalisedOutwardsSurfaceNormal(Vector3D p)
+	{
+		// p is usually a Vector3DWithBonusVector3D, with the other vector being the outwards-facing surface normal...
+		if(p instanceof Vector3DWithBonusVector3D) return ((Vector3DWithBonusVector3D)p).getBonusVector();
+
+		// ... but if it isn't, find the triangle closest to p
+		double closestDistance = Double.POSITIVE_INFINITY;
+		int closestTriangle = 0;
+		for(int t=0; t<getNumberOfTriangles(); t++)
+		{
+			double distance = Math.abs(Vector3D.scalarProduct(Vector3D.difference(p, getVertexForTriangle(t, 0)), getOutwardsSurfaceNormal(t)));
+			if(distance < closestDistance)
+			{
+				AxisAlignedBoundingBox box = AxisAlignedBoundingBox.getBoundingBoxOfPoints(
+						getVertexForTriangle(t, 0), getVertexForTriangle(t, 1), getVertexForTriangle(t, 2)
+					).getExpanded(MyMath.TINY);
+				if(box.contains(p))
+				{
+					closestDistance = distance;
+					closestTriangle = t;
+				}
+			}
+		}
+		return getOutwardsSurfaceNormal(closestTriangle);
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectPrimitive#transform(optics.raytrace.core.Transformation)
+	 */
+	@Override
+	public TriangleMesh transform(Transformation t)
+	{
+		// transform the vertices
+		double[] verticesTransformed = new double[vertices.length];
+		for(int k=0; k<getNumberOfVertices(); k++)
+		{
+			Vector3D v = t.transformPosition(getVertex(k));
+			verticesTransformed[3*k] = v.x;
+			verticesTransformed[3*k+1] = v.y;
+			verticesTransformed[3*k+2] = v.z;
+		}
+
+		return new TriangleMesh(
+				description,
+				verticesTransformed,
+				triangles.clone(),	// a copy, as building the BVH of the transformed mesh changes the order of the triangles
+				isInvertSurface(),
+				getSurfaceProperty(),
+				getParent(),
+				getStudio()
+		);
+	}
+
+
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#toString()
+	 */
+	@Override
+	public String toString() {
+		return "<TriangleMesh vertices="+getNumberOfVertices()+" triangles="+getNumberOfTriangles()+">" +
+		"</TriangleMesh>\n";
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObject#getType()
+	 */
+	@Override
+	public String getType()
+	{
+		return "Triangle mesh";
+	}
+}
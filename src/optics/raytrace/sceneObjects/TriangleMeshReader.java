@@ -0,0 +1,560 @@
+package optics.raytrace.sceneObjects;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import optics.raytrace.core.*;
+
+
+/**
+ * Reads triangle meshes from OBJ, STL (binary or ASCII), and PLY (ASCII or binary) files, and turns them into TriangleMeshes.
+ *
+ * The files are read as streams, and the vertices and triangles are collected directly in growing arrays of primitive numbers,
+ * so that no object is created per vertex or per triangle; this allows meshes with millions of triangles to be read.
+ * Polygons with more than three vertices are split into triangle fans.
+ * As STL files list the three vertices of each triangle separately, identical vertices are merged.
+ *
+ * Only the geometry is read; normals, texture coordinates, colours, materials, etc. are ignored.
+ *
+ * Example:
+ *
+ * 		scene.addSceneObject(TriangleMeshReader.read(new File("bunny.ply"), "bunny", false, SurfaceColour.GREY50_SHINY, scene, studio));
+ *
+ * @see optics.raytrace.sceneObjects.TriangleMesh
+ * @author Johannes Courtial
+ */
+public class TriangleMeshReader
+{
+	/**
+	 * vertex coordinates, three per vertex
+	 */
+	private double[] vertices = new double[3*1024];
+	private int numberOfVertexCoordinates = 0;
+
+	/**
+	 * vertex indices, three per triangle
+	 */
+	private int[] triangles = new int[3*1024];
+	private int numberOfTriangleIndices = 0;
+
+	/**
+	 * open-addressing hash table that maps vertex positions to vertex indices (+1; 0 means empty),
+	 * used for merging identical vertices in STL files
+	 */
+	private int[] vertexTable = null;
+
+
+	/**
+	 * Read a mesh from the given file, whose format is determined from the file extension (.obj, .stl, or .ply)
+	 * @param file
+	 * @param description
+	 * @param invertSurface	if true, the outwards normal of each triangle is in the direction (v2-v0) x (v1-v0)
+	 * @param surfaceProperty
+	 * @param parent
+	 * @param studio
+	 * @return	the mesh
+	 * @throws IOException	if the file cannot be read, or if its format is not understood
+	 */
+	public static TriangleMesh read(File file, String description, boolean invertSurface, SurfaceProperty surfaceProperty, SceneObject parent, Studio studio)
+	throws IOException
+	{
+		String name = file.getName().toLowerCase();
+		TriangleMeshReader reader = new TriangleMeshReader();
+		try(InputStream in = new BufferedInputStream(new FileInputStream(file), 1 << 16))
+		{
+			if(name.endsWith(".obj")) reader.readOBJ(in);
+			else if(name.endsWith(".stl")) reader.readSTL(in);
+			else if(name.endsWith(".ply")) reader.readPLY(in);
+			else throw new IOException("TriangleMeshReader::read: unknown file format of "+file+" (expected .obj, .stl, or .ply)");
+		}
+		return reader.createTriangleMesh(description, invertSurface, surfaceProperty, parent, studio);
+	}
+
+	/**
+	 * @return	a TriangleMesh that consists of the vertices and triangles read so far
+	 */
+	public TriangleMesh createTriangleMesh(String description, boolean invertSurface, SurfaceProperty surfaceProperty, SceneObject parent, Studio studio)
+	{
+		return new TriangleMesh(
+				description,
+				Arrays.copyOf(vertices, numberOfVertexCoordinates),
+				Arrays.copyOf(triangles, numberOfTriangleIndices),
+				invertSurface,
+				surfaceProperty,
+				parent,
+				studio
+			);
+	}
+
+	public int getNumberOfVertices()
+	{
+		return numberOfVertexCoordinates/3;
+	}
+
+	public int getNumberOfTriangles()
+	{
+		return numberOfTriangleIndices/3;
+	}
+
+
+
+	// collecting vertices and triangles
+
+	/**
+	 * Add a vertex
+	 * @return	the index of the new vertex
+	 */
+	private int addVertex(double x, double y, double z)
+	{
+		if(numberOfVertexCoordinates + 3 > vertices.length) vertices = Arrays.copyOf(vertices, 2*vertices.length);
+		vertices[numberOfVertexCoordinates++] = x;
+		vertices[numberOfVertexCoordinates++] = y;
+		vertices[numberOfVertexCoordinates++] = z;
+		return numberOfVertexCoordinates/3 - 1;
+	}
+
+	/**
+	 * Add a triangle
+	 * @param a	index of vertex 0
+	 * @param b	index of vertex 1
+	 * @param c	index of vertex 2
+	 */
+	private void addTriangle(int a, int b, int c)
+	{
+		// skip triangles that have collapsed into a line or a point
+		if((a == b) || (b == c) || (c == a)) return;
+
+		if(numberOfTriangleIndices + 3 > triangles.length) triangles = Arrays.copyOf(triangles, 2*triangles.length);
+		triangles[numberOfTriangleIndices++] = a;
+		triangles[numberOfTriangleIndices++] = b;
+		triangles[numberOfTriangleIndices++] = c;
+	}
+
+	/**
+	 * Add the polygon with the given vertices, split into a triangle fan around its first vertex
+	 * @param polygon
+	 * @param numberOfPolygonVertices
+	 */
+	private void addPolygon(int[] polygon, int numberOfPolygonVertices)
+	{
+		for(int k=2; k<numberOfPolygonVertices; k++) addTriangle(polygon[0], polygon[k-1], polygon[k]);
+	}
+
+	/**
+	 * @return	the index of a vertex at the given position, which is added if there isn't one yet
+	 */
+	private int addOrFindVertex(double x, double y, double z)
+	{
+		// keep the hash table at most half full
+		if((vertexTable == null) || (2*getNumberOfVertices() + 2 > vertexTable.length))
+		{
+			vertexTable = new int[(vertexTable == null)?(1 << 12):(2*vertexTable.length)];
+			for(int v=0; v<getNumberOfVertices(); v++) insertIntoVertexTable(v);
+		}
+
+		int mask = vertexTable.length - 1;
+		for(int slot = hash(x, y, z) & mask; ; slot = (slot + 1) & mask)
+		{
+			int entry = vertexTable[slot];
+			if(entry == 0)
+			{
+				int v = addVertex(x, y, z);
+				vertexTable[slot] = v + 1;
+				return v;
+			}
+			int k = 3*(entry - 1);
+			if((vertices[k] == x) && (vertices[k+1] == y) && (vertices[k+2] == z)) return entry - 1;
+		}
+	}
+
+	private void insertIntoVertexTable(int v)
+	{
+		int mask = vertexTable.length - 1;
+		int slot = hash(vertices[3*v], vertices[3*v+1], vertices[3*v+2]) & mask;
+		while(vertexTable[slot] != 0) slot = (slot + 1) & mask;
+		vertexTable[slot] = v + 1;
+	}
+
+	private static int hash(double x, double y, double z)
+	{
+		// +0.0 converts -0.0 into 0.0, which would otherwise have a different hash despite being equal
+		long h = Double.doubleToLongBits(x + 0.0);
+		h = 31*h + Double.doubleToLongBits(y + 0.0);
+		h = 31*h + Double.doubleToLongBits(z + 0.0);
+		h ^= (h >>> 29);
+		h *= 0xbf58476d1ce4e5b9L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+
+
+	// OBJ
+
+	/**
+	 * Read the vertices ("v" lines) and faces ("f" lines) of a Wavefront OBJ file
+	 * @param in
+	 * @throws IOException
+	 */
+	public void readOBJ(InputStream in)
+	throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16);
+		int vertexOffset = getNumberOfVertices();
+		int[] polygon = new int[16];
+		int lineNumber = 0;
+
+		String line;
+		while((line = reader.readLine()) != null)
+		{
+			lineNumber++;
+			String[] tokens = tokenise(line);
+			if(tokens.length == 0) continue;
+
+			try
+			{
+				if(tokens[0].equals("v"))
+				{
+					addVertex(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]));
+				}
+				else if(tokens[0].equals("f"))
+				{
+					int n = tokens.length - 1;
+					if(n > polygon.length) polygon = new int[n];
+					for(int k=0; k<n; k++)
+					{
+						// a face vertex is of the form v, v/vt, v//vn, or v/vt/vn; indices start at 1, and negative indices count backwards
+						String token = tokens[k+1];
+						int slash = token.indexOf('/');
+						int index = Integer.parseInt((slash < 0)?token:token.substring(0, slash));
+						polygon[k] = (index < 0)?(getNumberOfVertices() + index):(vertexOffset + index - 1);
+						if((polygon[k] < vertexOffset) || (polygon[k] >= getNumberOfVertices()))
+							throw new IOException("TriangleMeshReader::readOBJ: line "+lineNumber+" refers to non-existent vertex "+index);
+					}
+					addPolygon(polygon, n);
+				}
+			}
+			catch(NumberFormatException | ArrayIndexOutOfBoundsException e)
+			{
+				throw new IOException("TriangleMeshReader::readOBJ: cannot understand line "+lineNumber+", \""+line+"\"", e);
+			}
+		}
+	}
+
+
+
+	// STL
+
+	/**
+	 * Read a binary or ASCII STL file
+	 * @param in	must support mark/reset (e.g. a BufferedInputStream)
+	 * @throws IOException
+	 */
+	public void readSTL(InputStream in)
+	throws IOException
+	{
+		// an ASCII STL file starts with "solid"; unfortunately, so do some binary ones, so also check that there is a "facet" soon after
+		in.mark(1024);
+		byte[] start = new byte[512];
+		int length = 0, n;
+		while((length < start.length) && ((n = in.read(start, length, start.length - length)) > 0)) length += n;
+		in.reset();
+		String startString = new String(start, 0, length, StandardCharsets.US_ASCII);
+		if(startString.trim().startsWith("solid") && startString.contains("facet")) readASCIISTL(in);
+		else readBinarySTL(in);
+	}
+
+	private void readBinarySTL(InputStream in)
+	throws IOException
+	{
+		DataInputStream data = new DataInputStream(in);
+
+		// 80-byte header, followed by the number of triangles
+		data.readFully(new byte[80]);
+		long numberOfTriangles = Integer.toUnsignedLong(Integer.reverseBytes(data.readInt()));
+
+		// each triangle is a normal, three vertices (all as little-endian floats), and an attribute byte count
+		byte[] triangle = new byte[50];
+		int[] polygon = new int[3];
+		for(long t=0; t<numberOfTriangles; t++)
+		{
+			data.readFully(triangle);
+			for(int k=0; k<3; k++)
+				polygon[k] = addOrFindVertex(
+						getLittleEndianFloat(triangle, 12 + 12*k),
+						getLittleEndianFloat(triangle, 16 + 12*k),
+						getLittleEndianFloat(triangle, 20 + 12*k)
+					);
+			addPolygon(polygon, 3);
+		}
+	}
+
+	private static float getLittleEndianFloat(byte[] b, int offset)
+	{
+		return Float.intBitsToFloat(
+				(b[offset] & 0xff) | ((b[offset+1] & 0xff) << 8) | ((b[offset+2] & 0xff) << 16) | ((b[offset+3] & 0xff) << 24)
+			);
+	}
+
+	private void readASCIISTL(InputStream in)
+	throws IOException
+	{
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII), 1 << 16);
+		int[] polygon = new int[16];
+		int numberOfPolygonVertices = 0;
+		int lineNumber = 0;
+
+		String line;
+		while((line = reader.readLine()) != null)
+		{
+			lineNumber++;
+			String[] tokens = tokenise(line);
+			if(tokens.length == 0) continue;
+
+			try
+			{
+				if(tokens[0].equals("outer"))
+				{
+					// "outer loop"
+					numberOfPolygonVertices = 0;
+				}
+				else if(tokens[0].equals("vertex"))
+				{
+					if(numberOfPolygonVertices == polygon.length) polygon = Arrays.copyOf(polygon, 2*polygon.length);
+					polygon[numberOfPolygonVertices++] = addOrFindVertex(Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]), Double.parseDouble(tokens[3]));
+				}
+				else if(tokens[0].equals("endloop"))
+				{
+					addPolygon(polygon, numberOfPolygonVertices);
+					numberOfPolygonVertices = 0;
+				}
+			}
+			catch(NumberFormatException | ArrayIndexOutOfBoundsException e)
+			{
+				throw new IOException("TriangleMeshReader::readSTL: cannot understand line "+lineNumber+", \""+line+"\"", e);
+			}
+		}
+	}
+
+
+
+	// PLY
+
+	/**
+	 * The formats of a PLY file
+	 */
+	private enum PLYFormat {ASCII, BINARY_LITTLE_ENDIAN, BINARY_BIG_ENDIAN}
+
+	/**
+	 * A property of an element in a PLY file
+	 */
+	private static class PLYProperty
+	{
+		String name;
+		String type;
+		String countType;	// null unless this is a list
+
+		PLYProperty(String name, String type, String countType)
+		{
+			this.name = name;
+			this.type = type;
+			this.countType = countType;
+		}
+	}
+
+	/**
+	 * An element (e.g. "vertex" or "face") in a PLY file
+	 */
+	private static class PLYElement
+	{
+		String name;
+		long count;
+		ArrayList<PLYProperty> properties = new ArrayList<PLYProperty>();
+
+		PLYElement(String name, long count)
+		{
+			this.name = name;
+			this.count = count;
+		}
+	}
+
+	/**
+	 * Read the vertex positions (properties x, y, z of the "vertex" elements) and faces (property vertex_indices, or vertex_index,
+	 * of the "face" elements) of a PLY file
+	 * @param in
+	 * @throws IOException
+	 */
+	public void readPLY(InputStream in)
+	throws IOException
+	{
+		DataInputStream data = new DataInputStream(in);
+
+		// read the header
+		if(!"ply".equals(readHeaderLine(data))) throw new IOException("TriangleMeshReader::readPLY: not a PLY file");
+		PLYFormat format = null;
+		ArrayList<PLYElement> elements = new ArrayList<PLYElement>();
+		String line;
+		while(!"end_header".equals(line = readHeaderLine(data)))
+		{
+			if(line == null) throw new IOException("TriangleMeshReader::readPLY: unexpected end of file in header");
+			String[] tokens = tokenise(line);
+			if(tokens.length == 0) continue;
+
+			if(tokens[0].equals("format"))
+			{
+				if(tokens[1].equals("ascii")) format = PLYFormat.ASCII;
+				else if(tokens[1].equals("binary_little_endian")) format = PLYFormat.BINARY_LITTLE_ENDIAN;
+				else if(tokens[1].equals("binary_big_endian")) format = PLYFormat.BINARY_BIG_ENDIAN;
+				else throw new IOException("TriangleMeshReader::readPLY: unknown format "+tokens[1]);
+			}
+			else if(tokens[0].equals("element"))
+			{
+				elements.add(new PLYElement(tokens[1], Long.parseLong(tokens[2])));
+			}
+			else if(tokens[0].equals("property"))
+			{
+				if(elements.isEmpty()) throw new IOException("TriangleMeshReader::readPLY: property before element in header");
+				PLYElement element = elements.get(elements.size()-1);
+				if(tokens[1].equals("list")) element.properties.add(new PLYProperty(tokens[4], tokens[3], tokens[2]));
+				else element.properties.add(new PLYProperty(tokens[2], tokens[1], null));
+			}
+			// ignore comments, obj_info, etc.
+		}
+		if(format == null) throw new IOException("TriangleMeshReader::readPLY: no format in header");
+
+		// read the data
+		BufferedReader reader = (format == PLYFormat.ASCII)?new BufferedReader(new InputStreamReader(data, StandardCharsets.US_ASCII), 1 << 16):null;
+		boolean littleEndian = (format == PLYFormat.BINARY_LITTLE_ENDIAN);
+		int vertexOffset = getNumberOfVertices();
+		int[] polygon = new int[16];
+		for(PLYElement element : elements)
+		{
+			boolean isVertex = element.name.equals("vertex"), isFace = element.name.equals("face");
+			for(long e=0; e<element.count; e++)
+			{
+				String[] tokens = null;
+				int tokenIndex = 0;
+				if(reader != null)
+				{
+					String dataLine = reader.readLine();
+					if(dataLine == null) throw new IOException("TriangleMeshReader::readPLY: unexpected end of file");
+					tokens = tokenise(dataLine);
+				}
+
+				double x = 0, y = 0, z = 0;
+				int numberOfPolygonVertices = -1;
+				for(PLYProperty property : element.properties)
+				{
+					if(property.countType == null)
+					{
+						double value;
+						if(reader != null) value = Double.parseDouble(tokens[tokenIndex++]);
+						else value = readBinaryPLYValue(data, property.type, littleEndian);
+
+						if(isVertex)
+						{
+							if(property.name.equals("x")) x = value;
+							else if(property.name.equals("y")) y = value;
+							else if(property.name.equals("z")) z = value;
+						}
+					}
+					else
+					{
+						int count = (int)((reader != null)?Double.parseDouble(tokens[tokenIndex++]):readBinaryPLYValue(data, property.countType, littleEndian));
+						boolean isVertexIndices = isFace && (property.name.equals("vertex_indices") || property.name.equals("vertex_index"));
+						if(isVertexIndices && (count > polygon.length)) polygon = new int[count];
+						for(int k=0; k<count; k++)
+						{
+							double value = (reader != null)?Double.parseDouble(tokens[tokenIndex++]):readBinaryPLYValue(data, property.type, littleEndian);
+							if(isVertexIndices)
+							{
+								polygon[k] = vertexOffset + (int)value;
+								if((value < 0) || (polygon[k] >= getNumberOfVertices()))
+									throw new IOException("TriangleMeshReader::readPLY: face #"+e+" refers to non-existent vertex #"+(int)value);
+							}
+						}
+						if(isVertexIndices) numberOfPolygonVertices = count;
+					}
+				}
+
+				if(isVertex) addVertex(x, y, z);
+				else if(numberOfPolygonVertices > 0) addPolygon(polygon, numberOfPolygonVertices);
+			}
+		}
+	}
+
+	/**
+	 * Read a line of the header of a PLY file, byte by byte, so that the data that follow can be read from the same stream
+	 * @param in
+	 * @return	the line, without the line break, or null if the end of the stream has been reached
+	 * @throws IOException
+	 */
+	private static String readHeaderLine(InputStream in)
+	throws IOException
+	{
+		StringBuilder s = new StringBuilder();
+		int c;
+		while((c = in.read()) != '\n')
+		{
+			if(c < 0) return (s.length() == 0)?null:s.toString();
+			if(c != '\r') s.append((char)c);
+		}
+		return s.toString().trim();
+	}
+
+	/**
+	 * Read a single number of the given PLY type from a binary PLY file
+	 * @param in
+	 * @param type
+	 * @param littleEndian
+	 * @return	the number
+	 * @throws IOException
+	 */
+	private static double readBinaryPLYValue(DataInputStream in, String type, boolean littleEndian)
+	throws IOException
+	{
+		switch(type)
+		{
+		case "char":
+		case "int8":
+			return in.readByte();
+		case "uchar":
+		case "uint8":
+			return in.readUnsignedByte();
+		case "short":
+		case "int16":
+			return littleEndian?Short.reverseBytes(in.readShort()):in.readShort();
+		case "ushort":
+		case "uint16":
+			return (littleEndian?Short.reverseBytes(in.readShort()):in.readShort()) & 0xffff;
+		case "int":
+		case "int32":
+			return littleEndian?Integer.reverseBytes(in.readInt()):in.readInt();
+		case "uint":
+		case "uint32":
+			return Integer.toUnsignedLong(littleEndian?Integer.reverseBytes(in.readInt()):in.readInt());
+		case "float":
+		case "float32":
+			return Float.intBitsToFloat(littleEndian?Integer.reverseBytes(in.readInt()):in.readInt());
+		case "double":
+		case "float64":
+			return Double.longBitsToDouble(littleEndian?Long.reverseBytes(in.readLong()):in.readLong());
+		default:
+			throw new IOException("TriangleMeshReader::readBinaryPLYValue: unknown type "+type);
+		}
+	}
+
+
+
+	/**
+	 * @param line
+	 * @return	the whitespace-separated tokens in the line
+	 */
+	private static String[] tokenise(String line)
+	{
+		String trimmed = line.trim();
+		if(trimmed.isEmpty()) return new String[0];
+		return trimmed.split("\\s+");
+	}
+}
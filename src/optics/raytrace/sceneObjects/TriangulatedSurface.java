@@ -30,6 +30,18 @@ public class TriangulatedSurface extends SceneObjectPrimitive implements Seriali
 //	public int oneTriangleI = 0;
 //	public int oneTriangleJ = 0;
 	
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		AxisAlignedBoundingBox box = AxisAlignedBoundingBox.EMPTY;
+		for(int i=0; i<v.length; i++)
+			box = box.getUnionWith(AxisAlignedBoundingBox.getBoundingBoxOfPoints(v[i]));
+		return box;
+	}
+
 	/**
 	 * 2D array of vertices v_i,j on the surface
 	 */
@@ -47,6 +59,13 @@ public class TriangulatedSurface extends SceneObjectPrimitive implements Seriali
 	 */
 	private boolean invertSurface;
 
+	/**
+	 * spatial index of the cells of the vertex array, which limits the triangles tested for intersection with a ray
+	 * to those close to the ray;
+	 * calculated from v in setV (or, after de-serialisation, when first needed)
+	 */
+	private transient CellHierarchy cellHierarchy;
+
 
 
 	// constructor
@@ -119,6 +138,8 @@ public class TriangulatedSurface extends SceneObjectPrimitive implements Seriali
 				for(int j=0; j<getEJMax(edgeType); j++)
 					e[edgeType][i][j] = new PlueckerCoordinates(getVertexForEdge(edgeType, i, j, 0), getVertexForEdge(edgeType, i, j, 1));
 
+		// build the spatial index
+		cellHierarchy = new CellHierarchy(v);
 	}
 
 
@@ -375,108 +396,345 @@ public class TriangulatedSurface extends SceneObjectPrimitive implements Seriali
 
 
 	
-	private enum TriangleStatus {NOT_SET, PLUECKER_POSITIVE, PLUECKER_NEGATIVE, ELIMINATED}
-	
-	
+	/**
+	 * A bounding-volume hierarchy over the cells of the vertex array, where cell (i,j) is the quadrilateral with vertices
+	 * v_i,j, v_i+1,j, v_i,j+1, and v_i+1,j+1, which contains triangle (i,j) of type 0 and triangle (i,j) of type 1.
+	 * 
+	 * Each node represents a rectangular block of cells, namely the cells (i,j) with iMin <= i < iMax and jMin <= j < jMax;
+	 * the root node represents all cells.
+	 * Inner nodes are split into two halves along the longer side of their block (in the (i,j) parametrisation),
+	 * so the hierarchy follows the connectivity of the surface and doesn't need to sort anything.
+	 * Each node stores the axis-aligned bounding box of the vertices in its block.
+	 * 
+	 * The hierarchy is stored in flat arrays, and it is immutable once built, so it can be shared between render threads.
+	 */
+	private static class CellHierarchy
+	{
+		/**
+		 * maximum number of cells along each side of a leaf
+		 */
+		private static final int MAX_CELLS_IN_LEAF_SIDE = 4;
+
+		/**
+		 * the bounding boxes of the nodes, six numbers per node, namely xMin, xMax, yMin, yMax, zMin, zMax
+		 */
+		private final double[] nodeBounds;
+
+		/**
+		 * the block of cells of each node, four numbers per node, namely iMin, iMax, jMin, jMax
+		 */
+		private final int[] nodeCells;
+
+		/**
+		 * for an inner node, the index of its first child (the second child follows immediately);
+		 * for a leaf, -1
+		 */
+		private final int[] nodeFirstChild;
+
+		/**
+		 * the depth of the tree, which determines the size of the traversal stack
+		 */
+		private final int depth;
+
+		/**
+		 * the number of nodes in use during the build
+		 */
+		private int numberOfNodes;
+
+		public CellHierarchy(Vector3D[][] v)
+		{
+			int cellsI = v.length - 1, cellsJ = v[0].length - 1;
+
+			if((cellsI < 1) || (cellsJ < 1))
+			{
+				// no cells, no triangles
+				nodeBounds = new double[0];
+				nodeCells = new int[0];
+				nodeFirstChild = new int[0];
+				depth = 0;
+				return;
+			}
+
+			int maxNumberOfNodes = countNodes(cellsI, cellsJ);
+			nodeBounds = new double[6*maxNumberOfNodes];
+			nodeCells = new int[4*maxNumberOfNodes];
+			nodeFirstChild = new int[maxNumberOfNodes];
+
+			numberOfNodes = 1;
+			depth = build(0, 0, cellsI, 0, cellsJ, v);
+		}
+
+		/**
+		 * @param cellsI
+		 * @param cellsJ
+		 * @return	the number of nodes in the subtree of a node that represents a block of cellsI x cellsJ cells
+		 */
+		private static int countNodes(int cellsI, int cellsJ)
+		{
+			if((cellsI <= MAX_CELLS_IN_LEAF_SIDE) && (cellsJ <= MAX_CELLS_IN_LEAF_SIDE)) return 1;
+			if(cellsI >= cellsJ) return 1 + countNodes(cellsI/2, cellsJ) + countNodes(cellsI - cellsI/2, cellsJ);
+			return 1 + countNodes(cellsI, cellsJ/2) + countNodes(cellsI, cellsJ - cellsJ/2);
+		}
+
+		/**
+		 * Turn the node into a subtree that represents the cells (i,j) with iMin <= i < iMax and jMin <= j < jMax
+		 * @return	the depth of the subtree
+		 */
+		private int build(int node, int iMin, int iMax, int jMin, int jMax, Vector3D[][] v)
+		{
+			nodeCells[4*node] = iMin;
+			nodeCells[4*node+1] = iMax;
+			nodeCells[4*node+2] = jMin;
+			nodeCells[4*node+3] = jMax;
+
+			if((iMax - iMin <= MAX_CELLS_IN_LEAF_SIDE) && (jMax - jMin <= MAX_CELLS_IN_LEAF_SIDE))
+			{
+				// a leaf; its bounding box is that of the vertices of its cells, expanded slightly to avoid
+				// rays that graze it being missed due to rounding errors
+				int k = 6*node;
+				nodeBounds[k] = nodeBounds[k+2] = nodeBounds[k+4] = Double.POSITIVE_INFINITY;
+				nodeBounds[k+1] = nodeBounds[k+3] = nodeBounds[k+5] = Double.NEGATIVE_INFINITY;
+				for(int i=iMin; i<=iMax; i++)
+					for(int j=jMin; j<=jMax; j++)
+					{
+						Vector3D p = v[i][j];
+						nodeBounds[k] = Math.min(nodeBounds[k], p.x - MyMath.TINY);
+						nodeBounds[k+1] = Math.max(nodeBounds[k+1], p.x + MyMath.TINY);
+						nodeBounds[k+2] = Math.min(nodeBounds[k+2], p.y - MyMath.TINY);
+						nodeBounds[k+3] = Math.max(nodeBounds[k+3], p.y + MyMath.TINY);
+						nodeBounds[k+4] = Math.min(nodeBounds[k+4], p.z - MyMath.TINY);
+						nodeBounds[k+5] = Math.max(nodeBounds[k+5], p.z + MyMath.TINY);
+					}
+				nodeFirstChild[node] = -1;
+				return 1;
+			}
+
+			// an inner node; split the block in half along its longer side
+			int leftChild = numberOfNodes;
+			numberOfNodes += 2;
+			nodeFirstChild[node] = leftChild;
+
+			int leftDepth, rightDepth;
+			if(iMax - iMin >= jMax - jMin)
+			{
+				int iMid = (iMin + iMax)/2;
+				leftDepth = build(leftChild, iMin, iMid, jMin, jMax, v);
+				rightDepth = build(leftChild+1, iMid, iMax, jMin, jMax, v);
+			}
+			else
+			{
+				int jMid = (jMin + jMax)/2;
+				leftDepth = build(leftChild, iMin, iMax, jMin, jMid, v);
+				rightDepth = build(leftChild+1, iMin, iMax, jMid, jMax, v);
+			}
+
+			// the bounding box of an inner node is the union of those of its children
+			for(int k=0; k<3; k++)
+			{
+				nodeBounds[6*node+2*k] = Math.min(nodeBounds[6*leftChild+2*k], nodeBounds[6*(leftChild+1)+2*k]);
+				nodeBounds[6*node+2*k+1] = Math.max(nodeBounds[6*leftChild+2*k+1], nodeBounds[6*(leftChild+1)+2*k+1]);
+			}
+
+			return 1 + Math.max(leftDepth, rightDepth);
+		}
+
+		private double getNodeEntryDistance(int node, double px, double py, double pz, double invDx, double invDy, double invDz, double maxDistance)
+		{
+			int k = 6*node;
+			return AxisAlignedBoundingBox.getRayEntryDistance(
+					nodeBounds[k], nodeBounds[k+1], nodeBounds[k+2], nodeBounds[k+3], nodeBounds[k+4], nodeBounds[k+5],
+					px, py, pz,
+					invDx, invDy, invDz,
+					maxDistance
+				);
+		}
+	}
+
+	/**
+	 * @return	the spatial index of the cells, built if necessary
+	 */
+	private CellHierarchy getCellHierarchy()
+	{
+		CellHierarchy h = cellHierarchy;
+		if(h == null)
+		{
+			// this happens after de-serialisation
+			h = new CellHierarchy(v);
+			cellHierarchy = h;
+		}
+		return h;
+	}
+
+	/**
+	 * The record of the closest intersection with a triangle found so far
+	 */
+	private static class ClosestTriangleIntersection
+	{
+		double factor = MyMath.HUGE;
+		int triangleType, i, j;
+
+		/**
+		 * @return	true if the closest triangle so far comes after triangle (i,j) of type triangleType in the order (i, j, triangleType)
+		 */
+		boolean isAfter(int triangleType, int i, int j)
+		{
+			if(this.i != i) return this.i > i;
+			if(this.j != j) return this.j > j;
+			return this.triangleType > triangleType;
+		}
+	}
+
+	/**
+	 * Check if the ray intersects triangle (i,j) of type triangleType, and if so, and if the intersection is closer than
+	 * the closest one found so far, make it the closest one.
+	 * Whether or not the ray intersects the triangle is decided by the signs of the Plücker side products of the ray with the
+	 * triangle's three edges, exactly as in [1]; as the side product of the ray and an edge is calculated from the same
+	 * Plücker coordinates for both triangles that share the edge, every ray that passes through the surface intersects
+	 * exactly one of those triangles, i.e. the surface is "watertight".
+	 * @param r	the Plücker coordinates of the ray
+	 * @param ray
+	 * @param triangleType
+	 * @param i
+	 * @param j
+	 * @param closest
+	 */
+	private void intersectTriangle(PlueckerCoordinates r, Ray ray, int triangleType, int i, int j, ClosestTriangleIntersection closest)
+	{
+		// the Plücker side products of the ray with the three edges of the triangle;
+		// triangle (i,j) of type 0 has edges (i,j) of types 0, 1 and 2,
+		// triangle (i,j) of type 1 has edge (i+1,j) of type 0, edge (i,j) of type 1, and edge (i,j+1) of type 2
+		boolean side0, side1, side2;
+		side1 = PlueckerCoordinates.side(r, e[1][i][j]) > 0;
+		if(triangleType == 0)
+		{
+			side0 = PlueckerCoordinates.side(r, e[0][i][j]) > 0;
+			if(side0 != side1) return;
+			side2 = PlueckerCoordinates.side(r, e[2][i][j]) > 0;
+		}
+		else
+		{
+			side0 = PlueckerCoordinates.side(r, e[0][i+1][j]) > 0;
+			if(side0 != side1) return;
+			side2 = PlueckerCoordinates.side(r, e[2][i][j+1]) > 0;
+		}
+		if(side2 != side1) return;
+
+		// the ray intersects triangle (i, j) of type triangleType
+
+		// calculate the factor by which the ray has to be extended to the intersection
+		double factor = Geometry.getFactorToLinePlaneIntersection(
+				ray.getP(),	// pointOnLine
+				ray.getD(),	// directionOfLine
+				getVertexForTriangle(triangleType, i, j, 0),	// pointOnPlane, here vertex #0 of the intersected triangle
+				getOutwardsSurfaceNormal(triangleType, i, j)	// normalToPlane
+			);
+
+		// is this point closer than the previous closest point?
+		// (if the ray passes through a vertex, several triangles are intersected at the same distance; then pick the one
+		// with the lowest (i, j, triangleType), irrespective of the order in which the triangles are tested)
+		if((factor > 0) && ((factor < closest.factor) || ((factor == closest.factor) && closest.isAfter(triangleType, i, j))))
+		{
+			// the current intersection is the new closest intersection
+			closest.factor = factor;
+			closest.triangleType = triangleType;
+			closest.i = i;
+			closest.j = j;
+		}
+	}
+
+
 	// SceneObject methods
 	
-	/* See J. Amanatides and K. Choi, Ray Tracing Triangular Meshes, Proceedings of the Eighth Western Computer Graphics Symposium, 43-52 (1997)
+	/* See J. Amanatides and K. Choi, Ray Tracing Triangular Meshes, Proceedings of the Eighth Western Computer Graphics Symposium, 43-52 (1997).
+	 * Only the triangles in cells whose bounding boxes the ray enters, before the closest intersection found so far, are tested;
+	 * the cells are found by traversing the cell hierarchy, nearest node first.
 	 * @see optics.raytrace.core.SceneObject#getClosestRayIntersection(optics.raytrace.core.Ray)
 	 */
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray)
 	{
-		// create an array of triangleStatus, one per triangle...
-		TriangleStatus[][][] triangleStatus = new TriangleStatus[2][getVIMax()-1][getVJMax()-1];
-		
-//		// ... and initially set them all
-//		for(int i=0; i<getVIMax()-1; i++)
-//			for(int j=0; j<getVJMax()-1; j++)
-//				for(int triangleType=0; triangleType<2; triangleType++)
-//					triangleStatus[triangleType][i][j] = TriangleStatus.NOT_SET;
-		
+		CellHierarchy h = getCellHierarchy();
+		if(h.nodeFirstChild.length == 0) return RaySceneObjectIntersection.NO_INTERSECTION;
+
 		// calculate the Pluecker coordinates of the ray
 		PlueckerCoordinates r = new PlueckerCoordinates(ray.getP(), Vector3D.sum(ray.getP(), ray.getD()));
 
-		// for all edges of type 0
-		for(int i=0; i<getEIMax(0); i++)
-			for(int j=0; j<getEJMax(0); j++)
-			{
-				// side of the edge on which the ray passes = sign of the following expression
-				double side = PlueckerCoordinates.side(r, e[0][i][j]);
-				
-				// corresponding triangle status
-				TriangleStatus thisTriangleStatus = (side>0)?(TriangleStatus.PLUECKER_POSITIVE):(TriangleStatus.PLUECKER_NEGATIVE); 
-								
-				// set the status of the neighbouring triangles accordingly
-				if(i<getVIMax()-1) triangleStatus[0][i][j] = thisTriangleStatus;	// edge (i,j) of type 0 is an edge of triangle (i,j) of type 0...
-				if(i>0) triangleStatus[1][i-1][j] = thisTriangleStatus;	// ... and of triangle (i-1, j) of type 1
-			}
-		
-		// for all edges of type 2;
-		// it makes some sense for these to come next as it is relatively easy to deal with the fact that the type-1 triangle sometimes does not exist for this edge 
-		for(int i=0; i<getEIMax(2); i++)
-			for(int j=0; j<getEJMax(2); j++)
-			{
-				// side of the edge on which the ray passes = sign of the following expression
-				double side = PlueckerCoordinates.side(r, e[2][i][j]);
-				
-				// corresponding triangle status
-				TriangleStatus thisTriangleStatus = (side>0)?(TriangleStatus.PLUECKER_POSITIVE):(TriangleStatus.PLUECKER_NEGATIVE); 
-								
-				// set the status of the neighbouring triangles accordingly
-				if(j<getVJMax()-1) if(triangleStatus[0][i][j] != thisTriangleStatus) triangleStatus[0][i][j] = TriangleStatus.ELIMINATED;	// edge (i,j) of type 2 is an edge of triangle (i,j) of type 0...
-				if(j>0) if(triangleStatus[1][i][j-1] != thisTriangleStatus) triangleStatus[1][i][j-1] = TriangleStatus.ELIMINATED;	// ... and of triangle (i,j-1) of type 1
-			}
-		
-		double factorToClosestIntersection = MyMath.HUGE;
-		Vector3D normalAtClosestIntersection = null;
-				
-		// for all edges of type 1
-		// it makes sense for this to come last as it is hardest to deal with there being no adjacent triangles of type 0 or 1 for the last edge type to be dealt with,
-		// and for edges of type 1 there are always adjacent triangles of types 0 and 1
-		for(int i=0; i<getEIMax(1); i++)
-			for(int j=0; j<getEJMax(1); j++)
-			//	if((i<getVIMax()-1) && (j<getVJMax()-1) && ((!showOnlyOneTriangle) || ((i==oneTriangleI) && (j==oneTriangleJ))))
+		// distances along the ray are measured as multiples of d, like the factor to the intersection
+		Vector3D p = ray.getP();
+		Vector3D d = ray.getD();
+		double
+			invDx = 1./d.x,
+			invDy = 1./d.y,
+			invDz = 1./d.z;
+
+		ClosestTriangleIntersection closest = new ClosestTriangleIntersection();
+
+		// traverse the tree, nearest child first
+		int[] stack = new int[h.depth + 1];
+		double[] stackDistances = new double[h.depth + 1];
+		int stackSize = 0;
+
+		int node = 0;
+		double nodeDistance = h.getNodeEntryDistance(0, p.x, p.y, p.z, invDx, invDy, invDz, closest.factor);
+
+		while(nodeDistance != Double.POSITIVE_INFINITY)
+		{
+			if(nodeDistance <= closest.factor)
 			{
-				// side of the edge on which the ray passes = sign of the following expression
-				double side = PlueckerCoordinates.side(r, e[1][i][j]);
-				
-				// corresponding triangle status
-				TriangleStatus thisTriangleStatus = (side>0)?(TriangleStatus.PLUECKER_POSITIVE):(TriangleStatus.PLUECKER_NEGATIVE); 
-								
-				for(int triangleType=0; triangleType<2; triangleType++)
-				if(triangleStatus[triangleType][i][j] == thisTriangleStatus)
+				if(h.nodeFirstChild[node] < 0)
+				{
+					// a leaf; test the triangles in its cells
+					int k = 4*node;
+					for(int i=h.nodeCells[k]; i<h.nodeCells[k+1]; i++)
+						for(int j=h.nodeCells[k+2]; j<h.nodeCells[k+3]; j++)
+							for(int triangleType=0; triangleType<2; triangleType++)
+								intersectTriangle(r, ray, triangleType, i, j, closest);
+				}
+				else
 				{
-					// the ray intersects triangle (i, j) of type triangleType
-					Vector3D normal = getOutwardsSurfaceNormal(triangleType, i, j);
-						
-					// calculate the factor by which the ray has to be extended to the intersection
-					double factor = Geometry.getFactorToLinePlaneIntersection(
-								ray.getP(),	// pointOnLine
-								ray.getD(),	// directionOfLine
-								getVertexForTriangle(triangleType, i, j, 0),	// pointOnPlane, here vertex #0 of the intersected triangle
-								normal	// normalToPlane
-							);
-						
-					// is this point closer than the previous closest point?
-					if((factor > 0) && (factor < factorToClosestIntersection))
+					// an inner node; visit the nearer child next, and remember the other one for later
+					int left = h.nodeFirstChild[node], right = left + 1;
+					double
+						leftDistance = h.getNodeEntryDistance(left, p.x, p.y, p.z, invDx, invDy, invDz, closest.factor),
+						rightDistance = h.getNodeEntryDistance(right, p.x, p.y, p.z, invDx, invDy, invDz, closest.factor);
+
+					if(leftDistance > rightDistance)
+					{
+						int n = left; left = right; right = n;
+						double t = leftDistance; leftDistance = rightDistance; rightDistance = t;
+					}
+
+					if(leftDistance != Double.POSITIVE_INFINITY)
 					{
-						// the current intersection is the new closest intersection
-						factorToClosestIntersection = factor;
-						normalAtClosestIntersection = normal;
+						if(rightDistance != Double.POSITIVE_INFINITY)
+						{
+							stack[stackSize] = right;
+							stackDistances[stackSize] = rightDistance;
+							stackSize++;
+						}
+						node = left;
+						nodeDistance = leftDistance;
+						continue;
 					}
 				}
 			}
+
+			// pop the next node off the stack
+			if(stackSize == 0) break;
+			stackSize--;
+			node = stack[stackSize];
+			nodeDistance = stackDistances[stackSize];
+		}
 				
-		if(factorToClosestIntersection == MyMath.HUGE)
+		if(closest.factor == MyMath.HUGE)
 		{
 			// no intersection
 			return RaySceneObjectIntersection.NO_INTERSECTION;
 		}
 		
 		// return the closest intersection
-		Ray rayAtIntersectionPoint = ray.getAdvancedRay(factorToClosestIntersection);
+		Vector3D normalAtClosestIntersection = getOutwardsSurfaceNormal(closest.triangleType, closest.i, closest.j);
+		Ray rayAtIntersectionPoint = ray.getAdvancedRay(closest.factor);
 		
 		return new RaySceneObjectIntersection(
 				new Vector3DWithBonusVector3D(rayAtIntersectionPoint.getP(), normalAtClosestIntersection),
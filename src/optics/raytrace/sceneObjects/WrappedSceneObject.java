@@ -4,8 +4,10 @@ import java.util.ArrayList;
 
 import math.Vector3D;
 import optics.DoubleColour;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RayWithTrajectory;
 import optics.raytrace.core.RaytraceExceptionHandler;
@@ -99,16 +101,19 @@ public class WrappedSceneObject extends SceneObjectClass {
 	// overridden SceneObjectClass methods (i.e. the interesting bit)
 	
 	/**
-	 * For a specific intersection point, calculate the corresponding colour
+	 * For a specific intersection point, calculate the corresponding colour, or describe the redirected ray
 	 * @param intersection
 	 * @param ray
 	 * @param l
 	 * @param scene
 	 * @param traceLevel
-	 * @return the colour
+	 * @param raytraceExceptionHandler
+	 * @param continuation
+	 * @return the colour, or null if the ray has been redirected
 	 * @throws RayTraceException
 	 */
-	protected DoubleColour getColourAtIntersection(RaySceneObjectIntersection intersection, Ray ray, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
+	@Override
+	protected DoubleColour getColourOrContinuationAtIntersection(RaySceneObjectIntersection intersection, Ray ray, LightSource l, SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
 	throws RayTraceException
 	{
 		// if there is no intersection...
@@ -129,7 +134,7 @@ public class WrappedSceneObject extends SceneObjectClass {
 		if(intersection.o instanceof WrappedSceneObjectPrimitive) intersection.o = ((WrappedSceneObjectPrimitive)intersection.o).getSceneObjectPrimitive();
 		
 		// different here:  return the colour as calculated by the "wrapped-around" surface property
-		return surfaceProperty.getColour(ray, intersection, scene, l, traceLevel-1, raytraceExceptionHandler);
+		return surfaceProperty.getColourOrContinuation(ray, intersection, scene, l, traceLevel-1, raytraceExceptionHandler, continuation);
 		// return intersection.o.getColourAtIntersection(ray, intersection, scene, l, traceLevel-1, raytraceExceptionHandler);
 	}
 
@@ -146,6 +151,11 @@ public class WrappedSceneObject extends SceneObjectClass {
 		return sceneObject.insideObject(p);
 	}
 
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+		return sceneObject.getAxisAlignedBoundingBox();
+	}
+
 	@Override
 	public WrappedSceneObject transform(Transformation t) {
 		return new WrappedSceneObject(
@@ -188,6 +198,13 @@ public class WrappedSceneObject extends SceneObjectClass {
 		return i;
 	}
 
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray,
+			SceneObjectPrimitive originObject, double maxDistance) {
+		if(originObject instanceof WrappedSceneObjectPrimitive) originObject = ((WrappedSceneObjectPrimitive)originObject).getSceneObjectPrimitive();
+		return sceneObject.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance);
+	}
+
 	@Override
 	public ArrayList<SceneObjectPrimitive> getSceneObjectPrimitives() {
 		return sceneObject.getSceneObjectPrimitives();
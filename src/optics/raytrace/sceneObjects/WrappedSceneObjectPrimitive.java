@@ -1,6 +1,7 @@
 package optics.raytrace.sceneObjects;
 
 import math.Vector3D;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.SceneObjectPrimitive;
@@ -93,6 +94,11 @@ public class WrappedSceneObjectPrimitive extends SceneObjectPrimitive
 		return sceneObjectPrimitive.getNormalisedOutwardsSurfaceNormal(p);
 	}
 
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+		return sceneObjectPrimitive.getAxisAlignedBoundingBox();
+	}
+
 	@Override
 	public SceneObjectPrimitive transform(Transformation t) {
 		return new WrappedSceneObjectPrimitive(
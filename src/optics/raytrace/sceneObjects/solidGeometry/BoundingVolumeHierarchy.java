@@ -0,0 +1,531 @@
+package optics.raytrace.sceneObjects.solidGeometry;
+
+import java.util.ArrayList;
+
+import math.*;
+import optics.raytrace.core.*;
+
+/**
+ * A bounding-volume hierarchy (BVH) over the visible scene objects in a SceneObjectContainer.
+ *
+ * The hierarchy is a binary tree of axis-aligned bounding boxes, built top-down using the
+ * surface-area heuristic (SAH), evaluated over a small number of bins along each axis.
+ * The tree is stored in flat arrays, and it is traversed without recursion, nearest child first;
+ * any subtree whose bounding box is entered further away than the closest intersection found so far
+ * is skipped.
+ *
+ * Scene objects that don't know their extent (i.e. whose bounding box is infinite, such as planes)
+ * are not put into the tree; they are tested individually for every ray, just like in a SceneObjectContainer.
+ *
+ * The hierarchy is a snapshot of the container's contents at the time it was built;
+ * the container is responsible for building a new one whenever its contents change.
+ *
+ * @author Johannes Courtial
+ */
+public class BoundingVolumeHierarchy
+{
+	/**
+	 * number of bins along each axis in which the SAH is evaluated
+	 */
+	private static final int NUMBER_OF_BINS = 16;
+
+	/**
+	 * maximum number of scene objects in a leaf
+	 */
+	private static final int MAX_OBJECTS_IN_LEAF = 4;
+
+	/**
+	 * cost of traversing a node, relative to the cost of intersecting a scene object, used in the SAH
+	 */
+	private static final double TRAVERSAL_COST = 0.5;
+
+	/**
+	 * maximum depth of the tree, which determines the size of the traversal stack
+	 */
+	private static final int MAX_DEPTH = 64;
+
+	/**
+	 * the scene objects with a finite bounding box, in the order in which they are referenced by the leaves
+	 */
+	private SceneObject[] boundedSceneObjects;
+
+	/**
+	 * the scene objects with an infinite bounding box, which are tested for every ray
+	 */
+	private SceneObject[] unboundedSceneObjects;
+
+	/**
+	 * the bounding boxes of the nodes, six numbers per node, namely xMin, xMax, yMin, yMax, zMin, zMax
+	 */
+	private double[] nodeBounds;
+
+	/**
+	 * for an inner node, the index of its first child (the second child follows immediately);
+	 * for a leaf, the index of its first scene object in boundedSceneObjects
+	 */
+	private int[] nodeFirst;
+
+	/**
+	 * for an inner node, 0; for a leaf, the number of scene objects in it
+	 */
+	private int[] nodeCount;
+
+	/**
+	 * the number of nodes in use
+	 */
+	private int numberOfNodes;
+
+	/**
+	 * the bounding box of everything in the hierarchy (including the unbounded scene objects)
+	 */
+	private AxisAlignedBoundingBox boundingBox;
+
+	// the bounding boxes and centroids of the bounded scene objects, only needed during the build
+	private double[] objectBounds;
+	private double[] objectCentroids;
+
+	/**
+	 * Build a bounding-volume hierarchy over the given scene objects
+	 * @param sceneObjects
+	 */
+	public BoundingVolumeHierarchy(ArrayList<SceneObject> sceneObjects)
+	{
+		ArrayList<SceneObject> bounded = new ArrayList<SceneObject>();
+		ArrayList<SceneObject> unbounded = new ArrayList<SceneObject>();
+		ArrayList<AxisAlignedBoundingBox> boxes = new ArrayList<AxisAlignedBoundingBox>();
+
+		boundingBox = AxisAlignedBoundingBox.EMPTY;
+		for(SceneObject o:sceneObjects)
+		{
+			AxisAlignedBoundingBox box = o.getAxisAlignedBoundingBox();
+			boundingBox = boundingBox.getUnionWith(box);
+
+			if(box.isInfinite()) unbounded.add(o);
+			else if(!box.isEmpty())
+			{
+				bounded.add(o);
+				boxes.add(box);
+			}
+		}
+
+		unboundedSceneObjects = unbounded.toArray(new SceneObject[unbounded.size()]);
+		boundedSceneObjects = bounded.toArray(new SceneObject[bounded.size()]);
+
+		int n = boundedSceneObjects.length;
+		objectBounds = new double[6*n];
+		objectCentroids = new double[3*n];
+		for(int i=0; i<n; i++)
+		{
+			AxisAlignedBoundingBox box = boxes.get(i);
+			for(int axis=0; axis<3; axis++)
+			{
+				objectBounds[6*i+2*axis] = box.getMin(axis) - MyMath.TINY;
+				objectBounds[6*i+2*axis+1] = box.getMax(axis) + MyMath.TINY;
+				objectCentroids[3*i+axis] = 0.5*(box.getMin(axis) + box.getMax(axis));
+			}
+		}
+
+		// a binary tree with n leaves has 2n-1 nodes
+		int maxNumberOfNodes = Math.max(1, 2*n - 1);
+		nodeBounds = new double[6*maxNumberOfNodes];
+		nodeFirst = new int[maxNumberOfNodes];
+		nodeCount = new int[maxNumberOfNodes];
+		numberOfNodes = 0;
+
+		if(n > 0)
+		{
+			numberOfNodes = 1;
+			build(0, 0, n, 0);
+		}
+
+		// the build data are no longer needed
+		objectBounds = null;
+		objectCentroids = null;
+	}
+
+	/**
+	 * @return	the bounding box of all the scene objects in the hierarchy
+	 */
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		return boundingBox;
+	}
+
+	/**
+	 * @return	the number of nodes in the tree
+	 */
+	public int getNumberOfNodes()
+	{
+		return numberOfNodes;
+	}
+
+	/**
+	 * Turn the node into a subtree that contains the bounded scene objects first (inclusive) to last (exclusive)
+	 * @param node
+	 * @param first
+	 * @param last
+	 * @param depth
+	 */
+	private void build(int node, int first, int last, int depth)
+	{
+		// calculate the bounds of the node, and of the centroids of its scene objects
+		double[] bounds = emptyBounds();
+		double[] centroidBounds = emptyBounds();
+		for(int i=first; i<last; i++)
+		{
+			for(int axis=0; axis<3; axis++)
+			{
+				bounds[2*axis] = Math.min(bounds[2*axis], objectBounds[6*i+2*axis]);
+				bounds[2*axis+1] = Math.max(bounds[2*axis+1], objectBounds[6*i+2*axis+1]);
+				centroidBounds[2*axis] = Math.min(centroidBounds[2*axis], objectCentroids[3*i+axis]);
+				centroidBounds[2*axis+1] = Math.max(centroidBounds[2*axis+1], objectCentroids[3*i+axis]);
+			}
+		}
+		System.arraycopy(bounds, 0, nodeBounds, 6*node, 6);
+
+		int count = last - first;
+		if((count <= MAX_OBJECTS_IN_LEAF) || (depth >= MAX_DEPTH - 1))
+		{
+			makeLeaf(node, first, count);
+			return;
+		}
+
+		// find the best split, according to the SAH, by binning the centroids along each axis
+		double bestCost = Double.POSITIVE_INFINITY;
+		int bestAxis = -1, bestSplit = -1;
+		int[] binCounts = new int[NUMBER_OF_BINS];
+		double[][] binBounds = new double[NUMBER_OF_BINS][];
+		double[] rightAreas = new double[NUMBER_OF_BINS];
+		for(int axis=0; axis<3; axis++)
+		{
+			double cMin = centroidBounds[2*axis], cMax = centroidBounds[2*axis+1];
+			if(cMax <= cMin) continue;	// all centroids lie in the same plane perpendicular to this axis
+			double scale = NUMBER_OF_BINS / (cMax - cMin);
+
+			for(int b=0; b<NUMBER_OF_BINS; b++)
+			{
+				binCounts[b] = 0;
+				binBounds[b] = emptyBounds();
+			}
+			for(int i=first; i<last; i++)
+			{
+				int b = getBin(objectCentroids[3*i+axis], cMin, scale);
+				binCounts[b]++;
+				growBounds(binBounds[b], objectBounds, 6*i);
+			}
+
+			// sweep from the right to get the areas of the right-hand sides...
+			double[] accumulated = emptyBounds();
+			for(int b=NUMBER_OF_BINS-1; b>0; b--)
+			{
+				growBounds(accumulated, binBounds[b], 0);
+				rightAreas[b] = getSurfaceArea(accumulated);
+			}
+
+			// ... and from the left to evaluate the cost of splitting between bins b-1 and b
+			accumulated = emptyBounds();
+			int leftCount = 0;
+			for(int b=1; b<NUMBER_OF_BINS; b++)
+			{
+				growBounds(accumulated, binBounds[b-1], 0);
+				leftCount += binCounts[b-1];
+				int rightCount = count - leftCount;
+				if((leftCount == 0) || (rightCount == 0)) continue;
+
+				double cost = leftCount*getSurfaceArea(accumulated) + rightCount*rightAreas[b];
+				if(cost < bestCost)
+				{
+					bestCost = cost;
+					bestAxis = axis;
+					bestSplit = b;
+				}
+			}
+		}
+
+		// is splitting worth it?
+		double nodeArea = getSurfaceArea(bounds);
+		if((bestAxis < 0) || (TRAVERSAL_COST*nodeArea + bestCost >= count*nodeArea))
+		{
+			if(bestAxis < 0)
+			{
+				// the centroids cannot be separated
+				makeLeaf(node, first, count);
+				return;
+			}
+			if(count <= 4*MAX_OBJECTS_IN_LEAF)
+			{
+				// a leaf is cheaper than splitting
+				makeLeaf(node, first, count);
+				return;
+			}
+			// otherwise split anyway, so that leaves stay small
+		}
+
+		// partition the scene objects in place
+		double cMin = centroidBounds[2*bestAxis];
+		double scale = NUMBER_OF_BINS / (centroidBounds[2*bestAxis+1] - cMin);
+		int i = first, j = last - 1;
+		while(i <= j)
+		{
+			if(getBin(objectCentroids[3*i+bestAxis], cMin, scale) < bestSplit) i++;
+			else swap(i, j--);
+		}
+
+		int leftChild = numberOfNodes;
+		numberOfNodes += 2;
+		nodeFirst[node] = leftChild;
+		nodeCount[node] = 0;
+
+		build(leftChild, first, i, depth+1);
+		build(leftChild+1, i, last, depth+1);
+	}
+
+	private void makeLeaf(int node, int first, int count)
+	{
+		nodeFirst[node] = first;
+		nodeCount[node] = count;
+	}
+
+	private static int getBin(double centroid, double cMin, double scale)
+	{
+		return Math.min(NUMBER_OF_BINS - 1, (int)((centroid - cMin)*scale));
+	}
+
+	private void swap(int i, int j)
+	{
+		SceneObject o = boundedSceneObjects[i];
+		boundedSceneObjects[i] = boundedSceneObjects[j];
+		boundedSceneObjects[j] = o;
+
+		for(int k=0; k<6; k++)
+		{
+			double b = objectBounds[6*i+k];
+			objectBounds[6*i+k] = objectBounds[6*j+k];
+			objectBounds[6*j+k] = b;
+		}
+		for(int k=0; k<3; k++)
+		{
+			double c = objectCentroids[3*i+k];
+			objectCentroids[3*i+k] = objectCentroids[3*j+k];
+			objectCentroids[3*j+k] = c;
+		}
+	}
+
+	private static double[] emptyBounds()
+	{
+		return new double[] {
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+				Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY
+			};
+	}
+
+	private static void growBounds(double[] bounds, double[] b, int offset)
+	{
+		for(int k=0; k<3; k++)
+		{
+			bounds[2*k] = Math.min(bounds[2*k], b[offset+2*k]);
+			bounds[2*k+1] = Math.max(bounds[2*k+1], b[offset+2*k+1]);
+		}
+	}
+
+	private static double getSurfaceArea(double[] bounds)
+	{
+		double
+			dx = bounds[1] - bounds[0],
+			dy = bounds[3] - bounds[2],
+			dz = bounds[5] - bounds[4];
+		if((dx < 0) || (dy < 0) || (dz < 0)) return 0;
+		return 2*(dx*dy + dy*dz + dz*dx);
+	}
+
+	/**
+	 * @param node
+	 * @param px
+	 * @param py
+	 * @param pz
+	 * @param invDx
+	 * @param invDy
+	 * @param invDz
+	 * @param maxDistance
+	 * @return	the distance along the ray at which it enters the node's bounding box, or infinity if it doesn't do so before maxDistance
+	 */
+	private double getNodeEntryDistance(int node, double px, double py, double pz, double invDx, double invDy, double invDz, double maxDistance)
+	{
+		int k = 6*node;
+		return AxisAlignedBoundingBox.getRayEntryDistance(
+				nodeBounds[k], nodeBounds[k+1], nodeBounds[k+2], nodeBounds[k+3], nodeBounds[k+4], nodeBounds[k+5],
+				px, py, pz,
+				invDx, invDy, invDz,
+				maxDistance
+			);
+	}
+
+	/**
+	 * Find the closest intersection between the ray and any of the scene objects in the hierarchy.
+	 * Gives the same result as SceneObjectContainer's getClosestRayIntersectionAvoidingOrigin
+	 * (or getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin), but only calculates
+	 * intersections with scene objects whose bounding boxes the ray enters before the closest intersection found so far.
+	 *
+	 * @param ray
+	 * @param originObject
+	 * @param shadowThrowingSceneObjectsOnly	if true, consider only shadow-throwing scene objects
+	 * @return	the closest intersection
+	 */
+	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, boolean shadowThrowingSceneObjectsOnly)
+	{
+		RaySceneObjectIntersectionRecord record = new RaySceneObjectIntersectionRecord(ray);
+		findClosestRayIntersectionAvoidingOrigin(ray, originObject, record, shadowThrowingSceneObjectsOnly);
+		return record.getRaySceneObjectIntersection();
+	}
+
+	/**
+	 * The allocation-free version of getClosestRayIntersectionAvoidingOrigin
+	 * @param ray
+	 * @param originObject
+	 * @param record	the record of the closest intersection so far
+	 * @return	true if a closer intersection has been found and stored in the record
+	 * @see optics.raytrace.core.SceneObject#findClosestRayIntersectionAvoidingOrigin(Ray, SceneObjectPrimitive, RaySceneObjectIntersectionRecord)
+	 */
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return findClosestRayIntersectionAvoidingOrigin(ray, originObject, record, false);
+	}
+
+	private boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record, boolean shadowThrowingSceneObjectsOnly)
+	{
+		boolean found = false;
+
+		// first the scene objects that are not in the tree
+		for(int i=0; i<unboundedSceneObjects.length; i++)
+			if(findIntersection(unboundedSceneObjects[i], ray, originObject, record, shadowThrowingSceneObjectsOnly)) found = true;
+
+		if(numberOfNodes == 0) return found;
+
+		// the slab test works with distances measured in units of the length of d
+		Vector3D p = ray.getP();
+		Vector3D d = ray.getD();
+		double dLength = d.getLength();
+		if(!(dLength > 0)) return found;
+		double
+			invDx = dLength / d.x,
+			invDy = dLength / d.y,
+			invDz = dLength / d.z;
+
+		// traverse the tree, nearest child first
+		int[] stack = new int[MAX_DEPTH];
+		double[] stackDistances = new double[MAX_DEPTH];
+		int stackSize = 0;
+
+		int node = 0;
+		double nodeDistance = getNodeEntryDistance(0, p.x, p.y, p.z, invDx, invDy, invDz, record.getDistance());
+		if(nodeDistance == Double.POSITIVE_INFINITY) return found;
+
+		while(true)
+		{
+			if(nodeDistance <= record.getDistance())
+			{
+				if(nodeCount[node] > 0)
+				{
+					// a leaf; intersect its scene objects
+					int first = nodeFirst[node], last = first + nodeCount[node];
+					for(int i=first; i<last; i++)
+						if(findIntersection(boundedSceneObjects[i], ray, originObject, record, shadowThrowingSceneObjectsOnly)) found = true;
+				}
+				else
+				{
+					// an inner node; visit the nearer child next, and remember the other one for later
+					int left = nodeFirst[node], right = left + 1;
+					double
+						leftDistance = getNodeEntryDistance(left, p.x, p.y, p.z, invDx, invDy, invDz, record.getDistance()),
+						rightDistance = getNodeEntryDistance(right, p.x, p.y, p.z, invDx, invDy, invDz, record.getDistance());
+
+					if(leftDistance > rightDistance)
+					{
+						int n = left; left = right; right = n;
+						double t = leftDistance; leftDistance = rightDistance; rightDistance = t;
+					}
+
+					if(leftDistance != Double.POSITIVE_INFINITY)
+					{
+						if(rightDistance != Double.POSITIVE_INFINITY)
+						{
+							stack[stackSize] = right;
+							stackDistances[stackSize] = rightDistance;
+							stackSize++;
+						}
+						node = left;
+						nodeDistance = leftDistance;
+						continue;
+					}
+				}
+			}
+
+			// pop the next node off the stack
+			if(stackSize == 0) break;
+			stackSize--;
+			node = stack[stackSize];
+			nodeDistance = stackDistances[stackSize];
+		}
+
+		return found;
+	}
+
+	/**
+	 * Check if the ray intersects any of the shadow-throwing scene objects in the hierarchy closer than maxDistance.
+	 * Only scene objects whose bounding boxes the ray enters before maxDistance are tested,
+	 * and the search stops at the first one that blocks the ray.
+	 *
+	 * @param ray
+	 * @param originObject
+	 * @param maxDistance
+	 * @return	true if there is a shadow-throwing intersection closer than maxDistance
+	 */
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		for(int i=0; i<unboundedSceneObjects.length; i++)
+			if(unboundedSceneObjects[i].hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance)) return true;
+
+		if(numberOfNodes == 0) return false;
+
+		Vector3D p = ray.getP();
+		Vector3D d = ray.getD();
+		double dLength = d.getLength();
+		if(!(dLength > 0)) return false;
+		double
+			invDx = dLength / d.x,
+			invDy = dLength / d.y,
+			invDz = dLength / d.z;
+
+		// the order in which the nodes are visited doesn't matter here, so simply go depth first
+		int[] stack = new int[MAX_DEPTH + 1];
+		int stackSize = 0;
+		stack[stackSize++] = 0;
+
+		while(stackSize > 0)
+		{
+			int node = stack[--stackSize];
+			if(getNodeEntryDistance(node, p.x, p.y, p.z, invDx, invDy, invDz, maxDistance) == Double.POSITIVE_INFINITY) continue;
+
+			if(nodeCount[node] > 0)
+			{
+				int first = nodeFirst[node], last = first + nodeCount[node];
+				for(int i=first; i<last; i++)
+					if(boundedSceneObjects[i].hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance)) return true;
+			}
+			else
+			{
+				stack[stackSize++] = nodeFirst[node];
+				stack[stackSize++] = nodeFirst[node] + 1;
+			}
+		}
+
+		return false;
+	}
+
+	private static boolean findIntersection(SceneObject o, Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record, boolean shadowThrowingSceneObjectsOnly)
+	{
+		if(shadowThrowingSceneObjectsOnly) return record.record(o.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject));
+		else return o.findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+	}
+}
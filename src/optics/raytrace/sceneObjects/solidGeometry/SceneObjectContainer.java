@@ -1,6 +1,7 @@
 package optics.raytrace.sceneObjects.solidGeometry;
 
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.Serializable;
 
 import math.*;
@@ -33,6 +34,34 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	 * Determines which objects are part of the scene when ray trajectories are being traced
 	 */
 	protected ArrayList<Boolean> visibilitiesWhenTrajectoryTracing;
+	
+	/**
+	 * If true, the closest intersection with a ray is found using a bounding-volume hierarchy (BVH)
+	 * over the visible scene objects, rather than by testing each of them in turn.
+	 * This is worthwhile for containers with many scene objects that know their extent
+	 * (see SceneObject.getAxisAlignedBoundingBox()).
+	 */
+	protected boolean useBoundingVolumeHierarchy = false;
+	
+	/**
+	 * The BVH; built the first time it is needed, and discarded whenever the contents of the container change
+	 */
+	private transient volatile BoundingVolumeHierarchy boundingVolumeHierarchy = null;
+	
+	/**
+	 * The source of modification stamps, which counts the creations and modifications of all containers
+	 */
+	private static final AtomicLong modificationCounter = new AtomicLong();
+	
+	/**
+	 * The value of the modification counter when this container was created or last modified,
+	 * i.e. when its BVH was last invalidated (see invalidateBoundingVolumeHierarchy), which includes modifications of
+	 * any container in it.
+	 * Anything that has been calculated from the contents of the container can compare this with its value at the time
+	 * of the calculation to find out whether it is out of date;
+	 * as no two containers share a modification stamp, this also works if the container gets replaced by another one.
+	 */
+	private transient volatile long modificationStamp = modificationCounter.incrementAndGet();
 
 	/**
 	 * Create an empty collection of scene objects.
@@ -119,6 +148,8 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	{
 		super(original.getDescription(), original.getParent(), original.getStudio());
 		
+		useBoundingVolumeHierarchy = original.isUseBoundingVolumeHierarchy();
+		
 		// either share or clone the data, depending on copyMode
 		switch(copyMode)
 		{
@@ -450,6 +481,7 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	public void setSceneObjectVisible(int i, boolean isVisible)
 	{
 		visibilities.set(i, isVisible);
+		invalidateBoundingVolumeHierarchy();
 	}
 	
 	public void setSceneObjectVisible(SceneObject o, boolean isVisible)
@@ -501,6 +533,7 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 			sceneObjects.add(o);
 			visibilities.add(isVisible);	// make the new object visible by default
 			visibilitiesWhenTrajectoryTracing.add(isVisibleWhenTrajectoryTracing);
+			invalidateBoundingVolumeHierarchy();
 		}
 	}
 	
@@ -525,7 +558,26 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	{
 		addSceneObject(o, true, true);	// make the new object visible by default
 	}
-	
+
+	/**
+	 * Add a scene object that is shared with other containers, e.g. one that is kept in a cache, to this container.
+	 * Unlike addSceneObject, this leaves the parent of the scene object unchanged, so that the same scene object can be
+	 * added to several containers (e.g. from different threads) at the same time.
+	 *
+	 * @param o	the scene object to be added
+	 * @param isVisible
+	 */
+	public void addSharedSceneObject(SceneObject o, boolean isVisible)
+	{
+		if(o != null)
+		{
+			sceneObjects.add(o);
+			visibilities.add(isVisible);
+			visibilitiesWhenTrajectoryTracing.add(isVisible);
+			invalidateBoundingVolumeHierarchy();
+		}
+	}
+
 	/**
 	 * Add a scene object to container, at the position specified by index
 	 * 
@@ -537,6 +589,7 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 		sceneObjects.add(index, o);
 		visibilities.add(index, isVisible);
 		visibilitiesWhenTrajectoryTracing.add(index, isVisibleWhenTrajectoryTracing);
+		invalidateBoundingVolumeHierarchy();
 	}
 	
 	/**
@@ -567,6 +620,7 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 		sceneObjects.set(index, o);
 		visibilities.set(index, isVisible);
 		visibilitiesWhenTrajectoryTracing.add(index, isVisibleWhenTrajectoryTracing);
+		invalidateBoundingVolumeHierarchy();
 	}
 	
 	/**
@@ -595,6 +649,7 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 		sceneObjects.remove(index);
 		visibilities.remove(index);
 		visibilitiesWhenTrajectoryTracing.remove(index);
+		invalidateBoundingVolumeHierarchy();
 	}
 
 	public ArrayList<SceneObject> getSceneObjects()
@@ -616,6 +671,78 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 		sceneObjects.clear();
 		visibilities.clear();
 		visibilitiesWhenTrajectoryTracing.clear();
+		invalidateBoundingVolumeHierarchy();
+	}
+	
+	public boolean isUseBoundingVolumeHierarchy() {
+		return useBoundingVolumeHierarchy;
+	}
+
+	/**
+	 * @param useBoundingVolumeHierarchy	if true, find intersections with the scene objects in this container using a bounding-volume hierarchy
+	 */
+	public void setUseBoundingVolumeHierarchy(boolean useBoundingVolumeHierarchy) {
+		this.useBoundingVolumeHierarchy = useBoundingVolumeHierarchy;
+		invalidateBoundingVolumeHierarchy();
+	}
+
+	/**
+	 * Discard the bounding-volume hierarchy (if there is one), so that it gets rebuilt the next time it is needed,
+	 * and update the modification stamp, so that anything else calculated from the contents of this container gets re-calculated.
+	 * This happens automatically when scene objects get added to, or removed from, this container,
+	 * but needs to be called explicitly if a scene object in the container has been changed in place.
+	 * Any container this container is part of needs to rebuild its hierarchy too, as this container's bounding box might have changed.
+	 */
+	public void invalidateBoundingVolumeHierarchy()
+	{
+		boundingVolumeHierarchy = null;
+		modificationStamp = modificationCounter.incrementAndGet();
+		
+		if(getParent() instanceof SceneObjectContainer) ((SceneObjectContainer)getParent()).invalidateBoundingVolumeHierarchy();
+	}
+	
+	/**
+	 * @return	the value of the modification counter when this container, or any container in it, was created or last modified
+	 */
+	public long getModificationStamp()
+	{
+		return modificationStamp;
+	}
+	
+	/**
+	 * @param sceneObject
+	 * @return	the modification stamp of the scene object if it is a container (or an EditableSceneObjectCollection), 0 otherwise
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#getModificationStamp()
+	 */
+	public static long getModificationStamp(SceneObject sceneObject)
+	{
+		if(sceneObject instanceof EditableSceneObjectCollection) sceneObject = ((EditableSceneObjectCollection)sceneObject).getSceneObjectContainer();
+		if(sceneObject instanceof SceneObjectContainer) return ((SceneObjectContainer)sceneObject).getModificationStamp();
+		return 0;
+	}
+	
+	/**
+	 * @return	the bounding-volume hierarchy over the visible scene objects, which gets built if necessary
+	 */
+	protected BoundingVolumeHierarchy getBoundingVolumeHierarchy()
+	{
+		BoundingVolumeHierarchy bvh = boundingVolumeHierarchy;
+		if(bvh == null) bvh = buildBoundingVolumeHierarchy();
+		return bvh;
+	}
+	
+	private synchronized BoundingVolumeHierarchy buildBoundingVolumeHierarchy()
+	{
+		// another thread might have built the BVH while this one was waiting
+		if(boundingVolumeHierarchy == null)
+		{
+			ArrayList<SceneObject> visibleSceneObjects = new ArrayList<SceneObject>(sceneObjects.size());
+			for(int i=0; i<sceneObjects.size(); i++)
+				if(isSceneObjectVisible(i)) visibleSceneObjects.add(sceneObjects.get(i));
+
+			boundingVolumeHierarchy = new BoundingVolumeHierarchy(visibleSceneObjects);
+		}
+		return boundingVolumeHierarchy;
 	}
 
 	/**
@@ -636,35 +763,33 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
 	{
-		double shortestdistance=Double.POSITIVE_INFINITY,currentdistance;
-		RaySceneObjectIntersection closest=RaySceneObjectIntersection.NO_INTERSECTION, current;   //this is the current closest intersection
+		RaySceneObjectIntersectionRecord record = new RaySceneObjectIntersectionRecord(ray);
+		findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+		return record.getRaySceneObjectIntersection();
+	}
+
+	/**
+	 * Passes the record on to all the visible objects, each of which replaces the intersection stored in it if it has a closer one.
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		if(useBoundingVolumeHierarchy) return getBoundingVolumeHierarchy().findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+
+		boolean found = false;
 
 		// look through all the visible objects
 		for(int i=0; i<sceneObjects.size(); i++)
 		{
 			if(isSceneObjectVisible(i))
 			{
-				//if(this == originObject)		this is commented out for now, avoids specles when using solid geometry
-				// avoid calculating the intersection where the ray originated, calculate the intersection with a slightly advanced ray
-				// current = sceneObjects.get(i).getClosestRayIntersection(ray.getAdvancedRay(MyMath.TINY));
-
-				current = sceneObjects.get(i).getClosestRayIntersectionAvoidingOrigin(ray, originObject);
-				//else
-				//this line of code is definitely causing the noise.
-				//current = sceneObjects.get(i).getClosestRayIntersectionAvoidingOrigin(ray, originObject);
-	
-				if (current!=RaySceneObjectIntersection.NO_INTERSECTION){
-					currentdistance=(current.p).getDifferenceWith(ray.getP()).getLength();
-	
-					if ((currentdistance > 0) && (currentdistance<shortestdistance)){
-						shortestdistance=currentdistance;
-						closest=current;
-					}
-				}
+				// note that the record only accepts intersections that are closer than the closest one so far
+				if(sceneObjects.get(i).findClosestRayIntersectionAvoidingOrigin(ray, originObject, record)) found = true;
 			}
 		}
 
-		return closest;
+		return found;
 	}
 
 	@Override
@@ -676,6 +801,8 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject)
 	{
+		if(useBoundingVolumeHierarchy) return getBoundingVolumeHierarchy().getClosestRayIntersectionAvoidingOrigin(ray, originObject, true);
+
 		double shortestdistance=Double.POSITIVE_INFINITY,currentdistance;
 		RaySceneObjectIntersection closest=RaySceneObjectIntersection.NO_INTERSECTION, current;   //this is the current closest intersection
 
@@ -712,6 +839,25 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 		return closest;
 	}
 
+	/**
+	 * Stops at the first visible scene object that has a shadow-throwing intersection closer than maxDistance.
+	 * @see optics.raytrace.core.SceneObjectClass#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, double maxDistance)
+	{
+		if(useBoundingVolumeHierarchy) return getBoundingVolumeHierarchy().hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance);
+
+		for(int i=0; i<sceneObjects.size(); i++)
+		{
+			if(isSceneObjectVisible(i))
+			{
+				if(sceneObjects.get(i).hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance)) return true;
+			}
+		}
+		return false;
+	}
+
 	/**
 	 * Get an object in the scene
 	 */
@@ -735,6 +881,7 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 	public SceneObjectContainer transform(Transformation t)
 	{
 		SceneObjectContainer soc = new SceneObjectContainer(description, getParent(), getStudio());
+		soc.setUseBoundingVolumeHierarchy(useBoundingVolumeHierarchy);
 
 		for(int i=0; i<sceneObjects.size();i++)
 		{
@@ -744,6 +891,22 @@ public class SceneObjectContainer extends SceneObjectClass implements Serializab
 		return soc;
 	}
 
+	/**
+	 * The bounding box of all scene objects in the container, visible or not.
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		AxisAlignedBoundingBox box = AxisAlignedBoundingBox.EMPTY;
+		for(int i=0; i<sceneObjects.size(); i++)
+		{
+			box = box.getUnionWith(sceneObjects.get(i).getAxisAlignedBoundingBox());
+			if(box.isInfinite()) break;
+		}
+		return box;
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObject#insideObject(optics.raytrace.Vector3D)
 	 */
@@ -4,16 +4,21 @@ import java.io.Serializable;
 
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectPrimitive;
 import optics.raytrace.core.Studio;
 import optics.raytrace.core.Transformation;
 import optics.raytrace.utility.CopyModeType;
 import math.Vector3D;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 
 /**
  * The first scene object minus the other scene objects
  * 
+ * If all the scene objects can calculate the spans along a ray that lie inside them (see SceneObject.getRaySpans),
+ * the spans inside the difference are calculated directly from these.
+ * 
  * @author Johannes Courtial
  */ 
 public class SceneObjectDifference extends SceneObjectContainer implements Serializable
@@ -113,12 +118,43 @@ public class SceneObjectDifference extends SceneObjectContainer implements Seria
 		return true;
 	}
 
+	/**
+	 * The spans inside the difference are the spans inside the first ("plus") scene object minus those inside the other ("minus") ones;
+	 * the surfaces of invisible scene objects cannot be seen.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		if(sceneObjects.isEmpty()) return new RaySpanList();
+
+		RaySpanList spans = RaySpanList.getCompleteRay();
+		for(int i=0; i<sceneObjects.size(); i++)
+		{
+			// once the spans are empty, they stay empty
+			if(spans.isEmpty()) return spans;
+
+			RaySpanList sceneObjectSpans = RaySpanList.getRaySpans(sceneObjects.get(i), ray, originObject);
+			if(sceneObjectSpans == null) return null;
+			if(!visibilities.get(i)) sceneObjectSpans = sceneObjectSpans.getWithObject(null);
+
+			spans = (i == 0)?sceneObjectSpans:spans.getDifferenceWith(sceneObjectSpans);
+		}
+
+		return spans;
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#getClosestRayIntersectionAvoidingOrigin(optics.raytrace.Ray, optics.raytrace.SceneObject)
 	 */
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject)
 	{
+		RaySpanList spans = getRaySpans(ray, excludeObject);
+		if(spans != null) return SceneObjectIntersection.getClosestRayIntersection(spans, ray, IntersectionInclusionCriterion.iicAll);
+
+		// not all scene objects can calculate their spans, so test each intersection
+
 		RaySceneObjectIntersection intersection, intersectionClosest;
 		double distance2, distanceClosest2;	// distances squared
 		
@@ -171,6 +207,17 @@ public class SceneObjectDifference extends SceneObjectContainer implements Seria
 
 		return intersectionClosest;    
 	}
+
+	/**
+	 * As getClosestRayIntersectionAvoidingOrigin is overridden, so must this be
+	 * (otherwise the version inherited from SceneObjectContainer would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
 	
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#getClosestRayIntersectionAvoidingOrigin(optics.raytrace.Ray, optics.raytrace.SceneObject)
@@ -178,6 +225,9 @@ public class SceneObjectDifference extends SceneObjectContainer implements Seria
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject)
 	{
+		RaySpanList spans = getRaySpans(ray, excludeObject);
+		if(spans != null) return SceneObjectIntersection.getClosestRayIntersection(spans, ray, IntersectionInclusionCriterion.iicSTO);
+
 		RaySceneObjectIntersection intersection, intersectionClosest;
 		double distance2, distanceClosest2;	// distances squared
 		
@@ -228,6 +278,48 @@ public class SceneObjectDifference extends SceneObjectContainer implements Seria
 
 		return intersectionClosest;    
 	}
+	
+	/**
+	 * Looks for intersections with the surface of the difference like getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin,
+	 * but returns as soon as one closer than maxDistance has been found.
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject, double maxDistance)
+	{
+		double maxDistance2 = maxDistance*maxDistance;
+
+		RaySpanList spans = getRaySpans(ray, excludeObject);
+		if(spans != null)
+		{
+			RaySceneObjectIntersection intersection = SceneObjectIntersection.getClosestRayIntersection(spans, ray, IntersectionInclusionCriterion.iicSTO);
+			return (intersection != RaySceneObjectIntersection.NO_INTERSECTION) && (intersection.p.getDifferenceWith(ray.getP()).getModSquared() < maxDistance2);
+		}
+		
+		// go through all the intersecting scene objects
+		for(int i=0; (i<sceneObjects.size()) && visibilities.get(i); i++)
+		{
+			// calculate the intersection point
+			RaySceneObjectIntersection intersection = sceneObjects.get(i).getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, excludeObject);
+
+			// is there an intersection point closer than maxDistance?
+			// (any further intersections with the same object are even further away)
+			while(
+					(intersection != RaySceneObjectIntersection.NO_INTERSECTION) &&
+					(intersection.p.getDifferenceWith(ray.getP()).getModSquared() < maxDistance2)
+				)
+			{
+				// is the intersection point on the surface, i.e.
+				// inside the first ("plus") object and outside all other ("minus") objects?
+				if(insidePlusObject(intersection.p, i) && outsideMinusObjects(intersection.p, i)) return true;
+
+				// try the next intersection with the same object
+				intersection = sceneObjects.get(i).getNextClosestRayIntersectionAvoidingOrigin(ray, excludeObject, intersection);
+			}
+		}
+
+		return false;
+	}
 
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#transform(optics.raytrace.Transformation)
@@ -2,9 +2,12 @@ package optics.raytrace.sceneObjects.solidGeometry;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.List;
 
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectClass;
 import optics.raytrace.core.SceneObjectPrimitive;
@@ -27,6 +30,12 @@ import math.Vector3D;
  * scene objects (it doesn't make sense for it to be both), that point must lie inside all positive
  * scene objects other than A and outside all negative scene objects other than A.
  * 
+ * If all positive and negative scene objects can calculate the spans along a ray that lie inside them
+ * (see SceneObject.getRaySpans), the spans inside the combined scene object are calculated directly from these,
+ * and the closest intersection is the start or end of the first of these spans that lies on a visible surface.
+ * Otherwise, each intersection with each scene object is tested for whether or not it lies inside or outside all other
+ * scene objects.
+ * 
  * @author Johannes Courtial
  */ 
 public class SceneObjectIntersection extends SceneObjectClass
@@ -561,8 +570,171 @@ implements Serializable
 		}
 	}
 
+	/**
+	 * Find the closest intersection with a clipped scene object that lies inside the combined scene object, and is closer than the closest intersection so far
+	 * @param currentlyBestIntersection
+	 * @param sceneObject	the clipped scene object
+	 * @param ray
+	 * @param excludeObject
+	 * @param iic
+	 * @param spans	the spans of the ray inside the combined scene object
+	 */
+	static void lookForBetterClippedIntersection(
+			IntersectionAndDistance currentlyBestIntersection,
+			SceneObject sceneObject,
+			Ray ray,
+			SceneObjectPrimitive excludeObject,
+			IntersectionInclusionCriterion iic,
+			RaySpanList spans
+			)
+	{
+		// don't bother if the ray doesn't get close to the scene object before the closest intersection so far
+		AxisAlignedBoundingBox box = sceneObject.getAxisAlignedBoundingBox();
+		if(!box.isInfinite() && (box.getRayEntryDistance(ray.getP(), ray.getD(), Math.sqrt(currentlyBestIntersection.distance2)) == Double.POSITIVE_INFINITY)) return;
+
+		RaySceneObjectIntersection intersection = sceneObject.getClosestRayIntersectionAvoidingOrigin(ray, excludeObject);
+
+		int counter = 100;	// see lookForBetterIntersection
+		while((intersection != RaySceneObjectIntersection.NO_INTERSECTION) && (counter-- > 0))
+		{
+			double distance2 = Vector3D.getDistance2(intersection.p, ray.getP());
+
+			// any further intersections are even further away
+			if(distance2 >= currentlyBestIntersection.distance2) return;
+
+			// is the intersection point inside the combined scene object?
+			if(iic.include(intersection) && spans.contains(Math.sqrt(distance2)))
+			{
+				currentlyBestIntersection.distance2 = distance2;
+				currentlyBestIntersection.intersection = intersection;
+				return;
+			}
+
+			intersection = sceneObject.getNextClosestRayIntersectionAvoidingOrigin(ray, excludeObject, intersection);
+		}
+	}
+
+	/**
+	 * @param spans	the spans of a ray inside a combined scene object, in which the primitives at the start and end of each span are those of visible surfaces
+	 * @param ray
+	 * @param iic
+	 * @return	the closest intersection with a visible surface that bounds the spans and that is included by iic
+	 */
+	static RaySceneObjectIntersection getClosestRayIntersection(RaySpanList spans, Ray ray, IntersectionInclusionCriterion iic)
+	{
+		for(int i=0; i<spans.getNumberOfSpans(); i++)
+		{
+			RaySceneObjectIntersection intersection = spans.getEntryIntersection(ray, i);
+			if((intersection != RaySceneObjectIntersection.NO_INTERSECTION) && iic.include(intersection)) return intersection;
+
+			intersection = spans.getExitIntersection(ray, i);
+			if((intersection != RaySceneObjectIntersection.NO_INTERSECTION) && iic.include(intersection)) return intersection;
+		}
+		return RaySceneObjectIntersection.NO_INTERSECTION;
+	}
+
+	/**
+	 * Combine spans with the spans inside (or, if <i>outside</i> is true, outside) each scene object in a list.
+	 * The intersection is calculated in order, and the calculation stops as soon as it is empty,
+	 * so scene objects that are likely to make it empty should come first.
+	 * @param spans	the spans so far
+	 * @param sceneObjects
+	 * @param visible	if false, the surfaces of the scene objects cannot be seen
+	 * @param outside	if true, the spans outside the scene objects are intersected with the spans so far, otherwise the spans inside
+	 * @param ray
+	 * @param originObject
+	 * @return	the intersection of the spans so far with the spans inside (or outside) all scene objects, or null if a scene object cannot calculate its spans
+	 */
+	static RaySpanList getIntersectionOfRaySpans(
+			RaySpanList spans,
+			List<? extends SceneObject> sceneObjects,
+			boolean visible,
+			boolean outside,
+			Ray ray,
+			SceneObjectPrimitive originObject
+		)
+	{
+		if(sceneObjects != null)
+		for(SceneObject sceneObject:sceneObjects)
+		{
+			// if the spans are already empty, they will stay empty
+			if((spans == null) || spans.isEmpty()) return spans;
+
+			RaySpanList sceneObjectSpans = RaySpanList.getRaySpans(sceneObject, ray, originObject);
+			if(sceneObjectSpans == null) return null;
+			if(!visible) sceneObjectSpans = sceneObjectSpans.getWithObject(null);
+
+			spans = outside?spans.getDifferenceWith(sceneObjectSpans):spans.getIntersectionWith(sceneObjectSpans);
+		}
+		return spans;
+	}
+
+	/**
+	 * @param ray
+	 * @param originObject
+	 * @return	the spans of the ray inside all positive and outside all negative scene objects, or null if any of them cannot calculate its spans
+	 */
+	private RaySpanList getRaySpansInsidePositiveAndOutsideNegativeSceneObjects(Ray ray, SceneObjectPrimitive originObject)
+	{
+		RaySpanList spans = RaySpanList.getCompleteRay();
+		spans = getIntersectionOfRaySpans(spans, positiveSceneObjects, true, false, ray, originObject);
+		spans = getIntersectionOfRaySpans(spans, invisiblePositiveSceneObjects, false, false, ray, originObject);
+		spans = getIntersectionOfRaySpans(spans, negativeSceneObjects, true, true, ray, originObject);
+		spans = getIntersectionOfRaySpans(spans, invisibleNegativeSceneObjects, false, true, ray, originObject);
+		return spans;
+	}
+
+	/**
+	 * The clipped scene objects do not contribute to the inside, but their surfaces can be seen,
+	 * so if there are any clipped scene objects, the spans cannot be calculated.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		if((clippedSceneObjects != null) && !clippedSceneObjects.isEmpty()) return null;
+
+		return getRaySpansInsidePositiveAndOutsideNegativeSceneObjects(ray, originObject);
+	}
+
+	/**
+	 * @param spans	the spans of the ray inside all positive and outside all negative scene objects
+	 * @param ray
+	 * @param excludeObject
+	 * @param iic
+	 * @param maxDistance
+	 * @return	the closest intersection with the combined scene object that is closer than maxDistance
+	 */
+	private RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(RaySpanList spans, Ray ray, SceneObjectPrimitive excludeObject, IntersectionInclusionCriterion iic, double maxDistance)
+	{
+		// the closest intersection with the surface of the positive and negative scene objects...
+		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, maxDistance*maxDistance);
+		RaySceneObjectIntersection intersection = getClosestRayIntersection(spans, ray, iic);
+		if(intersection != RaySceneObjectIntersection.NO_INTERSECTION)
+		{
+			double distance2 = Vector3D.getDistance2(intersection.p, ray.getP());
+			if(distance2 < closestIntersectionAndDistance.distance2)
+			{
+				closestIntersectionAndDistance.intersection = intersection;
+				closestIntersectionAndDistance.distance2 = distance2;
+			}
+		}
+
+		// ... and the clipped scene objects
+		if(clippedSceneObjects != null)
+		for(SceneObject sceneObject:clippedSceneObjects)
+			lookForBetterClippedIntersection(closestIntersectionAndDistance, sceneObject, ray, excludeObject, iic, spans);
+
+		return closestIntersectionAndDistance.intersection;
+	}
+
 	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject, IntersectionInclusionCriterion iic)
 	{
+		RaySpanList spans = getRaySpansInsidePositiveAndOutsideNegativeSceneObjects(ray, excludeObject);
+		if(spans != null) return getClosestRayIntersectionAvoidingOrigin(spans, ray, excludeObject, iic, Double.POSITIVE_INFINITY);
+
+		// not all scene objects can calculate their spans, so test each intersection
+
 		// initialise the information about the closest intersection so far
 		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, Double.POSITIVE_INFINITY);
 		
@@ -608,6 +780,69 @@ implements Serializable
 	{
 		return getClosestRayIntersectionAvoidingOrigin(ray, excludeObject, IntersectionInclusionCriterion.iicSTO);
 	}
+	
+	/**
+	 * Looks for intersections like getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin, but starting from
+	 * a "closest intersection so far" a distance maxDistance away, and stopping as soon as a closer one has been found.
+	 * @see optics.raytrace.core.SceneObjectClass#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject, double maxDistance)
+	{
+		RaySpanList spans = getRaySpansInsidePositiveAndOutsideNegativeSceneObjects(ray, excludeObject);
+		if(spans != null) return getClosestRayIntersectionAvoidingOrigin(spans, ray, excludeObject, IntersectionInclusionCriterion.iicSTO, maxDistance) != RaySceneObjectIntersection.NO_INTERSECTION;
+
+		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, maxDistance*maxDistance);
+		
+		// go through the (visible) positive, ...
+		if(positiveSceneObjects != null)
+		for(SceneObject sceneObject:positiveSceneObjects)
+		{
+			lookForBetterIntersection(closestIntersectionAndDistance, sceneObject, ray, excludeObject, IntersectionInclusionCriterion.iicSTO);
+			if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+		}
+		
+		// ... (visible) negative scene objects, ...
+		if(negativeSceneObjects != null)
+		for(SceneObject sceneObject:negativeSceneObjects)
+		{
+			lookForBetterIntersection(closestIntersectionAndDistance, sceneObject, ray, excludeObject, IntersectionInclusionCriterion.iicSTO);
+			if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+		}
+
+		// ... and clipped scene objects
+		if(clippedSceneObjects != null)
+		for(SceneObject sceneObject:clippedSceneObjects)
+		{
+			lookForBetterIntersection(closestIntersectionAndDistance, sceneObject, ray, excludeObject, IntersectionInclusionCriterion.iicSTO);
+			if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * The intersections with this scene object all lie on the surfaces of its visible positive, negative and clipped scene objects,
+	 * so it lies inside the union of their bounding boxes.
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		AxisAlignedBoundingBox box = AxisAlignedBoundingBox.EMPTY;
+		box = getUnionOfBoundingBoxes(box, positiveSceneObjects);
+		box = getUnionOfBoundingBoxes(box, negativeSceneObjects);
+		box = getUnionOfBoundingBoxes(box, clippedSceneObjects);
+		return box;
+	}
+	
+	private static AxisAlignedBoundingBox getUnionOfBoundingBoxes(AxisAlignedBoundingBox box, ArrayList<SceneObject> sceneObjects)
+	{
+		if(sceneObjects != null)
+		for(SceneObject sceneObject:sceneObjects)
+			box = box.getUnionWith(sceneObject.getAxisAlignedBoundingBox());
+		return box;
+	}
 
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#transform(optics.raytrace.Transformation)
@@ -11,6 +11,7 @@ import optics.raytrace.core.Studio;
 import optics.raytrace.core.Transformation;
 import optics.raytrace.utility.CopyModeType;
 import math.Vector3D;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 
 /**
  * An intersection of scene objects that acts as a combined scene object.
@@ -226,6 +227,17 @@ implements Serializable
 	{
 		return getClosestRayIntersectionAvoidingOrigin(ray, excludeObject, IntersectionInclusionCriterion.iicAll);
 	}
+
+	/**
+	 * As getClosestRayIntersectionAvoidingOrigin is overridden, so must this be
+	 * (otherwise the version inherited from SceneObjectContainer would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
 	
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#getClosestRayIntersectionAvoidingOrigin(optics.raytrace.Ray, optics.raytrace.SceneObject)
@@ -235,6 +247,26 @@ implements Serializable
 	{
 		return getClosestRayIntersectionAvoidingOrigin(ray, excludeObject, IntersectionInclusionCriterion.iicSTO);
 	}
+	
+	/**
+	 * Looks for intersections like getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin, but starting from
+	 * a "closest intersection so far" a distance maxDistance away, and stopping as soon as a closer one has been found.
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject, double maxDistance)
+	{
+		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, maxDistance*maxDistance);
+		
+		if(sceneObjects != null)
+		for(SceneObject sceneObject:sceneObjects)
+		{
+			lookForBetterIntersection(closestIntersectionAndDistance, sceneObject, ray, excludeObject, IntersectionInclusionCriterion.iicSTO);
+			if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+		}
+		
+		return false;
+	}
 
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#transform(optics.raytrace.Transformation)
@@ -10,6 +10,7 @@ import optics.raytrace.core.Studio;
 import optics.raytrace.core.Transformation;
 import optics.raytrace.utility.CopyModeType;
 import math.Vector3D;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 
 /**
  * Intersection between two or more SceneObjects.
@@ -154,6 +155,17 @@ public class SceneObjectIntersectionSimple_old extends SceneObjectContainer impl
 
 		return intersectionClosest;    
 	}
+
+	/**
+	 * As getClosestRayIntersectionAvoidingOrigin is overridden, so must this be
+	 * (otherwise the version inherited from SceneObjectContainer would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
 	
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#getClosestRayIntersectionAvoidingOrigin(optics.raytrace.Ray, optics.raytrace.SceneObject)
@@ -3,6 +3,7 @@ package optics.raytrace.sceneObjects.solidGeometry;
 import java.io.Serializable;
 import java.util.ArrayList;
 
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.SceneObject;
@@ -23,6 +24,16 @@ public class SceneObjectInverse extends SceneObjectClass implements Serializable
 
 	private SceneObject sceneObject;
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// inside and outside are swapped, but the surfaces are the same
+		return sceneObject.getAxisAlignedBoundingBox();
+	}
+
 	/**
 	 * Create the inverse of a scene object
 	 * 
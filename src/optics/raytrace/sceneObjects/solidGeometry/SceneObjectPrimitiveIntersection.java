@@ -3,8 +3,10 @@ package optics.raytrace.sceneObjects.solidGeometry;
 import java.io.Serializable;
 import java.util.ArrayList;
 
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectClass;
 import optics.raytrace.core.SceneObjectPrimitive;
@@ -27,6 +29,9 @@ import math.Vector3D;
  * scene-object primitives (it doesn't make sense for it to be both), that point must lie inside all positive
  * scene-object primitives other than A and outside all negative scene-object primitives other than A.
  * 
+ * As in SceneObjectIntersection, the spans of a ray inside the combined scene object are calculated directly from the
+ * spans inside the positive and negative scene-object primitives, provided these can calculate them.
+ * 
  * @author Johannes Courtial
  */ 
 public class SceneObjectPrimitiveIntersection extends SceneObjectClass
@@ -554,12 +559,76 @@ implements Serializable
 	}
 
 	
+	/**
+	 * @param ray
+	 * @param originObject
+	 * @return	the spans of the ray inside all positive and outside all negative scene-object primitives, or null if any of them cannot calculate its spans
+	 */
+	private RaySpanList getRaySpansInsidePositiveAndOutsideNegativeSceneObjectPrimitives(Ray ray, SceneObjectPrimitive originObject)
+	{
+		RaySpanList spans = RaySpanList.getCompleteRay();
+		spans = SceneObjectIntersection.getIntersectionOfRaySpans(spans, positiveSceneObjectPrimitives, true, false, ray, originObject);
+		spans = SceneObjectIntersection.getIntersectionOfRaySpans(spans, invisiblePositiveSceneObjectPrimitives, false, false, ray, originObject);
+		spans = SceneObjectIntersection.getIntersectionOfRaySpans(spans, negativeSceneObjectPrimitives, true, true, ray, originObject);
+		spans = SceneObjectIntersection.getIntersectionOfRaySpans(spans, invisibleNegativeSceneObjectPrimitives, false, true, ray, originObject);
+		return spans;
+	}
+
+	/**
+	 * The clipped scene-object primitives do not contribute to the inside, but their surfaces can be seen,
+	 * so if there are any clipped scene-object primitives, the spans cannot be calculated.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		if((clippedSceneObjectPrimitives != null) && !clippedSceneObjectPrimitives.isEmpty()) return null;
+
+		return getRaySpansInsidePositiveAndOutsideNegativeSceneObjectPrimitives(ray, originObject);
+	}
+
+	/**
+	 * @param spans	the spans of the ray inside all positive and outside all negative scene-object primitives
+	 * @param ray
+	 * @param excludeObject
+	 * @param iic
+	 * @param maxDistance
+	 * @return	the closest intersection with the combined scene object that is closer than maxDistance
+	 */
+	private RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(RaySpanList spans, Ray ray, SceneObjectPrimitive excludeObject, IntersectionInclusionCriterion iic, double maxDistance)
+	{
+		// the closest intersection with the surface of the positive and negative scene-object primitives...
+		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, maxDistance*maxDistance);
+		RaySceneObjectIntersection intersection = SceneObjectIntersection.getClosestRayIntersection(spans, ray, iic);
+		if(intersection != RaySceneObjectIntersection.NO_INTERSECTION)
+		{
+			double distance2 = Vector3D.getDistance2(intersection.p, ray.getP());
+			if(distance2 < closestIntersectionAndDistance.distance2)
+			{
+				closestIntersectionAndDistance.intersection = intersection;
+				closestIntersectionAndDistance.distance2 = distance2;
+			}
+		}
+
+		// ... and the clipped scene-object primitives
+		if(clippedSceneObjectPrimitives != null)
+		for(SceneObjectPrimitive sceneObjectPrimitive:clippedSceneObjectPrimitives)
+			SceneObjectIntersection.lookForBetterClippedIntersection(closestIntersectionAndDistance, sceneObjectPrimitive, ray, excludeObject, iic, spans);
+
+		return closestIntersectionAndDistance.intersection;
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#getClosestRayIntersectionAvoidingOrigin(optics.raytrace.Ray, optics.raytrace.SceneObject)
 	 */
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject)
 	{
+		RaySpanList spans = getRaySpansInsidePositiveAndOutsideNegativeSceneObjectPrimitives(ray, excludeObject);
+		if(spans != null) return getClosestRayIntersectionAvoidingOrigin(spans, ray, excludeObject, IntersectionInclusionCriterion.iicAll, Double.POSITIVE_INFINITY);
+
+		// not all scene-object primitives can calculate their spans, so test each intersection
+
 		// initialise the information about the closest intersection so far
 		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, Double.POSITIVE_INFINITY);
 		
@@ -592,6 +661,9 @@ implements Serializable
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject)
 	{
+		RaySpanList spans = getRaySpansInsidePositiveAndOutsideNegativeSceneObjectPrimitives(ray, excludeObject);
+		if(spans != null) return getClosestRayIntersectionAvoidingOrigin(spans, ray, excludeObject, IntersectionInclusionCriterion.iicSTO, Double.POSITIVE_INFINITY);
+
 		// initialise the information about the closest intersection so far
 		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, Double.POSITIVE_INFINITY);
 		
@@ -620,6 +692,72 @@ implements Serializable
 
 		return closestIntersectionAndDistance.intersection;    
 	}
+	
+	/**
+	 * Looks for intersections like getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin, but starting from
+	 * a "closest intersection so far" a distance maxDistance away, and stopping as soon as a closer one has been found.
+	 * @see optics.raytrace.core.SceneObjectClass#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject, double maxDistance)
+	{
+		RaySpanList spans = getRaySpansInsidePositiveAndOutsideNegativeSceneObjectPrimitives(ray, excludeObject);
+		if(spans != null) return getClosestRayIntersectionAvoidingOrigin(spans, ray, excludeObject, IntersectionInclusionCriterion.iicSTO, maxDistance) != RaySceneObjectIntersection.NO_INTERSECTION;
+
+		IntersectionAndDistance closestIntersectionAndDistance = new IntersectionAndDistance(RaySceneObjectIntersection.NO_INTERSECTION, maxDistance*maxDistance);
+		
+		// go through the shadow-throwing, visible, positive, ...
+		if(positiveSceneObjectPrimitives != null)
+		for(SceneObjectPrimitive sceneObjectPrimitive:positiveSceneObjectPrimitives)
+			if(sceneObjectPrimitive.isShadowThrowing())
+			{
+				lookForBetterIntersection(closestIntersectionAndDistance, sceneObjectPrimitive, ray, excludeObject);
+				if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+			}
+		
+		// ... the shadow-throwing, visible, negative scene-object primitives, ...
+		if(negativeSceneObjectPrimitives != null)
+		for(SceneObjectPrimitive sceneObjectPrimitive:negativeSceneObjectPrimitives) 
+			if(sceneObjectPrimitive.isShadowThrowing())
+			{
+				lookForBetterIntersection(closestIntersectionAndDistance, sceneObjectPrimitive, ray, excludeObject);
+				if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+			}
+
+		// ... and the shadow-throwing clipped scene-object primitives
+		if(clippedSceneObjectPrimitives != null)
+		for(SceneObjectPrimitive sceneObjectPrimitive:clippedSceneObjectPrimitives) 
+			if(sceneObjectPrimitive.isShadowThrowing())
+			{
+				lookForBetterIntersection(closestIntersectionAndDistance, sceneObjectPrimitive, ray, excludeObject);
+				if(closestIntersectionAndDistance.intersection != RaySceneObjectIntersection.NO_INTERSECTION) return true;
+			}
+
+		return false;
+	}
+
+	/**
+	 * The intersections with this scene object all lie on the surfaces of its visible positive, negative and clipped scene objects,
+	 * so it lies inside the union of their bounding boxes.
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		AxisAlignedBoundingBox box = AxisAlignedBoundingBox.EMPTY;
+		box = getUnionOfBoundingBoxes(box, positiveSceneObjectPrimitives);
+		box = getUnionOfBoundingBoxes(box, negativeSceneObjectPrimitives);
+		box = getUnionOfBoundingBoxes(box, clippedSceneObjectPrimitives);
+		return box;
+	}
+	
+	private static AxisAlignedBoundingBox getUnionOfBoundingBoxes(AxisAlignedBoundingBox box, ArrayList<SceneObjectPrimitive> sceneObjectPrimitives)
+	{
+		if(sceneObjectPrimitives != null)
+		for(SceneObjectPrimitive sceneObjectPrimitive:sceneObjectPrimitives)
+			box = box.getUnionWith(sceneObjectPrimitive.getAxisAlignedBoundingBox());
+		return box;
+	}
 
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#transform(optics.raytrace.Transformation)
@@ -4,8 +4,10 @@ import java.io.Serializable;
 
 import math.*;
 import optics.DoubleColour;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -46,6 +48,14 @@ public class SceneObjectPrimitiveInverse extends SceneObjectPrimitive implements
 		// TODO Is this right?  What happens if the object surface is reflective?
 		return sop.getColourAtIntersection(incomingRay, i, scene, l, traceLevel, raytraceExceptionHandler);
 	}
+
+	@Override
+	public DoubleColour getColourOrContinuationAtIntersection(Ray incomingRay, 
+			RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		return sop.getColourOrContinuationAtIntersection(incomingRay, i, scene, l, traceLevel, raytraceExceptionHandler, continuation);
+	}
 	
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectPrimitive#getNormalisedSurfaceNormal(optics.raytrace.Vector3D)
@@ -90,6 +100,16 @@ public class SceneObjectPrimitiveInverse extends SceneObjectPrimitive implements
 		return !sop.insideObject(p);
 	}
 
+	/* (non-Javadoc)
+	 * @see optics.raytrace.core.SceneObjectClass#getAxisAlignedBoundingBox()
+	 */
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox()
+	{
+		// inside and outside are swapped, but the surface is the same
+		return sop.getAxisAlignedBoundingBox();
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObject#transform(optics.raytrace.Transformation)
 	 */
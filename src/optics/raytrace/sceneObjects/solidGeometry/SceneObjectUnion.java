@@ -5,17 +5,21 @@ import java.io.Serializable;
 import math.*;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectPrimitive;
 import optics.raytrace.core.Studio;
 import optics.raytrace.core.Transformation;
 import optics.raytrace.utility.CopyModeType;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 
 /**
  * Union of two or more SceneObjects.
  * The inside of the union is defined as the inside of any of the SceneObjects that form part of it.
  * The resulting SceneObject consists of a surface that surrounds the inside of the union; the inside itself
  * has no structure.
+ * If all the SceneObjects can calculate the spans along a ray that lie inside them (see SceneObject.getRaySpans),
+ * the spans inside the union are calculated directly from these.
  * HASN'T BEEN TESTED
  * 
  * @author Johannes Courtial
@@ -103,12 +107,38 @@ public class SceneObjectUnion extends SceneObjectContainer implements Serializab
 //		return getClosestRayIntersectionAvoidingOrigin(ray, (SceneObjectPrimitive)null);
 //	}
 
+	/**
+	 * The spans inside the union are the union of the spans inside the SceneObjects; the surfaces of invisible SceneObjects cannot be seen.
+	 * @see optics.raytrace.core.SceneObjectClass#getRaySpans(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive)
+	 */
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject)
+	{
+		RaySpanList spans = new RaySpanList();
+
+		for(int i=0; i<sceneObjects.size(); i++)
+		{
+			RaySpanList sceneObjectSpans = RaySpanList.getRaySpans(sceneObjects.get(i), ray, originObject);
+			if(sceneObjectSpans == null) return null;
+			if(!visibilities.get(i)) sceneObjectSpans = sceneObjectSpans.getWithObject(null);
+
+			spans = spans.getUnionWith(sceneObjectSpans);
+		}
+
+		return spans;
+	}
+
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#getClosestRayIntersectionAvoidingOrigin(optics.raytrace.Ray, optics.raytrace.SceneObject)
 	 */
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject)
 	{
+		RaySpanList spans = getRaySpans(ray, excludeObject);
+		if(spans != null) return SceneObjectIntersection.getClosestRayIntersection(spans, ray, IntersectionInclusionCriterion.iicAll);
+
+		// not all scene objects can calculate their spans, so test each intersection
+
 		RaySceneObjectIntersection intersection, intersectionClosest;
 		double distance2, distanceClosest2;	// distances squared
 		
@@ -159,10 +189,24 @@ public class SceneObjectUnion extends SceneObjectContainer implements Serializab
 
 		return intersectionClosest;    
 	}
+
+	/**
+	 * As getClosestRayIntersectionAvoidingOrigin is overridden, so must this be
+	 * (otherwise the version inherited from SceneObjectContainer would bypass it).
+	 * @see optics.raytrace.core.SceneObjectClass#findClosestRayIntersectionAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, optics.raytrace.core.RaySceneObjectIntersectionRecord)
+	 */
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, RaySceneObjectIntersectionRecord record)
+	{
+		return record.record(getClosestRayIntersectionAvoidingOrigin(ray, originObject));
+	}
 	
 	@Override
 	public RaySceneObjectIntersection getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject)
 	{
+		RaySpanList spans = getRaySpans(ray, excludeObject);
+		if(spans != null) return SceneObjectIntersection.getClosestRayIntersection(spans, ray, IntersectionInclusionCriterion.iicSTO);
+
 		RaySceneObjectIntersection intersection, intersectionClosest;
 		double distance2, distanceClosest2;	// distances squared
 		
@@ -213,6 +257,50 @@ public class SceneObjectUnion extends SceneObjectContainer implements Serializab
 
 		return intersectionClosest;    
 	}
+	
+	/**
+	 * Looks for intersections with the outside surface of the union like getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin,
+	 * but returns as soon as one closer than maxDistance has been found.
+	 * @see optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer#hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(optics.raytrace.core.Ray, optics.raytrace.core.SceneObjectPrimitive, double)
+	 */
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive excludeObject, double maxDistance)
+	{
+		double maxDistance2 = maxDistance*maxDistance;
+
+		RaySpanList spans = getRaySpans(ray, excludeObject);
+		if(spans != null)
+		{
+			RaySceneObjectIntersection intersection = SceneObjectIntersection.getClosestRayIntersection(spans, ray, IntersectionInclusionCriterion.iicSTO);
+			return (intersection != RaySceneObjectIntersection.NO_INTERSECTION) && (intersection.p.getDifferenceWith(ray.getP()).getModSquared() < maxDistance2);
+		}
+		
+		// go through all the intersecting scene objects
+		for(int i=0; i<sceneObjects.size(); i++)
+		{
+			if(visibilities.get(i))
+			{
+				// calculate the intersection point
+				RaySceneObjectIntersection intersection = sceneObjects.get(i).getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, excludeObject);
+
+				// is there an intersection point closer than maxDistance?
+				// (any further intersections with the same object are even further away)
+				while(
+						(intersection != RaySceneObjectIntersection.NO_INTERSECTION) &&
+						(intersection.p.getDifferenceWith(ray.getP()).getModSquared() < maxDistance2)
+					)
+				{
+					// is the intersection point on the outside surface of the union?
+					if(insideAnyObject(intersection.p, i) == -1) return true;
+
+					// try the next intersection with the same object
+					intersection = sceneObjects.get(i).getNextClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, excludeObject, intersection);
+				}
+			}
+		}
+
+		return false;
+	}
 
 	/* (non-Javadoc)
 	 * @see optics.raytrace.SceneObjectContainer#transform(optics.raytrace.Transformation)
@@ -0,0 +1,169 @@
+package optics.raytrace.sceneObjects.transformations;
+
+import math.Vector3D;
+import optics.raytrace.core.Transformation;
+
+/**
+ * A transformation that preserves distances, i.e. a combination of a rotation (or reflection) and a translation.
+ * It maps the x, y and z axes onto the orthonormal vectors xHat, yHat and zHat, and the origin onto the position offset.
+ *
+ * Unlike a general Transformation, this transformation can be inverted, and as it preserves distances,
+ * the distance along a light ray to an intersection is the same before and after the transformation.
+ *
+ * Objects of this class are immutable.
+ *
+ * @author Johannes Courtial
+ */
+public class RigidTransformation extends Transformation
+{
+	/**
+	 * the transformation that leaves everything where it is
+	 */
+	public static final RigidTransformation IDENTITY = new RigidTransformation(Vector3D.O);
+
+	private final Vector3D xHat, yHat, zHat, offset;
+
+	/**
+	 * Create a rigid transformation that maps the x, y and z axes onto xHat, yHat and zHat and the origin onto offset
+	 * @param xHat
+	 * @param yHat
+	 * @param zHat
+	 * @param offset
+	 * @throws IllegalArgumentException	if xHat, yHat and zHat are not orthonormal
+	 */
+	public RigidTransformation(Vector3D xHat, Vector3D yHat, Vector3D zHat, Vector3D offset)
+	{
+		super();
+
+		if(!isOrthonormal(xHat, yHat, zHat))
+			throw new IllegalArgumentException("RigidTransformation::RigidTransformation: xHat="+xHat+", yHat="+yHat+" and zHat="+zHat+" are not orthonormal");
+
+		this.xHat = xHat;
+		this.yHat = yHat;
+		this.zHat = zHat;
+		this.offset = offset;
+	}
+
+	/**
+	 * Create a translation by offset
+	 * @param offset
+	 */
+	public RigidTransformation(Vector3D offset)
+	{
+		super();
+
+		xHat = Vector3D.X;
+		yHat = Vector3D.Y;
+		zHat = Vector3D.Z;
+		this.offset = offset;
+	}
+
+	private static boolean isOrthonormal(Vector3D a, Vector3D b, Vector3D c)
+	{
+		final double tolerance = 1e-9;
+
+		return
+				(Math.abs(a.getModSquared() - 1) < tolerance) &&
+				(Math.abs(b.getModSquared() - 1) < tolerance) &&
+				(Math.abs(c.getModSquared() - 1) < tolerance) &&
+				(Math.abs(Vector3D.scalarProduct(a, b)) < tolerance) &&
+				(Math.abs(Vector3D.scalarProduct(b, c)) < tolerance) &&
+				(Math.abs(Vector3D.scalarProduct(c, a)) < tolerance);
+	}
+
+
+	//
+	// getters
+	//
+
+	public Vector3D getxHat() {
+		return xHat;
+	}
+
+	public Vector3D getyHat() {
+		return yHat;
+	}
+
+	public Vector3D getzHat() {
+		return zHat;
+	}
+
+	public Vector3D getOffset() {
+		return offset;
+	}
+
+
+	//
+	// Transformation methods
+	//
+
+	@Override
+	public Vector3D transformPosition(Vector3D p)
+	{
+		return new Vector3D(
+				offset.x + p.x*xHat.x + p.y*yHat.x + p.z*zHat.x,
+				offset.y + p.x*xHat.y + p.y*yHat.y + p.z*zHat.y,
+				offset.z + p.x*xHat.z + p.y*yHat.z + p.z*zHat.z
+			);
+	}
+
+	@Override
+	public Vector3D transformDirection(Vector3D d)
+	{
+		return new Vector3D(
+				d.x*xHat.x + d.y*yHat.x + d.z*zHat.x,
+				d.x*xHat.y + d.y*yHat.y + d.z*zHat.y,
+				d.x*xHat.z + d.y*yHat.z + d.z*zHat.z
+			);
+	}
+
+	/**
+	 * @param p	a position
+	 * @return	the position that gets transformed into p
+	 */
+	public Vector3D inverseTransformPosition(Vector3D p)
+	{
+		double
+			x = p.x - offset.x,
+			y = p.y - offset.y,
+			z = p.z - offset.z;
+
+		return new Vector3D(
+				x*xHat.x + y*xHat.y + z*xHat.z,
+				x*yHat.x + y*yHat.y + z*yHat.z,
+				x*zHat.x + y*zHat.y + z*zHat.z
+			);
+	}
+
+	/**
+	 * @param d	a direction
+	 * @return	the direction that gets transformed into d
+	 */
+	public Vector3D inverseTransformDirection(Vector3D d)
+	{
+		return new Vector3D(
+				Vector3D.scalarProduct(d, xHat),
+				Vector3D.scalarProduct(d, yHat),
+				Vector3D.scalarProduct(d, zHat)
+			);
+	}
+
+	/**
+	 * @param t
+	 * @return	the rigid transformation that corresponds to first applying this transformation and then t
+	 */
+	public RigidTransformation getFollowedBy(RigidTransformation t)
+	{
+		return new RigidTransformation(
+				t.transformDirection(xHat),
+				t.transformDirection(yHat),
+				t.transformDirection(zHat),
+				t.transformPosition(offset)
+			);
+	}
+
+	@Override
+	public String toString() {
+		return "RigidTransformation [xHat=" + xHat + ", yHat=" + yHat + ", zHat=" + zHat + ", offset=" + offset + "]";
+	}
+}
@@ -5,6 +5,7 @@ import optics.raytrace.exceptions.EvanescentException;
 import optics.raytrace.exceptions.RayTraceException;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -77,6 +78,34 @@ public abstract class DirectionChanging extends SurfacePropertyPrimitive
 			return Reflective.getReflectedColour(ray, intersection, scene, lights, traceLevel, raytraceExceptionHandler);
 		}
 	}
+
+	/**
+	 * Instead of tracing the new ray recursively, describe it in the continuation
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuation(Ray ray, RaySceneObjectIntersection intersection, SceneObject scene, LightSource lights, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		// Check traceLevel is greater than 0.
+		if(traceLevel <= 0) return DoubleColour.BLACK;
+
+		try {
+			Vector3D newRayDirection = getOutgoingLightRayDirection(ray, intersection, scene, lights, traceLevel, raytraceExceptionHandler);
+
+			// continue with a new ray from here
+			continuation.continueWith(
+				ray.getBranchRay(intersection.p, newRayDirection, intersection.t, ray.isReportToConsole()),
+				intersection.o,
+				scene,
+				traceLevel-1,
+				getTransmissionCoefficient()
+			);
+			return null;
+		} catch (EvanescentException e) {
+			return Reflective.getReflectedColourOrContinuation(ray, intersection, scene, traceLevel, continuation);
+		}
+	}
 }
 
 
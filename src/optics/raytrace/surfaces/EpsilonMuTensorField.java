@@ -0,0 +1,272 @@
+package optics.raytrace.surfaces;
+
+import Jama.Matrix;
+import math.Matrix3D;
+import math.Vector3D;
+import optics.raytrace.core.AxisAlignedBoundingBox;
+
+/**
+ * The epsilon-mu tensor n of a SurfaceOfMetricSpace, pre-calculated on a regular 3D grid of points covering an axis-aligned bounding box,
+ * together with its partial derivatives with respect to position and the partial derivatives of det(n).
+ *
+ * Between the grid points, these quantities are interpolated trilinearly.
+ * This turns the evaluation of the RHS of Hamilton's equations,
+ *
+ * d x / d \tau =  \partial H / \partial k = (n + n^T).k,
+ * d k_i / d \tau = -\partial H / \partial x_i = -(k.(\partial n / \partial x_i).k - \partial det(n) / \partial x_i),
+ *
+ * into a table look-up, which is worthwhile for metrics whose epsilon-mu tensor is expensive to calculate.
+ *
+ * The partial derivatives are calculated by central finite differences when the grid is created.
+ * Grid points at which the tensor or its derivatives are not finite (for example at singularities outside the volume) are marked as invalid;
+ * at positions near such points, and outside the bounding box, no interpolated values are available.
+ *
+ * @author Johannes Courtial
+ */
+public class EpsilonMuTensorField
+{
+	/**
+	 * the number of values stored for each grid point:
+	 * n (9 values), \partial n / \partial x_i (3x9 values), det(n) (1 value), and \partial det(n) / \partial x_i (3 values)
+	 */
+	private static final int VALUES_PER_GRID_POINT = 40;
+
+	/**
+	 * offsets of the different quantities within the values stored for each grid point
+	 */
+	private static final int
+		N_OFFSET = 0,
+		DN_OFFSET = 9,
+		DET_OFFSET = 36,
+		DDET_OFFSET = 37;
+
+	/**
+	 * the step size of the finite differences used to calculate the partial derivatives, in units of the grid spacing
+	 */
+	private static final double FINITE_DIFFERENCE_STEP = 0.01;
+
+	/**
+	 * the position of the grid point with indices (0, 0, 0)
+	 */
+	private double xMin, yMin, zMin;
+
+	/**
+	 * the spacing between neighbouring grid points in the x, y and z directions
+	 */
+	private double dx, dy, dz;
+
+	/**
+	 * the number of grid points in the x, y and z directions
+	 */
+	private int nx, ny, nz;
+
+	/**
+	 * the values at the grid points
+	 */
+	private double[] values;
+
+	/**
+	 * true for the grid points at which all values are finite
+	 */
+	private boolean[] valid;
+
+	/**
+	 * Create a grid of gridPoints x gridPoints x gridPoints points covering the bounding box and
+	 * calculate the epsilon-mu tensor and the other quantities at each of them
+	 * @param metricSpace	the surface whose epsilon-mu tensor is to be pre-calculated
+	 * @param boundingBox	the region of space the grid covers
+	 * @param gridPoints	the number of grid points in each direction (at least 2)
+	 */
+	public EpsilonMuTensorField(SurfaceOfMetricSpace metricSpace, AxisAlignedBoundingBox boundingBox, int gridPoints)
+	{
+		if(gridPoints < 2) throw new IllegalArgumentException("EpsilonMuTensorField::EpsilonMuTensorField: gridPoints = "+gridPoints+" < 2");
+
+		nx = ny = nz = gridPoints;
+		xMin = boundingBox.getXMin();
+		yMin = boundingBox.getYMin();
+		zMin = boundingBox.getZMin();
+		dx = (boundingBox.getXMax() - xMin) / (nx - 1);
+		dy = (boundingBox.getYMax() - yMin) / (ny - 1);
+		dz = (boundingBox.getZMax() - zMin) / (nz - 1);
+
+		values = new double[nx*ny*nz*VALUES_PER_GRID_POINT];
+		valid = new boolean[nx*ny*nz];
+
+		double[] h = {FINITE_DIFFERENCE_STEP*dx, FINITE_DIFFERENCE_STEP*dy, FINITE_DIFFERENCE_STEP*dz};
+		for(int iz=0; iz<nz; iz++)
+			for(int iy=0; iy<ny; iy++)
+				for(int ix=0; ix<nx; ix++)
+				{
+					int index = (iz*ny + iy)*nx + ix;
+					int offset = index*VALUES_PER_GRID_POINT;
+					Vector3D x = new Vector3D(xMin + ix*dx, yMin + iy*dy, zMin + iz*dz);
+
+					// the tensor n and its determinant, ...
+					double[][] n = getArray(metricSpace.calculateEpsilonMuTensor(x));
+					for(int a=0; a<3; a++)
+						for(int b=0; b<3; b++)
+							values[offset + N_OFFSET + 3*a + b] = n[a][b];
+					values[offset + DET_OFFSET] = Matrix3D.getDeterminant(n);
+
+					// ... and their partial derivatives with respect to x_i
+					for(int i=0; i<3; i++)
+					{
+						Vector3D step = new Vector3D(i==0?h[0]:0, i==1?h[1]:0, i==2?h[2]:0);
+						double[][] nPlus = getArray(metricSpace.calculateEpsilonMuTensor(Vector3D.sum(x, step)));
+						double[][] nMinus = getArray(metricSpace.calculateEpsilonMuTensor(Vector3D.difference(x, step)));
+						for(int a=0; a<3; a++)
+							for(int b=0; b<3; b++)
+								values[offset + DN_OFFSET + 9*i + 3*a + b] = (nPlus[a][b] - nMinus[a][b]) / (2*h[i]);
+						values[offset + DDET_OFFSET + i] = (Matrix3D.getDeterminant(nPlus) - Matrix3D.getDeterminant(nMinus)) / (2*h[i]);
+					}
+
+					valid[index] = true;
+					for(int v=0; v<VALUES_PER_GRID_POINT; v++)
+						if(Double.isNaN(values[offset + v]) || Double.isInfinite(values[offset + v])) valid[index] = false;
+				}
+	}
+
+	/**
+	 * @param m
+	 * @return	the elements of m, or a matrix of NaNs if m is null
+	 */
+	private static double[][] getArray(Matrix m)
+	{
+		if(m == null) return new double[][] {{Double.NaN, Double.NaN, Double.NaN}, {Double.NaN, Double.NaN, Double.NaN}, {Double.NaN, Double.NaN, Double.NaN}};
+		return m.getArray();
+	}
+
+
+	//
+	// interpolation
+	//
+
+	/**
+	 * a grid cell, identified by the index of its grid point with the smallest coordinates, and a position within it, in units of the grid spacing
+	 */
+	private static class Cell
+	{
+		public int index;
+		public double tx, ty, tz;
+	}
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param z
+	 * @param cell	the cell containing the position (x, y, z), and the position within it
+	 * @return	true if (x, y, z) lies within the grid and all corners of the cell containing it are valid, false otherwise
+	 */
+	private boolean findCell(double x, double y, double z, Cell cell)
+	{
+		double u = (x - xMin)/dx, v = (y - yMin)/dy, w = (z - zMin)/dz;
+		if(!((u >= 0) && (u <= nx-1) && (v >= 0) && (v <= ny-1) && (w >= 0) && (w <= nz-1))) return false;
+
+		int ix = Math.min((int)u, nx-2), iy = Math.min((int)v, ny-2), iz = Math.min((int)w, nz-2);
+		cell.index = (iz*ny + iy)*nx + ix;
+		cell.tx = u - ix;
+		cell.ty = v - iy;
+		cell.tz = w - iz;
+
+		for(int c=0; c<8; c++) if(!valid[getCornerIndex(cell.index, c)]) return false;
+		return true;
+	}
+
+	/**
+	 * @param index	index of the grid point at the corner of the cell with the smallest coordinates
+	 * @param c	number of the corner, 0 to 7; bits 0, 1 and 2 indicate the corners with the greater x, y and z coordinates, respectively
+	 * @return	the index of the grid point at corner c
+	 */
+	private int getCornerIndex(int index, int c)
+	{
+		return index + (c & 1) + ((c >> 1) & 1)*nx + ((c >> 2) & 1)*nx*ny;
+	}
+
+	/**
+	 * @param cell
+	 * @param c	number of the corner
+	 * @return	the weight of corner c in the trilinear interpolation within the cell
+	 */
+	private static double getCornerWeight(Cell cell, int c)
+	{
+		return
+			(((c & 1) == 0)?(1-cell.tx):cell.tx) *
+			((((c >> 1) & 1) == 0)?(1-cell.ty):cell.ty) *
+			((((c >> 2) & 1) == 0)?(1-cell.tz):cell.tz);
+	}
+
+	/**
+	 * Calculate the RHS of Hamilton's equations from the interpolated values.
+	 * As the RHS is linear in the interpolated values, it is calculated at the corners of the grid cell and then interpolated.
+	 * @param f	position (f[0], f[1], f[2]) and wave vector (f[3], f[4], f[5])
+	 * @param dfdt	array that will hold d x / d \tau and d k / d \tau
+	 * @return	true if interpolated values are available at the position, false otherwise (in which case dfdt is unchanged)
+	 */
+	public boolean calculateDerivatives(double f[], double dfdt[])
+	{
+		Cell cell = new Cell();
+		if(!findCell(f[0], f[1], f[2], cell)) return false;
+
+		double kx = f[3], ky = f[4], kz = f[5];
+		double dxdtau = 0, dydtau = 0, dzdtau = 0, dkxdtau = 0, dkydtau = 0, dkzdtau = 0;
+		for(int c=0; c<8; c++)
+		{
+			double weight = getCornerWeight(cell, c);
+			int o = getCornerIndex(cell.index, c)*VALUES_PER_GRID_POINT;
+
+			// (n + n^T).k
+			int n = o + N_OFFSET;
+			dxdtau += weight*(2*values[n  ]*kx + (values[n+1] + values[n+3])*ky + (values[n+2] + values[n+6])*kz);
+			dydtau += weight*((values[n+3] + values[n+1])*kx + 2*values[n+4]*ky + (values[n+5] + values[n+7])*kz);
+			dzdtau += weight*((values[n+6] + values[n+2])*kx + (values[n+7] + values[n+5])*ky + 2*values[n+8]*kz);
+
+			// -(k.(\partial n / \partial x_i).k - \partial det(n) / \partial x_i)
+			dkxdtau -= weight*(getQuadraticForm(kx, ky, kz, o + DN_OFFSET     ) - values[o + DDET_OFFSET    ]);
+			dkydtau -= weight*(getQuadraticForm(kx, ky, kz, o + DN_OFFSET +  9) - values[o + DDET_OFFSET + 1]);
+			dkzdtau -= weight*(getQuadraticForm(kx, ky, kz, o + DN_OFFSET + 18) - values[o + DDET_OFFSET + 2]);
+		}
+
+		dfdt[0] = dxdtau;
+		dfdt[1] = dydtau;
+		dfdt[2] = dzdtau;
+		dfdt[3] = dkxdtau;
+		dfdt[4] = dkydtau;
+		dfdt[5] = dkzdtau;
+
+		return true;
+	}
+
+	/**
+	 * @param x
+	 * @param k
+	 * @return	the interpolated Hamiltonian H = k.n.k - det(n), or NaN if no interpolated values are available at x
+	 */
+	public double calculateHamiltonian(Vector3D x, Vector3D k)
+	{
+		Cell cell = new Cell();
+		if(!findCell(x.x, x.y, x.z, cell)) return Double.NaN;
+
+		double h = 0;
+		for(int c=0; c<8; c++)
+		{
+			int o = getCornerIndex(cell.index, c)*VALUES_PER_GRID_POINT;
+			h += getCornerWeight(cell, c)*(getQuadraticForm(k.x, k.y, k.z, o + N_OFFSET) - values[o + DET_OFFSET]);
+		}
+		return h;
+	}
+
+	/**
+	 * @param kx
+	 * @param ky
+	 * @param kz
+	 * @param m	offset of the 3x3 matrix, stored row by row, in the values array
+	 * @return	k.m.k
+	 */
+	private double getQuadraticForm(double kx, double ky, double kz, int m)
+	{
+		return
+			  kx*(values[m  ]*kx + values[m+1]*ky + values[m+2]*kz)
+			+ ky*(values[m+3]*kx + values[m+4]*ky + values[m+5]*kz)
+			+ kz*(values[m+6]*kx + values[m+7]*ky + values[m+8]*kz);
+	}
+}
@@ -565,8 +565,8 @@ public class GCLAsWithApertures extends SurfacePropertyPrimitive
 					// in each transverse dimension.
 					// (2.*(Math.random()-0.5) gives a uniformly distributes random number in the range -1 to 1.)
 					Vector3D tangentialDirectionComponentChange = Vector3D.sum(
-							surfaceCoordinate1Axis.getProductWith(lambda/pixelSideLength*2.*(Math.random()-0.5)),
-							surfaceCoordinate2Axis.getProductWith(lambda/pixelSideLength*2.*(Math.random()-0.5))
+							surfaceCoordinate1Axis.getProductWith(lambda/pixelSideLength*2.*(Sampler.random()-0.5)),
+							surfaceCoordinate2Axis.getProductWith(lambda/pixelSideLength*2.*(Sampler.random()-0.5))
 						);
 					try
 					{
@@ -593,8 +593,8 @@ public class GCLAsWithApertures extends SurfacePropertyPrimitive
 
 					newRayStartPosition = Vector3D.sum(
 							newRayStartPosition,
-							surfaceCoordinate1Axis.getProductWith(pixelSideLength*2.*(Math.random()-0.5)),
-							surfaceCoordinate2Axis.getProductWith(pixelSideLength*2.*(Math.random()-0.5))
+							surfaceCoordinate1Axis.getProductWith(pixelSideLength*2.*(Sampler.random()-0.5)),
+							surfaceCoordinate2Axis.getProductWith(pixelSideLength*2.*(Sampler.random()-0.5))
 						);
 				}
 			}
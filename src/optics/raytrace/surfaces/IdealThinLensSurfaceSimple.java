@@ -116,23 +116,8 @@ public class IdealThinLensSurfaceSimple extends SurfacePropertyPrimitive
 	{
 		if (traceLevel <= 0) return DoubleColour.BLACK;
 		
-		// calculate direction of deflected ray;
-		// see thinLensAlgebra.pdf
-		
-		// scalar product of ray direction and normalised vector in direction of optical axis is what we call dz in thinLensAlgebra.pdf;
-		// need absolute value of this in case the normalised surface normal points "the other way"
-		double dz = Math.abs(ray.getD().getScalarProductWith(getOpticalAxisDirection()));
-		
-		// now calculate the point Q in the image-sided focal plane through which
-		// the ray has to pass
-		Vector3D Q = Vector3D.sum(
-				getLensCentre(),	// point where optical axis intersects surface
-				ray.getD().getProductWith(getFocalLength()/dz)	// d*f/dz
-			);
+		Vector3D newRayDirection = getOutgoingLightRayDirection(ray, i);
 
-		// calculate normalised new light-ray direction
-		Vector3D newRayDirection = Vector3D.difference(Q, i.p).getNormalised().getProductWith(Math.signum(getFocalLength()));
-		
 		// launch a new ray from here
 		return scene.getColourAvoidingOrigin(
 			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
@@ -154,4 +139,52 @@ public class IdealThinLensSurfaceSimple extends SurfacePropertyPrimitive
 			// account together with the other method of calculation of the ray direction, no brightening will occur.
 		);
 	}
+
+	/**
+	 * Instead of tracing the new ray recursively, describe it in the continuation
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuation(Ray ray, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		if (traceLevel <= 0) return DoubleColour.BLACK;
+		
+		// continue with a new ray from here
+		continuation.continueWith(
+			ray.getBranchRay(i.p, getOutgoingLightRayDirection(ray, i), i.t, ray.isReportToConsole()),
+			i.o,
+			scene,
+			traceLevel-1,
+			getTransmissionCoefficient()
+		);
+		return null;
+	}
+
+	/**
+	 * @param ray
+	 * @param i
+	 * @return	the direction of the light ray leaving the intersection point
+	 */
+	private Vector3D getOutgoingLightRayDirection(Ray ray, RaySceneObjectIntersection i)
+	{
+		// calculate direction of deflected ray;
+		// see thinLensAlgebra.pdf
+		
+		// scalar product of ray direction and normalised vector in direction of optical axis is what we call dz in thinLensAlgebra.pdf;
+		// need absolute value of this in case the normalised surface normal points "the other way"
+		double dz = Math.abs(ray.getD().getScalarProductWith(getOpticalAxisDirection()));
+		
+		// now calculate the point Q in the image-sided focal plane through which
+		// the ray has to pass
+		Vector3D Q = Vector3D.sum(
+				getLensCentre(),	// point where optical axis intersects surface
+				ray.getD().getProductWith(getFocalLength()/dz)	// d*f/dz
+			);
+
+		// calculate normalised new light-ray direction
+		Vector3D newRayDirection = Vector3D.difference(Q, i.p).getNormalised().getProductWith(Math.signum(getFocalLength()));
+
+		return newRayDirection;
+	}
 }
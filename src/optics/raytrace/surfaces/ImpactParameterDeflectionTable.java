@@ -0,0 +1,314 @@
+package optics.raytrace.surfaces;
+
+import math.LorentzTransformation;
+import math.ODE.Derivatives;
+import math.ODE.RungeKuttaDormandPrince;
+
+/**
+ * The passage of light rays through a spherical volume of radius R filled with a radially symmetric refractive-index distribution n(r),
+ * pre-calculated for a regular grid of angles of incidence.
+ *
+ * In a spherically symmetric medium, the trajectory of a ray that enters the sphere from the outside lies in its plane of incidence,
+ * i.e. the plane that contains the incident ray and the centre of the sphere, and its shape depends only on the ray's impact parameter
+ * b = R sin(alpha), where alpha is the angle of incidence.
+ * For each angle of incidence, the ray is integrated once through the sphere, in the plane of incidence, using Hamilton's equations
+ * for H = k^2 n - n^3 (see SurfaceOfRadiallySymmetricRefractiveIndexDistribution);
+ * the table then stores
+ * <ul>
+ * <li>the angle through which the position vector (relative to the centre) is rotated between the entry point and the exit point,</li>
+ * <li>the angle between the direction of the incident ray and that of the ray leaving the sphere, and</li>
+ * <li>the time delay, i.e. the amount by which the ray's time changes while it passes through the sphere.</li>
+ * </ul>
+ * All angles are measured in the plane of incidence, in the direction from the incident ray direction towards the entry point.
+ * Between the tabulated angles of incidence, these quantities are interpolated linearly.
+ *
+ * Rays that don't leave the sphere within the maximum number of integration steps are marked as trapped;
+ * angles of incidence for which the integration fails (for example because the ray is totally internally reflected upon entering,
+ * or because it hits a singularity of n(r)) are marked as unavailable.
+ *
+ * @author Johannes Courtial
+ */
+public class ImpactParameterDeflectionTable implements Derivatives
+{
+	/**
+	 * what happens to a ray that enters the sphere
+	 */
+	public enum Passage
+	{
+		EXITS,	// the ray leaves the sphere again
+		TRAPPED,	// the ray does not leave the sphere within the maximum number of integration steps
+		UNAVAILABLE	// the passage could not be calculated
+	}
+
+	/**
+	 * the tolerance of the adaptive integration used to calculate the table entries
+	 */
+	private static final double INTEGRATION_TOLERANCE = 1e-10;
+
+	/**
+	 * the maximum length of an integration step, in units of the radius of the sphere
+	 */
+	private static final double MAX_STEP_LENGTH = 0.05;
+
+	/**
+	 * the smallest angle of incidence for which rays get integrated, in units of the spacing between neighbouring tabulated angles of incidence
+	 */
+	private static final double SMALLEST_INDEX = 1e-4;
+
+	/**
+	 * the number of bisections performed to locate the exit point within an integration step
+	 */
+	private static final int NUMBER_OF_BISECTIONS = 40;
+
+	/**
+	 * the refractive-index distribution
+	 */
+	private SurfaceOfRadiallySymmetricRefractiveIndexDistribution distribution;
+
+	/**
+	 * the radius of the sphere
+	 */
+	private double radius;
+
+	/**
+	 * the spacing between neighbouring tabulated angles of incidence
+	 */
+	private double dAlpha;
+
+	/**
+	 * the passage of the ray for each tabulated angle of incidence
+	 */
+	private Passage[] passages;
+
+	/**
+	 * the rotation angle of the exit point, the deflection angle and the time delay for each tabulated angle of incidence
+	 */
+	private double[] rotationAngles, deflectionAngles, timeDelays;
+
+	/**
+	 * Integrate rays with size equally spaced angles of incidence, from 0 to pi/2, through the sphere and tabulate the results
+	 * @param distribution	the radially symmetric refractive-index distribution that fills the sphere
+	 * @param radius	the radius of the sphere, which is centred on the centre of the refractive-index distribution
+	 * @param size	the number of tabulated angles of incidence (at least 2)
+	 * @param maxSteps	the maximum number of integration steps, after which a ray is considered trapped
+	 */
+	public ImpactParameterDeflectionTable(SurfaceOfRadiallySymmetricRefractiveIndexDistribution distribution, double radius, int size, int maxSteps)
+	{
+		if(size < 2) throw new IllegalArgumentException("ImpactParameterDeflectionTable::ImpactParameterDeflectionTable: size = "+size+" < 2");
+
+		this.distribution = distribution;
+		this.radius = radius;
+
+		dAlpha = 0.5*Math.PI / (size - 1);
+		passages = new Passage[size];
+		rotationAngles = new double[size];
+		deflectionAngles = new double[size];
+		timeDelays = new double[size];
+
+		RungeKuttaDormandPrince rungeKutta = new RungeKuttaDormandPrince();
+		for(int j=0; j<size; j++)
+		{
+			try
+			{
+				// the ray with angle of incidence 0 passes through the centre, where the polar angle of its position is undefined;
+				// calculate instead the limit of small angles of incidence
+				passages[j] = integrate(Math.max(j, SMALLEST_INDEX)*dAlpha, maxSteps, rungeKutta, j);
+			}
+			catch(Error e)
+			{
+				// the integration failed, e.g. due to a step-size underflow near a singularity
+				passages[j] = Passage.UNAVAILABLE;
+			}
+			if((passages[j] == Passage.EXITS) && !(isFinite(rotationAngles[j]) && isFinite(deflectionAngles[j]) && isFinite(timeDelays[j])))
+				passages[j] = Passage.UNAVAILABLE;
+		}
+	}
+
+	private static boolean isFinite(double d)
+	{
+		return !(Double.isNaN(d) || Double.isInfinite(d));
+	}
+
+	/**
+	 * Integrate the ray with angle of incidence alpha through the sphere and store the results as entry j of the table.
+	 * The integration takes place in the plane of incidence, in which the incident ray travels in the +x direction
+	 * and enters the sphere at the point (-R cos(alpha), R sin(alpha)).
+	 * @param alpha
+	 * @param maxSteps
+	 * @param rungeKutta
+	 * @param j
+	 * @return	the passage of the ray
+	 */
+	private Passage integrate(double alpha, int maxSteps, RungeKuttaDormandPrince rungeKutta, int j)
+	{
+		// the entry point, ...
+		double x0 = -radius*Math.cos(alpha), y0 = radius*Math.sin(alpha);
+
+		// ... the outwards-facing surface normal there, ...
+		double nx = x0/radius, ny = y0/radius;
+
+		// ... and the wave vector inside, whose tangential component equals that of the incident wave vector (1, 0),
+		// whose length is given by H = 0, i.e. k^2 = n^2, and whose light-ray direction, 2 n k, points inwards
+		double n = distribution.calculateN(radius);
+		double kTx = 1 - nx*nx, kTy = -nx*ny;
+		double kN2 = n*n - (kTx*kTx + kTy*kTy);
+		if(kN2 < 0) return Passage.UNAVAILABLE;	// TIR upon entering
+		double kN = -Math.signum(n)*Math.sqrt(kN2);
+
+		// the state of the integration: position (x, y), wave vector (k_x, k_y), polar angle phi of the position, and the integral of k . dx
+		double phi0 = Math.atan2(y0, x0);
+		double f[] = {x0, y0, kTx + kN*nx, kTy + kN*ny, phi0, 0};
+		double dfdt[] = new double[6], fScal[] = new double[6], fOut[] = new double[6];
+		calculateDerivatives(0, f, dfdt);
+
+		double t = 0, dtTry = MAX_STEP_LENGTH*radius / Math.max(Math.hypot(dfdt[0], dfdt[1]), Double.MIN_NORMAL);
+		for(int step=0; step<maxSteps; step++)
+		{
+			// limit the length of the step, so that the ray cannot leave and re-enter the sphere within one step
+			double dtMax = MAX_STEP_LENGTH*radius / Math.max(Math.hypot(dfdt[0], dfdt[1]), Double.MIN_NORMAL);
+			for(int x=0; x<6; x++) fScal[x] = 1 + Math.abs(f[x]);
+			rungeKutta.calculateQualityControlledRungeKuttaStep(f, dfdt, t, Math.min(dtTry, dtMax), INTEGRATION_TOLERANCE, fScal, this);
+			t = rungeKutta.getT();
+			dtTry = rungeKutta.getDtNext();
+
+			if(Math.hypot(f[0], f[1]) >= radius)
+			{
+				// the ray has left the sphere during this step; locate the exit point using the dense output of the step
+				double thetaInside = 0, thetaOutside = 1;
+				for(int b=0; b<NUMBER_OF_BISECTIONS; b++)
+				{
+					double theta = 0.5*(thetaInside + thetaOutside);
+					rungeKutta.calculateDenseOutput(theta, fOut, this);
+					if(Math.hypot(fOut[0], fOut[1]) < radius) thetaInside = theta;
+					else thetaOutside = theta;
+				}
+				rungeKutta.calculateDenseOutput(thetaOutside, fOut, this);
+
+				// refract out of the sphere:
+				// the tangential component of the wave vector is conserved, and outside k is of length 1 and points outwards
+				double r = Math.hypot(fOut[0], fOut[1]);
+				nx = fOut[0]/r;
+				ny = fOut[1]/r;
+				double kNInside = fOut[2]*nx + fOut[3]*ny;
+				kTx = fOut[2] - kNInside*nx;
+				kTy = fOut[3] - kNInside*ny;
+				double kNOutside2 = 1 - (kTx*kTx + kTy*kTy);
+				if(kNOutside2 < 0) return Passage.UNAVAILABLE;	// TIR upon leaving
+				double kNOutside = Math.sqrt(kNOutside2);
+
+				rotationAngles[j] = fOut[4] - phi0;
+				deflectionAngles[j] = Math.atan2(kTy + kNOutside*ny, kTx + kNOutside*nx);
+				timeDelays[j] = fOut[5] / LorentzTransformation.c;
+				return Passage.EXITS;
+			}
+
+			rungeKutta.calculateDerivativesAtEndOfStep(dfdt, this);
+		}
+
+		// the ray has not left the sphere within the maximum number of steps
+		return Passage.TRAPPED;
+	}
+
+	/**
+	 * The RHS of Hamilton's equations for H = k^2 n - n^3 in the plane of incidence,
+	 * together with the rate of change of the polar angle of the position and of the integral of k . dx
+	 * @see math.ODE.Derivatives#calculateDerivatives(double, double[], double[])
+	 */
+	@Override
+	public void calculateDerivatives(double t, double f[], double dfdt[])
+	{
+		double x = f[0], y = f[1], kx = f[2], ky = f[3];
+		double r2 = x*x + y*y, r = Math.sqrt(r2);
+		double n = distribution.calculateN(r);
+
+		// d x / d \tau = \partial H / \partial k = 2 n k
+		dfdt[0] = 2*n*kx;
+		dfdt[1] = 2*n*ky;
+
+		// d k / d \tau = -\partial H / \partial x = (3 n^2 - k^2) (dn/dr) x / r
+		double g = (r == 0)?0:(3*n*n - (kx*kx + ky*ky))*distribution.calculatedNdr(r)/r;
+		dfdt[2] = g*x;
+		dfdt[3] = g*y;
+
+		// d phi / d \tau = (x dy/d\tau - y dx/d\tau) / r^2
+		dfdt[4] = (r2 == 0)?0:(x*dfdt[1] - y*dfdt[0])/r2;
+
+		// d/d\tau of the integral of k . dx
+		dfdt[5] = kx*dfdt[0] + ky*dfdt[1];
+	}
+
+
+	//
+	// look-up
+	//
+
+	/**
+	 * @param alpha	angle of incidence, between 0 and pi/2
+	 * @return	the index of the tabulated angle of incidence immediately below alpha
+	 */
+	private int getIndex(double alpha)
+	{
+		return Math.max(0, Math.min((int)(alpha/dAlpha), passages.length-2));
+	}
+
+	/**
+	 * @param alpha	angle of incidence, between 0 and pi/2
+	 * @return	the passage of a ray with angle of incidence alpha;
+	 * UNAVAILABLE if either neighbouring table entry is unavailable, TRAPPED if either is trapped, EXITS otherwise
+	 */
+	public Passage getPassage(double alpha)
+	{
+		int j = getIndex(alpha);
+		if((passages[j] == Passage.UNAVAILABLE) || (passages[j+1] == Passage.UNAVAILABLE)) return Passage.UNAVAILABLE;
+		if((passages[j] == Passage.TRAPPED) || (passages[j+1] == Passage.TRAPPED)) return Passage.TRAPPED;
+		return Passage.EXITS;
+	}
+
+	/**
+	 * @param values
+	 * @param alpha
+	 * @return	the value interpolated linearly between the tabulated values on either side of alpha
+	 */
+	private double interpolate(double[] values, double alpha)
+	{
+		int j = getIndex(alpha);
+		double u = alpha/dAlpha - j;
+		return (1-u)*values[j] + u*values[j+1];
+	}
+
+	/**
+	 * @param alpha	angle of incidence, between 0 and pi/2, of a ray whose passage is EXITS
+	 * @return	the angle through which the position vector relative to the centre rotates between the entry point and the exit point
+	 */
+	public double getRotationAngle(double alpha)
+	{
+		return interpolate(rotationAngles, alpha);
+	}
+
+	/**
+	 * @param alpha	angle of incidence, between 0 and pi/2, of a ray whose passage is EXITS
+	 * @return	the angle between the direction of the incident ray and that of the ray leaving the sphere
+	 */
+	public double getDeflectionAngle(double alpha)
+	{
+		return interpolate(deflectionAngles, alpha);
+	}
+
+	/**
+	 * @param alpha	angle of incidence, between 0 and pi/2, of a ray whose passage is EXITS
+	 * @return	the integral of k . dx along the ray's path through the sphere, divided by c;
+	 * as in SurfaceOfMetricSpace::getColourUponStartingWithinVolume, the ray's time decreases by this amount
+	 */
+	public double getTimeDelay(double alpha)
+	{
+		return interpolate(timeDelays, alpha);
+	}
+
+	public double getRadius() {
+		return radius;
+	}
+
+	public int getSize() {
+		return passages.length;
+	}
+}
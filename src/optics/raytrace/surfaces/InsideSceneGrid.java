@@ -0,0 +1,193 @@
+package optics.raytrace.surfaces;
+
+import java.util.ArrayList;
+
+import optics.raytrace.core.AxisAlignedBoundingBox;
+import optics.raytrace.core.Ray;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
+import optics.raytrace.core.SceneObject;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
+
+/**
+ * The scene objects inside the volume of a SurfaceOfMetricSpace
+ * that can be reached from each cell of a regular 3D grid of cells covering the volume's bounding box.
+ *
+ * Inside the volume, each integration step checks whether the straight line from the ray's current position, of length reach,
+ * intersects any object in the inside scene.
+ * Such an intersection can only be with an object whose bounding box intersects the bounding box of the cell containing the
+ * ray's current position, expanded by reach on all sides, so only these objects need to be checked.
+ * They are worked out once for each cell when the grid is created, so finding them during an integration step is a table look-up.
+ *
+ * Objects whose bounding box is infinite can be reached from every cell.
+ * If the bounding box of the volume is not finite, the grid consists of a single cell from which all objects can be reached.
+ *
+ * @author Johannes Courtial
+ */
+public class InsideSceneGrid
+{
+	/**
+	 * the maximum number of cells in each direction
+	 */
+	private static final int MAX_CELLS_PER_DIRECTION = 32;
+
+	/**
+	 * the inside scene
+	 */
+	private SceneObject insideScene;
+
+	/**
+	 * the surface of the volume
+	 */
+	private SceneObject surface;
+
+	/**
+	 * the length of the line segments checked for intersections with the inside scene
+	 */
+	private double reach;
+
+	/**
+	 * the modification stamps of the inside scene and of the surface when the grid was created (see SceneObjectContainer.getModificationStamp)
+	 */
+	private long insideSceneModificationStamp, surfaceModificationStamp;
+
+	/**
+	 * the position of the corner of cell (0, 0, 0) with the smallest coordinates
+	 */
+	private double xMin, yMin, zMin;
+
+	/**
+	 * the size of the cells in the x, y and z directions
+	 */
+	private double dx, dy, dz;
+
+	/**
+	 * the number of cells in the x, y and z directions
+	 */
+	private int nx, ny, nz;
+
+	/**
+	 * the objects that can be reached from each cell
+	 */
+	private SceneObject[][] cellObjects;
+
+	/**
+	 * all objects in the inside scene, which can be reached from positions outside the grid
+	 */
+	private SceneObject[] allObjects;
+
+	/**
+	 * @param insideScene	the inside scene
+	 * @param surface	the surface of the volume
+	 * @param reach	the length of the line segments checked for intersections with the inside scene
+	 */
+	public InsideSceneGrid(SceneObject insideScene, SceneObject surface, double reach)
+	{
+		this.insideScene = insideScene;
+		this.surface = surface;
+		this.reach = reach;
+		insideSceneModificationStamp = SceneObjectContainer.getModificationStamp(insideScene);
+		surfaceModificationStamp = SceneObjectContainer.getModificationStamp(surface);
+
+		// the objects in the inside scene, and their bounding boxes
+		ArrayList<SceneObject> objects = new ArrayList<SceneObject>();
+		if(insideScene instanceof SceneObjectContainer)
+		{
+			SceneObjectContainer container = (SceneObjectContainer)insideScene;
+			for(int i=0; i<container.getNumberOfSceneObjects(); i++)
+				if(container.isSceneObjectVisible(i)) objects.add(container.getSceneObject(i));
+		}
+		else objects.add(insideScene);
+		allObjects = objects.toArray(new SceneObject[objects.size()]);
+		AxisAlignedBoundingBox[] boundingBoxes = new AxisAlignedBoundingBox[allObjects.length];
+		for(int o=0; o<allObjects.length; o++) boundingBoxes[o] = allObjects[o].getAxisAlignedBoundingBox();
+
+		// the grid
+		AxisAlignedBoundingBox volumeBox = surface.getAxisAlignedBoundingBox();
+		if(volumeBox.isEmpty() || volumeBox.isInfinite() || !(reach > 0) || Double.isInfinite(reach))
+		{
+			// a single cell, from which all objects can be reached
+			nx = ny = nz = 0;
+			cellObjects = new SceneObject[0][];
+			return;
+		}
+		xMin = volumeBox.getXMin();
+		yMin = volumeBox.getYMin();
+		zMin = volumeBox.getZMin();
+		nx = getNumberOfCells(volumeBox.getXMax() - xMin);
+		ny = getNumberOfCells(volumeBox.getYMax() - yMin);
+		nz = getNumberOfCells(volumeBox.getZMax() - zMin);
+		dx = (volumeBox.getXMax() - xMin) / nx;
+		dy = (volumeBox.getYMax() - yMin) / ny;
+		dz = (volumeBox.getZMax() - zMin) / nz;
+
+		cellObjects = new SceneObject[nx*ny*nz][];
+		for(int iz=0; iz<nz; iz++)
+			for(int iy=0; iy<ny; iy++)
+				for(int ix=0; ix<nx; ix++)
+				{
+					// the region reachable from the cell
+					AxisAlignedBoundingBox reachableBox = new AxisAlignedBoundingBox(
+							xMin + ix*dx, xMin + (ix+1)*dx,
+							yMin + iy*dy, yMin + (iy+1)*dy,
+							zMin + iz*dz, zMin + (iz+1)*dz
+						).getExpanded(reach);
+
+					ArrayList<SceneObject> reachableObjects = new ArrayList<SceneObject>();
+					for(int o=0; o<allObjects.length; o++)
+						if(!boundingBoxes[o].getIntersectionWith(reachableBox).isEmpty()) reachableObjects.add(allObjects[o]);
+					cellObjects[(iz*ny + iy)*nx + ix] = reachableObjects.toArray(new SceneObject[reachableObjects.size()]);
+				}
+	}
+
+	/**
+	 * @param size	the size of the bounding box of the volume in one direction
+	 * @return	the number of cells in that direction, such that the cells are no smaller than reach
+	 */
+	private int getNumberOfCells(double size)
+	{
+		return (int)Math.max(1, Math.min(MAX_CELLS_PER_DIRECTION, Math.floor(size / reach)));
+	}
+
+	/**
+	 * @param insideScene
+	 * @param surface
+	 * @param reach
+	 * @return	true if this grid has been created for the given inside scene, surface and reach,
+	 * and neither the inside scene nor the surface have been modified since (which can only be detected for containers)
+	 */
+	public boolean isFor(SceneObject insideScene, SceneObject surface, double reach)
+	{
+		return
+			(this.insideScene == insideScene) && (this.surface == surface) && (this.reach == reach) &&
+			(insideSceneModificationStamp == SceneObjectContainer.getModificationStamp(insideScene)) &&
+			(surfaceModificationStamp == SceneObjectContainer.getModificationStamp(surface));
+	}
+
+	/**
+	 * @param ray
+	 * @return	the objects that can be reached from the cell containing the ray's start point
+	 */
+	private SceneObject[] getReachableObjects(Ray ray)
+	{
+		int ix = (int)Math.floor((ray.getP().x - xMin)/dx);
+		int iy = (int)Math.floor((ray.getP().y - yMin)/dy);
+		int iz = (int)Math.floor((ray.getP().z - zMin)/dz);
+		if((ix < 0) || (ix >= nx) || (iy < 0) || (iy >= ny) || (iz < 0) || (iz >= nz)) return allObjects;
+		return cellObjects[(iz*ny + iy)*nx + ix];
+	}
+
+	/**
+	 * Find the closest intersection of the ray with the inside scene that is closer than reach to the ray's start point.
+	 * @param ray
+	 * @param record	the record that will hold the intersection
+	 * @return	true if there is such an intersection, false otherwise
+	 */
+	public boolean findClosestRayIntersection(Ray ray, RaySceneObjectIntersectionRecord record)
+	{
+		record.reset(ray, reach);
+		SceneObject[] reachableObjects = getReachableObjects(ray);
+		for(int o=0; o<reachableObjects.length; o++)
+			reachableObjects[o].findClosestRayIntersectionAvoidingOrigin(ray, null, record);
+		return record.isIntersection();
+	}
+}
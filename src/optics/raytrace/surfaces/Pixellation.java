@@ -9,6 +9,7 @@ import optics.raytrace.core.ParametrisedObject;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
+import optics.raytrace.core.Sampler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SurfaceProperty;
 import optics.raytrace.exceptions.EvanescentException;
@@ -255,8 +256,8 @@ public class Pixellation extends SurfaceProperty
 
 			rayStartPosition = Vector3D.sum(
 					rayStartPosition,
-					surfaceCoordinate1Axis.getProductWith(pixelSideLengthU*2.*(Math.random()-0.5)),
-					surfaceCoordinate2Axis.getProductWith(pixelSideLengthV*2.*(Math.random()-0.5))
+					surfaceCoordinate1Axis.getProductWith(pixelSideLengthU*2.*(Sampler.random()-0.5)),
+					surfaceCoordinate2Axis.getProductWith(pixelSideLengthV*2.*(Sampler.random()-0.5))
 				);
 		}
 
@@ -8,6 +8,7 @@ import optics.DoubleColour;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.One2OneParametrisedObject;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -202,6 +203,80 @@ public class RectangularIdealThinLensletArray extends SurfacePropertyPrimitive
 	{
 		if (traceLevel <= 0) return DoubleColour.BLACK;
 		
+		Vector3D newRayDirection;
+		try
+		{
+			newRayDirection = getOutgoingLightRayDirection(ray, i);
+		}
+		catch(EvanescentException e)
+		{
+			// this is normal -- return the reflected ray
+			// (Don't multiply by the transmission coefficient, as this is TIR!)
+			return Reflective.getReflectedColour(ray, i, scene, l, traceLevel-1, raytraceExceptionHandler);
+		}
+
+		// launch a new ray from here
+		return scene.getColourAvoidingOrigin(
+			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
+			i.o,
+			l,
+			scene,
+			traceLevel-1,
+			raytraceExceptionHandler
+		).multiply(
+			getTransmissionCoefficient()
+			// * Math.abs(newRayDirection.getScalarProductWith(n))/dz // cos(angle of new ray with normal) / cos(angle of old ray with normal)
+			//
+			// not sure the intensity scales --- see http://www.astronomy.net/articles/29/
+			// Also, one of the article's reviewers wrote this:
+			// This is also related to the brightening in Fig. 7. In fact, I think that such a brightening should not occur.
+			// It is known that brightness of an object does not change if the object is observed by some non-absorbing optical
+			// instrument. For example, a sun reflected in a curved metallic surface is equally bright as if it is viewed directly.
+			// I expect the same for teleported image. Maybe if the effect of the additional factor in eq. (5) is taken into
+			// account together with the other method of calculation of the ray direction, no brightening will occur.
+		);
+	}
+
+	/**
+	 * Instead of tracing the new ray recursively, describe it in the continuation
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuation(Ray ray, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel,
+			RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation) throws RayTraceException
+	{
+		if (traceLevel <= 0) return DoubleColour.BLACK;
+		
+		Vector3D newRayDirection;
+		try
+		{
+			newRayDirection = getOutgoingLightRayDirection(ray, i);
+		}
+		catch(EvanescentException e)
+		{
+			// TIR; don't multiply by the transmission coefficient
+			return Reflective.getReflectedColourOrContinuation(ray, i, scene, traceLevel-1, continuation);
+		}
+
+		// continue with a new ray from here
+		continuation.continueWith(
+			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
+			i.o,
+			scene,
+			traceLevel-1,
+			getTransmissionCoefficient()
+		);
+		return null;
+	}
+
+	/**
+	 * @param ray
+	 * @param i
+	 * @return	the direction of the light ray leaving the intersection point
+	 */
+	private Vector3D getOutgoingLightRayDirection(Ray ray, RaySceneObjectIntersection i)
+	throws EvanescentException
+	{
 		One2OneParametrisedObject sceneObject = (One2OneParametrisedObject)i.o;
 		
 		// calculate the x and y coordinates of the position; for this to work, the scene object must be sensibly parametrised
@@ -236,46 +311,18 @@ public class RectangularIdealThinLensletArray extends SurfacePropertyPrimitive
 			// first get the surface-coordinate axes
 			ArrayList<Vector3D> surfaceCoordinateAxes = sceneObject.getSurfaceCoordinateAxes(i.p);
 			
-			try
-			{
-				newRayDirection = SingleSlitDiffraction.getDiffractedLightRayDirection(
-						newRayDirection,	// lightRayDirectionBeforeDiffraction
-						lambda,
-						xPeriod,	// pixelSideLengthU
-						yPeriod,	// pixelSideLengthV
-						surfaceCoordinateAxes.get(0),	// uHat
-						surfaceCoordinateAxes.get(1),	// vHat
-						i.o.getNormalisedOutwardsSurfaceNormal(i.p)	// normalisedApertureNormal
-						);
-			}
-			catch(EvanescentException e)
-			{
-				// this is normal -- return the reflected ray
-				// (Don't multiply by the transmission coefficient, as this is TIR!)
-				return Reflective.getReflectedColour(ray, i, scene, l, traceLevel-1, raytraceExceptionHandler);
-			}
+			newRayDirection = SingleSlitDiffraction.getDiffractedLightRayDirection(
+					newRayDirection,	// lightRayDirectionBeforeDiffraction
+					lambda,
+					xPeriod,	// pixelSideLengthU
+					yPeriod,	// pixelSideLengthV
+					surfaceCoordinateAxes.get(0),	// uHat
+					surfaceCoordinateAxes.get(1),	// vHat
+					i.o.getNormalisedOutwardsSurfaceNormal(i.p)	// normalisedApertureNormal
+					);
 		}
 
-		// launch a new ray from here
-		return scene.getColourAvoidingOrigin(
-			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
-			i.o,
-			l,
-			scene,
-			traceLevel-1,
-			raytraceExceptionHandler
-		).multiply(
-			getTransmissionCoefficient()
-			// * Math.abs(newRayDirection.getScalarProductWith(n))/dz // cos(angle of new ray with normal) / cos(angle of old ray with normal)
-			//
-			// not sure the intensity scales --- see http://www.astronomy.net/articles/29/
-			// Also, one of the article's reviewers wrote this:
-			// This is also related to the brightening in Fig. 7. In fact, I think that such a brightening should not occur.
-			// It is known that brightness of an object does not change if the object is observed by some non-absorbing optical
-			// instrument. For example, a sun reflected in a curved metallic surface is equally bright as if it is viewed directly.
-			// I expect the same for teleported image. Maybe if the effect of the additional factor in eq. (5) is taken into
-			// account together with the other method of calculation of the ray direction, no brightening will occur.
-		);
+		return newRayDirection;
 	}
 
 }
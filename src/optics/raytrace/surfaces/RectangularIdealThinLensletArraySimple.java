@@ -5,6 +5,7 @@ import math.Vector3D;
 import optics.DoubleColour;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -241,6 +242,58 @@ public class RectangularIdealThinLensletArraySimple extends SurfacePropertyPrimi
 	{
 		if (traceLevel <= 0) return DoubleColour.BLACK;
 		
+		Vector3D newRayDirection = getOutgoingLightRayDirection(ray, i);
+
+		// launch a new ray from here
+		return scene.getColourAvoidingOrigin(
+			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
+			i.o,
+			l,
+			scene,
+			traceLevel-1,
+			raytraceExceptionHandler
+		).multiply(
+			getTransmissionCoefficient()
+			// * Math.abs(newRayDirection.getScalarProductWith(n))/dz // cos(angle of new ray with normal) / cos(angle of old ray with normal)
+			//
+			// not sure the intensity scales --- see http://www.astronomy.net/articles/29/
+			// Also, one of the article's reviewers wrote this:
+			// This is also related to the brightening in Fig. 7. In fact, I think that such a brightening should not occur.
+			// It is known that brightness of an object does not change if the object is observed by some non-absorbing optical
+			// instrument. For example, a sun reflected in a curved metallic surface is equally bright as if it is viewed directly.
+			// I expect the same for teleported image. Maybe if the effect of the additional factor in eq. (5) is taken into
+			// account together with the other method of calculation of the ray direction, no brightening will occur.
+		);
+	}
+
+	/**
+	 * Instead of tracing the new ray recursively, describe it in the continuation
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuation(Ray ray, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		if (traceLevel <= 0) return DoubleColour.BLACK;
+		
+		// continue with a new ray from here
+		continuation.continueWith(
+			ray.getBranchRay(i.p, getOutgoingLightRayDirection(ray, i), i.t, ray.isReportToConsole()),
+			i.o,
+			scene,
+			traceLevel-1,
+			getTransmissionCoefficient()
+		);
+		return null;
+	}
+
+	/**
+	 * @param ray
+	 * @param i
+	 * @return	the direction of the light ray leaving the intersection point
+	 */
+	private Vector3D getOutgoingLightRayDirection(Ray ray, RaySceneObjectIntersection i)
+	{
 		Vector3D surfaceNormal = i.getNormalisedOutwardsSurfaceNormal();
 		// System.out.println("RectangularIdealThinLensletArraySimple::getColour: surfaceNormal="+surfaceNormal);
 		
@@ -288,26 +341,7 @@ public class RectangularIdealThinLensletArraySimple extends SurfacePropertyPrimi
 						vBasisVector	// vHat
 					));
 		}
-		
-		// launch a new ray from here
-		return scene.getColourAvoidingOrigin(
-			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
-			i.o,
-			l,
-			scene,
-			traceLevel-1,
-			raytraceExceptionHandler
-		).multiply(
-			getTransmissionCoefficient()
-			// * Math.abs(newRayDirection.getScalarProductWith(n))/dz // cos(angle of new ray with normal) / cos(angle of old ray with normal)
-			//
-			// not sure the intensity scales --- see http://www.astronomy.net/articles/29/
-			// Also, one of the article's reviewers wrote this:
-			// This is also related to the brightening in Fig. 7. In fact, I think that such a brightening should not occur.
-			// It is known that brightness of an object does not change if the object is observed by some non-absorbing optical
-			// instrument. For example, a sun reflected in a curved metallic surface is equally bright as if it is viewed directly.
-			// I expect the same for teleported image. Maybe if the effect of the additional factor in eq. (5) is taken into
-			// account together with the other method of calculation of the ray direction, no brightening will occur.
-		);
+
+		return newRayDirection;
 	}
 }
@@ -78,18 +78,10 @@ public class Reflective extends DirectionChanging
 		// check the trace level is positive; if not, return black
 		if (traceLevel <= 0) return DoubleColour.BLACK;
 		
-		// calculate direction of reflected ray
-		Vector3D n = intersection.getNormalisedOutwardsSurfaceNormal();	// surface normal to the object at the intersection point
-		
-		Vector3D newRayDirection = Vector3D.sum(
-			ray.getD(),
-			ray.getD().getProjectionOnto(n).getProductWith(-2)
-		);
-		
 		// launch a new ray from here
 		
 		return scene.getColourAvoidingOrigin(
-			ray.getBranchRay(intersection.p, newRayDirection, intersection.t, ray.isReportToConsole()),	// creating the new ray using the original ray's getSecondaryRay method ensures the ray trajectory is recorded correctly
+			getReflectedRay(ray, intersection),
 			intersection.o,	// the primitive scene object being intersected
 			lights,	// the light source(s)
 			scene,	// the entire scene
@@ -97,6 +89,40 @@ public class Reflective extends DirectionChanging
 			raytraceExceptionHandler
 		);
 	}
+	
+	/**
+	 * Like getReflectedColour, but instead of tracing the reflected ray recursively, describe it in the continuation
+	 * @param ray
+	 * @param intersection
+	 * @param scene
+	 * @param traceLevel
+	 * @param continuation
+	 * @return	black if the trace level is not positive, null otherwise
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(Ray, RaySceneObjectIntersection, SceneObject, LightSource, int, RaytraceExceptionHandler, RayContinuation)
+	 */
+	public static DoubleColour getReflectedColourOrContinuation(Ray ray, RaySceneObjectIntersection intersection, SceneObject scene, int traceLevel, RayContinuation continuation)
+	{
+		// check the trace level is positive; if not, return black
+		if (traceLevel <= 0) return DoubleColour.BLACK;
+		
+		// continue with a new ray from here
+		continuation.continueWith(getReflectedRay(ray, intersection), intersection.o, scene, traceLevel-1, 1);
+		return null;
+	}
+	
+	private static Ray getReflectedRay(Ray ray, RaySceneObjectIntersection intersection)
+	{
+		// calculate direction of reflected ray
+		Vector3D n = intersection.getNormalisedOutwardsSurfaceNormal();	// surface normal to the object at the intersection point
+		
+		Vector3D newRayDirection = Vector3D.sum(
+			ray.getD(),
+			ray.getD().getProjectionOnto(n).getProductWith(-2)
+		);
+		
+		// creating the new ray using the original ray's getSecondaryRay method ensures the ray trajectory is recorded correctly
+		return ray.getBranchRay(intersection.p, newRayDirection, intersection.t, ray.isReportToConsole());
+	}
 
 	
 	public Vector3D getOutgoingLightRayDirection(Ray ray, RaySceneObjectIntersection intersection, SceneObject scene, LightSource lights, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
@@ -127,6 +127,30 @@ public class RefractiveSimple extends SurfacePropertyPrimitive
 			raytraceExceptionHandler
 		).multiply(getTransmissionCoefficient());
 	}
+
+	/**
+	 * Instead of tracing the refracted ray recursively, describe it in the continuation
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuation(Ray ray, RaySceneObjectIntersection i,
+			SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
+	{
+		if(traceLevel <= 0) return DoubleColour.BLACK;
+		
+		Vector3D newRayDirection = getRefractedLightRayDirection(ray, i);
+		
+		// continue with a new ray from here
+		continuation.continueWith(
+			ray.getBranchRay(i.p, newRayDirection, i.t, ray.isReportToConsole()),
+			i.o,
+			scene,
+			traceLevel-1,
+			getTransmissionCoefficient()
+		);
+		return null;
+	}
 	
 	
 	/**
@@ -143,6 +143,7 @@ public class SurfaceOfChenBelinMetricSpace extends SurfaceOfMetricSpace
 	public void setCentre(Vector3D centre) {
 		this.centre = centre;
 		insideScene = null;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getHorizonRadius() {
@@ -152,6 +153,7 @@ public class SurfaceOfChenBelinMetricSpace extends SurfaceOfMetricSpace
 	public void setHorizonRadius(double horizonRadius) {
 		this.horizonRadius = horizonRadius;
 		insideScene = null;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getjParameter() {
@@ -160,6 +162,7 @@ public class SurfaceOfChenBelinMetricSpace extends SurfaceOfMetricSpace
 
 	public void setjParameter(double jParameter) {
 		this.jParameter = jParameter;
+		invalidateEpsilonMuTensorField();
 	}
 
 	
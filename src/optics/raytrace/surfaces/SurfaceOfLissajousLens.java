@@ -28,6 +28,8 @@ public class SurfaceOfLissajousLens extends SurfaceOfRadiallySymmetricRefractive
 
 		this.alpha = alpha;
 		this.beta = beta;
+		invalidateEpsilonMuTensorField();
+		invalidateDeflectionTable();
 	}
 
 	public SurfaceOfLissajousLens(SurfaceOfLissajousLens original) {
@@ -53,6 +55,8 @@ public class SurfaceOfLissajousLens extends SurfaceOfRadiallySymmetricRefractive
 
 	public void setAlpha(double alpha) {
 		this.alpha = alpha;
+		invalidateEpsilonMuTensorField();
+		invalidateDeflectionTable();
 	}
 
 	public double getBeta() {
@@ -61,6 +65,8 @@ public class SurfaceOfLissajousLens extends SurfaceOfRadiallySymmetricRefractive
 
 	public void setBeta(double beta) {
 		this.beta = beta;
+		invalidateEpsilonMuTensorField();
+		invalidateDeflectionTable();
 	}
 
 	
@@ -126,6 +126,7 @@ public class SurfaceOfLuneburgLensMetricSpace extends SurfaceOfMetricSpace
 
 	public void setCentre(Vector3D centre) {
 		this.centre = centre;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getRadius() {
@@ -134,6 +135,7 @@ public class SurfaceOfLuneburgLensMetricSpace extends SurfaceOfMetricSpace
 
 	public void setRadius(double radius) {
 		this.radius = radius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	
@@ -2,18 +2,21 @@ package optics.raytrace.surfaces;
 
 import Jama.Matrix;
 import math.LorentzTransformation;
+import math.Matrix3D;
 import math.MyMath;
 import math.Vector3D;
+import math.ODE.AdaptiveRungeKutta;
 import math.ODE.Derivatives;
-import math.ODE.Euler;
+import math.ODE.FixedStepIntegrator;
 import math.ODE.IntegrationType;
-import math.ODE.RungeKutta;
 import optics.DoubleColour;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Orientation;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RayWithTrajectory;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SurfacePropertyPrimitive;
@@ -76,6 +79,34 @@ implements Derivatives
 	 */
 	protected IntegrationType integrationType;
 	
+	/**
+	 * default value of the tolerance of the adaptive integration types
+	 */
+	public static final double DEFAULT_INTEGRATION_TOLERANCE = 1e-6;
+	
+	/**
+	 * tolerance of the adaptive integration types: in each step, the estimated error of each component f_i of the position and the wave vector
+	 * is kept below integrationTolerance*(1+|f_i|)
+	 */
+	protected double integrationTolerance = DEFAULT_INTEGRATION_TOLERANCE;
+	
+	/**
+	 * if >0, the number of grid points in each direction of a grid covering the bounding box of the surface,
+	 * on which the epsilon-mu tensor and its derivatives get pre-calculated and from which they get interpolated
+	 * (see EpsilonMuTensorField); if 0, the RHS of Hamilton's equations is calculated directly by dXdTau and dKdTau
+	 */
+	protected int tensorFieldGridPoints = 0;
+	
+	/**
+	 * the pre-calculated epsilon-mu tensor field, created when first needed (see getEpsilonMuTensorField)
+	 */
+	private transient volatile EpsilonMuTensorField epsilonMuTensorField;
+	
+	/**
+	 * true if epsilonMuTensorField corresponds to the current parameters
+	 */
+	private transient volatile boolean epsilonMuTensorFieldUpToDate = false;
+	
 	
 
 	/**
@@ -108,6 +139,8 @@ implements Derivatives
 				original.getTransmissionCoefficient(),
 				original.isShadowThrowing()
 			);
+		setIntegrationTolerance(original.getIntegrationTolerance());
+		setTensorFieldGridPoints(original.getTensorFieldGridPoints());
 	}
 	
 	/* (non-Javadoc)
@@ -196,11 +229,27 @@ implements Derivatives
 	 */
 	public double calculateHamiltonian(Vector3D k, Matrix epsilonMuTensor)
 	{
-		Matrix kColumn = k.toJamaColumnVector();
-		Matrix kRow = k.toJamaRowVector();
+		double[][] n = epsilonMuTensor.getArray();
 
 		// H = k.n.k - det(n), where n is the epsilon-mu tensor ([1], Eqn (40) with f(x) = 1)		
-		return kRow.times(epsilonMuTensor.times(kColumn)).get(0, 0) - epsilonMuTensor.det();
+		return Matrix3D.getQuadraticForm(k, n, k) - Matrix3D.getDeterminant(n);
+	}
+	
+	/**
+	 * @param x
+	 * @param k
+	 * @return	the Hamiltonian at position x, interpolated from the pre-calculated epsilon-mu tensor field if there is one
+	 */
+	public double calculateHamiltonian(Vector3D x, Vector3D k)
+	{
+		EpsilonMuTensorField field = getEpsilonMuTensorField();
+		if(field != null)
+		{
+			double h = field.calculateHamiltonian(x, k);
+			if(!Double.isNaN(h)) return h;
+		}
+		
+		return calculateHamiltonian(k, calculateEpsilonMuTensor(x));
 	}
 	
 	
@@ -244,6 +293,10 @@ implements Derivatives
 	 */
 	public void calculateDerivatives(double t, double f[], double dfdt[])
 	{
+		// if possible, interpolate from the pre-calculated epsilon-mu tensor field
+		EpsilonMuTensorField field = getEpsilonMuTensorField();
+		if((field != null) && field.calculateDerivatives(f, dfdt)) return;
+		
 		// the first three values of f[] are the position, ...
 		Vector3D x = new Vector3D(f[0], f[1], f[2]);
 		
@@ -347,15 +400,11 @@ implements Derivatives
 		// System.out.println("SurfaceOfMetricSpace::calculateKAndDFromKP("+kP+", "+n+", "+position+")");
 
 		// calculate the length of the normal component of k, kN
-		Matrix nTensor = calculateEpsilonMuTensor(position);
-		Matrix nColumn = n.toJamaColumnVector();
-		Matrix nRow = n.toJamaRowVector();
-		Matrix kPColumn = kP.toJamaColumnVector();
-		Matrix kPRow = kP.toJamaRowVector();
+		double[][] nTensor = calculateEpsilonMuTensor(position).getArray();
 
-		double a = nRow.times(nTensor.times(nColumn)).get(0, 0);
-		double b = 2.*nRow.times(nTensor.times(kPColumn)).get(0, 0);
-		double c = kPRow.times(nTensor.times(kPColumn)).get(0, 0) - nTensor.det();
+		double a = Matrix3D.getQuadraticForm(n, nTensor, n);
+		double b = 2.*Matrix3D.getQuadraticForm(n, nTensor, kP);
+		double c = Matrix3D.getQuadraticForm(kP, nTensor, kP) - Matrix3D.getDeterminant(nTensor);
 
 		// check the discriminant
 		double d = b*b-4.*a*c;
@@ -485,73 +534,296 @@ implements Derivatives
 	}
 
 	/**
-	 * Inner class for passing around a k vector and a position vector simultaneously
-	 * @author johannes
+	 * The state of the integration along a ray, together with the integrators and their work space.
+	 * Each thread has its own instance (see getIntegration), which gets re-used from ray to ray,
+	 * so that tracing through the volume does not create garbage in every integration step.
 	 */
-	private class KAndX
+	private static class Integration
 	{
-		public Vector3D k, x;
+		/**
+		 * the integration type the integrators are for
+		 */
+		public IntegrationType integrationType;
+		
+		/**
+		 * the integrator if the integration type uses fixed steps, null otherwise
+		 */
+		public FixedStepIntegrator fixedStepIntegrator;
+		
+		/**
+		 * the integrator if the integration type is adaptive, null otherwise
+		 */
+		public AdaptiveRungeKutta rungeKutta;
+		
+		/**
+		 * the position and wave vector at the start of the current step (f) and their change during the step (df);
+		 * for the adaptive integration types, also the derivatives at the start of the step (dfdt),
+		 * the scale against which the integration error is measured (fScal), and work space (fNew)
+		 */
+		public double f[], df[], dfdt[], fScal[], fNew[];
+		
+		/**
+		 * the step size in tau to be attempted next by the adaptive integration types
+		 */
+		public double deltaTauTry;
 		
-		public KAndX(Vector3D k, Vector3D x)
+		/**
+		 * the record of intersections with the inside scene and with the surface of the volume
+		 */
+		public RaySceneObjectIntersectionRecord record;
+		
+		public Integration(IntegrationType integrationType)
 		{
-			this.k = k;
-			this.x = x;
+			this.integrationType = integrationType;
+			fixedStepIntegrator = integrationType.createFixedStepIntegrator();
+			rungeKutta = integrationType.createAdaptiveRungeKutta();
+			f = new double[6];
+			df = new double[6];
+			dfdt = new double[6];
+			fScal = new double[6];
+			fNew = new double[6];
+			record = new RaySceneObjectIntersectionRecord();
+		}
+		
+		/**
+		 * Start integrating from the ray's position and wave vector
+		 * @param r
+		 * @param deltaTau	the step size in tau to be attempted first
+		 * @param derivs
+		 */
+		public void start(Ray r, double deltaTau, Derivatives derivs)
+		{
+			f[0] = r.getP().x;
+			f[1] = r.getP().y;
+			f[2] = r.getP().z;
+			f[3] = r.getK().x;
+			f[4] = r.getK().y;
+			f[5] = r.getK().z;
+			deltaTauTry = deltaTau;
+			
+			// the adaptive integration types need the derivatives at the start of each step
+			if(rungeKutta != null) derivs.calculateDerivatives(0, f, dfdt);
+		}
+		
+		/**
+		 * Take the current step, i.e. add df to f
+		 * @param derivs
+		 */
+		public void acceptStep(Derivatives derivs)
+		{
+			for(int i=0; i<6; i++) f[i] += df[i];
+			
+			// the derivatives at the end of the adaptive integration step are those at the start of the next one
+			if(rungeKutta != null) rungeKutta.calculateDerivativesAtEndOfStep(dfdt, derivs);
+		}
+		
+		/**
+		 * @return	the length of the change in position during the current step
+		 */
+		public double getDeltaXLength()
+		{
+			return Math.sqrt(df[0]*df[0] + df[1]*df[1] + df[2]*df[2]);
+		}
+		
+		/**
+		 * @return	the change in position during the current step
+		 */
+		public Vector3D getDeltaX()
+		{
+			return new Vector3D(df[0], df[1], df[2]);
+		}
+		
+		/**
+		 * @return	the position at the end of the current step
+		 */
+		public Vector3D getXAfterStep()
+		{
+			return new Vector3D(f[0]+df[0], f[1]+df[1], f[2]+df[2]);
+		}
+		
+		/**
+		 * @return	the wave vector at the end of the current step
+		 */
+		public Vector3D getKAfterStep()
+		{
+			return new Vector3D(f[3]+df[3], f[4]+df[4], f[5]+df[5]);
 		}
 	}
+	
+	/**
+	 * the integration state of each thread (see getIntegration)
+	 */
+	private transient ThreadLocal<Integration> integrations;
+	
+	/**
+	 * @return	the integration state of the current thread, set up for the current integration type
+	 */
+	private Integration getIntegration()
+	{
+		if(integrations == null) integrations = new ThreadLocal<Integration>();
+		
+		Integration integration = integrations.get();
+		if((integration == null) || (integration.integrationType != integrationType))
+		{
+			integration = new Integration(integrationType);
+			integrations.set(integration);
+		}
+		return integration;
+	}
 
 	/**
-	 * Calculate deltaX and deltaK, i.e. the change in position and momentum during one integration step
+	 * the objects in the inside scene that can be reached from different parts of the volume, created when first needed (see getInsideSceneGrid)
+	 */
+	private transient volatile InsideSceneGrid insideSceneGrid;
+	
+	/**
+	 * @param insideScene	the inside scene
+	 * @return	the grid of the objects in the inside scene that can be reached within deltaXMax from different parts of the volume,
+	 * which gets created if necessary
+	 */
+	private InsideSceneGrid getInsideSceneGrid(SceneObject insideScene)
+	{
+		// the grid depends only on its parameters, so if two threads create it at the same time, either one can be kept
+		InsideSceneGrid grid = insideSceneGrid;
+		if((grid == null) || !grid.isFor(insideScene, surface, deltaXMax))
+		{
+			grid = new InsideSceneGrid(insideScene, surface, deltaXMax);
+			insideSceneGrid = grid;
+		}
+		return grid;
+	}
+	
+	/**
+	 * Discard the grid of the objects in the inside scene, so that it gets re-calculated when next needed.
+	 * This happens automatically when scene objects get added to, or removed from, the inside scene (if it is a container);
+	 * call this after changing objects in the inside scene in place.
+	 */
+	public void invalidateInsideSceneGrid()
+	{
+		insideSceneGrid = null;
+	}
+	
+	/**
+	 * Calculate the closest intersection of the ray with the surface of the volume,
+	 * looking first only for intersections within a distance maxDistance of the ray's start point
 	 * @param r
-	 * @param deltaTau
-	 * @return	a structure holding deltaK and deltaX
+	 * @param maxDistance
+	 * @param integration	the state of the integration along the ray
+	 * @return	the intersection with the surface, or NO_INTERSECTION if there is none
 	 */
-	private KAndX calculateDeltaKAndDeltaX(Ray r, double deltaTau)
+	private RaySceneObjectIntersection getClosestSurfaceIntersection(Ray r, double maxDistance, Integration integration)
 	{
-		// set everything up to use the methods in math.ODE
+		RaySceneObjectIntersectionRecord record = integration.record;
+		record.reset(r, maxDistance);
+		if(surface.findClosestRayIntersectionAvoidingOrigin(r, null, record)) return record.getRaySceneObjectIntersection();
+		
+		// no intersection within maxDistance, which can happen due to rounding errors; look further
+		return surface.getClosestRayIntersection(r);
+	}
 
-		// collect the three components of the position and the three components of momentum in one array
-		double[] f = new double[6];
+	/**
+	 * Calculate the change in position and wave vector, integration.df, during one integration step of a fixed-step integration type
+	 * @param integration
+	 * @param deltaTau
+	 */
+	private void calculateFixedStep(Integration integration, double deltaTau)
+	{
+		integration.fixedStepIntegrator.calculateIncrement(
+				0,	// t
+				deltaTau,	// dt
+				integration.f,
+				integration.df,
+				this	// model
+			);
+	}
+	
+	/**
+	 * Calculate the change in position and wave vector, integration.df, during one quality-controlled integration step.
+	 * The step is as long as the integration tolerance allows, but (to first order) no longer than deltaXMax.
+	 * @param integration	the state of the integration along the ray; integration.dfdt must hold the derivatives at the start of the step
+	 */
+	private void calculateAdaptiveStep(Integration integration)
+	{
+		double f[] = integration.f, fNew[] = integration.fNew, fScal[] = integration.fScal, dfdt[] = integration.dfdt;
+		for(int i=0; i<6; i++)
+		{
+			fNew[i] = f[i];
+			fScal[i] = 1 + Math.abs(f[i]);
+		}
 
-		// also create an array that will hold the change in position and momentum
-		double[] dfdt = new double[6];
+		// don't attempt a step that is longer than deltaXMax
+		double deltaTauTry = integration.deltaTauTry;
+		if(deltaXMax > 0)
+		{
+			double dXdTauLength = Math.sqrt(dfdt[0]*dfdt[0] + dfdt[1]*dfdt[1] + dfdt[2]*dfdt[2]);
+			if(deltaTauTry*dXdTauLength > deltaXMax) deltaTauTry = deltaXMax / dXdTauLength;
+		}
+		
+		integration.rungeKutta.calculateQualityControlledRungeKuttaStep(
+				fNew,	// f, which gets replaced by its new value
+				dfdt,	// dfdt
+				0,	// t
+				deltaTauTry,	// dttry
+				integrationTolerance,	// eps
+				fScal,	// fscal
+				this	// derivs
+			);
+		integration.deltaTauTry = integration.rungeKutta.getDtNext();
+		
+		for(int i=0; i<6; i++) integration.df[i] = fNew[i] - f[i];
+	}
+	
+	/**
+	 * number of bisections used to locate the point where the ray leaves the volume within an adaptive integration step
+	 */
+	private static final int NUMBER_OF_BISECTIONS = 30;
+	
+	/**
+	 * The latest adaptive integration step has taken the ray from its position inside the volume to a point outside.
+	 * Locate the point where the trajectory crosses the surface by bisection, using the dense output of the step, and move the ray there.
+	 * @param r
+	 * @param integration	the state of the integration along the ray
+	 * @return	the intersection with the surface, or NO_INTERSECTION if there is none (which shouldn't happen)
+	 */
+	private RaySceneObjectIntersection moveRayToSurfaceUsingDenseOutput(Ray r, Integration integration)
+	{
+		AdaptiveRungeKutta rungeKutta = integration.rungeKutta;
+		double f[] = integration.fNew;
+		double thetaInside = 0, thetaOutside = 1;
+		for(int b=0; b<NUMBER_OF_BISECTIONS; b++)
+		{
+			double theta = 0.5*(thetaInside + thetaOutside);
+			rungeKutta.calculateDenseOutput(theta, f, this);
+			if(surface.insideObject(new Vector3D(f[0], f[1], f[2]))) thetaInside = theta;
+			else thetaOutside = theta;
+		}
 
-		// perform one iteration step
-		f[0] = r.getP().x;
-		f[1] = r.getP().y;
-		f[2] = r.getP().z;
-		f[3] = r.getK().x;
-		f[4] = r.getK().y;
-		f[5] = r.getK().z;
+		// the trajectory crosses the surface between the (very close) points at thetaInside and thetaOutside
+		rungeKutta.calculateDenseOutput(thetaOutside, f, this);
+		Vector3D xOutside = new Vector3D(f[0], f[1], f[2]);
+		rungeKutta.calculateDenseOutput(thetaInside, f, this);
+		Vector3D xInside = new Vector3D(f[0], f[1], f[2]);
+		Vector3D kInside = new Vector3D(f[3], f[4], f[5]);
 
-		switch(integrationType)
+		// intersect the straight line between them with the surface...
+		Vector3D dInsideOutside = Vector3D.difference(xOutside, xInside);
+		Ray r2 = r.getBranchRay(xInside, dInsideOutside, r.getT(), r.isReportToConsole());
+		RaySceneObjectIntersection i = getClosestSurfaceIntersection(r2, 2*dInsideOutside.getLength(), integration);
+		if(i == RaySceneObjectIntersection.NO_INTERSECTION)
 		{
-		case EULER:
-			// Euler method
-			Euler.calculateDeltaF(
-					0,	// t
-					deltaTau,	// dt
-					f,
-					dfdt,
-					this	// model
-					);
-			break;
-		case RK4:
-		default:
-			// Runge-Kutta method
-			RungeKutta.calculateDeltaF(
-					0,	// t
-					deltaTau,	// dt
-					f,
-					dfdt,
-					this	// model
-					);
+			// ... or, if that fails, the straight line from the start of the step
+			Vector3D dStartOutside = Vector3D.difference(xOutside, r.getP());
+			r.setD(dStartOutside);
+			i = getClosestSurfaceIntersection(r, 2*dStartOutside.getLength(), integration);
+			if(i == RaySceneObjectIntersection.NO_INTERSECTION) return i;
 		}
 
-		// return the result
-		return new KAndX(
-				new Vector3D(dfdt[3], dfdt[4], dfdt[5]),	// dk
-				new Vector3D(dfdt[0], dfdt[1], dfdt[2])	// dx
-				);
+		// move the ray to the intersection point
+		r.setP(i.p);
+		r.setD(Vector3D.difference(xOutside, xInside));
+		r.setK(kInside);
+		
+		return i;
 	}
 			
 	/**
@@ -578,15 +850,19 @@ implements Derivatives
 			new RayTraceException("Ray's k vector not set").printStackTrace();
 		}
 		
+		// the state of the integration along the ray, starting from the ray's position and wave vector
+		Integration integration = getIntegration();
+		integration.start(r, deltaTau, this);
+		
 		// trace through the metric
 		for(; stepsLeft > 0; stepsLeft--)
 		{
 			// System.out.println("stepsLeft="+stepsLeft);
 			// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: inside steps loop; stepsLeft "+stepsLeft);
 
-			KAndX deltaKDeltaX = calculateDeltaKAndDeltaX(r, deltaTau);
-			Vector3D dX = deltaKDeltaX.x;
-			Vector3D dK = deltaKDeltaX.k;
+			// calculate the change in position and wave vector during the next step
+			if(integration.rungeKutta == null) calculateFixedStep(integration, deltaTau);
+			else calculateAdaptiveStep(integration);
 			
 			// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: initial iteration step taken");
 
@@ -597,86 +873,96 @@ implements Derivatives
 				
 				// check if the light ray intersects with one within the max step length
 				// first set the light-ray direction
-				r.setD(dX);
+				r.setD(integration.getDeltaX());
 
-				// calculate the nearest intersection of the ray with the inside scene
-				RaySceneObjectIntersection i = getInsideScene().getClosestRayIntersection(r);
-			
-				// does the ray intersect the inside scene?
-				if(i != RaySceneObjectIntersection.NO_INTERSECTION)
+				// calculate the nearest intersection of the ray with the inside scene within the max step length,
+				// considering only the objects that can be reached from the ray's current position
+				SceneObject insideScene = getInsideScene();
+				if(getInsideSceneGrid(insideScene).findClosestRayIntersection(r, integration.record))
 				{
-					// yes, but within the max step length?
-					if(Vector3D.getDistance(i.p, r.getP()) <= deltaXMax)
-					{
-						// yes!
-						// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: actual intersection with inside scene");
-						
-						return i.o.getColourAtIntersection(r, i, getInsideScene(), l, traceLevel-1, raytraceExceptionHandler);
-					}
+					// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: actual intersection with inside scene");
 					
-					// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: intersection with inside scene, but not nearby");
+					RaySceneObjectIntersection i = integration.record.getRaySceneObjectIntersection();
+					return i.o.getColourAtIntersection(r, i, insideScene, l, traceLevel-1, raytraceExceptionHandler);
 				}
 			}
 			
 			// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: no intersection with inside scene");
 			
 			// is the step longer than the maximum step length?
-			double deltaX = dX.getLength();
+			double deltaX = integration.getDeltaXLength();
 			if(deltaX > deltaXMax)
 			{
 				// yes; take a step of length 0.5*deltaXMax in the same direction
-				deltaKDeltaX = calculateDeltaKAndDeltaX(r, deltaTau*0.5*deltaXMax / deltaX);
-				dX = deltaKDeltaX.x;
-				dK = deltaKDeltaX.k;
+				if(integration.rungeKutta == null) calculateFixedStep(integration, deltaTau*0.5*deltaXMax / deltaX);
+				else
+				{
+					integration.deltaTauTry = integration.rungeKutta.getDt()*0.5*deltaXMax / deltaX;
+					calculateAdaptiveStep(integration);
+				}
 			}
 			
 			// System.out.println("SurfaceOfMetricSpace:getColourUponStartingWithinVolume: after steplength correction");
 			
 			// calculate the preliminary new position of the ray
-			Vector3D newP = Vector3D.sum(r.getP(), dX);
+			Vector3D newP = integration.getXAfterStep();
 			
 			// does the new intersection point lie outside of the volume?
 			if(!surface.insideObject(newP))
 			{
-				// the new intersection point lies outside of the volume;
-				// calculate the point where the ray leaves the volume and take another, scaled, integration step
+				RaySceneObjectIntersection i;
+				if(integration.rungeKutta != null)
+				{
+					// the new intersection point lies outside of the volume;
+					// locate the point where the ray leaves the volume using the dense output of the integration step and move the ray there
+					i = moveRayToSurfaceUsingDenseOutput(r, integration);
+					if(i == RaySceneObjectIntersection.NO_INTERSECTION)
+					{
+						// there is no intersection; panic!
+						(new RayTraceException("No intersection between ray leaving the volume and the surface of the volume")).printStackTrace();
+						return DoubleColour.YELLOW;
+					}
+				}
+				else
+				{
+					// the new intersection point lies outside of the volume;
+					// calculate the point where the ray leaves the volume and take another, scaled, integration step
 
-				// set the light-ray direction of the ray, ...
-				r.setD(dX);
+					// set the light-ray direction of the ray, ...
+					r.setD(integration.getDeltaX());
 
-				// System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: r.p = "+r.getP()+", newP = "+newP);
+					// System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: r.p = "+r.getP()+", newP = "+newP);
 				
-				// ... calculate the nearest intersection of the ray with the surface, ...
-				RaySceneObjectIntersection i = surface.getClosestRayIntersection(r);
+					// ... calculate the nearest intersection of the ray with the surface, which lies within the step, ...
+					i = getClosestSurfaceIntersection(r, 2*integration.getDeltaXLength(), integration);
 
-				// System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: i.p = "+i.p);
+					// System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: i.p = "+i.p);
 
-				// ... deal with the case of there being no intersection, in case this is necessary, ...
-				if(i == RaySceneObjectIntersection.NO_INTERSECTION)
-				{
-					// there is no intersection; panic!
-					(new RayTraceException("No intersection between ray leaving the volume and the surface of the volume")).printStackTrace();
-					return DoubleColour.YELLOW;
-				}
+					// ... deal with the case of there being no intersection, in case this is necessary, ...
+					if(i == RaySceneObjectIntersection.NO_INTERSECTION)
+					{
+						// there is no intersection; panic!
+						(new RayTraceException("No intersection between ray leaving the volume and the surface of the volume")).printStackTrace();
+						return DoubleColour.YELLOW;
+					}
 
-				// ... leave the volume
-				deltaX = Vector3D.getDistance(i.p, r.getP());
-				if(deltaX > 0.0)
-				{
-					if(deltaX > deltaXMax) (new RayTraceException("deltaX = "+deltaX+" > deltaXMax = "+deltaXMax)).printStackTrace(); // TODO
-					// calculate the value of factor by which dX has to be multiplied to stretch from r.getP to the surface
-					double factor = deltaX / dX.getLength();
-
-					// take a smaller step in the same direction
-					deltaKDeltaX = calculateDeltaKAndDeltaX(r, deltaTau*factor);
-					dX = deltaKDeltaX.x;
-					dK = deltaKDeltaX.k;
-				}
+					// ... leave the volume
+					deltaX = Vector3D.getDistance(i.p, r.getP());
+					if(deltaX > 0.0)
+					{
+						if(deltaX > deltaXMax) (new RayTraceException("deltaX = "+deltaX+" > deltaXMax = "+deltaXMax)).printStackTrace(); // TODO
+						// calculate the value of factor by which dX has to be multiplied to stretch from r.getP to the surface
+						double factor = deltaX / integration.getDeltaXLength();
 
-				// update the ray accordingly
-				r.setP(i.p);
-				r.setD(dX);
-				r.setK(Vector3D.sum(r.getK(), dK));
+						// take a smaller step in the same direction
+						calculateFixedStep(integration, deltaTau*factor);
+					}
+
+					// update the ray accordingly
+					r.setP(i.p);
+					r.setD(integration.getDeltaX());
+					r.setK(integration.getKAfterStep());
+				}
 
 				// System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: hitting surface of volume; H = "+calculateHamiltonian(r.getK(), calculateEpsilonMuTensor(i.p))+" (should be 0)");
 
@@ -710,7 +996,7 @@ implements Derivatives
 					r.setP(i.p);
 					
 					// ...  time, ...
-					dX = Vector3D.difference(i.p, r.getP());					
+					Vector3D dX = Vector3D.difference(i.p, r.getP());					
 					r.setT(r.getT() - Vector3D.scalarProduct(r.getK(), dX));	// TODO is this correct?
 					
 					// ... and wave vector
@@ -735,15 +1021,17 @@ implements Derivatives
 			r.setP(newP);
 			
 			// ...  time, ...
-			r.setT(r.getT() - Vector3D.scalarProduct(r.getK(), dX)/LorentzTransformation.c);	// TODO is this correct?
+			double[] f = integration.f, df = integration.df;
+			r.setT(r.getT() - (f[3]*df[0] + f[4]*df[1] + f[5]*df[2])/LorentzTransformation.c);	// TODO is this correct?
 			
 			// System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: r.getT() = "+r.getT());
 
 			// ... and wave vector
-			r.setK(Vector3D.sum(r.getK(), dK));
+			integration.acceptStep(this);
+			r.setK(new Vector3D(f[3], f[4], f[5]));
 			
 			// quick sanity check
-			double hamiltonian = calculateHamiltonian(r.getK(), calculateEpsilonMuTensor(newP));
+			double hamiltonian = calculateHamiltonian(newP, r.getK());
 			if(Math.abs(hamiltonian) > 0.1) System.out.println("SurfaceOfMetricSpace::getColourUponStartingWithinVolume: Hamiltonian = "+hamiltonian+" != 0");
 			
 //			// set the ray's current light-ray direction (don't normalise, as we need this to be dx / dtau below)
@@ -808,6 +1096,7 @@ implements Derivatives
 
 	public void setSurface(SceneObject surface) {
 		this.surface = surface;
+		invalidateEpsilonMuTensorField();
 	}
 	
 	public double getDeltaTau() {
@@ -841,4 +1130,62 @@ implements Derivatives
 	public void setIntegrationType(IntegrationType integrationType) {
 		this.integrationType = integrationType;
 	}
+
+	public double getIntegrationTolerance() {
+		return integrationTolerance;
+	}
+
+	public void setIntegrationTolerance(double integrationTolerance) {
+		this.integrationTolerance = integrationTolerance;
+	}
+
+	public int getTensorFieldGridPoints() {
+		return tensorFieldGridPoints;
+	}
+
+	/**
+	 * @param tensorFieldGridPoints	if >0, the number of grid points in each direction of the grid on which the epsilon-mu tensor gets pre-calculated;
+	 * memory use is 320 bytes per grid point, i.e. about 10MB for 32 grid points in each direction;
+	 * if 0, the RHS of Hamilton's equations is calculated directly
+	 */
+	public void setTensorFieldGridPoints(int tensorFieldGridPoints) {
+		this.tensorFieldGridPoints = tensorFieldGridPoints;
+		invalidateEpsilonMuTensorField();
+	}
+	
+	/**
+	 * @return	the pre-calculated epsilon-mu tensor field, which gets created if necessary;
+	 * null if tensorFieldGridPoints = 0 or if the surface doesn't have a finite bounding box
+	 */
+	public EpsilonMuTensorField getEpsilonMuTensorField()
+	{
+		if(!epsilonMuTensorFieldUpToDate)
+		{
+			synchronized(this)
+			{
+				if(!epsilonMuTensorFieldUpToDate)
+				{
+					epsilonMuTensorField = null;
+					if((tensorFieldGridPoints > 0) && (surface != null))
+					{
+						AxisAlignedBoundingBox boundingBox = surface.getAxisAlignedBoundingBox();
+						if(!boundingBox.isEmpty() && !boundingBox.isInfinite())
+							epsilonMuTensorField = new EpsilonMuTensorField(this, boundingBox, Math.max(tensorFieldGridPoints, 2));
+					}
+					epsilonMuTensorFieldUpToDate = true;
+				}
+			}
+		}
+		return epsilonMuTensorField;
+	}
+	
+	/**
+	 * Discard the pre-calculated epsilon-mu tensor field, so that it gets re-calculated when next needed.
+	 * Call this after changing any parameter that changes the metric.
+	 */
+	public synchronized void invalidateEpsilonMuTensorField()
+	{
+		epsilonMuTensorFieldUpToDate = false;
+		epsilonMuTensorField = null;
+	}
 }
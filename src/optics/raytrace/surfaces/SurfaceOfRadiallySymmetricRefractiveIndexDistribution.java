@@ -1,9 +1,17 @@
 package optics.raytrace.surfaces;
 
 import Jama.Matrix;
+import math.MyMath;
 import math.Vector3D;
 import math.ODE.IntegrationType;
+import optics.DoubleColour;
+import optics.raytrace.core.LightSource;
+import optics.raytrace.core.Ray;
+import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
+import optics.raytrace.exceptions.RayTraceException;
+import optics.raytrace.sceneObjects.Sphere;
 
 public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends SurfaceOfMetricSpace {
 
@@ -14,6 +22,25 @@ public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends Surfa
 	 */
 	protected Vector3D centre;
 	
+	/**
+	 * if >0, the number of angles of incidence for which the passage of rays through the volume gets pre-calculated (see ImpactParameterDeflectionTable);
+	 * rays that enter the volume from the outside are then traced through it with a single table look-up rather than step by step.
+	 * This requires the surface to be a Sphere centred on the centre of the refractive-index distribution, and no inside scene;
+	 * otherwise, and for rays that start inside the volume, rays are traced step by step.
+	 * If 0, all rays are traced step by step.
+	 */
+	protected int deflectionTableSize = 0;
+	
+	/**
+	 * the pre-calculated deflection table, created when first needed (see getDeflectionTable)
+	 */
+	private transient volatile ImpactParameterDeflectionTable deflectionTable;
+	
+	/**
+	 * true if deflectionTable corresponds to the current parameters
+	 */
+	private transient volatile boolean deflectionTableUpToDate;
+	
 	public SurfaceOfRadiallySymmetricRefractiveIndexDistribution(
 			Vector3D centre,
 			SceneObject surface,
@@ -41,6 +68,9 @@ public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends Surfa
 				original.getTransmissionCoefficient(),
 				original.isShadowThrowing()
 			);
+		setIntegrationTolerance(original.getIntegrationTolerance());
+		setTensorFieldGridPoints(original.getTensorFieldGridPoints());
+		setDeflectionTableSize(original.getDeflectionTableSize());
 	}
 
 	@Override
@@ -56,6 +86,75 @@ public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends Surfa
 
 	public void setCentre(Vector3D centre) {
 		this.centre = centre;
+		invalidateEpsilonMuTensorField();
+		invalidateDeflectionTable();
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.surfaces.SurfaceOfMetricSpace#setSurface(optics.raytrace.core.SceneObject)
+	 */
+	@Override
+	public void setSurface(SceneObject surface) {
+		super.setSurface(surface);
+		invalidateDeflectionTable();
+	}
+
+	/* (non-Javadoc)
+	 * @see optics.raytrace.surfaces.SurfaceOfMetricSpace#setMaxSteps(int)
+	 */
+	@Override
+	public void setMaxSteps(int maxSteps) {
+		super.setMaxSteps(maxSteps);
+		invalidateDeflectionTable();
+	}
+
+	public int getDeflectionTableSize() {
+		return deflectionTableSize;
+	}
+
+	/**
+	 * @param deflectionTableSize	if >0, the number of angles of incidence for which the passage of rays through the volume gets pre-calculated;
+	 * if 0, rays are traced through the volume step by step
+	 */
+	public void setDeflectionTableSize(int deflectionTableSize) {
+		this.deflectionTableSize = deflectionTableSize;
+		invalidateDeflectionTable();
+	}
+	
+	/**
+	 * @return	the pre-calculated deflection table, which gets created if necessary;
+	 * null if deflectionTableSize = 0 or if the surface is not a sphere centred on the centre of the refractive-index distribution
+	 */
+	public ImpactParameterDeflectionTable getDeflectionTable()
+	{
+		if(!deflectionTableUpToDate)
+		{
+			synchronized(this)
+			{
+				if(!deflectionTableUpToDate)
+				{
+					deflectionTable = null;
+					if((deflectionTableSize > 0) && (surface instanceof Sphere) && (centre != null))
+					{
+						Sphere sphere = (Sphere)surface;
+						if(Vector3D.getDistance(sphere.getCentre(), centre) <= MyMath.TINY*sphere.getRadius())
+							deflectionTable = new ImpactParameterDeflectionTable(this, sphere.getRadius(), Math.max(deflectionTableSize, 2), maxSteps);
+					}
+					deflectionTableUpToDate = true;
+				}
+			}
+		}
+		return deflectionTable;
+	}
+	
+	/**
+	 * Discard the pre-calculated deflection table, so that it gets re-calculated when next needed.
+	 * Call this after changing any parameter that changes the refractive-index distribution.
+	 */
+	public synchronized void invalidateDeflectionTable()
+	{
+		deflectionTableUpToDate = false;
+		deflectionTable = null;
 	}
 
 
@@ -83,17 +182,6 @@ public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends Surfa
 	}
 	
 
-//	@Override
-//	public Matrix calculateEpsilonMuTensor(Vector3D x)
-//	{
-//		double n = calculateN(Vector3D.getDistance(x, centre));
-//		
-//		// the elements of the metric tensor
-//		double[][] vals = {{n, 0, 0},{0, n, 0},{0, 0, n}};
-//		
-//		return new Matrix(vals);
-//	}
-
 	@Override
 	public Vector3D dXdTau(Vector3D x, Vector3D k)
 	{
@@ -110,7 +198,7 @@ public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends Surfa
 		double k2 = k.getModSquared();
 		
 		// return x.getProductWith(2*n*n*dndr/r - n*(1-n*n)*dndr/(r*n));
-		return x.getProductWith((-k2+3*n*n)*dndr/r);
+		return Vector3D.difference(x, centre).getProductWith((-k2+3*n*n)*dndr/r);
 	}
 
 	@Override
@@ -131,8 +219,80 @@ public class SurfaceOfRadiallySymmetricRefractiveIndexDistribution extends Surfa
 
 	@Override
 	public Matrix calculateEpsilonMuTensor(Vector3D x) {
-		// TODO Auto-generated method stub
-		return null;
+		double n = calculateN(Vector3D.getDistance(x, centre));
+		
+		// the elements of the epsilon-mu tensor, which is n times the identity matrix, so that H = k.n.k - det(n) = k^2 n - n^3
+		double[][] vals = {{n, 0, 0},{0, n, 0},{0, 0, n}};
+		
+		return new Matrix(vals);
+	}
+	
+	
+	//
+	// SurfaceProperty methods
+	//
+	
+	/**
+	 * If there is a deflection table, trace rays that enter the volume from the outside through it with a single table look-up;
+	 * otherwise trace them step by step.
+	 * @see optics.raytrace.surfaces.SurfaceOfMetricSpace#getColour(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler)
+	 */
+	@Override
+	public DoubleColour getColour(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)
+	throws RayTraceException
+	{
+		if((traceLevel >= 0) && (deflectionTableSize > 0) && (getInsideScene() == null) && !surface.insideObject(r.getP()))
+		{
+			ImpactParameterDeflectionTable table = getDeflectionTable();
+			if(table != null)
+			{
+				// the plane of incidence is spanned by the normalised incident light-ray direction, e1, and e2, the normalised part of
+				// the position of the entry point relative to the centre that is perpendicular to e1
+				Vector3D e1 = r.getD().getNormalised();
+				Vector3D p = Vector3D.difference(i.p, centre);
+				Vector3D e2 = p.getPartPerpendicularTo(e1);
+				double b = e2.getLength();	// the impact parameter
+				e2 = (b == 0)?Vector3D.getANormal(e1).getNormalised():e2.getProductWith(1/b);
+				double alpha = Math.asin(Math.min(b / table.getRadius(), 1));
+				
+				switch(table.getPassage(alpha))
+				{
+				case TRAPPED:
+					return getColourWhenIterationLimitReached().multiply(getTransmissionCoefficient());
+				case EXITS:
+					// rotate the entry point in the plane of incidence, ...
+					double psi = table.getRotationAngle(alpha);
+					double x1 = Vector3D.scalarProduct(p, e1), y1 = b;
+					double cosPsi = Math.cos(psi), sinPsi = Math.sin(psi);
+					Vector3D exitPoint = Vector3D.sum(
+							centre,
+							e1.getProductWith(x1*cosPsi - y1*sinPsi),
+							e2.getProductWith(x1*sinPsi + y1*cosPsi)
+						);
+					
+					// ... calculate the direction of the ray leaving the volume, ...
+					double chi = table.getDeflectionAngle(alpha);
+					Vector3D exitD = Vector3D.sum(e1.getProductWith(Math.cos(chi)), e2.getProductWith(Math.sin(chi)));
+					
+					// ... and trace the ray leaving the volume through the rest of the scene;
+					// multiply by the transmission coefficient twice as the ray has passed through the surface when entering and when leaving the volume
+					Ray rI = r.getBranchRay(i.p, e1, i.t, r.isReportToConsole());
+					return scene.getColourAvoidingOrigin(
+							rI.getBranchRay(exitPoint, exitD, exitD, i.t - table.getTimeDelay(alpha), r.isReportToConsole()).advance(MyMath.TINY),
+							i.o,
+							l,
+							scene,
+							traceLevel-1,
+							raytraceExceptionHandler
+						).multiply(getTransmissionCoefficient()*getTransmissionCoefficient());
+				case UNAVAILABLE:
+				default:
+					// trace the ray step by step
+				}
+			}
+		}
+		
+		return super.getColour(r, i, scene, l, traceLevel, raytraceExceptionHandler);
 	}
 
 }
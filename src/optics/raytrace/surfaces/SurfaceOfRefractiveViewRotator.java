@@ -298,6 +298,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setOcularPlaneNormal(Vector3D ocularPlaneNormal) {
 		this.ocularPlaneNormal = ocularPlaneNormal;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getEyePosition() {
@@ -306,6 +307,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setEyePosition(Vector3D eyePosition) {
 		this.eyePosition = eyePosition;
+		invalidatePixelCache();
 	}
 
 	public SceneObject getViewObject() {
@@ -314,6 +316,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setViewObject(SceneObject viewObject) {
 		this.viewObject = viewObject;
+		invalidatePixelCache();
 	}
 
 	public DerivativeControlType getDerivativeControlType() {
@@ -322,6 +325,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setDerivativeControlType(DerivativeControlType derivativeControlType) {
 		this.derivativeControlType = derivativeControlType;
+		invalidatePixelCache();
 	}
 
 	public double getDerivativeControlThickness() {
@@ -330,6 +334,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setDerivativeControlThickness(double derivativeControlThickness) {
 		this.derivativeControlThickness = derivativeControlThickness;
+		invalidatePixelCache();
 	}
 
 	public double getDerivativeControlRotation() {
@@ -339,6 +344,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setDerivativeControlRotation(double derivativeControlRotation) {
 		this.derivativeControlRotation = derivativeControlRotation;
+		invalidatePixelCache();
 	}
 
 
@@ -348,6 +354,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setRotationAxisDirection(Vector3D rotationAxisDirection) {
 		this.rotationAxisDirection = rotationAxisDirection.getNormalised();
+		invalidatePixelCache();
 	}
 
 	public Vector3D getOcularPlaneCentre() {
@@ -356,6 +363,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setOcularPlaneCentre(Vector3D ocularPlaneCentre) {
 		this.ocularPlaneCentre = ocularPlaneCentre;
+		invalidatePixelCache();
 	}
 
 	public double getRotationAngle() {
@@ -364,6 +372,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setRotationAngle(double rotationAngle) {
 		this.rotationAngle = rotationAngle;
+		invalidatePixelCache();
 	}
 
 	public double getMagnificationFactor() {
@@ -372,6 +381,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setMagnificationFactor(double magnificationFactor) {
 		this.magnificationFactor = magnificationFactor;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector1() {
@@ -380,6 +390,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setPeriodVector1(Vector3D periodVector1) {
 		this.periodVector1 = periodVector1;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector2() {
@@ -388,6 +399,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setPeriodVector2(Vector3D periodVector2) {
 		this.periodVector2 = periodVector2;
+		invalidatePixelCache();
 	}
 
 	@Override
@@ -397,6 +409,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setRefractiveIndex(double refractiveIndex) {
 		this.refractiveIndex = refractiveIndex;
+		invalidatePixelCache();
 	}
 
 	public double getWedgeThickness() {
@@ -405,6 +418,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setWedgeThickness(double wedgeThickness) {
 		this.wedgeThickness = wedgeThickness;
+		invalidatePixelCache();
 	}
 
 
@@ -415,6 +429,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 
 	public void setSurfaceTransmissionCoefficient(double surfaceTransmissionCoefficient) {
 		this.surfaceTransmissionCoefficient = surfaceTransmissionCoefficient;
+		invalidatePixelCache();
 	}
 
 	public int getMaxStepsInArray() {
@@ -660,7 +675,7 @@ public class SurfaceOfRefractiveViewRotator extends SurfaceOfPixelArray
 			throws RayTraceException
 	{
 		// is the ray entering directly into the refractive material?
-		if(getSceneObjectsInPixel(voxelIndices).insideObject(i.p))
+		if(getCachedSceneObjectsInPixel(voxelIndices).insideObject(i.p))
 		{
 			// yes, the ray is entering directly into the refractive material
 			// refract it TODO only refract it when it is entering a refractive component
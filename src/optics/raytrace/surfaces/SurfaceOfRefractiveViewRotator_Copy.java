@@ -300,6 +300,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setOcularPlaneNormal(Vector3D ocularPlaneNormal) {
 		this.ocularPlaneNormal = ocularPlaneNormal;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getEyePosition() {
@@ -308,6 +309,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setEyePosition(Vector3D eyePosition) {
 		this.eyePosition = eyePosition;
+		invalidatePixelCache();
 	}
 
 	public SceneObject getViewObject() {
@@ -316,6 +318,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setViewObject(SceneObject viewObject) {
 		this.viewObject = viewObject;
+		invalidatePixelCache();
 	}
 
 	public DerivativeControlType getDerivativeControlType() {
@@ -324,6 +327,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setDerivativeControlType(DerivativeControlType derivativeControlType) {
 		this.derivativeControlType = derivativeControlType;
+		invalidatePixelCache();
 	}
 
 	public double getDerivativeControlThickness() {
@@ -332,6 +336,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setDerivativeControlThickness(double derivativeControlThickness) {
 		this.derivativeControlThickness = derivativeControlThickness;
+		invalidatePixelCache();
 	}
 
 	public double getDerivativeControlRotation() {
@@ -341,6 +346,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setDerivativeControlRotation(double derivativeControlRotation) {
 		this.derivativeControlRotation = derivativeControlRotation;
+		invalidatePixelCache();
 	}
 
 
@@ -350,6 +356,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setRotationAxisDirection(Vector3D rotationAxisDirection) {
 		this.rotationAxisDirection = rotationAxisDirection.getNormalised();
+		invalidatePixelCache();
 	}
 
 	public Vector3D getOcularPlaneCentre() {
@@ -358,6 +365,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setOcularPlaneCentre(Vector3D ocularPlaneCentre) {
 		this.ocularPlaneCentre = ocularPlaneCentre;
+		invalidatePixelCache();
 	}
 
 	public double getRotationAngle() {
@@ -366,6 +374,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setRotationAngle(double rotationAngle) {
 		this.rotationAngle = rotationAngle;
+		invalidatePixelCache();
 	}
 
 	public double getMagnificationFactor() {
@@ -374,6 +383,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setMagnificationFactor(double magnificationFactor) {
 		this.magnificationFactor = magnificationFactor;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector1() {
@@ -382,6 +392,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setPeriodVector1(Vector3D periodVector1) {
 		this.periodVector1 = periodVector1;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector2() {
@@ -390,6 +401,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setPeriodVector2(Vector3D periodVector2) {
 		this.periodVector2 = periodVector2;
+		invalidatePixelCache();
 	}
 
 	@Override
@@ -399,6 +411,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setRefractiveIndex(double refractiveIndex) {
 		this.refractiveIndex = refractiveIndex;
+		invalidatePixelCache();
 	}
 
 	public double getWedgeThickness() {
@@ -407,6 +420,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setWedgeThickness(double wedgeThickness) {
 		this.wedgeThickness = wedgeThickness;
+		invalidatePixelCache();
 	}
 
 
@@ -417,6 +431,7 @@ public class SurfaceOfRefractiveViewRotator_Copy extends SurfaceOfPixelArray
 
 	public void setSurfaceTransmissionCoefficient(double surfaceTransmissionCoefficient) {
 		this.surfaceTransmissionCoefficient = surfaceTransmissionCoefficient;
+		invalidatePixelCache();
 	}
 
 	public int getMaxStepsInArray() {
@@ -196,6 +196,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setOcularPlaneNormal(Vector3D ocularPlaneNormal) {
 		this.ocularPlaneNormal = ocularPlaneNormal;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getEyePosition() {
@@ -204,6 +205,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setEyePosition(Vector3D eyePosition) {
 		this.eyePosition = eyePosition;
+		invalidatePixelCache();
 	}
 
 	public SceneObject getViewObject() {
@@ -212,6 +214,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setViewObject(SceneObject viewObject) {
 		this.viewObject = viewObject;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getRotationAxisDirection() {
@@ -220,6 +223,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setRotationAxisDirection(Vector3D rotationAxisDirection) {
 		this.rotationAxisDirection = rotationAxisDirection.getNormalised();
+		invalidatePixelCache();
 	}
 
 	public Vector3D getOcularPlaneCentre() {
@@ -228,6 +232,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setOcularPlaneCentre(Vector3D ocularPlaneCentre) {
 		this.ocularPlaneCentre = ocularPlaneCentre;
+		invalidatePixelCache();
 	}
 
 	public double getRotationAngle() {
@@ -236,6 +241,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setRotationAngle(double rotationAngle) {
 		this.rotationAngle = rotationAngle;
+		invalidatePixelCache();
 	}
 
 	public double getMagnificationFactor() {
@@ -244,6 +250,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setMagnificationFactor(double magnificationFactor) {
 		this.magnificationFactor = magnificationFactor;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector1() {
@@ -252,6 +259,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setPeriodVector1(Vector3D periodVector1) {
 		this.periodVector1 = periodVector1;
+		invalidatePixelCache();
 	}
 
 	public Vector3D getPeriodVector2() {
@@ -260,6 +268,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setPeriodVector2(Vector3D periodVector2) {
 		this.periodVector2 = periodVector2;
+		invalidatePixelCache();
 	}
 	
 	@Override
@@ -269,6 +278,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setRefractiveIndex(double refractiveIndex) {
 		this.refractiveIndex = refractiveIndex;
+		invalidatePixelCache();
 	}
 
 	public double getWedgeThickness() {
@@ -277,6 +287,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setWedgeThickness(double wedgeThickness) {
 		this.wedgeThickness = wedgeThickness;
+		invalidatePixelCache();
 	}
 	
 	
@@ -287,6 +298,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 
 	public void setSurfaceTransmissionCoefficient(double surfaceTransmissionCoefficient) {
 		this.surfaceTransmissionCoefficient = surfaceTransmissionCoefficient;
+		invalidatePixelCache();
 	}
 
 	public int getMaxStepsInArray() {
@@ -402,7 +414,7 @@ public class SurfaceOfRefractiveViewRotator_NoDerivativeControl extends SurfaceO
 	throws RayTraceException
 	{
 		// is the ray entering directly into the refractive material?
-		if(getSceneObjectsInPixel(voxelIndices).insideObject(i.p))
+		if(getCachedSceneObjectsInPixel(voxelIndices).insideObject(i.p))
 		{
 			// yes, the ray is entering directly into the refractive material
 			// refract it
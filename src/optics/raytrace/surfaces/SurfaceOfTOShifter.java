@@ -145,6 +145,7 @@ public class SurfaceOfTOShifter extends SurfaceOfMetricSpace
 
 	public void setCentre(Vector3D centre) {
 		this.centre = centre;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getRadius() {
@@ -154,6 +155,7 @@ public class SurfaceOfTOShifter extends SurfaceOfMetricSpace
 	public void setRadius(double radius) {
 		this.radius = radius;
 		radius2 = radius*radius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getInnerRadius() {
@@ -163,6 +165,7 @@ public class SurfaceOfTOShifter extends SurfaceOfMetricSpace
 	public void setInnerRadius(double innerRadius) {
 		this.innerRadius = innerRadius;
 		innerRadius2 = innerRadius*innerRadius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public Vector3D getDelta() {
@@ -171,6 +174,7 @@ public class SurfaceOfTOShifter extends SurfaceOfMetricSpace
 
 	public void setDelta(Vector3D delta) {
 		this.delta = delta;
+		invalidateEpsilonMuTensorField();
 	}
 	
 	public ShiftFunctionType getShiftFunctionType() {
@@ -179,6 +183,7 @@ public class SurfaceOfTOShifter extends SurfaceOfMetricSpace
 
 	public void setShiftFunctionType(ShiftFunctionType shiftFunctionType) {
 		this.shiftFunctionType = shiftFunctionType;
+		invalidateEpsilonMuTensorField();
 	}
 
 	
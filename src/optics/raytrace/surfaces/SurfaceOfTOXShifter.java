@@ -123,6 +123,7 @@ public class SurfaceOfTOXShifter extends SurfaceOfMetricSpace
 
 	public void setCentre(Vector3D centre) {
 		this.centre = centre;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getRadius() {
@@ -131,6 +132,7 @@ public class SurfaceOfTOXShifter extends SurfaceOfMetricSpace
 
 	public void setRadius(double radius) {
 		this.radius = radius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getInnerRadius() {
@@ -139,6 +141,7 @@ public class SurfaceOfTOXShifter extends SurfaceOfMetricSpace
 
 	public void setInnerRadius(double innerRadius) {
 		this.innerRadius = innerRadius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getDeltaX() {
@@ -147,6 +150,7 @@ public class SurfaceOfTOXShifter extends SurfaceOfMetricSpace
 
 	public void setDeltaX(double deltaX) {
 		this.deltaX = deltaX;
+		invalidateEpsilonMuTensorField();
 	}
 	
 	
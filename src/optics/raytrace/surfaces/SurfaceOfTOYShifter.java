@@ -124,6 +124,7 @@ public class SurfaceOfTOYShifter extends SurfaceOfMetricSpace
 
 	public void setCentre(Vector3D centre) {
 		this.centre = centre;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getRadius() {
@@ -132,6 +133,7 @@ public class SurfaceOfTOYShifter extends SurfaceOfMetricSpace
 
 	public void setRadius(double radius) {
 		this.radius = radius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getInnerRadius() {
@@ -140,6 +142,7 @@ public class SurfaceOfTOYShifter extends SurfaceOfMetricSpace
 
 	public void setInnerRadius(double innerRadius) {
 		this.innerRadius = innerRadius;
+		invalidateEpsilonMuTensorField();
 	}
 
 	public double getDeltaY() {
@@ -148,6 +151,7 @@ public class SurfaceOfTOYShifter extends SurfaceOfMetricSpace
 
 	public void setDeltaY(double deltaY) {
 		this.deltaY = deltaY;
+		invalidateEpsilonMuTensorField();
 	}
 	
 	
@@ -136,7 +136,7 @@ public class SurfaceOfVolumeWithColouredVoxelBoundaries extends SurfaceOfVoxella
 		}
 				
 		// check if the intersection is with the surface of the volume
-		if(surface.getSceneObjectPrimitives().contains(i2.o))
+		if(isIntersectionWithSurface(i2))
 		{
 			// the intersection is with the surface; leave the volume
 			return getColourUponLeavingVolume(
@@ -124,7 +124,7 @@ public class SurfaceOfVoxellatedAbsorber extends SurfaceOfVoxellatedVolume
 		DoubleColour c;
 		
 		// check if the intersection is with the surface
-		if(surface.getSceneObjectPrimitives().contains(i2.o))
+		if(isIntersectionWithSurface(i2))
 		{
 			// the intersection is with the surface; leave the volume
 			// (multiply by the transmission coefficient because of attenuation upon entering volume)
@@ -8,7 +8,6 @@ import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.exceptions.RayTraceException;
-import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
 import optics.raytrace.voxellations.Voxellation;
 
 /**
@@ -205,84 +204,28 @@ public abstract class SurfaceOfVoxellatedLensArray extends SurfaceOfVoxellatedVo
 		int[] voxelIndices = getVoxelIndicesInFront(r, i);
 		
 		//
-		// trace the ray through a collection of scene objects that includes the lens and the boundary of the voxel
+		// trace the ray through the lens and the boundary of the voxel
 		//
 		
-		// create a collection of scene objects...
-		SceneObjectContainer s = new SceneObjectContainer(
-				null,	// description
-				null,	// parent
-				null	// studio
-			);
-		
-		// ... and populate it with the surface associated with this surface property...
-		s.addSceneObject(getSurface());
-		
-		// ... and the surfaces of the voxel containing the ray's start position in each of the voxellations...
-		
-		// work with the advanced ray; in case we are starting on the surface of a voxel (as we usually are), this ensures
-		// that we are then well inside the voxel
-		// Ray rA = r.getAdvancedRay(MyMath.TINY);
-		
-		// if(planeSets != null)	// planeSets simply mustn't be null!
-		SceneObjectContainer v = new SceneObjectContainer(null, null, null);
-		
-		for(Voxellation voxellation : voxellations)
-		{
-			try {
-				v.addSceneObject(voxellation.getSurfaceOfVoxel(voxellation.getVoxelIndex(r.getP())));
-			} catch (Exception e) {
-				// not sure under which circumstances this would happen; print the stack trace
-				System.err.println("SurfaceOfVoxellatedLensArray::getColourUponStartingWithinVolume: exception?!");
-				e.printStackTrace();
-			}
-		}
-		s.addSceneObject(v);
-		
-		// add the lens corresponding to this voxel
+		// the lens corresponding to this voxel
 		SceneObject lens = getRefractiveLens(voxelIndices);
-		s.addSceneObject(lens);
 		
-//		return s.getColourAvoidingOrigin(
-//				r,
-//				i.o,	
-//				l,	// lights -- shouldn't matter
-//				s,	// scene
-//				stepsLeft,	// traceLevel,
-//				new SurfaceOfVoxellatedLensArrayRaytraceExceptionHandler(
-//						scene,	// normalScene,
-//						traceLevel,	// normalTraceLevel,
-//						raytraceExceptionHandler	// normalRaytraceExceptionHandler
-//					)	// raytraceExceptionHandler
-//			);
-
 		// for(; stepsLeft >= 0; stepsLeft--)	// gives "dead code" warning, for some reason (?)
 		while(stepsLeft >= 0)
 		{
 			stepsLeft--;
 			
-			// now trace the ray through this collection of scene objects
-			i = s.getClosestRayIntersectionAvoidingOrigin(r, i.o);
-
-			if(i == RaySceneObjectIntersection.NO_INTERSECTION)
-			{
-				// this shouldn't happen
-				throw new RayTraceException("No intersection!?");
-			}
-
-			// deal with the intersection
-			if(surface.getSceneObjectPrimitives().contains(i.o))	// is this intersection with the boundary surface?
-			{
-				// the intersection is with the surface; leave the volume
-				// (multiply by the transmission coefficient because of attenuation upon entering volume)
-				return getColourUponLeavingVolume(
-						r, // .getAdvancedRay(MyMath.TINY),	// advance the ray to avoid intersecting with the origin again
-						i, scene, l, stepsLeft, traceLevel, raytraceExceptionHandler);
-			}
-			else if(lens.getSceneObjectPrimitives().contains(i.o))	// is the intersection with the lens?
+			// now find the first intersection with the surface associated with this surface property, the surfaces of the voxel, and the lens
+			RaySceneObjectIntersection iLens = lens.getClosestRayIntersectionAvoidingOrigin(r, i.o);
+			i = getIntersectionWithVoxelSurface(r, voxelIndices, i.o);
+			
+			if(
+					(iLens != RaySceneObjectIntersection.NO_INTERSECTION) &&
+					((i == RaySceneObjectIntersection.NO_INTERSECTION) || (Vector3D.getDistance(r.getP(), iLens.p) < Vector3D.getDistance(r.getP(), i.p)))
+				)
 			{
 				// intersection is with the lens
-				// return DoubleColour.GREEN;
+				i = iLens;
 				
 				RefractiveSimple refractiveSurfaceProperty = (RefractiveSimple)(i.o.getSurfaceProperty());
 				
@@ -297,22 +240,23 @@ public abstract class SurfaceOfVoxellatedLensArray extends SurfaceOfVoxellatedVo
 						r.isReportToConsole()
 				);
 			}
-			else if(v.getSceneObjectPrimitives().contains(i.o))	// is the intersection with the voxellation surfaces?
+			else if(i == RaySceneObjectIntersection.NO_INTERSECTION)
 			{
-				// the intersection is with one of the surfaces separating neighbouring voxels
-				// return DoubleColour.CYAN;
-				
-				return getColourUponIntersectingWithVoxelBoundary(r, i, scene, l, stepsLeft, traceLevel, raytraceExceptionHandler);
-
-				// trace through the next voxel
-				// return getColourUponStartingWithinVolume(r, i, scene, l, stepsLeft-1, traceLevel, raytraceExceptionHandler);
-				//System.out.println("SurfaceOfVoxellatedLensArray::getColourUponStartingWithinVolume: i.p="+i);
-//				return getColourUponStartingWithinVolume(r.getAdvancedRay(MyMath.TINY), i, scene, l, stepsLeft, traceLevel, raytraceExceptionHandler);
+				// this shouldn't happen
+				throw new RayTraceException("No intersection!?");
+			}
+			else if(isIntersectionWithSurface(i))	// is this intersection with the boundary surface?
+			{
+				// the intersection is with the surface; leave the volume
+				// (multiply by the transmission coefficient because of attenuation upon entering volume)
+				return getColourUponLeavingVolume(
+						r, // .getAdvancedRay(MyMath.TINY),	// advance the ray to avoid intersecting with the origin again
+						i, scene, l, stepsLeft, traceLevel, raytraceExceptionHandler);
 			}
 			else
 			{
-				// Don't know what is happening here
-				throw new RayTraceException("Ray intersects with nothing!?");
+				// the intersection is with one of the surfaces separating neighbouring voxels
+				return getColourUponIntersectingWithVoxelBoundary(r, i, scene, l, stepsLeft, traceLevel, raytraceExceptionHandler);
 			}
 			
 			// if this code is reached, the intersection was with the lens;
@@ -116,7 +116,7 @@ public class SurfaceOfVoxellatedMetric extends SurfaceOfVoxellatedVolume
 
 		try {
 			// check if the intersection is with the surface
-			if(surface.getSceneObjectPrimitives().contains(i2.o))
+			if(isIntersectionWithSurface(i2))
 			{
 				// the intersection is with the surface; leave the volume
 				// (multiply by the transmission coefficient because of attenuation upon entering volume)
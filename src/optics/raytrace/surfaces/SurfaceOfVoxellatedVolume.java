@@ -3,11 +3,11 @@ package optics.raytrace.surfaces;
 import math.MyMath;
 import math.Vector3D;
 import optics.DoubleColour;
-import optics.raytrace.GUI.sceneObjects.EditableSceneObjectCollection;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Orientation;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
 import optics.raytrace.core.RayWithTrajectory;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -15,6 +15,7 @@ import optics.raytrace.core.SceneObjectPrimitive;
 import optics.raytrace.core.SurfacePropertyPrimitive;
 import optics.raytrace.exceptions.RayTraceException;
 import optics.raytrace.sceneObjects.solidGeometry.SceneObjectContainer;
+import optics.raytrace.voxellations.VoxelBoundary;
 import optics.raytrace.voxellations.Voxellation;
 
 /**
@@ -34,6 +35,8 @@ import optics.raytrace.voxellations.Voxellation;
  * Then calculate the first intersection of the ray with this scene.
  * At each surface, affect the ray in whichever way the represented voxel would affect the ray.
  * Keep doing this until the ray ends up on the boundary surface.
+ * Where a voxellation can calculate the distance to the boundary of the voxel analytically
+ * (see Voxellation::getDistanceToVoxelBoundary), its surfaces are not actually constructed.
  * 
  * @author Johannes Courtial
  */
@@ -46,6 +49,11 @@ public abstract class SurfaceOfVoxellatedVolume extends SurfacePropertyPrimitive
 	 */
 	protected Voxellation[] voxellations;
 	
+	/**
+	 * the voxel boundaries of each voxellation, which are the scene objects of intersections with voxel boundaries
+	 */
+	protected VoxelBoundary[] voxelBoundaries;
+	
 	/**
 	 * the (surface of the) scene-object this surface property is associated with
 	 */
@@ -201,38 +209,64 @@ public abstract class SurfaceOfVoxellatedVolume extends SurfacePropertyPrimitive
 	 */
 	protected RaySceneObjectIntersection getIntersectionWithVoxelSurface(Ray r, SceneObjectPrimitive originObject)
 	{
-		// create a collection of scene objects...
-		SceneObjectContainer s = getVoxelSurface(r.getP());
+		RaySceneObjectIntersection i = getIntersectionWithVoxelSurface(r, getVoxelIndices(r.getP()), null); // was originObject);
 		
-		// quick check
-		if(!s.insideObject(r.getP()))
+		if(i == RaySceneObjectIntersection.NO_INTERSECTION)
 		{
-			new RayTraceException("r.getP() is not inside the surface of the pixel constructed around it?!").printStackTrace();
+			new RayTraceException("SurfaceOfVoxellatedVolume::getIntersectionWithVoxelSurface: no intersection with voxel surface.").printStackTrace();
+			System.out.println("ray = " + r);
 		}
 		
-		RaySceneObjectIntersection i = s.getClosestRayIntersectionAvoidingOrigin(r, null); // was originObject);
+		return i;
+	}
+	
+	/**
+	 * Calculates the first intersection between the ray and either the bounding surface or the surface of the voxel
+	 * with indices <i>voxelIndices</i>.
+	 * Where a voxellation can calculate the distance to the voxel boundary analytically, no scene objects are constructed;
+	 * an intersection with such a voxel boundary is with the voxellation's VoxelBoundary.
+	 * @param r	the ray
+	 * @param voxelIndices	the indices of the voxel the ray is travelling through
+	 * @param originObject	the scene object on which the ray starts, if any
+	 * @return	the first intersection
+	 */
+	protected RaySceneObjectIntersection getIntersectionWithVoxelSurface(Ray r, int[] voxelIndices, SceneObjectPrimitive originObject)
+	{
+		RaySceneObjectIntersectionRecord record = new RaySceneObjectIntersectionRecord(r);
 		
-		if(i == RaySceneObjectIntersection.NO_INTERSECTION)
+		// the intersection with the surface associated with this surface property...
+		surface.findClosestRayIntersectionAvoidingOrigin(r, originObject, record);
+		
+		// ... and the surfaces of the voxel the ray is travelling through in each of the voxellations
+		for(int v=0; v<voxellations.length; v++)
 		{
-			new RayTraceException("SurfaceOfVoxellatedVolume::getIntersectionWithVoxelSurface: no intersection with voxel surface.").printStackTrace();
-			System.out.println("ray = " + r);
-			for(int j = 0; j < s.getNumberOfSceneObjects(); j++)
+			double distance;
+			if(originObject == voxelBoundaries[v])
+			{
+				// the ray starts on one of this voxellation's voxel boundaries; make sure it doesn't intersect that again
+				distance = voxellations[v].getDistanceToVoxelBoundary(
+						Vector3D.sum(r.getP(), r.getD().getProductWith(MyMath.TINY)),
+						r.getD(),
+						voxelIndices[v]
+					) + MyMath.TINY;
+			}
+			else distance = voxellations[v].getDistanceToVoxelBoundary(r.getP(), r.getD(), voxelIndices[v]);
+
+			if(Double.isNaN(distance))
 			{
-				SceneObject s2 = s.getSceneObject(j);
-				if(s2 instanceof EditableSceneObjectCollection)
-				{
-					for(int k = 0; k < ((EditableSceneObjectCollection)s2).getNumberOfSceneObjects(); k++)
-					{
-						System.out.println("      "+k+": "+((EditableSceneObjectCollection)s2).getSceneObject(k));
-					}
+				// the voxellation can't calculate the distance analytically; intersect the ray with the surface of the voxel instead
+				try {
+					record.record(voxellations[v].getSurfaceOfVoxel(voxelIndices[v]).getClosestRayIntersection(r));
+				} catch (Exception e) {
+					// not sure under which circumstances this would happen; print the stack trace
+					System.err.println("SurfaceOfVoxellatedVolume::getIntersectionWithVoxelSurface: exception?!");
+					e.printStackTrace();
 				}
-				else System.out.println("  "+j+": "+s.getSceneObject(j));
 			}
-			// System.exit(-1);
+			else record.record(distance, voxelBoundaries[v]);
 		}
-		
-		// then find the intersection of the ray with this collection of scene objects
-		return i;
+
+		return record.getRaySceneObjectIntersection();
 	}
 	
 	
@@ -289,6 +323,16 @@ public abstract class SurfaceOfVoxellatedVolume extends SurfacePropertyPrimitive
 		return index;
 	}
 
+	/**
+	 * @param i	an intersection returned by getIntersectionWithVoxelSurface
+	 * @return	true if the intersection is with the surface associated with this surface property, false if it is with a voxel boundary
+	 */
+	public boolean isIntersectionWithSurface(RaySceneObjectIntersection i)
+	{
+		if(i.o instanceof VoxelBoundary) return false;
+		return surface.getSceneObjectPrimitives().contains(i.o);
+	}
+
 	/**
 	 * @param r
 	 * @param i
@@ -326,6 +370,13 @@ public abstract class SurfaceOfVoxellatedVolume extends SurfacePropertyPrimitive
 
 	public void setVoxellations(Voxellation[] voxellations) {
 		this.voxellations = voxellations;
+		
+		if(voxellations == null) voxelBoundaries = null;
+		else
+		{
+			voxelBoundaries = new VoxelBoundary[voxellations.length];
+			for(int v=0; v<voxellations.length; v++) voxelBoundaries[v] = new VoxelBoundary(voxellations[v]);
+		}
 	}
 
 	public SceneObject getSurface() {
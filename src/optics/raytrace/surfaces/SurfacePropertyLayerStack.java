@@ -4,6 +4,7 @@ import optics.DoubleColour;
 import optics.raytrace.core.LightSource;
 import optics.raytrace.core.Orientation;
 import optics.raytrace.core.Ray;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
@@ -74,6 +75,30 @@ public class SurfacePropertyLayerStack extends SurfacePropertyContainer
 	@Override
 	public DoubleColour getColour(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler)   //Ray r is the incoming light ray
 	throws RayTraceException
+	{
+		RayContinuation continuation = new RayContinuation();
+		DoubleColour colour = getColourOrContinuation(r, i, scene, l, traceLevel, raytraceExceptionHandler, continuation);
+		if(colour != null) return colour;
+		
+		// the ray has been redirected; trace it further
+		return continuation.getColour(continuation.getScene().getColourAvoidingOrigin(
+				continuation.getRay(),
+				continuation.getOriginObject(),
+				l,
+				continuation.getScene(),
+				continuation.getTraceLevel(),
+				raytraceExceptionHandler
+			));
+	}
+
+	/**
+	 * Passes the ray on to the next layer (which might describe the continuation of the ray), or, if the ray is leaving the stack,
+	 * describes the continuation of the ray in the scene outside the stack
+	 * @see optics.raytrace.core.SurfaceProperty#getColourOrContinuation(optics.raytrace.core.Ray, optics.raytrace.core.RaySceneObjectIntersection, optics.raytrace.core.SceneObject, optics.raytrace.core.LightSource, int, optics.raytrace.core.RaytraceExceptionHandler, optics.raytrace.core.RayContinuation)
+	 */
+	@Override
+	public DoubleColour getColourOrContinuation(Ray r, RaySceneObjectIntersection i, SceneObject scene, LightSource l, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+	throws RayTraceException
 	{
 		if(traceLevel <= 0) return DoubleColour.BLACK;
 		
@@ -99,26 +124,27 @@ public class SurfacePropertyLayerStack extends SurfacePropertyContainer
 
 				scene = insideOfSurfacePropertyLayerStack.getParent();
 				
-				return scene.getColourAvoidingOrigin(
+				continuation.continueWith(
 						r,
 						i.o,
-						l,
 						scene,
 						traceLevel-1,
-						raytraceExceptionHandler
+						1
 					);
+				return null;
 			}
 			else
 			{
 				// System.out.println("Ray = "+r);
 				SurfaceProperty surfaceProperty = surfaceProperties.get(indexOfCurrentLayer);
-		        return surfaceProperty.getColour(
+		        return surfaceProperty.getColourOrContinuation(
 		        		r,
 		        		i,
 		        		insideOfSurfacePropertyLayerStack,
 		        		l,
 		        		traceLevel-1,
-		        		raytraceExceptionHandler
+		        		raytraceExceptionHandler,
+		        		continuation
 		        	);
 			}
 		}
@@ -138,7 +164,7 @@ public class SurfacePropertyLayerStack extends SurfacePropertyContainer
 					scene.getStudio()
 				);
 			SurfaceProperty surfaceProperty = surfaceProperties.get(indexOfCurrentLayer);
-	        return surfaceProperty.getColour(r, i, insideOfSurfacePropertyLayerStack, l, traceLevel-1, raytraceExceptionHandler);
+	        return surfaceProperty.getColourOrContinuation(r, i, insideOfSurfacePropertyLayerStack, l, traceLevel-1, raytraceExceptionHandler, continuation);
 		}
 	}	
 }
@@ -2,6 +2,7 @@ package optics.raytrace.surfaces.diffraction;
 
 import math.InterpolatedFunction1D;
 import math.Vector3D;
+import optics.raytrace.core.Sampler;
 import optics.raytrace.exceptions.EvanescentException;
 import optics.raytrace.exceptions.InconsistencyException;
 import optics.raytrace.surfaces.PhaseHologram;
@@ -257,7 +258,7 @@ public class CircularApertureDiffraction
 
 	public static double getRandomSinTheta(double lambda, double r)
 	{
-		return calculateSinTheta(lambda, r, Math.random());
+		return calculateSinTheta(lambda, r, Sampler.random());
 	}
 
 
@@ -276,7 +277,7 @@ public class CircularApertureDiffraction
 
 		//Fully randomise the radial direction vector the light ray gets diffracted for...
 		//...start by getting a random angle between 0 and 2pi...
-		double randomAngle = 2*Math.PI*Math.random();
+		double randomAngle = 2*Math.PI*Sampler.random();
 		//... and produce the corresponding direction vector.
 		Vector3D rHat = Vector3D.sum(aHat.getProductWith(Math.sin(randomAngle)), bHat.getProductWith(Math.cos(randomAngle)));
 
@@ -2,6 +2,7 @@ package optics.raytrace.surfaces.diffraction;
 
 import math.InterpolatedFunction1D;
 import math.Vector3D;
+import optics.raytrace.core.Sampler;
 import optics.raytrace.exceptions.EvanescentException;
 import optics.raytrace.exceptions.InconsistencyException;
 import optics.raytrace.surfaces.PhaseHologram;
@@ -377,7 +378,7 @@ public class SingleSlitDiffraction
 	
 	public static double getRandomSinTheta(double lambda, double w)
 	{
-		return calculateSinTheta(lambda, w, Math.random());
+		return calculateSinTheta(lambda, w, Sampler.random());
 	}
 	
 	public static Vector3D getTangentialDirectionComponentChange(
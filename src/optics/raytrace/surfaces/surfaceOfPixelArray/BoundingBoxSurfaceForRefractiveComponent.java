@@ -43,7 +43,7 @@ public class BoundingBoxSurfaceForRefractiveComponent extends BoundingBoxSurface
 		double t = 1;
 		
 		// is the ray leaving from the refractive material (typically through the side)?
-		if(surfaceOfPixelArray.getSceneObjectsInPixel(voxelIndices).insideObject(i.p))
+		if(surfaceOfPixelArray.getCachedSceneObjectsInPixel(voxelIndices).insideObject(i.p))
 		{
 			
 			
@@ -1,5 +1,11 @@
 package optics.raytrace.surfaces.surfaceOfPixelArray;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.RecursiveAction;
+
 import math.Vector3D;
 import optics.DoubleColour;
 import optics.raytrace.core.LightSource;
@@ -8,6 +14,7 @@ import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
 import optics.raytrace.core.RayWithTrajectory;
 import optics.raytrace.core.RaytraceExceptionHandler;
+import optics.raytrace.core.RenderScheduler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SurfaceProperty;
 import optics.raytrace.exceptions.RayTraceException;
@@ -19,6 +26,12 @@ import optics.raytrace.voxellations.SetOfSurfaces.OutwardsNormalOrientation;
 /**
  * Surface around a voxellated volume in which each voxel contains a number of components.
  * 
+ * The components in a pixel, built by getSceneObjectsInPixel, are kept in a bounded cache,
+ * from which the least recently used pixels get removed when it is full.
+ * The cache can be shared by the threads of a render, and can be filled in parallel before the render starts
+ * (see prebuildPixelCache).
+ * Subclasses must call invalidatePixelCache whenever a parameter that affects the components in the pixels changes.
+ * 
  * @author Johannes Courtial, Maik Locher
  */
 public abstract class SurfaceOfPixelArray extends SurfaceProperty
@@ -45,6 +58,21 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 	 */
 	private int maxStepsInArray;
 	
+	/**
+	 * default value of the maximum number of pixels whose components are cached
+	 */
+	public static final int DEFAULT_PIXEL_CACHE_CAPACITY = 65536;
+
+	/**
+	 * maximum number of pixels whose components are cached; 0 switches caching off
+	 */
+	private int pixelCacheCapacity = DEFAULT_PIXEL_CACHE_CAPACITY;
+
+	/**
+	 * the cache of the components in the pixels, created when first needed
+	 */
+	private transient PixelCache pixelCache;
+
 
 	public SurfaceOfPixelArray(
 			SetOfSurfaces[] voxellations,
@@ -71,6 +99,7 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 				original.getScene(),
 				original.getMaxStepsInArray()
 				);
+		setPixelCacheCapacity(original.getPixelCacheCapacity());
 	}
 
 
@@ -81,6 +110,190 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 	 * @return	the SceneObject representing the refractive lens corresponding to the voxel with the given voxelIndices
 	 */
 	public abstract SceneObject getSceneObjectsInPixel(int[] voxelIndices);
+	
+	
+	// the cache of the components in the pixels
+	
+	/**
+	 * A map from voxel indices to the components in the corresponding pixel, with space for a limited number of pixels.
+	 * It is ordered by access, so that the eldest entry, which gets removed when the map is full, is the least recently used pixel.
+	 * The map itself is not thread-safe; synchronise on it.
+	 */
+	private static class PixelCache extends LinkedHashMap<VoxelIndices, SceneObject>
+	{
+		private static final long serialVersionUID = 6542373914217306416L;
+
+		private final int capacity;
+
+		/**
+		 * the number of times the cache has been invalidated; components built before the latest invalidation don't get cached
+		 */
+		private int generation = 0;
+
+		public PixelCache(int capacity)
+		{
+			super(16, 0.75f, true);	// access order
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<VoxelIndices, SceneObject> eldest)
+		{
+			return size() > capacity;
+		}
+	}
+	
+	/**
+	 * The voxel indices of a pixel, in a form suitable as a key of a map
+	 */
+	private static class VoxelIndices
+	{
+		private final int[] indices;
+		private final int hashCode;
+
+		public VoxelIndices(int[] indices)
+		{
+			this.indices = indices.clone();
+			hashCode = Arrays.hashCode(indices);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			return (o instanceof VoxelIndices) && Arrays.equals(indices, ((VoxelIndices)o).indices);
+		}
+	}
+	
+	/**
+	 * @return	the cache, which gets created the first time this method is called
+	 */
+	private synchronized PixelCache getPixelCache()
+	{
+		if(pixelCache == null) pixelCache = new PixelCache(pixelCacheCapacity);
+		return pixelCache;
+	}
+
+	/**
+	 * Use this instead of getSceneObjectsInPixel when tracing rays through the pixels.
+	 * @param voxelIndices
+	 * @return	the (cached) SceneObject representing the components in the voxel with the given voxelIndices
+	 * @see optics.raytrace.surfaces.surfaceOfPixelArray.SurfaceOfPixelArray#getSceneObjectsInPixel(int[])
+	 */
+	public SceneObject getCachedSceneObjectsInPixel(int[] voxelIndices)
+	{
+		if(pixelCacheCapacity <= 0) return getSceneObjectsInPixel(voxelIndices);
+
+		PixelCache cache = getPixelCache();
+		VoxelIndices key = new VoxelIndices(voxelIndices);
+		int generation;
+		synchronized(cache)
+		{
+			SceneObject sceneObjectsInPixel = cache.get(key);
+			if(sceneObjectsInPixel != null) return sceneObjectsInPixel;
+			generation = cache.generation;
+		}
+
+		// build the components outside the lock, so that other threads can build other pixels in the meantime;
+		// if two threads build the same pixel, both results are equivalent
+		SceneObject sceneObjectsInPixel = getSceneObjectsInPixel(voxelIndices);
+		// the cached components are shared by all rays (and threads), so give them a fixed parent rather than the "pixel scene" of any one ray
+		sceneObjectsInPixel.setParent(boundingBox);
+		synchronized(cache)
+		{
+			if(cache.generation == generation) cache.put(key, sceneObjectsInPixel);
+		}
+		return sceneObjectsInPixel;
+	}
+
+	/**
+	 * Discard all cached pixel components.
+	 * Call this whenever a parameter that affects the components in the pixels has changed.
+	 */
+	public void invalidatePixelCache()
+	{
+		PixelCache cache;
+		synchronized(this)
+		{
+			cache = pixelCache;
+		}
+		if(cache == null) return;	// nothing has been cached (e.g. because caching is switched off), so there is nothing to discard
+
+		synchronized(cache)
+		{
+			cache.clear();
+			cache.generation++;
+		}
+	}
+
+	/**
+	 * Build the components in all pixels whose voxel indices lie in the given range, in parallel on the render pool,
+	 * and put them in the cache.
+	 * Call this (optionally) before the render starts, so that the render doesn't have to build the components itself;
+	 * the cache capacity should be at least the number of pixels in the range.
+	 * @param minVoxelIndices	minimum voxel indices (inclusive)
+	 * @param maxVoxelIndices	maximum voxel indices (inclusive)
+	 */
+	public void prebuildPixelCache(int[] minVoxelIndices, int[] maxVoxelIndices)
+	{
+		if(pixelCacheCapacity <= 0) return;
+
+		// list all voxel indices in the range
+		ArrayList<int[]> pixels = new ArrayList<int[]>();
+		int[] voxelIndices = minVoxelIndices.clone();
+		if(voxelIndices.length == 0) return;
+		for(int v=0; v<voxelIndices.length; v++) if(minVoxelIndices[v] > maxVoxelIndices[v]) return;
+		while(true)
+		{
+			pixels.add(voxelIndices.clone());
+
+			// advance to the next voxel indices
+			int v = voxelIndices.length - 1;
+			while((v >= 0) && (voxelIndices[v] == maxVoxelIndices[v]))
+			{
+				voxelIndices[v] = minVoxelIndices[v];
+				v--;
+			}
+			if(v < 0) break;
+			voxelIndices[v]++;
+		}
+
+		RenderScheduler.getPool().invoke(new PixelRangeTask(pixels, 0, pixels.size()));
+	}
+
+	/**
+	 * The task of building the components in a range of pixels, splitting itself into two halves if the range contains more than one pixel
+	 */
+	private class PixelRangeTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = -3216738573000742962L;
+
+		private final ArrayList<int[]> pixels;
+		private final int first, last;	// the range is first (inclusive) to last (exclusive)
+
+		public PixelRangeTask(ArrayList<int[]> pixels, int first, int last)
+		{
+			this.pixels = pixels;
+			this.first = first;
+			this.last = last;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if(last - first > 1)
+			{
+				int middle = (first + last) / 2;
+				invokeAll(new PixelRangeTask(pixels, first, middle), new PixelRangeTask(pixels, middle, last));
+			}
+			else if(last > first) getCachedSceneObjectsInPixel(pixels.get(first));
+		}
+	}
 
 	public SurfaceSeparatingVoxels getSurfaceSeparatingVoxels(
 			int voxellationIndicesOnInside[],
@@ -158,6 +371,7 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 
 	public void setVoxellations(SetOfSurfaces[] voxellations) {
 		this.voxellations = voxellations;
+		invalidatePixelCache();
 	}
 
 	public SceneObject getBoundingBox()
@@ -168,6 +382,7 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 	public void setBoundingBox(SceneObject boundingBox)
 	{
 		this.boundingBox = boundingBox;
+		invalidatePixelCache();
 	}
 
 	public SceneObject getScene() {
@@ -186,6 +401,19 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 		this.maxStepsInArray = maxStepsInArray;
 	}
 
+	public int getPixelCacheCapacity() {
+		return pixelCacheCapacity;
+	}
+
+	/**
+	 * Set the maximum number of pixels whose components are cached, discarding all cached pixel components
+	 * @param pixelCacheCapacity	0 switches caching off
+	 */
+	public synchronized void setPixelCacheCapacity(int pixelCacheCapacity) {
+		this.pixelCacheCapacity = pixelCacheCapacity;
+		pixelCache = null;
+	}
+
 
 	//
 	// SurfaceProperty methods
@@ -296,8 +524,9 @@ public abstract class SurfaceOfPixelArray extends SurfaceProperty
 		}
 
 		// add the refractive component corresponding to this voxel
-		SceneObject sceneObjectsInPixel = getSceneObjectsInPixel(voxelIndices);
-		s.addSceneObject(sceneObjectsInPixel, true);
+		// (the components might be shared with other rays via the cache, so don't make s their parent)
+		SceneObject sceneObjectsInPixel = getCachedSceneObjectsInPixel(voxelIndices);
+		s.addSharedSceneObject(sceneObjectsInPixel, true);
 		
 		// and raytrace through the "pixel scene"
 		return s.getColourAvoidingOrigin(
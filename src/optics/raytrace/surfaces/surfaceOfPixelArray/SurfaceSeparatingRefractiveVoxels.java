@@ -88,8 +88,8 @@ public class SurfaceSeparatingRefractiveVoxels extends SurfaceSeparatingVoxels
 		}
 
 		//getting the objects in the corresponding voxells
-		SceneObject c1 = surfaceOfPixelArray.getSceneObjectsInPixel(voxellationIndicesOnInside);
-		SceneObject c2 = surfaceOfPixelArray.getSceneObjectsInPixel(voxellationIndicesOnOutside);
+		SceneObject c1 = surfaceOfPixelArray.getCachedSceneObjectsInPixel(voxellationIndicesOnInside);
+		SceneObject c2 = surfaceOfPixelArray.getCachedSceneObjectsInPixel(voxellationIndicesOnOutside);
 		// light ray direction in the next cell
 		Vector3D d2;
 		double t;
@@ -5,9 +5,13 @@ import java.util.ArrayList;
 
 import math.Vector3D;
 import optics.DoubleColour;
+import optics.raytrace.core.AxisAlignedBoundingBox;
 import optics.raytrace.core.LightSource;
+import optics.raytrace.core.RayContinuation;
 import optics.raytrace.core.Ray;
 import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.RaySceneObjectIntersectionRecord;
+import optics.raytrace.core.RaySpanList;
 import optics.raytrace.core.RaytraceExceptionHandler;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SceneObjectPrimitive;
@@ -123,6 +127,23 @@ public class SceneObjectPartOfVoxellation implements SceneObject, Serializable,
 		return sceneObject.getClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject);
 	}
 
+	@Override
+	public boolean findClosestRayIntersectionAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject,
+			RaySceneObjectIntersectionRecord record) {
+		return sceneObject.findClosestRayIntersectionAvoidingOrigin(ray, originObject, record);
+	}
+
+	@Override
+	public RaySpanList getRaySpans(Ray ray, SceneObjectPrimitive originObject) {
+		return sceneObject.getRaySpans(ray, originObject);
+	}
+
+	@Override
+	public boolean hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject,
+			double maxDistance) {
+		return sceneObject.hasRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, maxDistance);
+	}
+
 	@Override
 	public RaySceneObjectIntersection getNextClosestRayIntersection(Ray ray, RaySceneObjectIntersection i) {
 		return sceneObject.getNextClosestRayIntersection(ray, i);
@@ -146,6 +167,11 @@ public class SceneObjectPartOfVoxellation implements SceneObject, Serializable,
 		return sceneObject.getNextClosestRayIntersectionWithShadowThrowingSceneObjectAvoidingOrigin(ray, originObject, i);
 	}
 
+	@Override
+	public AxisAlignedBoundingBox getAxisAlignedBoundingBox() {
+		return sceneObject.getAxisAlignedBoundingBox();
+	}
+
 	@Override
 	public SceneObject transform(Transformation t) {
 		sceneObject = sceneObject.transform(t);	// TODO is this correct? I am transforming *this* project
@@ -170,6 +196,13 @@ public class SceneObjectPartOfVoxellation implements SceneObject, Serializable,
 		return sceneObject.getColourAvoidingOrigin(ray, originObject, l, scene, traceLevel, raytraceExceptionHandler);
 	}
 
+	@Override
+	public DoubleColour getColourOrContinuationAvoidingOrigin(Ray ray, SceneObjectPrimitive originObject, LightSource l,
+			SceneObject scene, int traceLevel, RaytraceExceptionHandler raytraceExceptionHandler, RayContinuation continuation)
+			throws RayTraceException {
+		return sceneObject.getColourOrContinuationAvoidingOrigin(ray, originObject, l, scene, traceLevel, raytraceExceptionHandler, continuation);
+	}
+
 	/**
 	 * creates a new wrapper, but everything inside is the same!
 	 */
@@ -140,6 +140,69 @@ public class SetOfCoaxialInfiniteCylinderMantles extends SetOfSurfaces
 		return (r-radiusOfCylinder0) / separation;
 	}
 
+
+	/**
+	 * @param position
+	 * @return	the component of the vector from the axis to the position that is perpendicular to the axis
+	 */
+	private Vector3D getPerpendicularPartOfVectorFromAxis(Vector3D position)
+	{
+		Vector3D sp = Vector3D.difference(position, pointOnAxis);
+		return Vector3D.difference(sp, axisDirection.getProductWith(Vector3D.scalarProduct(sp, axisDirection)));
+	}
+
+	/**
+	 * Voxel #<i>voxelIndex</i> is the cylindrical shell between cylinder mantles #(<i>voxelIndex</i>-1) and #<i>voxelIndex</i>
+	 * @see optics.raytrace.voxellations.Voxellation#getDistanceToVoxelBoundary(math.Vector3D, math.Vector3D, int)
+	 */
+	@Override
+	public double getDistanceToVoxelBoundary(Vector3D position, Vector3D direction, int voxelIndex)
+	{
+		double
+			r1 = getRadius(voxelIndex-1),
+			r2 = getRadius(voxelIndex),
+			rInner = Math.min(r1, r2),
+			rOuter = Math.max(r1, r2);
+
+		// work in the plane perpendicular to the axis;
+		// solve |p + t d|^2 = r^2, where p and d are the components of position and direction perpendicular to the axis,
+		// i.e. a t^2 + 2 b t + c = r^2
+		Vector3D p = getPerpendicularPartOfVectorFromAxis(position);
+		Vector3D d = Vector3D.difference(direction, axisDirection.getProductWith(Vector3D.scalarProduct(direction, axisDirection)));
+		double
+			a = d.getModSquared(),
+			b = Vector3D.scalarProduct(p, d),
+			c = p.getModSquared();
+		
+		// is the light ray travelling parallel to the axis?
+		if(a == 0) return Double.POSITIVE_INFINITY;
+		
+		if(rInner > 0)
+		{
+			// does the light ray enter the inner cylinder?
+			double discriminant = b*b - a*(c - rInner*rInner);
+			if(discriminant >= 0)
+			{
+				double t = (-b - Math.sqrt(discriminant))/a;
+				if(t > 0) return t;
+			}
+		}
+		
+		// the light ray leaves through the outer cylinder
+		double discriminant = b*b - a*(c - rOuter*rOuter);
+		if(discriminant < 0) return 0;	// the light ray isn't inside the outer cylinder, so it has already left the voxel
+		return Math.max(0, (-b + Math.sqrt(discriminant))/a);
+	}
+
+	/**
+	 * @see optics.raytrace.voxellations.Voxellation#getNormalisedVoxelBoundaryNormal(math.Vector3D)
+	 */
+	@Override
+	public Vector3D getNormalisedVoxelBoundaryNormal(Vector3D position)
+	{
+		return getPerpendicularPartOfVectorFromAxis(position).getNormalised();
+	}
+
 	
 	// setters & getters
 	
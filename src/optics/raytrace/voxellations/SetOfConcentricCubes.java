@@ -4,6 +4,8 @@ import math.Vector3D;
 import optics.raytrace.core.SceneObject;
 import optics.raytrace.core.SurfaceProperty;
 import optics.raytrace.sceneObjects.ParametrisedCuboid;
+import optics.raytrace.sceneObjects.Plane;
+import optics.raytrace.sceneObjects.solidGeometry.SceneObjectUnion;
 
 /**
  * A set of nested concentric cubes similar to SetOfConcentricSpheres.class
@@ -85,22 +87,99 @@ public class SetOfConcentricCubes extends SetOfSurfaces
 	// throws Exception
 	{
 		// calculate the side length of the cube with index i
-		double d = 2*(radiusOfCube0 + i * deltaRadius);
+		double d = 2*index2Radius(i);
 		if(d <= 0.0) return null;
 		
-		// make d -ve if the outwards normal orientation is -ve, which is represented by an inverted cube (with a -ve radius)
-		if(outwardsNormalOrientation == OutwardsNormalOrientation.NEGATIVE) d *= -1;
+		if(outwardsNormalOrientation == OutwardsNormalOrientation.POSITIVE)
+			return new ParametrisedCuboid(
+					"Cube #"+i,	// description
+					d, d, d, // width, height, depth
+					centre,	// centre
+					surfaceProperty,	// surface property
+					null,	// parent
+					null	// studio
+				);
 		
-		return new ParametrisedCuboid(
-				"Cube #"+i,	// description
-				d, d, d, // width, height, depth
-				centre,	// centre
-				surfaceProperty,	// surface property
+		// the outwards normal orientation is -ve, so the inside is the outside of the cube, i.e. the union of the half-spaces
+		// beyond the cube's six faces, each bounded by the plane of the face, with the normal pointing towards the centre
+		// (a ParametrisedCuboid with -ve side lengths would be the intersection of these half-spaces, which is empty)
+		SceneObjectUnion invertedCube = new SceneObjectUnion(
+				"Inverted cube #"+i,	// description
 				null,	// parent
 				null	// studio
 			);
+		Vector3D[] faceNormals = {Vector3D.X, Vector3D.Y, Vector3D.Z, Vector3D.X.getReverse(), Vector3D.Y.getReverse(), Vector3D.Z.getReverse()};
+		for(Vector3D faceNormal : faceNormals)
+			invertedCube.addSceneObject(new Plane(
+					"Face of inverted cube #"+i,	// description
+					Vector3D.sum(centre, faceNormal.getProductWith(d/2)),	// point on plane
+					faceNormal.getReverse(),	// normal
+					surfaceProperty,	// surface property
+					invertedCube,	// parent
+					null	// studio
+				));
+		return invertedCube;
 	}
 	
+	/**
+	 * Voxel #<i>voxelIndex</i> is the cubic shell between cubes #(<i>voxelIndex</i>-1) and #<i>voxelIndex</i>
+	 * @see optics.raytrace.voxellations.Voxellation#getDistanceToVoxelBoundary(math.Vector3D, math.Vector3D, int)
+	 */
+	@Override
+	public double getDistanceToVoxelBoundary(Vector3D position, Vector3D direction, int voxelIndex)
+	{
+		double
+			r1 = index2Radius(voxelIndex-1),
+			r2 = index2Radius(voxelIndex),
+			rInner = Math.min(r1, r2),
+			rOuter = Math.max(r1, r2);
+
+		Vector3D cp = Vector3D.difference(position, centre);
+		double[] c = {cp.x, cp.y, cp.z}, d = {direction.x, direction.y, direction.z};
+		
+		if(rInner > 0)
+		{
+			// does the light ray enter the inner cube?
+			double tEntry = Double.NEGATIVE_INFINITY, tExit = Double.POSITIVE_INFINITY;
+			for(int a=0; a<3; a++)
+			{
+				if(d[a] == 0)
+				{
+					if(Math.abs(c[a]) > rInner) tEntry = Double.POSITIVE_INFINITY;
+				}
+				else
+				{
+					double
+						t1 = (-rInner - c[a])/d[a],
+						t2 = ( rInner - c[a])/d[a];
+					tEntry = Math.max(tEntry, Math.min(t1, t2));
+					tExit = Math.min(tExit, Math.max(t1, t2));
+				}
+			}
+			if((tEntry <= tExit) && (tEntry > 0)) return tEntry;
+		}
+		
+		// the light ray leaves through the outer cube
+		double tExit = Double.POSITIVE_INFINITY;
+		for(int a=0; a<3; a++)
+			if(d[a] != 0) tExit = Math.min(tExit, (((d[a] > 0)?rOuter:-rOuter) - c[a])/d[a]);
+		return Math.max(0, tExit);
+	}
+
+	/**
+	 * @see optics.raytrace.voxellations.Voxellation#getNormalisedVoxelBoundaryNormal(math.Vector3D)
+	 */
+	@Override
+	public Vector3D getNormalisedVoxelBoundaryNormal(Vector3D position)
+	{
+		// the normal to the face of the cube through the position, i.e. in the direction in which the position is furthest from the centre
+		Vector3D cp = Vector3D.difference(position, centre);
+		double ax = Math.abs(cp.x), ay = Math.abs(cp.y), az = Math.abs(cp.z);
+		if((ax >= ay) && (ax >= az)) return Vector3D.X;
+		if(ay >= az) return Vector3D.Y;
+		return Vector3D.Z;
+	}
+
 	
 	//
 	// setters and getters
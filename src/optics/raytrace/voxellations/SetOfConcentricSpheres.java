@@ -133,6 +133,51 @@ public class SetOfConcentricSpheres extends SetOfSurfaces
 		return (r-radiusOfSphere0) / separation;
 	}
 
+	/**
+	 * Voxel #<i>voxelIndex</i> is the spherical shell between spheres #(<i>voxelIndex</i>-1) and #<i>voxelIndex</i>
+	 * @see optics.raytrace.voxellations.Voxellation#getDistanceToVoxelBoundary(math.Vector3D, math.Vector3D, int)
+	 */
+	@Override
+	public double getDistanceToVoxelBoundary(Vector3D position, Vector3D direction, int voxelIndex)
+	{
+		double
+			r1 = getRadius1(voxelIndex-1),
+			r2 = getRadius1(voxelIndex),
+			rInner = Math.min(r1, r2),
+			rOuter = Math.max(r1, r2);
+
+		// the light ray is at position + t direction; solve |position + t direction - centre|^2 = r^2, i.e. t^2 + 2 b t + c = r^2
+		Vector3D cp = Vector3D.difference(position, centre);
+		double
+			b = Vector3D.scalarProduct(cp, direction),
+			c = cp.getModSquared();
+		
+		if(rInner > 0)
+		{
+			// does the light ray enter the inner sphere?
+			double discriminant = b*b - c + rInner*rInner;
+			if(discriminant >= 0)
+			{
+				double t = -b - Math.sqrt(discriminant);
+				if(t > 0) return t;
+			}
+		}
+		
+		// the light ray leaves through the outer sphere
+		double discriminant = b*b - c + rOuter*rOuter;
+		if(discriminant < 0) return 0;	// the light ray isn't inside the outer sphere, so it has already left the voxel
+		return Math.max(0, -b + Math.sqrt(discriminant));
+	}
+
+	/**
+	 * @see optics.raytrace.voxellations.Voxellation#getNormalisedVoxelBoundaryNormal(math.Vector3D)
+	 */
+	@Override
+	public Vector3D getNormalisedVoxelBoundaryNormal(Vector3D position)
+	{
+		return Vector3D.difference(position, centre).getNormalised();
+	}
+
 //	/**
 //	 * The voxel with index <i>i</i> is lies between the surfaces with indices <i>i</i>-1 and <i>i</i>
 //	 * @param position
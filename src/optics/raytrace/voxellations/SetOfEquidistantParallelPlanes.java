@@ -62,6 +62,7 @@ public class SetOfEquidistantParallelPlanes extends SetOfSurfaces
 	 * The object returned is intended to be used for finding the intersection point between the plane and a ray.
 	 * It is <i>not</i> linked into a scene or studio, and nor does it have a surface property.
 	 * @param i
+	 * @param outwardsNormalOrientation	POSITIVE if the outwards normal points in the direction of more positive plane indices, NEGATIVE otherwise
 	 * @return	if <i>i</i> is an integer, the plane with index <i>i</i>, otherwise a plane at a position corresponding to the index <i>i</i>
 	 */
 	@Override
@@ -69,8 +70,8 @@ public class SetOfEquidistantParallelPlanes extends SetOfSurfaces
 	{
 		return new Plane(
 				"Plane #"+i,	// description
-				Vector3D.sum(p, n.getProductWith(i*s*outwardsNormalOrientation.getSign())),	// point on plane
-				n,	// normal
+				Vector3D.sum(p, n.getProductWith(i*s)),	// point on plane
+				n.getProductWith(outwardsNormalOrientation.getSign()),	// normal
 				surfaceProperty,	// surface property
 				null,	// parent
 				null	// studio
@@ -109,6 +110,32 @@ public class SetOfEquidistantParallelPlanes extends SetOfSurfaces
 		return (int)(Math.floor(getSurfaceIndex(position)+1));
 	}
 
+
+	/**
+	 * Voxel #<i>voxelIndex</i> lies between planes #(<i>voxelIndex</i>-1) and #<i>voxelIndex</i>
+	 * @see optics.raytrace.voxellations.Voxellation#getDistanceToVoxelBoundary(math.Vector3D, math.Vector3D, int)
+	 */
+	@Override
+	public double getDistanceToVoxelBoundary(Vector3D position, Vector3D direction, int voxelIndex)
+	{
+		// the rate at which the plane index changes along the light ray
+		double dIndex = Vector3D.scalarProduct(direction, n) / s;
+		if(dIndex == 0) return Double.POSITIVE_INFINITY;
+		
+		// the index of the plane through which the light ray leaves the voxel
+		double exitPlaneIndex = (dIndex > 0)?voxelIndex:voxelIndex-1;
+		
+		return Math.max(0, (exitPlaneIndex - getSurfaceIndex(position)) / dIndex);
+	}
+
+	/**
+	 * @see optics.raytrace.voxellations.Voxellation#getNormalisedVoxelBoundaryNormal(math.Vector3D)
+	 */
+	@Override
+	public Vector3D getNormalisedVoxelBoundaryNormal(Vector3D position)
+	{
+		return n;
+	}
 	
 //	/**
 //	 * @param r	position relative to the planes (e.g. 1.5 = half-way between planes 1 and 2)
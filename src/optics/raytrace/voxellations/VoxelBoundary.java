@@ -0,0 +1,88 @@
+package optics.raytrace.voxellations;
+
+import math.Vector3D;
+import optics.raytrace.core.Ray;
+import optics.raytrace.core.RaySceneObjectIntersection;
+import optics.raytrace.core.SceneObjectPrimitive;
+import optics.raytrace.core.Transformation;
+
+/**
+ * The boundaries between the voxels of a voxellation, represented as a single scene-object primitive.
+ *
+ * It is used as the scene object of intersections with voxel boundaries that have been calculated analytically
+ * (see Voxellation::getDistanceToVoxelBoundary), so that those intersections can be handled in the same way as
+ * intersections with the surfaces returned by Voxellation::getSurfaceOfVoxel.
+ * It is not intended to be placed into a scene; rays don't intersect it.
+ *
+ * @author Johannes Courtial
+ */
+public class VoxelBoundary extends SceneObjectPrimitive
+{
+	private static final long serialVersionUID = -2193856407325563913L;
+
+	/**
+	 * the voxellation whose voxel boundaries this represents
+	 */
+	private Voxellation voxellation;
+
+	/**
+	 * @param voxellation	the voxellation whose voxel boundaries this represents
+	 */
+	public VoxelBoundary(Voxellation voxellation)
+	{
+		super(
+				"boundaries between voxels",	// description
+				null,	// surface property
+				null,	// parent
+				null	// studio
+			);
+
+		this.voxellation = voxellation;
+	}
+
+	@Override
+	public VoxelBoundary clone()
+	{
+		return new VoxelBoundary(voxellation);
+	}
+
+	public Voxellation getVoxellation() {
+		return voxellation;
+	}
+
+	/**
+	 * @see optics.raytrace.core.SceneObjectPrimitive#getNormalisedOutwardsSurfaceNormal(math.Vector3D)
+	 */
+	@Override
+	public Vector3D getNormalisedOutwardsSurfaceNormal(Vector3D p)
+	{
+		return voxellation.getNormalisedVoxelBoundaryNormal(p);
+	}
+
+	/**
+	 * @return	NO_INTERSECTION; intersections with voxel boundaries are calculated by the voxellation
+	 */
+	@Override
+	public RaySceneObjectIntersection getClosestRayIntersection(Ray ray)
+	{
+		return RaySceneObjectIntersection.NO_INTERSECTION;
+	}
+
+	@Override
+	public boolean insideObject(Vector3D p)
+	{
+		return false;
+	}
+
+	@Override
+	public SceneObjectPrimitive transform(Transformation t)
+	{
+		return this;
+	}
+
+	@Override
+	public String getType()
+	{
+		return "Voxel boundary";
+	}
+}
@@ -31,6 +31,33 @@ public abstract class Voxellation implements Serializable
 	public abstract SceneObject getSurfaceOfVoxel(int i)
 	throws IndexOutOfBoundsException;
 	
+	/**
+	 * Calculates, without constructing the surface of the voxel, how far a light ray that starts at <i>position</i>,
+	 * inside the voxel with index <i>voxelIndex</i>, travels in direction <i>direction</i> before it reaches the boundary of that voxel.
+	 * Voxellations that can do this analytically should override this method (and getNormalisedVoxelBoundaryNormal);
+	 * those that don't are dealt with by intersecting the ray with getSurfaceOfVoxel(voxelIndex).
+	 * @param position	the light ray's start position
+	 * @param direction	the light ray's normalised direction
+	 * @param voxelIndex	the index of the voxel the light ray is travelling through
+	 * @return	the distance to the voxel boundary, Double.POSITIVE_INFINITY if the light ray never reaches it,
+	 * or Double.NaN if this voxellation can't calculate the distance analytically
+	 */
+	public double getDistanceToVoxelBoundary(Vector3D position, Vector3D direction, int voxelIndex)
+	{
+		return Double.NaN;
+	}
+
+	/**
+	 * @param position	a position on the boundary between two voxels
+	 * @return	the normalised normal to the voxel boundary at <i>position</i>; its sign is arbitrary;
+	 * null if this voxellation can't calculate the distance to the voxel boundary analytically
+	 * @see optics.raytrace.voxellations.Voxellation#getDistanceToVoxelBoundary(math.Vector3D, math.Vector3D, int)
+	 */
+	public Vector3D getNormalisedVoxelBoundaryNormal(Vector3D position)
+	{
+		return null;
+	}
+
 	/**
 	 * Return the surface of voxel <i>i</i>, but don't include surface #<i>avoidSurface</i>
 	 * @param i